@@ -45,6 +45,7 @@ public class Prefs {
     private String[]                     codeStructureGraphOrientation;
     private boolean[]                    firmwareWriteProtected;
     private boolean[]                    dmaSynchronous;
+    private boolean[]                    idleLoopFastForward;
     private boolean[]                    autoEnableTimers;
     private boolean[]                    logMemoryMessages;
     private boolean[]                    logSerialMessages;
@@ -392,6 +393,16 @@ public class Prefs {
         this.dmaSynchronous[chip] = isDmaSynchronous;
     }
 
+    public boolean isIdleLoopFastForward(int chip) {
+        if (idleLoopFastForward == null || idleLoopFastForward.length != 2) idleLoopFastForward = new boolean[]{true, true};
+        return idleLoopFastForward[chip];
+    }
+
+    public void setIdleLoopFastForward(int chip, boolean isIdleLoopFastForward) {
+        if (idleLoopFastForward == null || idleLoopFastForward.length != 2) idleLoopFastForward = new boolean[]{true, true};
+        this.idleLoopFastForward[chip] = isIdleLoopFastForward;
+    }
+
     public boolean isAutoEnableTimers(int chip) {
         if (autoEnableTimers == null || autoEnableTimers.length != 2) autoEnableTimers = new boolean[]{true, true};
         return autoEnableTimers[chip];
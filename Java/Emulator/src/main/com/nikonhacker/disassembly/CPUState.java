@@ -97,4 +97,30 @@ public abstract class CPUState {
     public abstract boolean hasAllRegistersZero();
 
     public abstract int getNumStdRegisters();
+
+    /**
+     * @return the status bits (flags, etc.) that are not held in standard registers, if any
+     */
+    public int getStatusBits() {
+        return 0;
+    }
+
+    /**
+     * Restores status bits previously obtained by getStatusBits()
+     * @param statusBits
+     */
+    public void setStatusBits(int statusBits) {
+    }
+
+    /**
+     * Copies the values of the standard registers, followed by the status bits, to the given array
+     * @param state an array of (getNumStdRegisters() + 1) elements
+     */
+    public void getStdState(int[] state) {
+        int numStdRegisters = getNumStdRegisters();
+        for (int i = 0; i < numStdRegisters; i++) {
+            state[i] = getReg(i);
+        }
+        state[numStdRegisters] = getStatusBits();
+    }
 }
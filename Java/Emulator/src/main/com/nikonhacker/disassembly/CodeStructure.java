@@ -1,6 +1,7 @@
 package com.nikonhacker.disassembly;
 
 import com.nikonhacker.Format;
+import com.nikonhacker.itron.ITronObjectLayout;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
@@ -41,6 +42,8 @@ public abstract class CodeStructure {
     public Integer tblTaskData;
     public Integer pCurrentTCB;
     public Integer tblTCB;
+    /** Layouts of µITRON control blocks declared in options, by object type */
+    public final Map<ITronObjectLayout.ObjectType, ITronObjectLayout> itronLayouts = new EnumMap<ITronObjectLayout.ObjectType, ITronObjectLayout>(ITronObjectLayout.ObjectType.class);
 
 
     public CodeStructure(int address) {
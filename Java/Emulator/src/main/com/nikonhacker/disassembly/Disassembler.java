@@ -8,6 +8,7 @@ import com.nikonhacker.emu.memory.FastMemoryLE;
 import com.nikonhacker.emu.memory.Memory;
 import com.nikonhacker.disassembly.fr.FrCodeAnalyzer;
 import com.nikonhacker.disassembly.tx.TxCodeAnalyzer;
+import com.nikonhacker.itron.ITronObjectLayout;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 
@@ -38,6 +39,7 @@ public abstract class Disassembler {
     private Map<Integer, Symbol> symbols = new HashMap<Integer, Symbol>();
     private Map<Integer, List<Integer>> jumpHints = new HashMap<Integer, List<Integer>>();
     private Map<Integer, List<Integer>> jumpHintOffsets = new HashMap<Integer, List<Integer>>();
+    private Map<ITronObjectLayout.ObjectType, ITronObjectLayout> itronLayouts = new EnumMap<ITronObjectLayout.ObjectType, ITronObjectLayout>(ITronObjectLayout.ObjectType.class);
     private Integer entryPoint;
 
     private boolean optionsFileProcessed;
@@ -72,6 +74,7 @@ public abstract class Disassembler {
                         + "-i range=offset   map range of memory to input file offset\n"
                         + "-j source=target[,target[,...]] define values for a dynamic jump (used in code structure analysis)\n"
                         + "-j source=@(tableAddress+records*recordsize) define tables for a dynamic jump\n"
+                        + "-k type=@(table+records*recordsize):field@offset[.size],... define the layout of µITRON control blocks\n"
                         + "-m range=type     describe memory range (use -m? to list types)\n"
                         + "-o filename       output file .asm\n"
                         + "-s address=name   define symbol\n"
@@ -295,6 +298,17 @@ public abstract class Disassembler {
                     OptionHandler.parseJumpHint(jumpHints, jumpHintOffsets, argument);
                     break;
 
+                case 'K':
+                case 'k':
+                    argument = optionHandler.getArgument();
+                    if (StringUtils.isBlank(argument)) {
+                        log("option \"-" + option + "\" requires an argument\n");
+                        return false;
+                    }
+                    ITronObjectLayout layout = ITronObjectLayout.parse(argument);
+                    itronLayouts.put(layout.getType(), layout);
+                    break;
+
                 case 'L':
                 case 'l':
                     debugPrintWriter.println("-" + option + ": not implemented yet!\n");
@@ -487,6 +501,16 @@ public abstract class Disassembler {
             codeStructure.tblTaskData = findSymbolAddressByName("tblTaskData");
             codeStructure.pCurrentTCB = findSymbolAddressByName("pCurrentTCB");
             codeStructure.tblTCB = findSymbolAddressByName("tblTCB");
+            for (ITronObjectLayout layout : itronLayouts.values()) {
+                if (layout.getTableName() != null) {
+                    layout.setTableAddress(findSymbolAddressByName(layout.getTableName()));
+                    if (layout.getTableAddress() == null) {
+                        debugPrintWriter.println("No symbol called '" + layout.getTableName() + "' was found for the µITRON " + layout.getType().getKey() + " layout");
+                        continue;
+                    }
+                }
+                codeStructure.itronLayouts.put(layout.getType(), layout);
+            }
 
             if (outWriter != null) {
                 debugPrintWriter.println("Writing output to disk...");
@@ -625,6 +649,13 @@ public abstract class Disassembler {
         }
     }
 
+    /**
+     * @return symbols declared in options (-s), by address
+     */
+    public Map<Integer, Symbol> getSymbols() {
+        return symbols;
+    }
+
     public Integer findSymbolAddressByName(String name) {
         for (Integer candidateAddress : symbols.keySet()) {
             Symbol s = symbols.get(candidateAddress);
@@ -0,0 +1,159 @@
+package com.nikonhacker.disassembly;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * On-disk hash table from function fingerprints (see FunctionMatcher) to symbol texts, as given to the -s option.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *  0: int magic
+ *  4: int version
+ *  8: int number of slots (power of 2)
+ * 12: int reserved
+ * 16: slots of 12 bytes: long fingerprint, int offset of the name in the name area, or EMPTY or AMBIGUOUS
+ * ..: name area: for each name, int length followed by that many bytes of UTF-8
+ * </pre>
+ * Collisions are resolved by linear probing. The file is memory mapped, so opening it costs nothing whatever its size.
+ */
+public class FunctionIndex {
+    private static final int MAGIC = 0x46494458; // "FIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 12;
+
+    private static final int EMPTY = -1;
+    /** Marks a fingerprint shared by functions with different names. Such a fingerprint cannot be used to match */
+    private static final int AMBIGUOUS = -2;
+
+    /** Value returned by lookup() for ambiguous fingerprints */
+    public static final String AMBIGUOUS_NAME = "";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final MappedByteBuffer buffer;
+    private final int              numSlots;
+    private final int              namesOffset;
+
+    private FunctionIndex(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a function index, or unsupported version");
+        }
+        numSlots = buffer.getInt(8);
+        namesOffset = HEADER_SIZE + numSlots * SLOT_SIZE;
+    }
+
+    public static FunctionIndex open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return new FunctionIndex(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+        }
+    }
+
+    /**
+     * @return the symbol text for this fingerprint, AMBIGUOUS_NAME if several functions have it, or null if none
+     */
+    public String lookup(long fingerprint) {
+        int mask = numSlots - 1;
+        for (int slot = hashSlot(fingerprint, mask); ; slot = (slot + 1) & mask) {
+            int position = HEADER_SIZE + slot * SLOT_SIZE;
+            int nameOffset = buffer.getInt(position + 8);
+            if (nameOffset == EMPTY) {
+                return null;
+            }
+            if (buffer.getLong(position) == fingerprint) {
+                return nameOffset == AMBIGUOUS ? AMBIGUOUS_NAME : readName(nameOffset);
+            }
+        }
+    }
+
+    /**
+     * @return all entries, ambiguous ones being mapped to AMBIGUOUS_NAME
+     */
+    public Map<Long, String> readAll() {
+        Map<Long, String> entries = new LinkedHashMap<>();
+        for (int slot = 0; slot < numSlots; slot++) {
+            int position = HEADER_SIZE + slot * SLOT_SIZE;
+            int nameOffset = buffer.getInt(position + 8);
+            if (nameOffset != EMPTY) {
+                entries.put(buffer.getLong(position), nameOffset == AMBIGUOUS ? AMBIGUOUS_NAME : readName(nameOffset));
+            }
+        }
+        return entries;
+    }
+
+    public int getNumSlots() {
+        return numSlots;
+    }
+
+    private String readName(int nameOffset) {
+        int position = namesOffset + nameOffset;
+        byte[] bytes = new byte[buffer.getInt(position)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(position + 4 + i);
+        }
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Writes an index. Load factor is kept at or below 50%
+     * @param entries symbol text by fingerprint. AMBIGUOUS_NAME marks ambiguous fingerprints
+     */
+    public static void write(File file, Map<Long, String> entries) throws IOException {
+        int numSlots = Integer.highestOneBit(Math.max(16, entries.size() * 2 - 1)) << 1;
+        int mask = numSlots - 1;
+        long[] fingerprints = new long[numSlots];
+        int[] nameOffsets = new int[numSlots];
+        for (int i = 0; i < numSlots; i++) {
+            nameOffsets[i] = EMPTY;
+        }
+
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        DataOutputStream namesOut = new DataOutputStream(names);
+        Map<String, Integer> nameOffsetsByName = new LinkedHashMap<>();
+        for (Map.Entry<Long, String> entry : entries.entrySet()) {
+            int nameOffset;
+            if (AMBIGUOUS_NAME.equals(entry.getValue())) {
+                nameOffset = AMBIGUOUS;
+            }
+            else {
+                Integer existingOffset = nameOffsetsByName.get(entry.getValue());
+                if (existingOffset == null) {
+                    existingOffset = namesOut.size();
+                    byte[] bytes = entry.getValue().getBytes(UTF8);
+                    namesOut.writeInt(bytes.length);
+                    namesOut.write(bytes);
+                    nameOffsetsByName.put(entry.getValue(), existingOffset);
+                }
+                nameOffset = existingOffset;
+            }
+            int slot = hashSlot(entry.getKey(), mask);
+            while (nameOffsets[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            fingerprints[slot] = entry.getKey();
+            nameOffsets[slot] = nameOffset;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numSlots);
+            out.writeInt(0);
+            for (int slot = 0; slot < numSlots; slot++) {
+                out.writeLong(fingerprints[slot]);
+                out.writeInt(nameOffsets[slot]);
+            }
+            names.writeTo(out);
+        }
+    }
+
+    private static int hashSlot(long fingerprint, int mask) {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,371 @@
+package com.nikonhacker.disassembly;
+
+import com.nikonhacker.Format;
+import com.nikonhacker.disassembly.fr.Dfr;
+import com.nikonhacker.disassembly.fr.FrCPUState;
+import com.nikonhacker.disassembly.fr.FrInstructionSet;
+import com.nikonhacker.disassembly.fr.FrStatement;
+import com.nikonhacker.disassembly.tx.Dtx;
+import com.nikonhacker.disassembly.tx.TxCPUState;
+import com.nikonhacker.disassembly.tx.TxInstructionSet;
+import com.nikonhacker.disassembly.tx.TxStatement;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Propagates function names between firmwares (e.g. from an annotated b640101b to a new b640102a).
+ *
+ * Each function found by the CodeAnalyzer gets two fingerprints:
+ * <ul>
+ * <li>a shape fingerprint, based on its instruction sequence, with immediates and addresses masked out, and on its number of calls</li>
+ * <li>an exact fingerprint, which also includes the small constants it uses and the shape of the functions it calls</li>
+ * </ul>
+ * "index" stores the fingerprints of all named functions of one or more firmwares in a FunctionIndex.
+ * "match" looks up the unnamed functions of a firmware in it and writes the matching symbols as -s options.
+ * Firmwares are disassembled in parallel, and so are the fingerprints of their functions.
+ */
+public class FunctionMatcher {
+    /** Smaller functions (e.g. a single RET) are too common to be matched reliably */
+    public static final int MIN_INSTRUCTIONS = 4;
+
+    private static final long SHAPE_SALT = 0x5348415045L;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME  = 0x100000001b3L;
+
+    /**
+     * Fingerprints of a function
+     */
+    public static class Fingerprint {
+        public int  address;
+        public int  numInstructions;
+        /** Instruction names and registers */
+        long        body;
+        /** Constants, in order of appearance */
+        long        constants;
+        public long shape;
+        public long exact;
+    }
+
+    private final Set<OutputOption> outputOptions;
+    private final int               numThreads;
+
+    public FunctionMatcher(Set<OutputOption> outputOptions, int numThreads) {
+        this.outputOptions = outputOptions;
+        this.numThreads = numThreads;
+        // Fill the shared tables once, before any worker uses them
+        FrInstructionSet.init(outputOptions);
+        FrStatement.initFormatChars(outputOptions);
+        FrCPUState.initRegisterLabels(outputOptions);
+        TxInstructionSet.init(outputOptions);
+        TxStatement.initFormatChars(outputOptions);
+        TxCPUState.initRegisterLabels(outputOptions);
+    }
+
+    private static void usage() {
+        System.out.println("Usage : " + FunctionMatcher.class.getName() + " index <indexfile> <options file> <binary> [<options file> <binary> [...]]");
+        System.out.println("        " + FunctionMatcher.class.getName() + " match <indexfile> <options file> <binary> [<output file>]");
+        System.out.println("Options files are the .dfr.txt or .dtx.txt files used to disassemble the binaries.");
+        System.out.println("index adds the named functions of the given binaries to the index (created if needed).");
+        System.out.println("match writes -s lines for the unnamed functions of the binary that are found in the index.");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            usage();
+        }
+        Set<OutputOption> outputOptions = EnumSet.noneOf(OutputOption.class);
+        for (OutputOption outputOption : OutputOption.values()) {
+            if (outputOption.isDefaultValue()) {
+                outputOptions.add(outputOption);
+            }
+        }
+        outputOptions.add(OutputOption.STRUCTURE);
+        FunctionMatcher matcher = new FunctionMatcher(outputOptions, Runtime.getRuntime().availableProcessors());
+        File indexFile = new File(args[1]);
+        try {
+            switch (args[0]) {
+                case "index":
+                    if (args.length % 2 != 0) {
+                        usage();
+                    }
+                    List<File[]> firmwares = new ArrayList<>();
+                    for (int i = 2; i < args.length; i += 2) {
+                        firmwares.add(new File[]{new File(args[i]), new File(args[i + 1])});
+                    }
+                    Map<Long, String> entries = indexFile.exists() ? FunctionIndex.open(indexFile).readAll() : new HashMap<Long, String>();
+                    int before = entries.size();
+                    matcher.index(firmwares, entries);
+                    FunctionIndex.write(indexFile, entries);
+                    System.out.println((entries.size() - before) + " fingerprint(s) added, " + entries.size() + " in index.");
+                    break;
+                case "match":
+                    if (args.length > 5) {
+                        usage();
+                    }
+                    SortedMap<Integer, String> matches = matcher.match(FunctionIndex.open(indexFile), new File(args[2]), new File(args[3]));
+                    try (PrintWriter writer = (args.length == 5) ? new PrintWriter(new FileWriter(args[4])) : new PrintWriter(System.out)) {
+                        writer.println("# " + matches.size() + " symbol(s) matched from " + indexFile.getName());
+                        for (Map.Entry<Integer, String> match : matches.entrySet()) {
+                            writer.println("-s 0x" + Format.asHex(match.getKey(), 8) + "=" + match.getValue());
+                        }
+                    }
+                    break;
+                default:
+                    usage();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Adds the fingerprints of the named functions of the given firmwares to entries.
+     * A fingerprint found for different names becomes ambiguous
+     * @param firmwares pairs of options file and binary
+     */
+    public void index(List<File[]> firmwares, Map<Long, String> entries) throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<Map<Long, String>>> futures = new ArrayList<>();
+            for (final File[] firmware : firmwares) {
+                futures.add(executorService.submit(new Callable<Map<Long, String>>() {
+                    @Override
+                    public Map<Long, String> call() throws Exception {
+                        Disassembler disassembler = createDisassembler(firmware[0], firmware[1]);
+                        CodeStructure codeStructure = disassembler.disassembleMemRanges();
+                        Map<Long, String> firmwareEntries = new HashMap<>();
+                        for (Fingerprint fingerprint : fingerprint(codeStructure)) {
+                            Symbol symbol = disassembler.getSymbols().get(fingerprint.address);
+                            if (symbol != null && fingerprint.numInstructions >= MIN_INSTRUCTIONS) {
+                                String text = symbol.getRawText() != null ? symbol.getRawText() : symbol.getName();
+                                addEntry(firmwareEntries, fingerprint.exact, text);
+                                addEntry(firmwareEntries, fingerprint.shape, text);
+                            }
+                        }
+                        System.out.println(firmware[1].getName() + ": " + codeStructure.getNumFunctions() + " function(s), " + firmwareEntries.size() + " fingerprint(s)");
+                        return firmwareEntries;
+                    }
+                }));
+            }
+            for (Future<Map<Long, String>> future : futures) {
+                for (Map.Entry<Long, String> entry : getResult(future).entrySet()) {
+                    addEntry(entries, entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * @return symbol text by address, for the functions of the firmware that have no symbol yet and whose fingerprint
+     * designates a single name in the index, not already used in the firmware
+     */
+    public SortedMap<Integer, String> match(FunctionIndex index, File optionsFile, File binary) throws IOException, DisassemblyException, ParsingException {
+        Disassembler disassembler = createDisassembler(optionsFile, binary);
+        CodeStructure codeStructure = disassembler.disassembleMemRanges();
+        Map<Integer, Symbol> symbols = disassembler.getSymbols();
+
+        Set<String> usedNames = new HashSet<>();
+        for (Symbol symbol : symbols.values()) {
+            usedNames.add(symbol.getName());
+        }
+
+        Map<String, Integer> addressesByName = new HashMap<>();
+        SortedMap<Integer, String> matches = new TreeMap<>();
+        for (Fingerprint fingerprint : fingerprint(codeStructure)) {
+            if (symbols.containsKey(fingerprint.address) || fingerprint.numInstructions < MIN_INSTRUCTIONS) {
+                continue;
+            }
+            String text = index.lookup(fingerprint.exact);
+            if (text == null || FunctionIndex.AMBIGUOUS_NAME.equals(text)) {
+                text = index.lookup(fingerprint.shape);
+            }
+            if (text == null || FunctionIndex.AMBIGUOUS_NAME.equals(text)) {
+                continue;
+            }
+            String name = getName(text);
+            if (usedNames.contains(name)) {
+                continue;
+            }
+            Integer otherAddress = addressesByName.get(name);
+            if (otherAddress != null) {
+                // Several functions of this firmware match the same name. Keep none
+                matches.remove(otherAddress);
+                continue;
+            }
+            addressesByName.put(name, fingerprint.address);
+            matches.put(fingerprint.address, text);
+        }
+        return matches;
+    }
+
+    /**
+     * Computes the fingerprints of all functions, in parallel
+     */
+    public List<Fingerprint> fingerprint(final CodeStructure codeStructure) throws IOException {
+        final List<Integer> addresses = new ArrayList<>(codeStructure.getAllFunctionAddresses());
+        final Map<Integer, Fingerprint> fingerprints = new HashMap<>();
+        for (Integer address : addresses) {
+            Fingerprint fingerprint = new Fingerprint();
+            fingerprint.address = address;
+            fingerprints.put(address, fingerprint);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        try {
+            // Pass 1 reads each function body. Pass 2 combines each function with the bodies of its callees
+            for (final int pass : new int[]{1, 2}) {
+                List<Future<Void>> futures = new ArrayList<>();
+                int chunkSize = Math.max(1, (addresses.size() + numThreads - 1) / numThreads);
+                for (int start = 0; start < addresses.size(); start += chunkSize) {
+                    final List<Integer> chunk = addresses.subList(start, Math.min(addresses.size(), start + chunkSize));
+                    futures.add(executorService.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            for (Integer address : chunk) {
+                                if (pass == 1) {
+                                    computeBody(codeStructure, codeStructure.getFunction(address), fingerprints.get(address));
+                                }
+                                else {
+                                    computeCombined(codeStructure.getFunction(address), fingerprints.get(address), fingerprints);
+                                }
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    getResult(future);
+                }
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        return new ArrayList<>(fingerprints.values());
+    }
+
+    private static void computeBody(CodeStructure codeStructure, Function function, Fingerprint fingerprint) {
+        List<CodeSegment> segments = new ArrayList<>(function.getCodeSegments());
+        Collections.sort(segments, new Comparator<CodeSegment>() {
+            @Override
+            public int compare(CodeSegment o1, CodeSegment o2) {
+                return Integer.compare(o1.getStart(), o2.getStart());
+            }
+        });
+        long body = FNV_OFFSET;
+        long constants = FNV_OFFSET;
+        int numInstructions = 0;
+        for (CodeSegment segment : segments) {
+            Integer address = segment.getStart();
+            while (address != null && address <= segment.getEnd()) {
+                Statement statement = codeStructure.getStatement(address);
+                if (statement != null && statement.getInstruction() != null) {
+                    Instruction instruction = statement.getInstruction();
+                    body = hash(body, instruction.getName().hashCode());
+                    body = hash(body, statement.ri_rs_fs);
+                    body = hash(body, statement.rj_rt_ft);
+                    body = hash(body, statement.rd_fd);
+                    // Immediates of jumps, calls and address loads change from one version to the other. Small constants do not
+                    if (instruction.getFlowType() == Instruction.FlowType.NONE && isConstant(codeStructure, statement.decodedImm)) {
+                        constants = hash(constants, statement.decodedImm);
+                    }
+                    numInstructions++;
+                }
+                address = codeStructure.getAddressOfStatementAfter(address);
+            }
+        }
+        fingerprint.body = body;
+        fingerprint.constants = constants;
+        fingerprint.numInstructions = numInstructions;
+    }
+
+    private static void computeCombined(Function function, Fingerprint fingerprint, Map<Integer, Fingerprint> fingerprints) {
+        List<Jump> calls = new ArrayList<>(function.getCalls());
+        Collections.sort(calls, new Comparator<Jump>() {
+            @Override
+            public int compare(Jump o1, Jump o2) {
+                return Integer.compare(o1.getSource(), o2.getSource());
+            }
+        });
+        long shape = hash(hash(hash(FNV_OFFSET, SHAPE_SALT), fingerprint.body), calls.size());
+        long exact = hash(hash(hash(FNV_OFFSET, fingerprint.body), fingerprint.constants), calls.size());
+        for (Jump call : calls) {
+            Fingerprint callee = fingerprints.get(call.getTarget() & CodeStructure.IGNORE_ISA_BIT);
+            exact = hash(exact, callee == null ? 0 : callee.body);
+        }
+        fingerprint.shape = shape;
+        fingerprint.exact = exact;
+    }
+
+    /**
+     * Values that are neither code addresses nor large enough to be data addresses
+     */
+    private static boolean isConstant(CodeStructure codeStructure, int value) {
+        return (value > -0x10000 && value < 0x10000) && !codeStructure.isStatement(value);
+    }
+
+    private static long hash(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * @return the name part of a symbol text (see Symbol)
+     */
+    private static String getName(String text) {
+        String cleanText = text.replaceAll("/\\*.*?\\*/", "");
+        return (cleanText.contains("(") ? cleanText.substring(0, cleanText.indexOf('(')) : cleanText).trim();
+    }
+
+    private static void addEntry(Map<Long, String> entries, long fingerprint, String text) {
+        String existing = entries.get(fingerprint);
+        if (existing == null) {
+            entries.put(fingerprint, text);
+        }
+        else if (!existing.equals(text)) {
+            entries.put(fingerprint, FunctionIndex.AMBIGUOUS_NAME);
+        }
+    }
+
+    private Disassembler createDisassembler(File optionsFile, File binary) throws IOException, ParsingException {
+        Disassembler disassembler = optionsFile.getName().toLowerCase().endsWith(".dtx.txt") ? new Dtx() : new Dfr();
+        disassembler.setDebugPrintWriter(new PrintWriter(new NullOutputStream()));
+        Set<OutputOption> disassemblerOptions = EnumSet.noneOf(OutputOption.class);
+        disassemblerOptions.addAll(outputOptions);
+        disassembler.setOutputOptions(disassemblerOptions);
+        disassembler.setOutputFileName(null);
+        if (!disassembler.processOptions(new String[]{"-x", optionsFile.getPath(), binary.getPath()})) {
+            throw new ParsingException("Incorrect options in " + optionsFile);
+        }
+        disassembler.initialize();
+        return disassembler;
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+}
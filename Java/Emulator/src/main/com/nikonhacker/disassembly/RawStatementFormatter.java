@@ -0,0 +1,99 @@
+package com.nikonhacker.disassembly;
+
+import com.nikonhacker.Constants;
+import com.nikonhacker.disassembly.fr.FrCPUState;
+import com.nikonhacker.disassembly.fr.FrInstructionSet;
+import com.nikonhacker.disassembly.fr.FrStatement;
+import com.nikonhacker.disassembly.tx.TxCPUState;
+import com.nikonhacker.disassembly.tx.TxStatement;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+
+import java.util.Set;
+
+/**
+ * Formats a statement from its raw binary (see Statement.getRawBinary()), long after it was executed.
+ * The instruction is put back in a scratch memory, so that the normal decoding path can be used.
+ * Comments are computed from the register values of getCpuState(), which must be set by the caller.
+ * Instances are not thread safe.
+ */
+public class RawStatementFormatter {
+    private final int               chip;
+    private final Set<OutputOption> outputOptions;
+    private final CPUState          cpuState;
+    private final Statement         statement;
+    private final StatementContext  context;
+    private final DebuggableMemory  memory;
+
+    public RawStatementFormatter(int chip, Set<OutputOption> outputOptions) {
+        this.chip = chip;
+        this.outputOptions = outputOptions;
+        if (chip == Constants.CHIP_FR) {
+            cpuState = new FrCPUState();
+            statement = new FrStatement();
+        }
+        else {
+            cpuState = new TxCPUState();
+            statement = new TxStatement();
+        }
+        memory = new DebuggableMemory(false);
+        context = new StatementContext();
+        context.cpuState = cpuState;
+        context.memory = memory;
+        context.outputOptions = outputOptions;
+    }
+
+    public Set<OutputOption> getOutputOptions() {
+        return outputOptions;
+    }
+
+    /**
+     * @return the CPU state used to compute comments
+     */
+    public CPUState getCpuState() {
+        return cpuState;
+    }
+
+    /**
+     * Sets the registers used to compute comments
+     * @param state values as returned by CPUState.getStdState()
+     */
+    public void setStdState(int[] state) {
+        int numStdRegisters = cpuState.getNumStdRegisters();
+        for (int i = 0; i < numStdRegisters; i++) {
+            cpuState.setReg(i, state[i]);
+        }
+        cpuState.setStatusBits(state[numStdRegisters]);
+    }
+
+    /**
+     * Decodes and formats the given instruction
+     * @return the statement, valid until next call
+     */
+    public Statement format(int pc, int numBytes, boolean is16bitIsa, long rawBinary) throws DisassemblyException {
+        for (int i = 0; i < numBytes; i++) {
+            memory.store8(pc + i, (int) (rawBinary >>> ((numBytes - 1 - i) * 8)), null);
+        }
+        statement.reset();
+        if (chip == Constants.CHIP_FR) {
+            FrStatement frStatement = (FrStatement) statement;
+            frStatement.getNextStatement(memory, pc);
+            frStatement.setInstruction(FrInstructionSet.instructionMap[frStatement.data[0]]);
+            frStatement.decodeOperands(pc, memory);
+        }
+        else {
+            TxStatement txStatement = (TxStatement) statement;
+            ((TxCPUState) cpuState).is16bitIsaMode = is16bitIsa;
+            if (is16bitIsa) {
+                txStatement.fill16bInstruction(memory.loadInstruction16(pc), pc, memory);
+                txStatement.decode16BitOperands(pc);
+            }
+            else {
+                txStatement.fill32bInstruction(memory.loadInstruction32(pc));
+                txStatement.decode32BitOperands();
+            }
+        }
+        cpuState.pc = pc;
+        statement.formatOperandsAndComment(context, false, outputOptions);
+        return statement;
+    }
+}
@@ -160,6 +160,11 @@ public abstract class Statement {
 
     public abstract int getNumBytes();
 
+    /**
+     * @return the binary code of this statement, as a big-endian value of getNumBytes() bytes
+     */
+    public abstract long getRawBinary();
+
     public abstract void formatOperandsAndComment(StatementContext context, boolean updateRegisters, Set<OutputOption> outputOptions) throws DisassemblyException;
 
     public abstract boolean isPotentialStuffing();
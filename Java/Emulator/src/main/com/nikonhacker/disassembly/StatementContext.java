@@ -1,12 +1,10 @@
 package com.nikonhacker.disassembly;
 
-import com.nikonhacker.emu.CallStackItem;
+import com.nikonhacker.emu.CallStack;
 import com.nikonhacker.emu.interrupt.InterruptRequest;
 import com.nikonhacker.emu.memory.Memory;
 import com.nikonhacker.emu.peripherials.interruptController.InterruptController;
-import org.apache.commons.lang3.StringUtils;
 
-import java.util.Deque;
 import java.util.Set;
 
 /**
@@ -32,7 +30,7 @@ public class StatementContext {
     public Integer nextReturnAddressTargetRegister;
 
     /** The function call stack */
-    public Deque<CallStackItem> callStack;
+    public CallStack callStack;
 
     public Set<OutputOption> outputOptions;
 
@@ -83,42 +81,27 @@ public class StatementContext {
     }
 
     public void pushStatement(Statement statement) {
-        if (callStack != null) {
-            //Double test to avoid useless synchronization if not tracking, at the cost of a double test when tracking (debug)
-            synchronized (callStack) {
-                if (callStack != null) {
-                    try {
-                        statement.formatOperandsAndComment(this, false, outputOptions);
-                    } catch (DisassemblyException e) {
-                        e.printStackTrace();
-                    }
-                    String target = statement.getCommentString();
-                    if (StringUtils.isBlank(target)) target = statement.getOperandString();
-                    callStack.push(new CallStackItem(cpuState.pc, cpuState.getSp(), statement.getInstruction(), statement.toString(outputOptions), target));
-                }
-            }
+        // Local copy, as the call stack can be removed by the UI at any time
+        CallStack stack = callStack;
+        if (stack != null) {
+            stack.push(cpuState, statement);
         }
     }
 
-    public CallStackItem popItem() {
-        if (callStack != null && !callStack.isEmpty()) {
-            CallStackItem poppedItem = callStack.pop();
-            while (!callStack.isEmpty() && poppedItem != null && poppedItem.getInstruction() != null && poppedItem.getInstruction().getFlowType() == Instruction.FlowType.JMP) {
-                poppedItem = callStack.pop();
-            }
-            return poppedItem;
+    /**
+     * Pops the last call, as well as the jumps pushed since then
+     */
+    public void popItem() {
+        CallStack stack = callStack;
+        if (stack != null) {
+            stack.pop();
         }
-        return null;
     }
 
     public void pushInterrupt(InterruptRequest interruptRequest) {
-        if (callStack != null) {
-            //Double test to avoid useless synchronization if not tracking, at the cost of a double test when tracking (debug)
-            synchronized (callStack) {
-                if (callStack != null) {
-                    callStack.push(new CallStackItem(cpuState.pc, cpuState.getSp(), null, interruptRequest.toString(), ""));
-                }
-            }
+        CallStack stack = callStack;
+        if (stack != null) {
+            stack.push(cpuState, interruptRequest);
         }
     }
 }
\ No newline at end of file
@@ -292,6 +292,14 @@ public class ArmStatement extends Statement {
         return numData * 2;
     }
 
+    public long getRawBinary() {
+        long out = 0;
+        for (int i = 0; i < numData; ++i) {
+            out = (out << 16) | (data[i] & 0xFFFF);
+        }
+        return out;
+    }
+
     public void fillInstruction() {
         ArmInstruction instruction = ArmInstructionSet.instructionMap[data[0]];
 
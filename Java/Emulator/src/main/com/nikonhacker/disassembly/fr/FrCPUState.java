@@ -169,6 +169,16 @@ public class FrCPUState extends CPUState {
         return NUM_STD_REGISTERS;
     }
 
+    @Override
+    public int getStatusBits() {
+        return getPS();
+    }
+
+    @Override
+    public void setStatusBits(int statusBits) {
+        setPS(statusBits, false);
+    }
+
     /**
      * Returns CCR part of the PS register (built from individual bits)
      * @return CCR
@@ -7,7 +7,10 @@ import com.nikonhacker.disassembly.*;
 import com.nikonhacker.emu.EmulationException;
 import com.nikonhacker.emu.peripherials.interruptController.fr.FrInterruptController;
 
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 public class FrInstructionSet {
@@ -396,9 +399,20 @@ public class FrInstructionSet {
     }
 
     /**
-     * All 16bit variations of opcode and arguments
+     * All 16bit variations of opcode and arguments, as displayed with the options of the last init().
+     * Maps are never modified once built, so init() only replaces this reference.
      */
-    public static FrInstruction[] instructionMap = new FrInstruction[0x10000];
+    public static volatile FrInstruction[] instructionMap;
+
+    /**
+     * Maps already built, by set of options they depend on (see DISPLAY_OPTIONS)
+     */
+    private static final Map<Set<OutputOption>, FrInstruction[]> instructionMapsByOptions = new HashMap<>();
+
+    /**
+     * The only options changing the contents of the maps. Other options are taken into account at formatting time
+     */
+    private static final Set<OutputOption> DISPLAY_OPTIONS = EnumSet.of(OutputOption.MEMORY, OutputOption.STACK, OutputOption.SHIFT, OutputOption.DMOV, OutputOption.SPECIALS);
 
 
     /**
@@ -433,10 +447,10 @@ public class FrInstructionSet {
      * Main instruction map
      * These are the official names from Fujitsu's spec
      */
-    private static void addBaseInstructions(Set<OutputOption> options) {
+    private static void addBaseInstructions(FrInstruction[] map, Set<OutputOption> options) {
 /*                         encode, mask,   new FrInstruction( format             ,nX,nY, name,     displayFmt,     action     , Type                     ,isCond, delay, simulationCode) */
         /* LD @(R13,Rj), Ri */
-        fillInstructionMap(0x0000, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LD",     "@(A&j),i",     "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x0000, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LD",     "@(A&j),i",     "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.memory.load32(context.cpuState.getReg(13) + context.cpuState.getReg(statement.rj_rt_ft)));
@@ -447,7 +461,7 @@ public class FrInstructionSet {
         }));
 
         /* LDUH @(R13,Rj), Ri */
-        fillInstructionMap( 0x0100, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUH",   "@(A&j),i",     "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x0100, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUH",   "@(A&j),i",     "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.memory.loadUnsigned16(context.cpuState.getReg(13) + context.cpuState.getReg(statement.rj_rt_ft)));
@@ -457,7 +471,7 @@ public class FrInstructionSet {
             }
         }));
         /* LDUB @(R13,Rj), Ri */
-        fillInstructionMap( 0x0200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUB",   "@(A&j),i",     "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x0200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUB",   "@(A&j),i",     "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.memory.loadUnsigned8(context.cpuState.getReg(13) + context.cpuState.getReg(statement.rj_rt_ft)));
@@ -467,7 +481,7 @@ public class FrInstructionSet {
             }
         }));
         /* LD @(R15,udisp6), Ri */
-        fillInstructionMap( 0x0300, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LD",     "@(S&4u),i",    "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x0300, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LD",     "@(S&4u),i",    "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.memory.load32(context.cpuState.getReg(15) + statement.imm * 4));
@@ -478,32 +492,32 @@ public class FrInstructionSet {
         }));
         /* LD @Rj, Ri */
         if (options.contains(OutputOption.MEMORY)) {
-            fillInstructionMap( 0x0400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LD",     "@j,i;G",      "G"       , Instruction.FlowType.NONE, false, false, ldSimulationCode
+            fillInstructionMap(map, 0x0400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LD",     "@j,i;G",      "G"       , Instruction.FlowType.NONE, false, false, ldSimulationCode
             ));
         } else {
-            fillInstructionMap( 0x0400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LD",     "@j,i;Ju",      "iw"       , Instruction.FlowType.NONE, false, false, ldSimulationCode
+            fillInstructionMap(map, 0x0400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LD",     "@j,i;Ju",      "iw"       , Instruction.FlowType.NONE, false, false, ldSimulationCode
             ));
         }
         /* LDUH @Rj, Ri */
         if (options.contains(OutputOption.MEMORY)) {
-            fillInstructionMap( 0x0500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUH",   "@j,i;H",      "H"       , Instruction.FlowType.NONE, false, false, lduhSimulationCode
+            fillInstructionMap(map, 0x0500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUH",   "@j,i;H",      "H"       , Instruction.FlowType.NONE, false, false, lduhSimulationCode
             ));
         } else {
-            fillInstructionMap( 0x0500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUH",   "@j,i;Ju",      "iw"       , Instruction.FlowType.NONE, false, false, lduhSimulationCode
+            fillInstructionMap(map, 0x0500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUH",   "@j,i;Ju",      "iw"       , Instruction.FlowType.NONE, false, false, lduhSimulationCode
             ));
         }
         /* LDUB @Rj, Ri */
         if (options.contains(OutputOption.MEMORY)) {
-            fillInstructionMap( 0x0600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUB",   "@j,i;E",      "E"       , Instruction.FlowType.NONE, false, false, ldubSimulationCode
+            fillInstructionMap(map, 0x0600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUB",   "@j,i;E",      "E"       , Instruction.FlowType.NONE, false, false, ldubSimulationCode
             ));
         } else {
-            fillInstructionMap( 0x0600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUB",   "@j,i;Ju",      "iw"       , Instruction.FlowType.NONE, false, false, ldubSimulationCode
+            fillInstructionMap(map, 0x0600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LDUB",   "@j,i;Ju",      "iw"       , Instruction.FlowType.NONE, false, false, ldubSimulationCode
             ));
         }
         /* LD @R15+, Ri */
-        fillInstructionMap( 0x0700, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,i",        "iwSw"     , Instruction.FlowType.NONE, false, false, ldR15RiSimulationCode));
+        fillInstructionMap(map, 0x0700, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,i",        "iwSw"     , Instruction.FlowType.NONE, false, false, ldR15RiSimulationCode));
         /* MOV Ri, PS */
-        fillInstructionMap( 0x0710, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "MOV",    "i,P",          "Pw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x0710, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "MOV",    "i,P",          "Pw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 ((FrCPUState)context.cpuState).setPS(context.cpuState.getReg(statement.ri_rs_fs), true);
@@ -513,24 +527,24 @@ public class FrInstructionSet {
             }
         }));
         /* LD @R15+, Rs */
-        fillInstructionMap( 0x0780, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
-        fillInstructionMap( 0x0781, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
-        fillInstructionMap( 0x0782, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
-        fillInstructionMap( 0x0783, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
-        fillInstructionMap( 0x0784, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
-        fillInstructionMap( 0x0785, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0780, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0781, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0782, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0783, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0784, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0785, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "LD",     "@S+,g",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
         /* LD @R15+, PS */
-        fillInstructionMap( 0x0790, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "LD",     "@S+,P",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15PSSimulationCode));
+        fillInstructionMap(map, 0x0790, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "LD",     "@S+,P",        "Sw"       , Instruction.FlowType.NONE, false, false, ldR15PSSimulationCode));
         /* DMOV @dir10, R13 */
-        fillInstructionMap( 0x0800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "@4u,A",        "Aw"       , Instruction.FlowType.NONE, false, false, dmovDir10R13SimulationCode));
+        fillInstructionMap(map, 0x0800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "@4u,A",        "Aw"       , Instruction.FlowType.NONE, false, false, dmovDir10R13SimulationCode));
         /* DMOVH @dir9, R13 */
-        fillInstructionMap( 0x0900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVH",  "@2u,A",        "Aw"       , Instruction.FlowType.NONE, false, false, dmovhDir9R13SimulationCode));
+        fillInstructionMap(map, 0x0900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVH",  "@2u,A",        "Aw"       , Instruction.FlowType.NONE, false, false, dmovhDir9R13SimulationCode));
         /* DMOVB @dir8, R13 */
-        fillInstructionMap( 0x0A00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVB",  "@u,A",         "Aw"       , Instruction.FlowType.NONE, false, false, dmovbDir8R13SimulationCode));
+        fillInstructionMap(map, 0x0A00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVB",  "@u,A",         "Aw"       , Instruction.FlowType.NONE, false, false, dmovbDir8R13SimulationCode));
         /* DMOV @dir10, @-R15 */
-        fillInstructionMap( 0x0B00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "@4u,@-S",      "Sw"       , Instruction.FlowType.NONE, false, false, dmovDir10R15SimulationCode));
+        fillInstructionMap(map, 0x0B00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "@4u,@-S",      "Sw"       , Instruction.FlowType.NONE, false, false, dmovDir10R15SimulationCode));
         /* DMOV @dir10, @R13+ */
-        fillInstructionMap( 0x0C00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "@4u,@A+",      "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x0C00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "@4u,@A+",      "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store32(context.cpuState.getReg(13), context.memory.load32(statement.imm * 4));
@@ -541,7 +555,7 @@ public class FrInstructionSet {
             }
         }));
         /* DMOVH @dir9, @R13+ */
-        fillInstructionMap( 0x0D00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVH",  "@2u,@A+",      "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x0D00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVH",  "@2u,@A+",      "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store16(context.cpuState.getReg(13), context.memory.loadUnsigned16(statement.imm * 2));
@@ -552,7 +566,7 @@ public class FrInstructionSet {
             }
         }));
         /* DMOVB @dir8, @R13+ */
-        fillInstructionMap( 0x0E00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVB",  "@u,@A+",       "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x0E00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVB",  "@u,@A+",       "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store8(context.cpuState.getReg(13), context.memory.loadUnsigned8(statement.imm));
@@ -563,7 +577,7 @@ public class FrInstructionSet {
             }
         }));
         /* ENTER #u10 */
-        fillInstructionMap( 0x0F00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ENTER",  "#4u",          "SwFw"     , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x0F00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ENTER",  "#4u",          "SwFw"     , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store32(context.cpuState.getReg(15) - 4, context.cpuState.getReg(14));
@@ -575,7 +589,7 @@ public class FrInstructionSet {
             }
         }));
         /* ST Ri, @(R13,Rj) */
-        fillInstructionMap( 0x1000, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ST",     "i,@(A&j)",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x1000, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ST",     "i,@(A&j)",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store32(context.cpuState.getReg(13) + context.cpuState.getReg(statement.rj_rt_ft), context.cpuState.getReg(statement.ri_rs_fs));
@@ -585,7 +599,7 @@ public class FrInstructionSet {
             }
         }));
         /* STH Ri, @(R13,Rj) */
-        fillInstructionMap( 0x1100, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STH",    "i,@(A&j)",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x1100, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STH",    "i,@(A&j)",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store16(context.cpuState.getReg(13) + context.cpuState.getReg(statement.rj_rt_ft), context.cpuState.getReg(statement.ri_rs_fs));
@@ -595,7 +609,7 @@ public class FrInstructionSet {
             }
         }));
         /* STB Ri, @(R13,Rj) */
-        fillInstructionMap( 0x1200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STB",    "i,@(A&j)",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x1200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STB",    "i,@(A&j)",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store8(context.cpuState.getReg(13) + context.cpuState.getReg(statement.rj_rt_ft), context.cpuState.getReg(statement.ri_rs_fs));
@@ -605,7 +619,7 @@ public class FrInstructionSet {
             }
         }));
         /* ST Ri, @(R15,udisp6) */
-        fillInstructionMap( 0x1300, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ST",     "i,@(S&4u)",    ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x1300, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ST",     "i,@(S&4u)",    ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store32(context.cpuState.getReg(15) + statement.imm * 4, context.cpuState.getReg(statement.ri_rs_fs));
@@ -616,32 +630,32 @@ public class FrInstructionSet {
         }));
         /* ST Ri, @Rj */
         if (options.contains(OutputOption.MEMORY)) {
-            fillInstructionMap( 0x1400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ST",     "i,@j;mG",      ""         , Instruction.FlowType.NONE, false, false, stSimulationCode
+            fillInstructionMap(map, 0x1400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ST",     "i,@j;mG",      ""         , Instruction.FlowType.NONE, false, false, stSimulationCode
             ));
         } else {
-            fillInstructionMap( 0x1400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ST",     "i,@j;Ju",      ""         , Instruction.FlowType.NONE, false, false, stSimulationCode
+            fillInstructionMap(map, 0x1400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ST",     "i,@j;Ju",      ""         , Instruction.FlowType.NONE, false, false, stSimulationCode
             ));
         }
         /* STH Ri, @Rj */
         if (options.contains(OutputOption.MEMORY)) {
-            fillInstructionMap( 0x1500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STH",    "i,@j;mH",      ""         , Instruction.FlowType.NONE, false, false, sthSimulationCode
+            fillInstructionMap(map, 0x1500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STH",    "i,@j;mH",      ""         , Instruction.FlowType.NONE, false, false, sthSimulationCode
             ));
         } else {
-            fillInstructionMap( 0x1500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STH",    "i,@j;Ju",      ""         , Instruction.FlowType.NONE, false, false, sthSimulationCode
+            fillInstructionMap(map, 0x1500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STH",    "i,@j;Ju",      ""         , Instruction.FlowType.NONE, false, false, sthSimulationCode
             ));
         }
         /* STB Ri, @Rj */
         if (options.contains(OutputOption.MEMORY)) {
-            fillInstructionMap( 0x1600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STB",    "i,@j;mE",      ""         , Instruction.FlowType.NONE, false, false, stbSimulationCode
+            fillInstructionMap(map, 0x1600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STB",    "i,@j;mE",      ""         , Instruction.FlowType.NONE, false, false, stbSimulationCode
             ));
         } else {
-            fillInstructionMap( 0x1600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STB",    "i,@j;Ju",      ""         , Instruction.FlowType.NONE, false, false, stbSimulationCode
+            fillInstructionMap(map, 0x1600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "STB",    "i,@j;Ju",      ""         , Instruction.FlowType.NONE, false, false, stbSimulationCode
             ));
         }
         /* ST Ri, @-R15 */
-        fillInstructionMap( 0x1700, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "i,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRiR15SimulationCode));
+        fillInstructionMap(map, 0x1700, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "i,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRiR15SimulationCode));
         /* MOV PS, Ri */
-        fillInstructionMap( 0x1710, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "MOV",    "P,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x1710, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "MOV",    "P,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, ((FrCPUState)context.cpuState).getPS());
@@ -651,24 +665,24 @@ public class FrInstructionSet {
             }
         }));
         /* ST Rs, @-R15 */
-        fillInstructionMap( 0x1780, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
-        fillInstructionMap( 0x1781, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
-        fillInstructionMap( 0x1782, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
-        fillInstructionMap( 0x1783, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
-        fillInstructionMap( 0x1784, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
-        fillInstructionMap( 0x1785, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1780, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1781, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1782, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1783, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1784, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1785, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "ST",     "g,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
         /* ST PS, @-R15 */
-        fillInstructionMap( 0x1790, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "ST",     "P,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stPsR15SimulationCode));
+        fillInstructionMap(map, 0x1790, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "ST",     "P,@-S",        "Sw"       , Instruction.FlowType.NONE, false, false, stPsR15SimulationCode));
         /* DMOV R13, @dir10 */
-        fillInstructionMap( 0x1800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "A,@4u",        ""         , Instruction.FlowType.NONE, false, false, dmovR13Dir10SimulationCode));
+        fillInstructionMap(map, 0x1800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "A,@4u",        ""         , Instruction.FlowType.NONE, false, false, dmovR13Dir10SimulationCode));
         /* DMOVH R13, @dir9 */
-        fillInstructionMap( 0x1900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVH",  "A,@2u",        ""         , Instruction.FlowType.NONE, false, false, dmovhR13Dir9SimulationCode));
+        fillInstructionMap(map, 0x1900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVH",  "A,@2u",        ""         , Instruction.FlowType.NONE, false, false, dmovhR13Dir9SimulationCode));
         /* DMOVB R13, @dir8 */
-        fillInstructionMap( 0x1A00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVB",  "A,@u",         ""         , Instruction.FlowType.NONE, false, false, dmovbR13Dir8SimulationCode));
+        fillInstructionMap(map, 0x1A00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVB",  "A,@u",         ""         , Instruction.FlowType.NONE, false, false, dmovbR13Dir8SimulationCode));
         /* DMOV @R15+, @dir10 */
-        fillInstructionMap( 0x1B00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "@S+,@4u",      "Sw"       , Instruction.FlowType.NONE, false, false, dmovR15Dir10SimulationCode));
+        fillInstructionMap(map, 0x1B00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "@S+,@4u",      "Sw"       , Instruction.FlowType.NONE, false, false, dmovR15Dir10SimulationCode));
         /* DMOV @R13+, @dir10 */
-        fillInstructionMap( 0x1C00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "@A+,@4u",      "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x1C00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOV",   "@A+,@4u",      "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store32(statement.imm * 4, context.memory.load32(context.cpuState.getReg(13)));
@@ -679,7 +693,7 @@ public class FrInstructionSet {
             }
         }));
         /* DMOVH @R13+, @dir9 */
-        fillInstructionMap( 0x1D00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVH",  "@A+,@2u",      "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x1D00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVH",  "@A+,@2u",      "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store16(statement.imm * 2, context.memory.loadUnsigned16(context.cpuState.getReg(13)));
@@ -690,7 +704,7 @@ public class FrInstructionSet {
             }
         }));
         /* DMOVB @R13+, @dir8 */
-        fillInstructionMap( 0x1E00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVB",  "@A+,@u",       "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x1E00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "DMOVB",  "@A+,@u",       "Aw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store8(statement.imm, context.memory.loadUnsigned8(context.cpuState.getReg(13)));
@@ -701,7 +715,7 @@ public class FrInstructionSet {
             }
         }));
         /* INT #u8 */
-        fillInstructionMap( 0x1F00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "INT",    "#u",           ""         , Instruction.FlowType.INT, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x1F00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "INT",    "#u",           ""         , Instruction.FlowType.INT, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.pushStatement(statement);
@@ -712,7 +726,7 @@ public class FrInstructionSet {
             }
         }));
         /* LD @(R14,disp10), Ri */
-        fillInstructionMap( 0x2000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "LD",     "@(F&4s),i",    "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x2000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "LD",     "@(F&4s),i",    "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.memory.load32(context.cpuState.getReg(14) + BinaryArithmetics.signExtend(8, statement.imm) * 4));
@@ -722,7 +736,7 @@ public class FrInstructionSet {
             }
         }));
         /* ST Ri, @(R14,disp10) */
-        fillInstructionMap( 0x3000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "ST",     "i,@(F&4s)",    ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x3000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "ST",     "i,@(F&4s)",    ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store32(context.cpuState.getReg(14) + BinaryArithmetics.signExtend(8, statement.imm) * 4, context.cpuState.getReg(statement.ri_rs_fs));
@@ -732,7 +746,7 @@ public class FrInstructionSet {
             }
         }));
         /* LDUH @(R14,disp9), Ri */
-        fillInstructionMap( 0x4000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "LDUH",   "@(F&2s),i",    "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x4000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "LDUH",   "@(F&2s),i",    "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.memory.loadUnsigned16(context.cpuState.getReg(14) + BinaryArithmetics.signExtend(8, statement.imm) * 2));
@@ -742,7 +756,7 @@ public class FrInstructionSet {
             }
         }));
         /* STH Ri, @(R14,disp9) */
-        fillInstructionMap( 0x5000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "STH",    "i,@(F&2s)",    ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x5000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "STH",    "i,@(F&2s)",    ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store16(context.cpuState.getReg(14) + BinaryArithmetics.signExtend(8, statement.imm) * 2, context.cpuState.getReg(statement.ri_rs_fs));
@@ -752,7 +766,7 @@ public class FrInstructionSet {
             }
         }));
         /* LDUB @(R14,disp8), Ri */
-        fillInstructionMap( 0x6000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "LDUB",   "@(F&s),i",     "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x6000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "LDUB",   "@(F&s),i",     "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.memory.loadUnsigned8(context.cpuState.getReg(14) + BinaryArithmetics.signExtend(8, statement.imm)));
@@ -762,7 +776,7 @@ public class FrInstructionSet {
             }
         }));
         /* STB Ri, @(R14,disp8) */
-        fillInstructionMap( 0x7000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "STB",    "i,@(F&s)",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x7000, 0xF000, new FrInstruction(InstructionFormat.B, 0, 0, "STB",    "i,@(F&s)",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.memory.store8(context.cpuState.getReg(14) + BinaryArithmetics.signExtend(8, statement.imm), context.cpuState.getReg(statement.ri_rs_fs));
@@ -772,7 +786,7 @@ public class FrInstructionSet {
             }
         }));
         /* BANDL #u4, @Ri (u4: 0 to 0FH) */
-        fillInstructionMap( 0x8000, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BANDL",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x8000, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BANDL",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 // Note : AND'ing only the lowest 4 bits with xxxx is like AND'ing the byte with 1111xxxx (1 is neutral for AND)
@@ -783,7 +797,7 @@ public class FrInstructionSet {
             }
         }));
         /* BANDH #u4, @Ri (u4: 0 to 0FH) */
-        fillInstructionMap( 0x8100, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BANDH",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x8100, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BANDH",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 // Note : AND'ing only the highest 4 bits with xxxx is like AND'ing the byte with xxxx1111 (1 is neutral for AND)
@@ -794,7 +808,7 @@ public class FrInstructionSet {
             }
         }));
         /* AND Rj, Ri */
-        fillInstructionMap( 0x8200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "AND",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x8200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "AND",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.cpuState.getReg(statement.ri_rs_fs) & context.cpuState.getReg(statement.rj_rt_ft);
@@ -806,9 +820,9 @@ public class FrInstructionSet {
             }
         }));
         /* ANDCCR #u8 */
-        fillInstructionMap( 0x8300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ANDCCR", "#u",           ""         , Instruction.FlowType.NONE, false, false, andccrU8SimulationCode));
+        fillInstructionMap(map, 0x8300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ANDCCR", "#u",           ""         , Instruction.FlowType.NONE, false, false, andccrU8SimulationCode));
         /* AND Rj, @Ri */
-        fillInstructionMap( 0x8400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "AND",    "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x8400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "AND",    "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.memory.load32(context.cpuState.getReg(statement.ri_rs_fs)) & context.cpuState.getReg(statement.rj_rt_ft);
@@ -820,7 +834,7 @@ public class FrInstructionSet {
             }
         }));
         /* ANDH Rj, @Ri */
-        fillInstructionMap( 0x8500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ANDH",   "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x8500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ANDH",   "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.memory.loadUnsigned16(context.cpuState.getReg(statement.ri_rs_fs)) & context.cpuState.getReg(statement.rj_rt_ft);
@@ -832,7 +846,7 @@ public class FrInstructionSet {
             }
         }));
         /* ANDB Rj, @Ri */
-        fillInstructionMap( 0x8600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ANDB",   "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x8600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ANDB",   "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.memory.loadUnsigned8(context.cpuState.getReg(statement.ri_rs_fs)) & context.cpuState.getReg(statement.rj_rt_ft);
@@ -844,9 +858,9 @@ public class FrInstructionSet {
             }
         }));
         /* STILM #u8 */
-        fillInstructionMap( 0x8700, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "STILM",  "#u",           ""         , Instruction.FlowType.NONE, false, false, stilmU8SimulationCode));
+        fillInstructionMap(map, 0x8700, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "STILM",  "#u",           ""         , Instruction.FlowType.NONE, false, false, stilmU8SimulationCode));
         /* BTSTL #u4, @Ri (u4: 0 to 0FH) */
-        fillInstructionMap( 0x8800, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BTSTL",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x8800, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BTSTL",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 // Note : testing 8 bits AND 0000xxxx is like testing only the lowest 4 bits AND xxxx (0 is absorbing for AND)
@@ -858,7 +872,7 @@ public class FrInstructionSet {
             }
         }));
         /* BTSTH #u4, @Ri (u4: 0 to 0FH) */
-        fillInstructionMap( 0x8900, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BTSTH",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x8900, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BTSTH",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 // Note : testing 8 bits AND xxxx0000 is like testing only the highest 4 bits AND xxxx (0 is absorbing for AND)
@@ -870,7 +884,7 @@ public class FrInstructionSet {
             }
         }));
         /* XCHB @Rj, Ri */
-        fillInstructionMap( 0x8A00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "XCHB",   "@j,i;Ju",      "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x8A00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "XCHB",   "@j,i;Ju",      "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.cpuState.getReg(statement.ri_rs_fs);
@@ -882,7 +896,7 @@ public class FrInstructionSet {
             }
         }));
         /* MOV Rj, Ri */
-        fillInstructionMap( 0x8B00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x8B00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.cpuState.getReg(statement.rj_rt_ft));
@@ -892,15 +906,15 @@ public class FrInstructionSet {
             }
         }));
         /* LDM0 (reglist) */
-        fillInstructionMap( 0x8C00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "LDM0",   "z",            "Sw"       , Instruction.FlowType.NONE, false, false, ldm0SimulationCode));
+        fillInstructionMap(map, 0x8C00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "LDM0",   "z",            "Sw"       , Instruction.FlowType.NONE, false, false, ldm0SimulationCode));
         /* LDM1 (reglist) */
-        fillInstructionMap( 0x8D00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "LDM1",   "y",            "Sw"       , Instruction.FlowType.NONE, false, false, ldm1SimulationCode));
+        fillInstructionMap(map, 0x8D00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "LDM1",   "y",            "Sw"       , Instruction.FlowType.NONE, false, false, ldm1SimulationCode));
         /* STM0 (reglist) */
-        fillInstructionMap( 0x8E00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "STM0",   "xz",           "Sw"       , Instruction.FlowType.NONE, false, false, stm0SimulationCode));
+        fillInstructionMap(map, 0x8E00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "STM0",   "xz",           "Sw"       , Instruction.FlowType.NONE, false, false, stm0SimulationCode));
         /* STM1 (reglist) */
-        fillInstructionMap( 0x8F00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "STM1",   "xy",           "Sw"       , Instruction.FlowType.NONE, false, false, stm1SimulationCode));
+        fillInstructionMap(map, 0x8F00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "STM1",   "xy",           "Sw"       , Instruction.FlowType.NONE, false, false, stm1SimulationCode));
         /* BORL #u4, @Ri (u4: 0 to 0FH) */
-        fillInstructionMap( 0x9000, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BORL",   "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9000, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BORL",   "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 // Note : OR'ing only the lowest 4 bits with xxxx is like OR'ing the byte with 0000xxxx (0 is neutral for OR)
@@ -911,7 +925,7 @@ public class FrInstructionSet {
             }
         }));
         /* BORH #u4, @Ri (u4: 0 to 0FH) */
-        fillInstructionMap( 0x9100, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BORH",   "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9100, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BORH",   "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 // Note : OR'ing only the highest 4 bits with xxxx is like OR'ing the byte with xxxx0000 (0 is neutral for OR)
@@ -922,7 +936,7 @@ public class FrInstructionSet {
             }
         }));
         /* OR Rj, Ri */
-        fillInstructionMap( 0x9200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "OR",     "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "OR",     "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.cpuState.getReg(statement.ri_rs_fs) | context.cpuState.getReg(statement.rj_rt_ft);
@@ -934,9 +948,9 @@ public class FrInstructionSet {
             }
         }));
         /* ORCCR #u8 */
-        fillInstructionMap( 0x9300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ORCCR",  "#u",           ""         , Instruction.FlowType.NONE, false, false, orccrU8SimulationCode));
+        fillInstructionMap(map, 0x9300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ORCCR",  "#u",           ""         , Instruction.FlowType.NONE, false, false, orccrU8SimulationCode));
         /* OR Rj, @Ri */
-        fillInstructionMap( 0x9400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "OR",     "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9400, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "OR",     "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.memory.load32(context.cpuState.getReg(statement.ri_rs_fs)) | context.cpuState.getReg(statement.rj_rt_ft);
@@ -948,7 +962,7 @@ public class FrInstructionSet {
             }
         }));
         /* ORH Rj, @Ri */
-        fillInstructionMap( 0x9500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ORH",    "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9500, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ORH",    "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.memory.loadUnsigned16(context.cpuState.getReg(statement.ri_rs_fs)) | context.cpuState.getReg(statement.rj_rt_ft);
@@ -960,7 +974,7 @@ public class FrInstructionSet {
             }
         }));
         /* ORB Rj, @Ri */
-        fillInstructionMap( 0x9600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ORB",    "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ORB",    "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.memory.loadUnsigned8(context.cpuState.getReg(statement.ri_rs_fs)) | context.cpuState.getReg(statement.rj_rt_ft);
@@ -972,7 +986,7 @@ public class FrInstructionSet {
             }
         }));
         /* JMP @Ri */
-        fillInstructionMap( 0x9700, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "JMP",    "@i;Iu",        ""         , Instruction.FlowType.JMP, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9700, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "JMP",    "@i;Iu",        ""         , Instruction.FlowType.JMP, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.pc = context.cpuState.getReg(statement.ri_rs_fs);
@@ -981,7 +995,7 @@ public class FrInstructionSet {
             }
         }));
         /* CALL @Ri */
-        fillInstructionMap( 0x9710, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "CALL",   "@i;Iu",        ""         , Instruction.FlowType.CALL, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9710, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "CALL",   "@i;Iu",        ""         , Instruction.FlowType.CALL, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.pushStatement(statement);
@@ -992,7 +1006,7 @@ public class FrInstructionSet {
             }
         }));
         /* RET */
-        fillInstructionMap( 0x9720, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "RET",    "",             ""         , Instruction.FlowType.RET, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9720, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "RET",    "",             ""         , Instruction.FlowType.RET, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.popItem();
@@ -1002,7 +1016,7 @@ public class FrInstructionSet {
             }
         }));
         /* RETI */
-        fillInstructionMap( 0x9730, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "RETI",   "",             ""         , Instruction.FlowType.RET, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9730, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "RETI",   "",             ""         , Instruction.FlowType.RET, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.popItem();
@@ -1017,7 +1031,7 @@ public class FrInstructionSet {
             }
         }));
         /* DIV0S Ri */
-        fillInstructionMap( 0x9740, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "DIV0S",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9740, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "DIV0S",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int S1 = (context.cpuState.getReg(FrCPUState.MDL) & 0x80000000) >>> 31;
@@ -1033,7 +1047,7 @@ public class FrInstructionSet {
             }
         }));
         /* DIV0U Ri */
-        fillInstructionMap( 0x9750, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "DIV0U",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9750, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "DIV0U",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 ((FrCPUState)context.cpuState).D0=0;
@@ -1045,7 +1059,7 @@ public class FrInstructionSet {
             }
         }));
         /* DIV1 Ri */
-        fillInstructionMap( 0x9760, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "DIV1",   "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9760, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "DIV1",   "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(FrCPUState.MDH, (context.cpuState.getReg(FrCPUState.MDH) << 1) | ((context.cpuState.getReg(FrCPUState.MDL) & 0x80000000) >>> 31));
@@ -1074,7 +1088,7 @@ public class FrInstructionSet {
             }
         }));
         /* DIV2 Ri */
-        fillInstructionMap( 0x9770, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "DIV2",   "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9770, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "DIV2",   "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).D1 == 1) {
@@ -1097,7 +1111,7 @@ public class FrInstructionSet {
             }
         }));
         /* EXTSB Ri */
-        fillInstructionMap( 0x9780, 0xFFF0, new ExtsbFrInstruction( 0x9780, InstructionFormat.E, 0, 0, "EXTSB",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9780, 0xFFF0, new ExtsbFrInstruction( 0x9780, InstructionFormat.E, 0, 0, "EXTSB",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, BinaryArithmetics.signExtend(8, context.cpuState.getReg(statement.ri_rs_fs)));
@@ -1107,7 +1121,7 @@ public class FrInstructionSet {
             }
         }));
         /* EXTUB Ri */
-        fillInstructionMap( 0x9790, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "EXTUB",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9790, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "EXTUB",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.cpuState.getReg(statement.ri_rs_fs) & 0xFF);
@@ -1117,7 +1131,7 @@ public class FrInstructionSet {
             }
         }));
         /* EXTSH Ri */
-        fillInstructionMap( 0x97A0, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "EXTSH",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x97A0, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "EXTSH",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, BinaryArithmetics.signExtend(16, context.cpuState.getReg(statement.ri_rs_fs)));
@@ -1127,7 +1141,7 @@ public class FrInstructionSet {
             }
         }));
         /* EXTUH Ri */
-        fillInstructionMap( 0x97B0, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "EXTUH",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x97B0, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "EXTUH",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFF);
@@ -1137,7 +1151,7 @@ public class FrInstructionSet {
             }
         }));
         /* SRCH0 Ri */ // FR80/FR81 only
-        fillInstructionMap( 0x97C0, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "SRCH0",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x97C0, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "SRCH0",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 // Search for the first 0
@@ -1148,7 +1162,7 @@ public class FrInstructionSet {
             }
         }));
         /* SRCH1 Ri */ // FR80/FR81 only
-        fillInstructionMap( 0x97D0, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "SRCH1",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x97D0, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "SRCH1",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 // Search for the first 1
@@ -1159,7 +1173,7 @@ public class FrInstructionSet {
             }
         }));
         /* SRCHC Ri */ // FR80/FR81 only
-        fillInstructionMap( 0x97E0, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "SRCHC",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x97E0, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "SRCHC",  "i",            "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 // Search for the first bit different from the MSB
@@ -1171,7 +1185,7 @@ public class FrInstructionSet {
             }
         }));
         /* BEORL #u4, @Ri (u4: 0 to 0FH) */
-        fillInstructionMap( 0x9800, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BEORL",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9800, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BEORL",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 // Note : EOR'ing with 0000xxxx is like EOR'ing only the lowest 4 bits with xxxx (0 is neutral for EOR)
@@ -1182,7 +1196,7 @@ public class FrInstructionSet {
             }
         }));
         /* BEORH #u4, @Ri (u4: 0 to 0FH) */
-        fillInstructionMap( 0x9900, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BEORH",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9900, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "BEORH",  "#u,@i;Iu",     ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 // Note : EOR'ing with xxxx0000 is like EORing only the highest 4 bits with xxxx (0 is neutral for EOR)
@@ -1193,7 +1207,7 @@ public class FrInstructionSet {
             }
         }));
         /* EOR Rj, Ri */
-        fillInstructionMap( 0x9A00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "EOR",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9A00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "EOR",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.cpuState.getReg(statement.ri_rs_fs) ^ context.cpuState.getReg(statement.rj_rt_ft);
@@ -1205,7 +1219,7 @@ public class FrInstructionSet {
             }
         }));
         /* LDI:20 #i20, Ri */
-        fillInstructionMap( 0x9B00, 0xFF00, new FrInstruction(InstructionFormat.C, 1, 0, "LDI:20", "#u,i",         "iv"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9B00, 0xFF00, new FrInstruction(InstructionFormat.C, 1, 0, "LDI:20", "#u,i",         "iv"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, statement.imm);
@@ -1215,7 +1229,7 @@ public class FrInstructionSet {
             }
         }));
         /* EOR Rj, @Ri */
-        fillInstructionMap( 0x9C00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "EOR",    "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9C00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "EOR",    "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.memory.load32(context.cpuState.getReg(statement.ri_rs_fs)) ^ context.cpuState.getReg(statement.rj_rt_ft);
@@ -1227,7 +1241,7 @@ public class FrInstructionSet {
             }
         }));
         /* EORH Rj, @Ri */
-        fillInstructionMap( 0x9D00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "EORH",   "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9D00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "EORH",   "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.memory.loadUnsigned16(context.cpuState.getReg(statement.ri_rs_fs)) ^ context.cpuState.getReg(statement.rj_rt_ft);
@@ -1239,7 +1253,7 @@ public class FrInstructionSet {
             }
         }));
         /* EORB Rj, @Ri */
-        fillInstructionMap( 0x9E00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "EORB",   "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9E00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "EORB",   "j,@i;Iu",      ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.memory.loadUnsigned8(context.cpuState.getReg(statement.ri_rs_fs)) ^ context.cpuState.getReg(statement.rj_rt_ft);
@@ -1251,7 +1265,7 @@ public class FrInstructionSet {
             }
         }));
         /* JMP:D @Ri */
-        fillInstructionMap( 0x9F00, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "JMP:D",  "@i;Iu",        ""         , Instruction.FlowType.JMP, false, true, new SimulationCode() {
+        fillInstructionMap(map, 0x9F00, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "JMP:D",  "@i;Iu",        ""         , Instruction.FlowType.JMP, false, true, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.setDelayedPc(context.cpuState.getReg(statement.ri_rs_fs));
@@ -1261,7 +1275,7 @@ public class FrInstructionSet {
             }
         } ));
         /* CALL:D @Ri */
-        fillInstructionMap( 0x9F10, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "CALL:D", "@i;Iu",        ""         , Instruction.FlowType.CALL, false, true, new SimulationCode() {
+        fillInstructionMap(map, 0x9F10, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "CALL:D", "@i;Iu",        ""         , Instruction.FlowType.CALL, false, true, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.pushStatement(statement);
@@ -1272,7 +1286,7 @@ public class FrInstructionSet {
             }
         } ));
         /* RET:D */
-        fillInstructionMap( 0x9F20, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "RET:D",  "",             ""         , Instruction.FlowType.RET, false, true, new SimulationCode() {
+        fillInstructionMap(map, 0x9F20, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "RET:D",  "",             ""         , Instruction.FlowType.RET, false, true, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.popItem();
@@ -1283,7 +1297,7 @@ public class FrInstructionSet {
             }
         } ));
         /* INTE */
-        fillInstructionMap( 0x9F30, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "INTE",   "",             ""         , Instruction.FlowType.INT, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9F30, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "INTE",   "",             ""         , Instruction.FlowType.INT, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.pushStatement(statement);
@@ -1299,7 +1313,7 @@ public class FrInstructionSet {
             }
         }));
         /* DIV3 */
-        fillInstructionMap( 0x9F60, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "DIV3",   "",             ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9F60, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "DIV3",   "",             ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).Z == 1) {
@@ -1311,7 +1325,7 @@ public class FrInstructionSet {
             }
         }));
         /* DIV4S */
-        fillInstructionMap( 0x9F70, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "DIV4S",  "",             ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9F70, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "DIV4S",  "",             ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).D1 == 1) {
@@ -1323,7 +1337,7 @@ public class FrInstructionSet {
             }
         }));
         /* LDI:32 #i32, Ri */
-        fillInstructionMap( 0x9F80, 0xFFF0, new Ldi32FrInstruction( 0x9F80, InstructionFormat.E, 2, 0, "LDI:32", "#u,i",         "iv"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9F80, 0xFFF0, new Ldi32FrInstruction( 0x9F80, InstructionFormat.E, 2, 0, "LDI:32", "#u,i",         "iv"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, statement.imm);
@@ -1333,7 +1347,7 @@ public class FrInstructionSet {
             }
         }));
         /* LEAVE */
-        fillInstructionMap( 0x9F90, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "LEAVE",  "",             ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9F90, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "LEAVE",  "",             ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(15, context.cpuState.getReg(14) + 4);
@@ -1344,7 +1358,7 @@ public class FrInstructionSet {
             }
         }));
         /* NOP */
-        fillInstructionMap( 0x9FA0, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "NOP",    "",             ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0x9FA0, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "NOP",    "",             ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 /* No change */
@@ -1354,7 +1368,7 @@ public class FrInstructionSet {
             }
         }));
         /* ADDN #i4, Ri */
-        fillInstructionMap( 0xA000, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ADDN",   "#u,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xA000, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ADDN",   "#u,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.cpuState.getReg(statement.ri_rs_fs) + statement.imm);
@@ -1364,7 +1378,7 @@ public class FrInstructionSet {
             }
         }));
         /* ADDN2 #i4, Ri */
-        fillInstructionMap( 0xA100, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ADDN2",  "#n,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xA100, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ADDN2",  "#n,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.cpuState.getReg(statement.ri_rs_fs) + BinaryArithmetics.negativeExtend(4, statement.imm));
@@ -1374,7 +1388,7 @@ public class FrInstructionSet {
             }
         }));
         /* ADDN Rj, Ri */
-        fillInstructionMap( 0xA200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ADDN",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xA200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ADDN",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.cpuState.getReg(statement.ri_rs_fs) + context.cpuState.getReg(statement.rj_rt_ft));
@@ -1384,9 +1398,9 @@ public class FrInstructionSet {
             }
         }));
         /* ADDSP #s10 */
-        fillInstructionMap( 0xA300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ADDSP",  "#4s",          "Sw"       , Instruction.FlowType.NONE, false, false, addspS10SimulationCode));
+        fillInstructionMap(map, 0xA300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ADDSP",  "#4s",          "Sw"       , Instruction.FlowType.NONE, false, false, addspS10SimulationCode));
         /* ADD #i4, Ri */
-        fillInstructionMap( 0xA400, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ADD",    "#u,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xA400, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ADD",    "#u,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) + statement.imm;
@@ -1405,7 +1419,7 @@ public class FrInstructionSet {
             }
         }));
         /* ADD2 #i4, Ri */
-        fillInstructionMap( 0xA500, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ADD2",   "#n,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xA500, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ADD2",   "#n,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) + (BinaryArithmetics.negativeExtend(4, statement.imm) & 0xFFFFFFFFL);
@@ -1424,7 +1438,7 @@ public class FrInstructionSet {
             }
         }));
         /* ADD Rj, Ri */
-        fillInstructionMap( 0xA600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ADD",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xA600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ADD",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) + (context.cpuState.getReg(statement.rj_rt_ft) & 0xFFFFFFFFL);
@@ -1443,7 +1457,7 @@ public class FrInstructionSet {
             }
         }));
         /* ADDC Rj, Ri */
-        fillInstructionMap( 0xA700, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ADDC",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xA700, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ADDC",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) + (context.cpuState.getReg(statement.rj_rt_ft) & 0xFFFFFFFFL) + ((FrCPUState)context.cpuState).C;
@@ -1462,7 +1476,7 @@ public class FrInstructionSet {
             }
         }));
         /* CMP #i4, Ri */
-        fillInstructionMap( 0xA800, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "CMP",    "#u,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xA800, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "CMP",    "#u,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) - statement.imm;
@@ -1480,7 +1494,7 @@ public class FrInstructionSet {
             }
         }));
         /* CMP2 #i4, Ri */
-        fillInstructionMap( 0xA900, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "CMP2",   "#n,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xA900, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "CMP2",   "#n,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) - (BinaryArithmetics.negativeExtend(4, statement.imm) & 0xFFFFFFFFL);
@@ -1497,7 +1511,7 @@ public class FrInstructionSet {
             }
         }));
         /* CMP Rj, Ri */
-        fillInstructionMap( 0xAA00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "CMP",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xAA00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "CMP",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) - (context.cpuState.getReg(statement.rj_rt_ft) & 0xFFFFFFFFL);
@@ -1514,7 +1528,7 @@ public class FrInstructionSet {
             }
         }));
         /* MULU Rj,Ri */
-        fillInstructionMap( 0xAB00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "MULU",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xAB00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "MULU",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) * (context.cpuState.getReg(statement.rj_rt_ft) & 0xFFFFFFFFL);
@@ -1529,7 +1543,7 @@ public class FrInstructionSet {
             }
         }));
         /* SUB Rj, Ri */
-        fillInstructionMap( 0xAC00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "SUB",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xAC00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "SUB",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) - (context.cpuState.getReg(statement.rj_rt_ft) & 0xFFFFFFFFL);
@@ -1547,7 +1561,7 @@ public class FrInstructionSet {
             }
         }));
         /* SUBC Rj, Ri */
-        fillInstructionMap( 0xAD00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "SUBC",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xAD00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "SUBC",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) - (context.cpuState.getReg(statement.rj_rt_ft) & 0xFFFFFFFFL) - ((FrCPUState)context.cpuState).C;
@@ -1565,7 +1579,7 @@ public class FrInstructionSet {
             }
         }));
         /* SUBN Rj, Ri */
-        fillInstructionMap( 0xAE00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "SUBN",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xAE00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "SUBN",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, context.cpuState.getReg(statement.ri_rs_fs) - context.cpuState.getReg(statement.rj_rt_ft));
@@ -1575,7 +1589,7 @@ public class FrInstructionSet {
             }
         }));
         /* MUL Rj,Ri */
-        fillInstructionMap( 0xAF00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "MUL",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xAF00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "MUL",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = ((long) context.cpuState.getReg(statement.rj_rt_ft)) * ((long) context.cpuState.getReg(statement.ri_rs_fs));
@@ -1589,7 +1603,7 @@ public class FrInstructionSet {
             }
         }));
         /* LSR #u4, Ri */
-        fillInstructionMap( 0xB000, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSR",    "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xB000, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSR",    "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.cpuState.getReg(statement.ri_rs_fs) >>> statement.imm;
@@ -1603,9 +1617,9 @@ public class FrInstructionSet {
             }
         }));
         /* LSR2 #u4, Ri */
-        fillInstructionMap( 0xB100, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSR2",   "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, lsr2u4RiSimulationCode));
+        fillInstructionMap(map, 0xB100, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSR2",   "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, lsr2u4RiSimulationCode));
         /* LSR Rj, Ri */
-        fillInstructionMap( 0xB200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LSR",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xB200, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LSR",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.cpuState.getReg(statement.ri_rs_fs) >>> (context.cpuState.getReg(statement.rj_rt_ft) & 0x1F);
@@ -1619,15 +1633,15 @@ public class FrInstructionSet {
             }
         }));
         /* MOV Ri, Rs */
-        fillInstructionMap( 0xB300, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
-        fillInstructionMap( 0xB310, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
-        fillInstructionMap( 0xB320, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
-        fillInstructionMap( 0xB330, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
-        fillInstructionMap( 0xB340, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
-        fillInstructionMap( 0xB350, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
+        fillInstructionMap(map, 0xB300, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
+        fillInstructionMap(map, 0xB310, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
+        fillInstructionMap(map, 0xB320, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
+        fillInstructionMap(map, 0xB330, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
+        fillInstructionMap(map, 0xB340, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
+        fillInstructionMap(map, 0xB350, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "i,h",          ""         , Instruction.FlowType.NONE, false, false, movRiRsSimulationCode));
 
         /* LSL #u4, Ri */
-        fillInstructionMap( 0xB400, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSL",    "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xB400, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSL",    "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) << statement.imm;
@@ -1641,9 +1655,9 @@ public class FrInstructionSet {
             }
         }));
         /* LSL2 #u4, Ri */
-        fillInstructionMap( 0xB500, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSL2",   "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, lsl2u4RiSimulationCode));
+        fillInstructionMap(map, 0xB500, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSL2",   "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, lsl2u4RiSimulationCode));
         /* LSL Rj, Ri */
-        fillInstructionMap( 0xB600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LSL",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xB600, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "LSL",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 long result64 = (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFFFFFFL) << (context.cpuState.getReg(statement.rj_rt_ft) & 0x1F);
@@ -1657,15 +1671,15 @@ public class FrInstructionSet {
             }
         }));
         /* MOV Rs, Ri */
-        fillInstructionMap( 0xB700, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
-        fillInstructionMap( 0xB710, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
-        fillInstructionMap( 0xB720, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
-        fillInstructionMap( 0xB730, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
-        fillInstructionMap( 0xB740, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
-        fillInstructionMap( 0xB750, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
+        fillInstructionMap(map, 0xB700, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
+        fillInstructionMap(map, 0xB710, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
+        fillInstructionMap(map, 0xB720, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
+        fillInstructionMap(map, 0xB730, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
+        fillInstructionMap(map, 0xB740, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
+        fillInstructionMap(map, 0xB750, 0xFFF0, new FrInstruction(InstructionFormat.A, 0, 0, "MOV",    "h,i",          "iw"       , Instruction.FlowType.NONE, false, false, movRsRiSimulationCode));
 
         /* ASR #u4, Ri */
-        fillInstructionMap( 0xB800, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ASR",    "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xB800, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ASR",    "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.cpuState.getReg(statement.ri_rs_fs) >> statement.imm;
@@ -1679,9 +1693,9 @@ public class FrInstructionSet {
             }
         }));
         /* ASR2 #u4, Ri */
-        fillInstructionMap( 0xB900, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ASR2",   "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, asr2u4RiSimulationCode));
+        fillInstructionMap(map, 0xB900, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ASR2",   "#d,i",         "iw"       , Instruction.FlowType.NONE, false, false, asr2u4RiSimulationCode));
         /* ASR Rj, Ri */
-        fillInstructionMap( 0xBA00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ASR",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xBA00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "ASR",    "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = context.cpuState.getReg(statement.ri_rs_fs) >> (context.cpuState.getReg(statement.rj_rt_ft) & 0x1F);
@@ -1695,7 +1709,7 @@ public class FrInstructionSet {
             }
         }));
         /* MULUH Rj,Ri */
-        fillInstructionMap( 0xBB00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "MULUH",  "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xBB00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "MULUH",  "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = (context.cpuState.getReg(statement.rj_rt_ft) & 0xFFFF) * (context.cpuState.getReg(statement.ri_rs_fs) & 0xFFFF);
@@ -1707,7 +1721,7 @@ public class FrInstructionSet {
             }
         }));
         /* MULH Rj, Ri */
-        fillInstructionMap( 0xBF00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "MULH",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xBF00, 0xFF00, new FrInstruction(InstructionFormat.A, 0, 0, "MULH",   "j,i",          "iw"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 int result32 = ((short) context.cpuState.getReg(statement.rj_rt_ft)) * ((short) context.cpuState.getReg(statement.ri_rs_fs));
@@ -1719,7 +1733,7 @@ public class FrInstructionSet {
             }
         }));
         /* LDI:8 #i8, Ri */
-        fillInstructionMap( 0xC000, 0xF000, new Ldi8FrInstruction( 0xC000, InstructionFormat.B, 0, 0, "LDI:8",  "#u,i",         "iv"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xC000, 0xF000, new Ldi8FrInstruction( 0xC000, InstructionFormat.B, 0, 0, "LDI:8",  "#u,i",         "iv"       , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.setReg(statement.ri_rs_fs, statement.imm);
@@ -1729,7 +1743,7 @@ public class FrInstructionSet {
             }
         }));
         /* CALL label12 */
-        fillInstructionMap( 0xD000, 0xF800, new FrInstruction(InstructionFormat.F, 0, 0, "CALL",   "2ru",          ""         , Instruction.FlowType.CALL, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xD000, 0xF800, new FrInstruction(InstructionFormat.F, 0, 0, "CALL",   "2ru",          ""         , Instruction.FlowType.CALL, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.pushStatement(statement);
@@ -1740,7 +1754,7 @@ public class FrInstructionSet {
             }
         }));
         /* CALL:D label12 */
-        fillInstructionMap( 0xD800, 0xF800, new FrInstruction(InstructionFormat.F, 0, 0, "CALL:D", "2ru",          ""         , Instruction.FlowType.CALL, false, true, new SimulationCode() {
+        fillInstructionMap(map, 0xD800, 0xF800, new FrInstruction(InstructionFormat.F, 0, 0, "CALL:D", "2ru",          ""         , Instruction.FlowType.CALL, false, true, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.pushStatement(statement);
@@ -1751,7 +1765,7 @@ public class FrInstructionSet {
             }
         } ));
         /* BRA label9 */
-        fillInstructionMap( 0xE000, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BRA",    "2ru",          ""         , Instruction.FlowType.JMP, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xE000, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BRA",    "2ru",          ""         , Instruction.FlowType.JMP, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.cpuState.pc = context.cpuState.pc + 2 + BinaryArithmetics.signExtend(8, statement.imm) * 2;
@@ -1760,7 +1774,7 @@ public class FrInstructionSet {
             }
         }));
         /* BNO label9 */
-        fillInstructionMap( 0xE100, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNO",    "2ru",          ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
+        fillInstructionMap(map, 0xE100, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNO",    "2ru",          ""         , Instruction.FlowType.NONE, false, false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 /* No branch */
@@ -1770,7 +1784,7 @@ public class FrInstructionSet {
             }
         }));
         /* BEQ label9 */
-        fillInstructionMap( 0xE200, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BEQ",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xE200, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BEQ",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).Z == 1) {
@@ -1785,7 +1799,7 @@ public class FrInstructionSet {
             }
         }));
         /* BNE label9 */
-        fillInstructionMap( 0xE300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNE",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xE300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNE",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).Z == 0) {
@@ -1800,7 +1814,7 @@ public class FrInstructionSet {
             }
         }));
         /* BC label9 */
-        fillInstructionMap( 0xE400, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BC",     "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xE400, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BC",     "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).C == 1) {
@@ -1815,7 +1829,7 @@ public class FrInstructionSet {
             }
         }));
         /* BNC label9 */
-        fillInstructionMap( 0xE500, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNC",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xE500, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNC",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).C == 0) {
@@ -1830,7 +1844,7 @@ public class FrInstructionSet {
             }
         }));
         /* BN label9 */
-        fillInstructionMap( 0xE600, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BN",     "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xE600, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BN",     "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).N == 1) {
@@ -1845,7 +1859,7 @@ public class FrInstructionSet {
             }
         }));
         /* BP label9 */
-        fillInstructionMap( 0xE700, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BP",     "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xE700, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BP",     "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).N == 0) {
@@ -1860,7 +1874,7 @@ public class FrInstructionSet {
             }
         }));
         /* BV label9 */
-        fillInstructionMap( 0xE800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BV",     "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xE800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BV",     "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).V == 1) {
@@ -1875,7 +1889,7 @@ public class FrInstructionSet {
             }
         }));
         /* BNV label9 */
-        fillInstructionMap( 0xE900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNV",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xE900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNV",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).V == 0) {
@@ -1890,7 +1904,7 @@ public class FrInstructionSet {
             }
         }));
         /* BLT label9 */
-        fillInstructionMap( 0xEA00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLT",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xEA00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLT",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if ((((FrCPUState)context.cpuState).V ^ ((FrCPUState)context.cpuState).N) == 1) {
@@ -1905,7 +1919,7 @@ public class FrInstructionSet {
             }
         }));
         /* BGE label9 */
-        fillInstructionMap( 0xEB00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BGE",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xEB00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BGE",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if ((((FrCPUState)context.cpuState).V ^ ((FrCPUState)context.cpuState).N) == 0) {
@@ -1920,7 +1934,7 @@ public class FrInstructionSet {
             }
         }));
         /* BLE label9 */
-        fillInstructionMap( 0xEC00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLE",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xEC00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLE",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((((FrCPUState)context.cpuState).V ^ ((FrCPUState)context.cpuState).N) | ((FrCPUState)context.cpuState).Z) == 1) {
@@ -1935,7 +1949,7 @@ public class FrInstructionSet {
             }
         }));
         /* BGT label9 */
-        fillInstructionMap( 0xED00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BGT",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xED00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BGT",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((((FrCPUState)context.cpuState).V ^ ((FrCPUState)context.cpuState).N) | ((FrCPUState)context.cpuState).Z) == 0) {
@@ -1950,7 +1964,7 @@ public class FrInstructionSet {
             }
         }));
         /* BLS label9 */
-        fillInstructionMap( 0xEE00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLS",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xEE00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLS",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if ((((FrCPUState)context.cpuState).C | ((FrCPUState)context.cpuState).Z) == 1) {
@@ -1965,7 +1979,7 @@ public class FrInstructionSet {
             }
         }));
         /* BHI label9 */
-        fillInstructionMap( 0xEF00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BHI",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
+        fillInstructionMap(map, 0xEF00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BHI",    "2ru",          ""         , Instruction.FlowType.BRA, true , false, new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if ((((FrCPUState)context.cpuState).C | ((FrCPUState)context.cpuState).Z) == 0) {
@@ -1980,7 +1994,7 @@ public class FrInstructionSet {
             }
         }));
         /* BRA:D label9 */
-        fillInstructionMap( 0xF000, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BRA:D",  "2ru",          ""         , Instruction.FlowType.JMP, false, true , new SimulationCode() {
+        fillInstructionMap(map, 0xF000, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BRA:D",  "2ru",          ""         , Instruction.FlowType.JMP, false, true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 context.setDelayedPc(context.cpuState.pc + 2 + BinaryArithmetics.signExtend(8, statement.imm) * 2);
@@ -1990,7 +2004,7 @@ public class FrInstructionSet {
             }
         }));
         /* BNO:D label9 */
-        fillInstructionMap( 0xF100, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNO:D",  "2ru",          ""         , Instruction.FlowType.NONE, false, true , new SimulationCode() {
+        fillInstructionMap(map, 0xF100, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNO:D",  "2ru",          ""         , Instruction.FlowType.NONE, false, true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 /* No branch */
@@ -2001,7 +2015,7 @@ public class FrInstructionSet {
             }
         }));
         /* BEQ:D label9 */
-        fillInstructionMap( 0xF200, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BEQ:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xF200, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BEQ:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).Z == 1) {
@@ -2013,7 +2027,7 @@ public class FrInstructionSet {
             }
         }));
         /* BNE:D label9 */
-        fillInstructionMap( 0xF300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNE:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xF300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNE:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).Z == 0) {
@@ -2025,7 +2039,7 @@ public class FrInstructionSet {
             }
         }));
         /* BC:D label9 */
-        fillInstructionMap( 0xF400, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BC:D",   "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xF400, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BC:D",   "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).C == 1) {
@@ -2037,7 +2051,7 @@ public class FrInstructionSet {
             }
         }));
         /* BNC:D label9 */
-        fillInstructionMap( 0xF500, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNC:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xF500, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNC:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).C == 0) {
@@ -2049,7 +2063,7 @@ public class FrInstructionSet {
             }
         }));
         /* BN:D label9 */
-        fillInstructionMap( 0xF600, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BN:D",   "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xF600, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BN:D",   "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).N == 1) {
@@ -2061,7 +2075,7 @@ public class FrInstructionSet {
             }
         }));
         /* BP:D label9 */
-        fillInstructionMap( 0xF700, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BP:D",   "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xF700, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BP:D",   "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).N == 0) {
@@ -2073,7 +2087,7 @@ public class FrInstructionSet {
             }
         }));
         /* BV:D label9 */
-        fillInstructionMap( 0xF800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BV:D",   "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xF800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BV:D",   "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).V == 1) {
@@ -2085,7 +2099,7 @@ public class FrInstructionSet {
             }
         }));
         /* BNV:D label9 */
-        fillInstructionMap( 0xF900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNV:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xF900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BNV:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((FrCPUState)context.cpuState).V == 0) {
@@ -2097,7 +2111,7 @@ public class FrInstructionSet {
             }
         }));
         /* BLT:D label9 */
-        fillInstructionMap( 0xFA00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLT:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xFA00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLT:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if ((((FrCPUState)context.cpuState).V ^ ((FrCPUState)context.cpuState).N) == 1) {
@@ -2109,7 +2123,7 @@ public class FrInstructionSet {
             }
         }));
         /* BGE:D label9 */
-        fillInstructionMap( 0xFB00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BGE:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xFB00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BGE:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if ((((FrCPUState)context.cpuState).V ^ ((FrCPUState)context.cpuState).N) == 0) {
@@ -2121,7 +2135,7 @@ public class FrInstructionSet {
             }
         }));
         /* BLE:D label9 */
-        fillInstructionMap( 0xFC00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLE:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xFC00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLE:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((((FrCPUState)context.cpuState).V ^ ((FrCPUState)context.cpuState).N) | ((FrCPUState)context.cpuState).Z) == 1) {
@@ -2133,7 +2147,7 @@ public class FrInstructionSet {
             }
         }));
         /* BGT:D label9 */
-        fillInstructionMap( 0xFD00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BGT:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xFD00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BGT:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if (((((FrCPUState)context.cpuState).V ^ ((FrCPUState)context.cpuState).N) | ((FrCPUState)context.cpuState).Z) == 0) {
@@ -2145,7 +2159,7 @@ public class FrInstructionSet {
             }
         }));
         /* BLS:D label9 */
-        fillInstructionMap( 0xFE00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLS:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xFE00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BLS:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if ((((FrCPUState)context.cpuState).C | ((FrCPUState)context.cpuState).Z) == 1) {
@@ -2157,7 +2171,7 @@ public class FrInstructionSet {
             }
         }));
         /* BHI:D label9 */
-        fillInstructionMap( 0xFF00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BHI:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
+        fillInstructionMap(map, 0xFF00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "BHI:D",  "2ru",          ""         , Instruction.FlowType.BRA, true , true , new SimulationCode() {
             @Override
             public void simulate(Statement statement, StatementContext context) throws EmulationException {
                 if ((((FrCPUState)context.cpuState).C | ((FrCPUState)context.cpuState).Z) == 0) {
@@ -2174,61 +2188,61 @@ public class FrInstructionSet {
     /**
      * These are replacement names for all stack-related operations
      */
-    private static void replaceAltStackInstructions() {
-        fillInstructionMap( 0x0700, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "i",            ""         , Instruction.FlowType.NONE, false, false, ldR15RiSimulationCode));
-        fillInstructionMap( 0x0780, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
-        fillInstructionMap( 0x0781, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
-        fillInstructionMap( 0x0782, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
-        fillInstructionMap( 0x0783, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
-        fillInstructionMap( 0x0784, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
-        fillInstructionMap( 0x0785, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
-        fillInstructionMap( 0x0790, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "POP",    "P",            ""         , Instruction.FlowType.NONE, false, false, ldR15PSSimulationCode));
-        fillInstructionMap( 0x0B00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "PUSH",   "@4u",          ""         , Instruction.FlowType.NONE, false, false, dmovDir10R15SimulationCode));
-        fillInstructionMap( 0x1700, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "i",            ""         , Instruction.FlowType.NONE, false, false, stRiR15SimulationCode));
-        fillInstructionMap( 0x1780, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
-        fillInstructionMap( 0x1781, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
-        fillInstructionMap( 0x1782, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
-        fillInstructionMap( 0x1783, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
-        fillInstructionMap( 0x1784, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
-        fillInstructionMap( 0x1785, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
-        fillInstructionMap( 0x1790, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "PUSH",   "P",            ""         , Instruction.FlowType.NONE, false, false, stPsR15SimulationCode));
-        fillInstructionMap( 0x1B00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "POP",    "@u",           ""         , Instruction.FlowType.NONE, false, false, dmovR15Dir10SimulationCode));
-        fillInstructionMap( 0x8C00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "POP",    "z",            ""         , Instruction.FlowType.NONE, false, false, ldm0SimulationCode));
-        fillInstructionMap( 0x8D00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "POP",    "y",            ""         , Instruction.FlowType.NONE, false, false, ldm1SimulationCode));
-        fillInstructionMap( 0x8E00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "PUSH",   "xz",           ""         , Instruction.FlowType.NONE, false, false, stm0SimulationCode));
-        fillInstructionMap( 0x8F00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "PUSH",   "xy",           ""         , Instruction.FlowType.NONE, false, false, stm1SimulationCode));
+    private static void replaceAltStackInstructions(FrInstruction[] map) {
+        fillInstructionMap(map, 0x0700, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "i",            ""         , Instruction.FlowType.NONE, false, false, ldR15RiSimulationCode));
+        fillInstructionMap(map, 0x0780, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0781, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0782, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0783, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0784, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0785, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "POP",    "g",            ""         , Instruction.FlowType.NONE, false, false, ldR15RsSimulationCode));
+        fillInstructionMap(map, 0x0790, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "POP",    "P",            ""         , Instruction.FlowType.NONE, false, false, ldR15PSSimulationCode));
+        fillInstructionMap(map, 0x0B00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "PUSH",   "@4u",          ""         , Instruction.FlowType.NONE, false, false, dmovDir10R15SimulationCode));
+        fillInstructionMap(map, 0x1700, 0xFFF0, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "i",            ""         , Instruction.FlowType.NONE, false, false, stRiR15SimulationCode));
+        fillInstructionMap(map, 0x1780, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1781, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1782, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1783, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1784, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1785, 0xFFFF, new FrInstruction(InstructionFormat.E, 0, 0, "PUSH",   "g",            ""         , Instruction.FlowType.NONE, false, false, stRsR15SimulationCode));
+        fillInstructionMap(map, 0x1790, 0xFFFF, new FrInstruction(InstructionFormat.Z, 0, 0, "PUSH",   "P",            ""         , Instruction.FlowType.NONE, false, false, stPsR15SimulationCode));
+        fillInstructionMap(map, 0x1B00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "POP",    "@u",           ""         , Instruction.FlowType.NONE, false, false, dmovR15Dir10SimulationCode));
+        fillInstructionMap(map, 0x8C00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "POP",    "z",            ""         , Instruction.FlowType.NONE, false, false, ldm0SimulationCode));
+        fillInstructionMap(map, 0x8D00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "POP",    "y",            ""         , Instruction.FlowType.NONE, false, false, ldm1SimulationCode));
+        fillInstructionMap(map, 0x8E00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "PUSH",   "xz",           ""         , Instruction.FlowType.NONE, false, false, stm0SimulationCode));
+        fillInstructionMap(map, 0x8F00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "PUSH",   "xy",           ""         , Instruction.FlowType.NONE, false, false, stm1SimulationCode));
     }
 
     /**
      * These are replacement names for all "+16" shift opcodes (LSR2, LSL2, ASR2)
      */
-    private static void replaceShiftInstructions() {
-        fillInstructionMap( 0xB100, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSR",    "#bd,i",        "iw"       , Instruction.FlowType.NONE, false, false, lsr2u4RiSimulationCode));
-        fillInstructionMap( 0xB500, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSL",    "#bd,i",        "iw"       , Instruction.FlowType.NONE, false, false, lsl2u4RiSimulationCode));
-        fillInstructionMap( 0xB900, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ASR",    "#bd,i",        "iw"       , Instruction.FlowType.NONE, false, false, asr2u4RiSimulationCode));
+    private static void replaceShiftInstructions(FrInstruction[] map) {
+        fillInstructionMap(map, 0xB100, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSR",    "#bd,i",        "iw"       , Instruction.FlowType.NONE, false, false, lsr2u4RiSimulationCode));
+        fillInstructionMap(map, 0xB500, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "LSL",    "#bd,i",        "iw"       , Instruction.FlowType.NONE, false, false, lsl2u4RiSimulationCode));
+        fillInstructionMap(map, 0xB900, 0xFF00, new FrInstruction(InstructionFormat.C, 0, 0, "ASR",    "#bd,i",        "iw"       , Instruction.FlowType.NONE, false, false, asr2u4RiSimulationCode));
     }
 
     /**
      * These are replacement names for all some DMOV opcodes
      */
-    private static void replaceAltDmovInstructions() {
-        fillInstructionMap( 0x0800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "LD",     "@4u,A",        ""         , Instruction.FlowType.NONE, false, false, dmovDir10R13SimulationCode));
-        fillInstructionMap( 0x0900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "LDUH",   "@2u,A",        ""         , Instruction.FlowType.NONE, false, false, dmovhDir9R13SimulationCode));
-        fillInstructionMap( 0x0A00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "LDUB",   "@u,A",         ""         , Instruction.FlowType.NONE, false, false, dmovbDir8R13SimulationCode));
-        fillInstructionMap( 0x1800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ST",     "A,@4u",        ""         , Instruction.FlowType.NONE, false, false, dmovR13Dir10SimulationCode));
-        fillInstructionMap( 0x1900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "STUH",   "A,@2u",        ""         , Instruction.FlowType.NONE, false, false, dmovhR13Dir9SimulationCode));
-        fillInstructionMap( 0x1A00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "STUB",   "A,@u",         ""         , Instruction.FlowType.NONE, false, false, dmovbR13Dir8SimulationCode));
+    private static void replaceAltDmovInstructions(FrInstruction[] map) {
+        fillInstructionMap(map, 0x0800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "LD",     "@4u,A",        ""         , Instruction.FlowType.NONE, false, false, dmovDir10R13SimulationCode));
+        fillInstructionMap(map, 0x0900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "LDUH",   "@2u,A",        ""         , Instruction.FlowType.NONE, false, false, dmovhDir9R13SimulationCode));
+        fillInstructionMap(map, 0x0A00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "LDUB",   "@u,A",         ""         , Instruction.FlowType.NONE, false, false, dmovbDir8R13SimulationCode));
+        fillInstructionMap(map, 0x1800, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ST",     "A,@4u",        ""         , Instruction.FlowType.NONE, false, false, dmovR13Dir10SimulationCode));
+        fillInstructionMap(map, 0x1900, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "STUH",   "A,@2u",        ""         , Instruction.FlowType.NONE, false, false, dmovhR13Dir9SimulationCode));
+        fillInstructionMap(map, 0x1A00, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "STUB",   "A,@u",         ""         , Instruction.FlowType.NONE, false, false, dmovbR13Dir8SimulationCode));
     }
 
     /**
      * These are replacement names for dedicated opcodes
      * working on ILM, CCR and SP so that they look the same as others
      */
-    private static void replaceAltSpecialInstructions() {
-        fillInstructionMap( 0x8300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "AND",    "#u,C",         "Cw"       , Instruction.FlowType.NONE, false, false, andccrU8SimulationCode));
-        fillInstructionMap( 0x8700, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "MOV",    "#u,M",         ""         , Instruction.FlowType.NONE, false, false, stilmU8SimulationCode));
-        fillInstructionMap( 0x9300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "OR",     "#u,C",         "Cw"       , Instruction.FlowType.NONE, false, false, orccrU8SimulationCode));
-        fillInstructionMap( 0xA300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ADD",    "#4s,S",        ""         , Instruction.FlowType.NONE, false, false, addspS10SimulationCode));
+    private static void replaceAltSpecialInstructions(FrInstruction[] map) {
+        fillInstructionMap(map, 0x8300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "AND",    "#u,C",         "Cw"       , Instruction.FlowType.NONE, false, false, andccrU8SimulationCode));
+        fillInstructionMap(map, 0x8700, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "MOV",    "#u,M",         ""         , Instruction.FlowType.NONE, false, false, stilmU8SimulationCode));
+        fillInstructionMap(map, 0x9300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "OR",     "#u,C",         "Cw"       , Instruction.FlowType.NONE, false, false, orccrU8SimulationCode));
+        fillInstructionMap(map, 0xA300, 0xFF00, new FrInstruction(InstructionFormat.D, 0, 0, "ADD",    "#4s,S",        ""         , Instruction.FlowType.NONE, false, false, addspS10SimulationCode));
     }
 
 
@@ -2245,6 +2259,13 @@ public class FrInstructionSet {
     };
 
 
+    /**
+     * Map used by the emulators to decode instructions. Built once without any option: alternate versions only differ
+     * by their display, so execution never depends on the options chosen for disassembly or trace views.
+     * Must not be modified.
+     */
+    private static final FrInstruction[] executionInstructionMap = getInstructionMap(EnumSet.noneOf(OutputOption.class));
+
     /**
      * Default instruction decoding upon class loading
      */
@@ -2253,43 +2274,77 @@ public class FrInstructionSet {
     }
 
     /**
-     * This method fills the instructionMap array with all possible variants of instruction word so that
-     * OPCODE can be looked up by just getting instructionMap[instructionWord]
+     * @return the instruction to execute for the given instruction word, whatever the output options
+     */
+    public static FrInstruction getExecutionInstruction(int instructionWord) {
+        return executionInstructionMap[instructionWord];
+    }
+
+    /**
+     * Makes instructionMap reflect the given options, for the disassembler and other views using it
      */
     public static void init(Set<OutputOption> options) {
+        instructionMap = getInstructionMap(options);
+    }
+
+    /**
+     * @return the map of instructions displayed with the given options. Maps are built on first use, then shared.
+     * The returned array must not be modified.
+     */
+    public static synchronized FrInstruction[] getInstructionMap(Set<OutputOption> options) {
+        Set<OutputOption> key = EnumSet.noneOf(OutputOption.class);
+        for (OutputOption option : options) {
+            if (DISPLAY_OPTIONS.contains(option)) {
+                key.add(option);
+            }
+        }
+        FrInstruction[] map = instructionMapsByOptions.get(key);
+        if (map == null) {
+            map = buildInstructionMap(key);
+            instructionMapsByOptions.put(key, map);
+        }
+        return map;
+    }
+
+    /**
+     * This method fills a new array with all possible variants of instruction word so that
+     * OPCODE can be looked up by just getting map[instructionWord]
+     */
+    private static FrInstruction[] buildInstructionMap(Set<OutputOption> options) {
+        FrInstruction[] map = new FrInstruction[0x10000];
         /* opcode decoding */
         // First, fill everything with a default dummy code as a safety net for unknown instructions
-        for (int i = 0; i < 0x10000; i++) {
-            instructionMap[i] = defaultInstruction;
-        }
+        Arrays.fill(map, defaultInstruction);
         // Then overwrite with actual instructions
-        addBaseInstructions(options);
+        addBaseInstructions(map, options);
         // And optionally replace some opcodes with alternate versions
         if (options.contains(OutputOption.STACK))
-            replaceAltStackInstructions();
+            replaceAltStackInstructions(map);
         if (options.contains(OutputOption.SHIFT))
-            replaceShiftInstructions();
+            replaceShiftInstructions(map);
         if (options.contains(OutputOption.DMOV))
-            replaceAltDmovInstructions();
+            replaceAltDmovInstructions(map);
         if (options.contains(OutputOption.SPECIALS))
-            replaceAltSpecialInstructions();
+            replaceAltSpecialInstructions(map);
+        return map;
     }
 
     /**
      * This method maps all possible so that all possible values of the variable parts (the 0 bits in the mask)
      * in the destination array point to the given Instruction<br/>
      * e.g. if call is
-     * <pre>fillInstructionMap(0x0000, 0xFF00, myInstruction);</pre>
-     * then destination[0x00] to destination[0xFF] will all point to myInstruction
+     * <pre>fillInstructionMap(map, 0x0000, 0xFF00, myInstruction);</pre>
+     * then map[0x00] to map[0xFF] will all point to myInstruction
+     * @param map
      * @param encoding
      * @param instruction
      * @param mask
      */
-    private static void fillInstructionMap(int encoding, int mask, FrInstruction instruction) {
+    private static void fillInstructionMap(FrInstruction[] map, int encoding, int mask, FrInstruction instruction) {
         int n = (~ mask) & 0xFFFF;
         for( int i = 0 ; i <= n ; i++)
         {
-            instructionMap[encoding | i] = instruction;
+            map[encoding | i] = instruction;
         }
     }
 
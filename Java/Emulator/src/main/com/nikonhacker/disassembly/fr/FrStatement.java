@@ -613,6 +613,14 @@ public class FrStatement extends Statement {
         return numData * 2;
     }
 
+    public long getRawBinary() {
+        long out = 0;
+        for (int i = 0; i < numData; ++i) {
+            out = (out << 16) | (data[i] & 0xFFFF);
+        }
+        return out;
+    }
+
     public void fillInstruction() {
         FrInstruction instruction = FrInstructionSet.instructionMap[data[0]];
 
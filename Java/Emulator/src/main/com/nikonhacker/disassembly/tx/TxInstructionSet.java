@@ -6,6 +6,7 @@ import com.nikonhacker.emu.EmulationException;
 import com.nikonhacker.emu.interrupt.tx.CoprocessorUnusableException;
 
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Set;
 
 /*
@@ -5597,6 +5598,9 @@ public class TxInstructionSet
 
 
 
+    /** Options of the last init, so that disassemblers and emulators using the same options share the tables without refilling them */
+    private static Set<OutputOption> initializedOptions;
+
     /**
      * Default instruction decoding upon class loading
      */
@@ -5604,7 +5608,10 @@ public class TxInstructionSet
         init(EnumSet.noneOf(OutputOption.class));
     }
 
-    public static void init(Set<OutputOption> outputOptions) {
+    public static synchronized void init(Set<OutputOption> outputOptions) {
+        if (outputOptions.equals(initializedOptions)) {
+            return;
+        }
 
         // ----------------- 16-bit ISA instruction mapping -----------------
 
@@ -6564,6 +6571,7 @@ public class TxInstructionSet
 
         bc1fResolver = new DirectInstructionResolver(bc1fInstruction);
         bc1tResolver = new DirectInstructionResolver(bc1tInstruction);
+        initializedOptions = new HashSet<>(outputOptions);
     }
 
     private static void expandInstruction(TxInstruction[] map, int encoding, int mask, TxInstruction instruction) {
@@ -958,6 +958,10 @@ public class TxStatement extends Statement {
         return numBytes;
     }
 
+    public long getRawBinary() {
+        return binaryStatement & 0xFFFFFFFFL;
+    }
+
     public boolean isExtended() {
         return (numBytes == 4);
     }
@@ -0,0 +1,154 @@
+package com.nikonhacker.emu;
+
+import com.nikonhacker.disassembly.CPUState;
+import com.nikonhacker.disassembly.Instruction;
+import com.nikonhacker.disassembly.OutputOption;
+import com.nikonhacker.disassembly.RawStatementFormatter;
+import com.nikonhacker.disassembly.Statement;
+import com.nikonhacker.emu.interrupt.InterruptRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Function call stack, as tracked by the emulator when a CallStackFrame is open.
+ *
+ * Calls only capture raw data (addresses, instruction binary and register values) in preallocated arrays used as a
+ * ring, without allocation, formatting nor locking. Once full, the oldest entries are overwritten.
+ * Other threads get a copy with snapshot(), whose items are formatted when first displayed.
+ *
+ * Only the emulator thread may push or pop. Readers detect concurrent modifications by checking that the version,
+ * odd while a modification is in progress, did not change during the copy, and retry if it did.
+ */
+public class CallStack {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** After that many attempts, the last copy is returned even if it may be inconsistent */
+    private static final int MAX_SNAPSHOT_ATTEMPTS = 100;
+
+    private final int capacity;
+
+    private final int[]              addresses;
+    private final int[]              sps;
+    private final Instruction[]      instructions;
+    private final long[]             rawBinaries;
+    private final int[]              numBytes;
+    private final boolean[]          is16bitIsa;
+    private final int[][]            registers;
+    private final InterruptRequest[] interruptRequests;
+
+    /** Index of the next free slot */
+    private int top;
+    private int size;
+
+    private volatile int version;
+
+    private final RawStatementFormatter formatter;
+
+    public CallStack(int chip, Set<OutputOption> outputOptions) {
+        this(chip, outputOptions, DEFAULT_CAPACITY);
+    }
+
+    public CallStack(int chip, Set<OutputOption> outputOptions, int capacity) {
+        this.capacity = capacity;
+        formatter = new RawStatementFormatter(chip, outputOptions);
+        formatter.getCpuState().setAllRegistersDefined();
+        addresses = new int[capacity];
+        sps = new int[capacity];
+        instructions = new Instruction[capacity];
+        rawBinaries = new long[capacity];
+        numBytes = new int[capacity];
+        is16bitIsa = new boolean[capacity];
+        registers = new int[capacity][formatter.getCpuState().getNumStdRegisters() + 1];
+        interruptRequests = new InterruptRequest[capacity];
+    }
+
+    /**
+     * Pushes a call (or jump) statement, about to be executed
+     */
+    public void push(CPUState cpuState, Statement statement) {
+        version++;
+        int slot = top;
+        addresses[slot] = cpuState.pc;
+        sps[slot] = cpuState.getSp();
+        instructions[slot] = statement.getInstruction();
+        rawBinaries[slot] = statement.getRawBinary();
+        numBytes[slot] = statement.getNumBytes();
+        is16bitIsa[slot] = (cpuState.getPc() & 1) != 0;
+        interruptRequests[slot] = null;
+        cpuState.getStdState(registers[slot]);
+        advance();
+        version++;
+    }
+
+    public void push(CPUState cpuState, InterruptRequest interruptRequest) {
+        version++;
+        int slot = top;
+        addresses[slot] = cpuState.pc;
+        sps[slot] = cpuState.getSp();
+        instructions[slot] = null;
+        interruptRequests[slot] = interruptRequest;
+        advance();
+        version++;
+    }
+
+    private void advance() {
+        top = (top + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+    }
+
+    /**
+     * Pops the last call, as well as the jumps pushed since then
+     */
+    public void pop() {
+        if (size == 0) {
+            return;
+        }
+        version++;
+        Instruction poppedInstruction;
+        do {
+            top = (top + capacity - 1) % capacity;
+            size--;
+            poppedInstruction = instructions[top];
+        }
+        while (size > 0 && poppedInstruction != null && poppedInstruction.getFlowType() == Instruction.FlowType.JMP);
+        version++;
+    }
+
+    /**
+     * @return a copy of the stack, most recent call first. Can be called from any thread
+     */
+    public List<CallStackItem> snapshot() {
+        List<CallStackItem> items = new ArrayList<>();
+        for (int attempt = 0; attempt < MAX_SNAPSHOT_ATTEMPTS; attempt++) {
+            int startVersion = version;
+            if ((startVersion & 1) == 0) {
+                items = copy();
+                if (version == startVersion) {
+                    break;
+                }
+            }
+            Thread.yield();
+        }
+        return items;
+    }
+
+    private List<CallStackItem> copy() {
+        int currentTop = top;
+        int currentSize = Math.min(size, capacity);
+        List<CallStackItem> items = new ArrayList<>(currentSize);
+        for (int i = 1; i <= currentSize; i++) {
+            int slot = (currentTop + capacity - i) % capacity;
+            if (interruptRequests[slot] != null) {
+                items.add(new CallStackItem(addresses[slot], sps[slot], interruptRequests[slot]));
+            }
+            else {
+                items.add(new CallStackItem(addresses[slot], sps[slot], instructions[slot], rawBinaries[slot], numBytes[slot], is16bitIsa[slot], registers[slot].clone(), formatter));
+            }
+        }
+        return items;
+    }
+}
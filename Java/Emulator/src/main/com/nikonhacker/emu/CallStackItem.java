@@ -1,21 +1,65 @@
 package com.nikonhacker.emu;
 
 import com.nikonhacker.Format;
+import com.nikonhacker.disassembly.DisassemblyException;
 import com.nikonhacker.disassembly.Instruction;
+import com.nikonhacker.disassembly.RawStatementFormatter;
+import com.nikonhacker.disassembly.Statement;
+import com.nikonhacker.emu.interrupt.InterruptRequest;
+import org.apache.commons.lang3.StringUtils;
 
+/**
+ * A snapshot of a CallStack entry.
+ * Statement and target are only formatted when first requested, from the raw data captured upon the call.
+ */
 public class CallStackItem {
     private int address;
     private int sp;
-    private String statementString;
-    private String targetAddress;
     private Instruction instruction;
 
-    public CallStackItem(int address, int sp, Instruction instruction, String statementString, String targetAddress) {
+    private long             rawBinary;
+    private int              numBytes;
+    private boolean          is16bitIsa;
+    private int[]            registers;
+    private InterruptRequest interruptRequest;
+
+    private RawStatementFormatter formatter;
+    private boolean               formatted;
+    private String                statementString;
+    private String                targetAddress;
+
+    /**
+     * Creates an item without statement, e.g. for the current position
+     */
+    public CallStackItem(int address, int sp) {
+        this.address = address;
+        this.sp = sp;
+        this.formatted = true;
+    }
+
+    /**
+     * Creates an item for a call or jump statement
+     * @param registers register values at the time of the call, as returned by CPUState.getStdState()
+     * @param formatter the formatter to use. It is shared by items, hence used in a synchronized block
+     */
+    public CallStackItem(int address, int sp, Instruction instruction, long rawBinary, int numBytes, boolean is16bitIsa, int[] registers, RawStatementFormatter formatter) {
         this.address = address;
         this.sp = sp;
         this.instruction = instruction;
-        this.statementString = statementString;
-        this.targetAddress = targetAddress;
+        this.rawBinary = rawBinary;
+        this.numBytes = numBytes;
+        this.is16bitIsa = is16bitIsa;
+        this.registers = registers;
+        this.formatter = formatter;
+    }
+
+    /**
+     * Creates an item for an interrupt
+     */
+    public CallStackItem(int address, int sp, InterruptRequest interruptRequest) {
+        this.address = address;
+        this.sp = sp;
+        this.interruptRequest = interruptRequest;
     }
 
     public int getAddress() {
@@ -31,11 +75,37 @@ public class CallStackItem {
     }
 
     public String getTargetAddress() {
+        format();
         return targetAddress;
     }
 
+    private void format() {
+        if (formatted) {
+            return;
+        }
+        if (interruptRequest != null) {
+            statementString = interruptRequest.toString();
+            targetAddress = "";
+        }
+        else {
+            synchronized (formatter) {
+                formatter.setStdState(registers);
+                try {
+                    Statement statement = formatter.format(address, numBytes, is16bitIsa, rawBinary);
+                    statementString = statement.toString(formatter.getOutputOptions());
+                    targetAddress = statement.getCommentString();
+                    if (StringUtils.isBlank(targetAddress)) targetAddress = statement.getOperandString();
+                } catch (DisassemblyException e) {
+                    statementString = "<cannot disassemble: " + e.getMessage() + ">";
+                }
+            }
+        }
+        formatted = true;
+    }
+
     @Override
     public String toString() {
+        format();
         return "0x" + Format.asHex(address,8) + " " + (statementString ==null?"": statementString);
     }
     
@@ -0,0 +1,49 @@
+package com.nikonhacker.emu;
+
+/**
+ * An action to perform at a given emulated time of a chip, see MasterClock.schedule().
+ * Devices whose state only changes at predictable times use events instead of being clocked at each of their ticks.
+ * Like Clockables, events are processed by the MasterClock thread, and their chip time only advances while the
+ * emulator of the chip runs.
+ */
+public abstract class ClockEvent implements Comparable<ClockEvent> {
+    private final int chip;
+
+    // The fields below are managed by the MasterClock
+
+    /** Time at which the event must be processed, in chip time */
+    long chipTimePs;
+    /** Same in MasterClock time, or Long.MAX_VALUE while the chip is paused */
+    long timePs;
+    /** Order of scheduling, so that simultaneous events are processed in that order */
+    long sequence;
+    boolean scheduled;
+
+    public ClockEvent(int chip) {
+        this.chip = chip;
+    }
+
+    /**
+     * @return Constants.CHIP_FR or Constants.CHIP_TX
+     */
+    public int getChip() {
+        return chip;
+    }
+
+    public boolean isScheduled() {
+        return scheduled;
+    }
+
+    /**
+     * Called by the MasterClock once the scheduled time is reached. The event can be scheduled again from there
+     */
+    public abstract void onEvent() throws Exception;
+
+    @Override
+    public int compareTo(ClockEvent other) {
+        if (timePs != other.timePs) {
+            return timePs < other.timePs ? -1 : 1;
+        }
+        return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+}
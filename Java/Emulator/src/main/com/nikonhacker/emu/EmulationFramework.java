@@ -8,6 +8,7 @@ import com.nikonhacker.disassembly.*;
 import com.nikonhacker.disassembly.fr.FrCPUState;
 import com.nikonhacker.disassembly.tx.NullRegister32;
 import com.nikonhacker.disassembly.tx.TxCPUState;
+import com.nikonhacker.emu.journal.InputJournal;
 import com.nikonhacker.emu.memory.DebuggableMemory;
 import com.nikonhacker.emu.memory.listener.fr.*;
 import com.nikonhacker.emu.memory.listener.tx.TxIoListener;
@@ -59,6 +60,7 @@ import com.nikonhacker.emu.peripherials.serialInterface.SerialInterface;
 import com.nikonhacker.emu.peripherials.serialInterface.eeprom.St95040;
 import com.nikonhacker.emu.peripherials.serialInterface.eeprom.St950x0;
 import com.nikonhacker.emu.peripherials.serialInterface.fMount.FMountCircuit;
+import com.nikonhacker.emu.peripherials.serialInterface.fMount.LensPrototype;
 import com.nikonhacker.emu.peripherials.serialInterface.flashCharger.Nhhs2;
 import com.nikonhacker.emu.peripherials.serialInterface.fr.FrSerialInterface;
 import com.nikonhacker.emu.peripherials.serialInterface.imageSensor.Imx071;
@@ -180,6 +182,12 @@ public class EmulationFramework {
 
             // Remove old emulator from the list of clockable devices
             masterClock.remove(emulator[chip]);
+            // and the events of the old devices
+            masterClock.cancelAll(chip);
+            // and their threads
+            if (platform[chip] != null) {
+                platform[chip].dispose();
+            }
 
             // Scratch any analysis that was previously done
             codeStructure[chip] = null;
@@ -252,7 +260,7 @@ public class EmulationFramework {
                 }
 
                 for (int i = 0; i<jpegCodec.length; i++) {
-                    jpegCodec[i] = new FrJpegCodec(i,platform[chip]);
+                    jpegCodec[i] = new FrJpegCodec(i,platform[chip],emulator[chip]);
                 }
 
                 for (int i = 0; i<resolutionConverter.length; i++) {
@@ -372,7 +380,7 @@ public class EmulationFramework {
 
                 connectTxSc1SerialDevice(serialInterfaces[1], fMountCircuit, ioPorts);
 
-                AdValueProvider provider = new AdPrefsValueProvider(prefs, Constants.CHIP_TX);
+                AdValueProvider provider = new AdPrefsValueProvider(prefs, Constants.CHIP_TX, masterClock);
                 adConverter = new TxAdConverter(emulator[Constants.CHIP_TX], (TxInterruptController) interruptController, provider);
 
                 frontPanel = new D5100FrontPanel(prefs);
@@ -753,11 +761,19 @@ public class EmulationFramework {
         //System.err.println("Preparing emulation of " + Constants.CHIP_LABEL[chip]);
         isEmulatorPlaying[chip] = true;
         emulator[chip].setOutputOptions(prefs.getOutputOptions(chip));
+        emulator[chip].setIdleLoopFastForward(prefs.isIdleLoopFastForward(chip));
         masterClock.enableClockable(emulator[chip]);
         // TODO what's the use of this here ?
         platform[chip].getCpuState().setAllRegistersDefined();
     }
 
+    /**
+     * Marks the given chip as stopped when its clock did not stop because of a break, e.g. after MasterClock.runUntil()
+     */
+    public void setEmulatorStopped(int chip) {
+        isEmulatorPlaying[chip] = false;
+    }
+
     public void playOneFunction(int chip, int address, boolean debugMode) {
         if (chip == Constants.CHIP_TX) {
             System.err.println("Not implemented for TX");
@@ -810,12 +826,66 @@ public class EmulationFramework {
         }
     }
 
+    /**
+     * Applies an input coming from outside the emulation (e.g. from the UI).
+     * If an input journal is recording, the input is only applied at the next step of the MasterClock.
+     * @return false if the input was rejected (e.g. interrupt already requested). Inputs applied later are not rejected
+     */
+    public boolean submitInput(InputJournal.Input input) {
+        InputJournal inputJournal = masterClock.getInputJournal();
+        if (inputJournal == null) {
+            return applyInput(input);
+        }
+        inputJournal.submit(input);
+        return true;
+    }
+
+    /**
+     * Applies an input immediately. Normally only called by submitInput() or by the input journal
+     */
+    public boolean applyInput(InputJournal.Input input) {
+        Platform inputPlatform = platform[input.getChip()];
+        switch (input.getType()) {
+            case BUTTON:
+                inputPlatform.getFrontPanel().getButtons().get(input.getKey()).setState(input.getValue());
+                return true;
+            case LENS:
+                for (SerialDevice serialDevice : inputPlatform.getSerialDevices()) {
+                    if (serialDevice instanceof FMountCircuit) {
+                        FMountCircuit fMountCircuit = (FMountCircuit) serialDevice;
+                        fMountCircuit.setLensPlugin(input.getValue() != 0 ? new LensPrototype(fMountCircuit, masterClock) : null);
+                    }
+                }
+                return true;
+            case INTERRUPT:
+                return inputPlatform.getInterruptController().request(input.getValue());
+            case WITHDRAW_INTERRUPT:
+                inputPlatform.getInterruptController().removeRequest(input.getValue());
+                return true;
+            default:
+                throw new RuntimeException("Input " + input.getType() + " cannot be applied");
+        }
+    }
+
 
     public void dispose() {
         if (eeprom != null) {
             prefs.setLastEepromContents(eeprom.getMemory());
         }
         masterClock.setupClockableCallbackHandlers(null);
+        disposePlatforms();
+    }
+
+    /**
+     * Releases the threads held by the platforms, without saving anything to the prefs. For frameworks that are
+     * replaced or thrown away. The framework must not be run afterwards
+     */
+    public void disposePlatforms() {
+        for (int chip = 0; chip < 2; chip++) {
+            if (platform[chip] != null) {
+                platform[chip].dispose();
+            }
+        }
     }
 
 
@@ -825,6 +895,7 @@ public class EmulationFramework {
         // Don't store memory via XStream
         xStream.omitField(Platform.class, "memory");
         xStream.omitField(StatementContext.class, "memory");
+        xStream.omitField(StatementContext.class, "callStack");
 
         // Don't store disassembled code via XStream (Java heap overflow)
         xStream.omitField(EmulationFramework.class, "codeStructure");
@@ -833,6 +904,7 @@ public class EmulationFramework {
         xStream.omitField(EmulationFramework.class, "prefs");
         xStream.omitField(TxDmaController.class, "prefs");
         xStream.omitField(AdPrefsValueProvider.class, "prefs");
+        xStream.omitField(AdPrefsValueProvider.class, "masterClock");
         xStream.omitField(FrontPanel.class, "prefs");
         xStream.omitField(D5100FrontPanel.class, "prefs");
 
@@ -896,11 +968,8 @@ public class EmulationFramework {
             else {
                 framework = (EmulationFramework) XStreamUtils.load(zipInputStream, getFrameworkXStream());
 
-                // clean code structure
-                framework.initCodeStructure();
-                /* Relink prefs */
-                framework.setPrefs(prefs);
-                /* Restore and relink memory */
+                /* Restore memory */
+                DebuggableMemory[] memories = new DebuggableMemory[2];
                 for (int chip = 0; chip < 2; chip++) {
                     // Read memory
                     entry = zipInputStream.getNextEntry();
@@ -909,29 +978,12 @@ public class EmulationFramework {
                         throw new IOException("Error loading state file\nExpected a file called " + expectedEntry + " but got " + entry.getName());
                     }
                     else {
-                        // Restore memory to platform
-                        final DebuggableMemory memory = new DebuggableMemory(prefs.isLogMemoryMessages(chip));
-                        framework.getPlatform(chip).setMemory(memory);
-                        memory.loadAllFromStream(zipInputStream);
-                        // Also update its reference in framework
-                        framework.getEmulator(chip).context.memory = memory;
-                        framework.setupMemoryListeners(chip, memory);
+                        memories[chip] = new DebuggableMemory(prefs.isLogMemoryMessages(chip));
+                        memories[chip].loadAllFromStream(zipInputStream);
                     }
                 }
 
-                ((TxDmaController)framework.getPlatform(Constants.CHIP_TX).getDmaController()).setPrefs(prefs);
-                // TODO add FR DMA when implemented
-                if (framework.getPlatform(Constants.CHIP_FR).getDmaController()!=null) {
-                    System.err.println("!!! add code for load FR DMA");
-                }
-                for (AdUnit adUnit : framework.getPlatform(Constants.CHIP_TX).getAdConverter().getUnits()) {
-                    for (int i = 0; i < adUnit.getNumChannels(); i++) {
-                        final AdValueProvider provider = adUnit.getProvider(i);
-                        if (provider instanceof AdPrefsValueProvider)
-                            ((AdPrefsValueProvider)provider).setPrefs(prefs);
-                    }
-                }
-                // We do not want that loaded front panel writes to Prefs, so do not set
+                framework.relinkLoadedState(prefs, memories);
             }
         } finally {
             if (zipInputStream != null) zipInputStream.close();
@@ -941,4 +993,44 @@ public class EmulationFramework {
         return framework;
     }
 
+    /**
+     * Relinks a framework deserialized by XStream (see getFrameworkXStream()) with everything that is not serialized
+     * @param prefs the prefs to use from now on
+     * @param memories the already filled memory of each chip. Ignored for chips without platform
+     */
+    public void relinkLoadedState(Prefs prefs, DebuggableMemory[] memories) {
+        // clean code structure
+        initCodeStructure();
+        /* Relink prefs */
+        setPrefs(prefs);
+        /* Relink memory */
+        for (int chip = 0; chip < 2; chip++) {
+            if (platform[chip] != null) {
+                // Restore memory to platform
+                platform[chip].setMemory(memories[chip]);
+                // Also update its reference in framework
+                emulator[chip].context.memory = memories[chip];
+                setupMemoryListeners(chip, memories[chip]);
+            }
+        }
+
+        if (platform[Constants.CHIP_TX] != null) {
+            ((TxDmaController)platform[Constants.CHIP_TX].getDmaController()).setPrefs(prefs);
+            for (AdUnit adUnit : platform[Constants.CHIP_TX].getAdConverter().getUnits()) {
+                for (int i = 0; i < adUnit.getNumChannels(); i++) {
+                    final AdValueProvider provider = adUnit.getProvider(i);
+                    if (provider instanceof AdPrefsValueProvider) {
+                        ((AdPrefsValueProvider)provider).setPrefs(prefs);
+                        ((AdPrefsValueProvider)provider).setMasterClock(masterClock);
+                    }
+                }
+            }
+        }
+        // TODO add FR DMA when implemented
+        if (platform[Constants.CHIP_FR] != null && platform[Constants.CHIP_FR].getDmaController()!=null) {
+            System.err.println("!!! add code for load FR DMA");
+        }
+        // We do not want that loaded front panel writes to Prefs, so do not set
+    }
+
 }
@@ -3,7 +3,12 @@ package com.nikonhacker.emu;
 import com.nikonhacker.Constants;
 import com.nikonhacker.Format;
 import com.nikonhacker.disassembly.*;
+import com.nikonhacker.emu.coverage.CoverageMap;
+import com.nikonhacker.emu.interrupt.InterruptRequest;
+import com.nikonhacker.emu.journal.InputJournal;
 import com.nikonhacker.emu.memory.DebuggableMemory;
+import com.nikonhacker.emu.profiler.ExecutionProfiler;
+import com.nikonhacker.emu.trace.BinaryTraceRecorder;
 import com.nikonhacker.emu.peripherials.interruptController.InterruptController;
 import com.nikonhacker.emu.trigger.BreakTrigger;
 import com.nikonhacker.emu.trigger.condition.AndCondition;
@@ -14,9 +19,12 @@ import com.nikonhacker.gui.component.disassembly.DisassemblyLogger;
 import java.io.PrintWriter;
 import java.util.*;
 
-public abstract class Emulator implements Clockable {
+public abstract class Emulator implements FastForwardable {
     protected long                       totalCycles;
     protected DisassemblyLogger          logger;
+    protected transient BinaryTraceRecorder traceRecorder;
+    protected transient ExecutionProfiler profiler;
+    protected transient CoverageMap      coverage;
     protected PrintWriter                breakLogPrintWriter;
     protected       int                  sleepIntervalMs = 0;
     protected final List<BreakCondition> breakConditions = new ArrayList<BreakCondition>();
@@ -25,6 +33,13 @@ public abstract class Emulator implements Clockable {
     protected       Set<OutputOption>    outputOptions   = EnumSet.noneOf(OutputOption.class);
     protected       boolean              exitSleepLoop   = false;
 
+    /** If true, instructions of idle loops are skipped and the MasterClock is allowed to fast-forward */
+    protected boolean idleLoopFastForward;
+    private transient IdleLoopDetector idleLoopDetector;
+    private transient boolean idle;
+    private transient long idleStoreCount;
+    private transient long idleWakeUpCount;
+
     StatementContext context = new StatementContext();
 
     protected Platform platform;
@@ -49,6 +64,38 @@ public abstract class Emulator implements Clockable {
         this.logger = logger;
     }
 
+    /**
+     * Provide a recorder to write executed instructions to, in binary form
+     * @param traceRecorder
+     */
+    public void setTraceRecorder(BinaryTraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * Provide a profiler to report executed instructions, interrupts and idle cycles to
+     * @param profiler
+     */
+    public void setProfiler(ExecutionProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public ExecutionProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Provide a map to mark executed instructions in
+     * @param coverage
+     */
+    public void setCoverage(CoverageMap coverage) {
+        this.coverage = coverage;
+    }
+
+    public CoverageMap getCoverage() {
+        return coverage;
+    }
+
     /**
      * Provide a PrintWriter to send break triggers log to
      * @param breakLogPrintWriter
@@ -61,7 +108,7 @@ public abstract class Emulator implements Clockable {
      * Provide a call stack to write stack entries to it
      * @param callStack
      */
-    public void setCallStack(Deque<CallStackItem> callStack) {
+    public void setCallStack(CallStack callStack) {
         context.callStack = callStack;
     }
 
@@ -77,6 +124,15 @@ public abstract class Emulator implements Clockable {
         this.sleepIntervalMs = sleepIntervalMs;
     }
 
+    /**
+     * Enables or disables idle loop detection. When disabled, all instructions are executed, which is required
+     * to get exact traces
+     * @param idleLoopFastForward
+     */
+    public void setIdleLoopFastForward(boolean idleLoopFastForward) {
+        this.idleLoopFastForward = idleLoopFastForward;
+    }
+
     public final void clearBreakConditions() {
         synchronized (breakConditions) {
             breakConditions.clear();
@@ -85,6 +141,17 @@ public abstract class Emulator implements Clockable {
         }
     }
 
+    /**
+     * @return a copy of all break conditions
+     */
+    public final List<BreakCondition> getBreakConditions() {
+        synchronized (breakConditions) {
+            List<BreakCondition> conditions = new ArrayList<BreakCondition>(pcBreakConditions.values());
+            conditions.addAll(breakConditions);
+            return conditions;
+        }
+    }
+
     public final void addBreakCondition(BreakCondition breakCondition) {
         boolean isPCCondition = false;
         int pc = 0;
@@ -151,6 +218,87 @@ public abstract class Emulator implements Clockable {
      */
     public abstract BreakCondition onClockTick() throws EmulationException ;
 
+    /**
+     * An idle CPU will not do anything before the next interrupt, so it accepts to skip any number of ticks,
+     * unless someone is counting its cycles
+     */
+    @Override
+    public long getSkippableTicks() {
+        return (idle && cycleCounterListeners.isEmpty()) ? Long.MAX_VALUE : 0;
+    }
+
+    @Override
+    public void skipTicks(long ticks) {
+        totalCycles += ticks;
+        if (profiler != null) {
+            profiler.onIdleCycles(ticks);
+        }
+    }
+
+    /**
+     * Must be called before each instruction that is not in a delay slot.
+     * Idle loops are only detected when nothing requires each instruction to be executed (trace logging, break
+     * conditions, slowed down emulation). The CPU stays idle until an interrupt it accepts is requested, memory is
+     * written, or the MasterClock wakes it up after a fast-forward or an event, in which case it runs the loop again
+     * to check whether the values it polls have changed.
+     * @return true if the CPU is idle, meaning the instruction need not be executed
+     */
+    protected final boolean isIdle() {
+        boolean detectionAllowed = idleLoopFastForward && !breakConditionsPresent && sleepIntervalMs == 0
+                && (logger == null || !logger.isLogging()) && traceRecorder == null;
+        if (idle) {
+            if (!detectionAllowed || platform.memory.getStoreCount() != idleStoreCount
+                    || platform.getMasterClock().getIdleWakeUpCount() != idleWakeUpCount || hasAcceptedInterruptRequest()) {
+                idle = false;
+                idleLoopDetector.reset();
+            }
+        }
+        else if (detectionAllowed) {
+            if (idleLoopDetector == null) {
+                idleLoopDetector = new IdleLoopDetector();
+            }
+            if (idleLoopDetector.isIdleLoop(platform)) {
+                idle = true;
+                idleStoreCount = platform.memory.getStoreCount();
+                idleWakeUpCount = platform.getMasterClock().getIdleWakeUpCount();
+                platform.getMasterClock().requestFastForward();
+            }
+        }
+        return idle;
+    }
+
+    private boolean hasAcceptedInterruptRequest() {
+        if (platform.interruptController.hasPendingRequests()) {
+            InterruptRequest interruptRequest = platform.interruptController.getNextRequest();
+            return interruptRequest != null && platform.cpuState.accepts(interruptRequest);
+        }
+        return false;
+    }
+
+    /**
+     * Counts one cycle of an idle CPU, without executing anything
+     */
+    protected final void idleTick() {
+        notifyCycleCounterListeners(1);
+        totalCycles++;
+        if (profiler != null) {
+            profiler.onIdleCycles(1);
+        }
+    }
+
+    protected final void notifyCycleCounterListeners(int cycleIncrement) {
+        int cycleListenerNumber = 0;
+        while (cycleListenerNumber < cycleCounterListeners.size()) {
+            CycleCounterListener cycleCounterListener = cycleCounterListeners.get(cycleListenerNumber);
+            if (cycleCounterListener.onCycleCountChange(totalCycles, cycleIncrement)) {
+                cycleListenerNumber++;
+            }
+            else {
+                cycleCounterListeners.remove(cycleCounterListener);
+            }
+        }
+    }
+
     public void addCycleCounterListener(CycleCounterListener cycleCounterListener) {
         synchronized (cycleCounterListeners) {
             if (!cycleCounterListeners.contains(cycleCounterListener)) {
@@ -177,7 +325,7 @@ public abstract class Emulator implements Clockable {
     }
 
     protected void logIfRequested(DisassemblyLogger logger) throws DisassemblyException {
-        if (logger != null && logger.mustLog(platform.cpuState.pc)) {
+        if (logger != null && logger.isLogging() && logger.mustLog(platform.cpuState.pc)) {
             StringBuilder msg = new StringBuilder();
             if (logger.isIncludeTimestamp()) {
                 msg.append(platform.getMasterClock().getFormatedTotalElapsedTimeMs()).append(" ");
@@ -232,14 +380,28 @@ public abstract class Emulator implements Clockable {
         BreakTrigger trigger = breakCondition.getBreakTrigger();
         if (trigger != null) {
             if (trigger.mustBeLogged() && breakLogPrintWriter != null) {
-                trigger.log(breakLogPrintWriter, platform, context.callStack);
+                CallStack callStack = context.callStack;
+                trigger.log(breakLogPrintWriter, platform, callStack == null ? null : callStack.snapshot());
             }
-            if (trigger.getInterruptToRequest() != null) {
-                platform.interruptController.request(trigger.getInterruptToRequest());
+            InputJournal inputJournal = platform.getMasterClock().getInputJournal();
+            if (inputJournal == null) {
+                if (trigger.getInterruptToRequest() != null) {
+                    platform.interruptController.request(trigger.getInterruptToRequest());
+                }
+                if (trigger.getInterruptToWithdraw() != null) {
+                    platform.interruptController.removeRequest(trigger.getInterruptToWithdraw());
+                }
             }
-            if (trigger.getInterruptToWithdraw() != null) {
-                platform.interruptController.removeRequest(trigger.getInterruptToWithdraw());
+            else if (!inputJournal.isReplaying()) {
+                // Applied by the journal at the next step, so that replay can apply them at exactly the same time
+                if (trigger.getInterruptToRequest() != null) {
+                    inputJournal.submit(new InputJournal.Input(InputJournal.InputType.INTERRUPT, getChip(), null, trigger.getInterruptToRequest()));
+                }
+                if (trigger.getInterruptToWithdraw() != null) {
+                    inputJournal.submit(new InputJournal.Input(InputJournal.InputType.WITHDRAW_INTERRUPT, getChip(), null, trigger.getInterruptToWithdraw()));
+                }
             }
+            // else the journal replays them
             platform.cpuState.applyRegisterChanges(trigger.getNewCpuStateValues(), trigger.getNewCpuStateFlags());
             if (trigger.getMustStartLogging() && logger != null) {
                 logger.setLogging(true);
@@ -0,0 +1,20 @@
+package com.nikonhacker.emu;
+
+/**
+ * A Clockable whose ticks can be skipped in bulk by the MasterClock when nothing happens in between,
+ * e.g. while the CPUs are spinning in idle loops waiting for the next timer interrupt
+ */
+public interface FastForwardable extends Clockable {
+
+    /**
+     * @return the number of upcoming ticks that will not cause any event (interrupt request, transfer, state change
+     * visible to the CPU...), 0 if the next tick may cause one, or Long.MAX_VALUE if no event is expected
+     */
+    public long getSkippableTicks();
+
+    /**
+     * Advances the state of this device as if onClockTick() had been called the given number of times
+     * @param ticks a number of ticks not exceeding the last value returned by getSkippableTicks()
+     */
+    public void skipTicks(long ticks);
+}
@@ -2,9 +2,12 @@ package com.nikonhacker.emu;
 
 import com.nikonhacker.Constants;
 import com.nikonhacker.Format;
+import com.nikonhacker.disassembly.DisassemblyException;
+import com.nikonhacker.disassembly.Instruction;
 import com.nikonhacker.disassembly.OutputOption;
 import com.nikonhacker.disassembly.ParsingException;
 import com.nikonhacker.disassembly.fr.FrCPUState;
+import com.nikonhacker.disassembly.fr.FrInstruction;
 import com.nikonhacker.disassembly.fr.FrInstructionSet;
 import com.nikonhacker.disassembly.fr.FrStatement;
 import com.nikonhacker.emu.interrupt.fr.FrInterruptRequest;
@@ -30,6 +33,9 @@ public class FrEmulator extends Emulator {
     private Set<OutputOption> lastOutputOptions;
     private boolean lastOutputOptionsValid = false;
 
+    /** Instructions as displayed with the current output options. Only used for logging: decoding uses the execution map */
+    private transient FrInstruction[] displayInstructionMap;
+
     public FrEmulator(Platform platform) {
         super(platform);
         statement = new FrStatement();
@@ -43,12 +49,30 @@ public class FrEmulator extends Emulator {
             lastOutputOptionsValid = true;
 
             super.setOutputOptions(outputOptions);
+            displayInstructionMap = FrInstructionSet.getInstructionMap(outputOptions);
+            // Views other than the emulator still use the shared map
             FrInstructionSet.init(outputOptions);
             FrStatement.initFormatChars(outputOptions);
             FrCPUState.initRegisterLabels(outputOptions);
         }
     }
 
+    /**
+     * Logs the instruction as it would appear in the disassembly, then restores the one being executed
+     */
+    @Override
+    protected void logIfRequested(DisassemblyLogger logger) throws DisassemblyException {
+        if (logger != null && logger.isLogging()) {
+            if (displayInstructionMap == null) {
+                displayInstructionMap = FrInstructionSet.getInstructionMap(outputOptions);
+            }
+            Instruction executedInstruction = statement.getInstruction();
+            statement.setInstruction(displayInstructionMap[((FrStatement)statement).data[0]]);
+            super.logIfRequested(logger);
+            statement.setInstruction(executedInstruction);
+        }
+    }
+
     @Override
     public int getChip() {
         return Constants.CHIP_FR;
@@ -73,6 +97,13 @@ public class FrEmulator extends Emulator {
             return null;
         }
 
+        // Do not execute anything while the CPU is spinning in an idle loop
+        if (context.nextPc == null && isIdle()) {
+            context.cycleIncrement = 1;
+            idleTick();
+            return null;
+        }
+
         try {
             statement.reset();
 
@@ -80,29 +111,32 @@ public class FrEmulator extends Emulator {
             ((FrStatement)statement).getNextStatement(platform.memory, platform.cpuState.pc);
 
             // DECODE
-            statement.setInstruction(FrInstructionSet.instructionMap[((FrStatement)statement).data[0]]);
+            statement.setInstruction(FrInstructionSet.getExecutionInstruction(((FrStatement)statement).data[0]));
             ((FrStatement)statement).decodeOperands(platform.cpuState.pc, platform.memory);
 
             // LOG
             logIfRequested(logger);
+            if (traceRecorder != null) {
+                traceRecorder.recordInstruction(platform.getMasterClock().getTotalElapsedTimePs(), platform.cpuState, statement);
+            }
+
+            int pc = platform.cpuState.pc;
 
             // ACTUAL INSTRUCTION EXECUTION
             statement.getInstruction().getSimulationCode().simulate(statement, context);
 
             // Notify CPU cycle listeners
-            int cycleListenerNumber = 0;
-            while (cycleListenerNumber < cycleCounterListeners.size()) {
-                CycleCounterListener cycleCounterListener = cycleCounterListeners.get(cycleListenerNumber);
-                if (cycleCounterListener.onCycleCountChange(totalCycles, context.cycleIncrement)) {
-                    cycleListenerNumber++;
-                }
-                else {
-                    cycleCounterListeners.remove(cycleCounterListener);
-                }
-            }
+            notifyCycleCounterListeners(context.cycleIncrement);
 
             totalCycles += context.cycleIncrement;
 
+            if (profiler != null) {
+                profiler.onInstruction(pc, statement.getInstruction(), context.cycleIncrement);
+            }
+            if (coverage != null) {
+                coverage.add(pc, statement.getNumBytes());
+            }
+
             /* Delay slot processing */
             if (context.nextPc != null) {
                 if (context.delaySlotDone) {
@@ -133,7 +167,13 @@ public class FrEmulator extends Emulator {
                                     printer2.indent();
                                 }
                             }
+                            if (traceRecorder != null) {
+                                traceRecorder.recordInterrupt(platform.getMasterClock().getTotalElapsedTimePs(), interruptRequest);
+                            }
                             platform.interruptController.removeEdgeTriggeredRequest(interruptRequest);
+                            if (profiler != null) {
+                                profiler.onInterrupt(interruptRequest.getInterruptNumber());
+                            }
                             ((FrInterruptController)platform.interruptController).processInterrupt(interruptRequest.getInterruptNumber(), platform.cpuState.pc, context);
 
                             ((FrCPUState)platform.cpuState).setILM(interruptRequest.getICR(), false);
@@ -0,0 +1,114 @@
+package com.nikonhacker.emu;
+
+import com.nikonhacker.Prefs;
+import com.nikonhacker.disassembly.CodeStructure;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+import com.nikonhacker.emu.memory.MemorySnapshot;
+import com.thoughtworks.xstream.XStream;
+
+import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * In-memory state of a stopped EmulationFramework, from which any number of independent frameworks can be restored.
+ *
+ * The framework is serialized the same way as a saved state (peripherals, CPUs, clock), but compressed in memory,
+ * and memories are captured as copy-on-write MemorySnapshots instead of being copied: the original framework and all
+ * frameworks restored from the snapshot share the pages that were not written since, and each one copies a page
+ * before its first write. Restored frameworks have their own memories and peripherals, so they can run concurrently
+ * with each other and with the original one.
+ */
+public class FrameworkSnapshot {
+    private static XStream xStream;
+
+    private final long             timePs;
+    private final byte[]           frameworkState;
+    private final MemorySnapshot[] memorySnapshots = new MemorySnapshot[2];
+    private final CodeStructure[]  codeStructures  = new CodeStructure[2];
+
+    /**
+     * Captures the state of the given framework. Its MasterClock must not be running
+     */
+    public FrameworkSnapshot(EmulationFramework framework) {
+        timePs = framework.getMasterClock().getTotalElapsedTimePs();
+        frameworkState = serialize(framework);
+        for (int chip = 0; chip < 2; chip++) {
+            if (framework.getPlatform(chip) != null) {
+                memorySnapshots[chip] = framework.getPlatform(chip).getMemory().takeSnapshot();
+            }
+            codeStructures[chip] = framework.getCodeStructure(chip);
+        }
+    }
+
+    public long getTimePs() {
+        return timePs;
+    }
+
+    /**
+     * @return the size of the serialized framework, excluding memory, in bytes
+     */
+    public int getStateSize() {
+        return frameworkState.length;
+    }
+
+    /**
+     * @return a new framework in the state of this snapshot, sharing its code structures (read only) with the
+     * original framework. Callbacks and input journal are not set
+     */
+    public EmulationFramework restore(Prefs prefs) {
+        EmulationFramework restored;
+        Inflater inflater = new Inflater();
+        try (Reader reader = new InputStreamReader(new InflaterInputStream(new ByteArrayInputStream(frameworkState), inflater), "UTF-8")) {
+            restored = (EmulationFramework) getXStream().fromXML(reader);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            inflater.end();
+        }
+        DebuggableMemory[] memories = new DebuggableMemory[2];
+        for (int chip = 0; chip < 2; chip++) {
+            if (memorySnapshots[chip] != null) {
+                memories[chip] = new DebuggableMemory(prefs.isLogMemoryMessages(chip));
+                memories[chip].restoreSnapshot(memorySnapshots[chip]);
+            }
+        }
+        restored.relinkLoadedState(prefs, memories);
+        for (int chip = 0; chip < 2; chip++) {
+            restored.setCodeStructure(chip, codeStructures[chip]);
+        }
+        return restored;
+    }
+
+    private static byte[] serialize(EmulationFramework framework) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (Writer writer = new OutputStreamWriter(new DeflaterOutputStream(bytes, deflater), "UTF-8")) {
+            getXStream().toXML(framework, writer);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return an XStream shared by all snapshots, as XStream is thread safe once configured
+     */
+    private static synchronized XStream getXStream() {
+        if (xStream == null) {
+            xStream = EmulationFramework.getFrameworkXStream();
+            // Outputs of the UI, relinked when frames are reopened
+            xStream.omitField(Emulator.class, "logger");
+            xStream.omitField(Emulator.class, "breakLogPrintWriter");
+        }
+        return xStream;
+    }
+}
@@ -0,0 +1,190 @@
+package com.nikonhacker.emu;
+
+import com.nikonhacker.Constants;
+import com.nikonhacker.Prefs;
+import com.nikonhacker.disassembly.ParsingException;
+import com.nikonhacker.disassembly.fr.FrCPUState;
+import com.nikonhacker.disassembly.fr.FrInstructionSet;
+import com.nikonhacker.disassembly.fr.FrStatement;
+import com.nikonhacker.disassembly.tx.TxCPUState;
+import com.nikonhacker.disassembly.tx.TxInstructionSet;
+import com.nikonhacker.disassembly.tx.TxStatement;
+import com.nikonhacker.emu.journal.InputJournal;
+import com.nikonhacker.emu.peripherials.programmableTimer.ProgrammableTimer;
+import com.nikonhacker.emu.trigger.condition.BreakCondition;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A camera (FR and/or TX firmware) emulated without user interface.
+ *
+ * Each instance has its own framework, master clock, memories and peripherals, and runs in the thread calling run(),
+ * so that several instances can run concurrently in one JVM.
+ * Decoding and formatting tables are still shared, so all instances must use the same output options, and
+ * initSharedTables() must be called with them before any instance runs.
+ *
+ * A stopped instance can be forked into children starting from its current state (e.g. to run several input journals
+ * from the same boot state). Children share the memory pages of their parent copy-on-write (see FrameworkSnapshot),
+ * so only the pages written after the fork are duplicated, and they can run concurrently.
+ */
+public class HeadlessEmulation {
+    private final Prefs              prefs;
+    private final EmulationFramework framework;
+
+    /** What stopped each chip: a BreakCondition, a message or an Exception. null if still running or not loaded */
+    private final Object[] stopReasons = new Object[2];
+
+    public HeadlessEmulation(Prefs prefs) {
+        this.prefs = prefs;
+        framework = new EmulationFramework(prefs);
+        setupFramework();
+    }
+
+    /**
+     * Creates an emulation resuming from a state saved by the UI. Images are part of the state and must not be loaded
+     */
+    public HeadlessEmulation(Prefs prefs, File stateFile) throws IOException {
+        this.prefs = prefs;
+        framework = EmulationFramework.load(stateFile.getPath(), prefs);
+        setupFramework();
+    }
+
+    /**
+     * Creates an emulation resuming from a snapshot of another one. Images are part of the snapshot and must not be
+     * loaded
+     */
+    public HeadlessEmulation(Prefs prefs, FrameworkSnapshot snapshot) {
+        this.prefs = prefs;
+        framework = snapshot.restore(prefs);
+        setupFramework();
+    }
+
+    private void setupFramework() {
+        framework.setupCallbacks(getCallbackHandler(Constants.CHIP_FR), getCallbackHandler(Constants.CHIP_TX));
+        framework.getMasterClock().setSyncPlay(prefs.isSyncPlay());
+    }
+
+    /**
+     * Initializes the tables shared by all emulators. Must be called before instances start running, as changing
+     * them while emulators run is not thread safe
+     */
+    public static void initSharedTables(Prefs prefs) {
+        FrInstructionSet.init(prefs.getOutputOptions(Constants.CHIP_FR));
+        FrStatement.initFormatChars(prefs.getOutputOptions(Constants.CHIP_FR));
+        FrCPUState.initRegisterLabels(prefs.getOutputOptions(Constants.CHIP_FR));
+        TxInstructionSet.init(prefs.getOutputOptions(Constants.CHIP_TX));
+        TxStatement.initFormatChars(prefs.getOutputOptions(Constants.CHIP_TX));
+        TxCPUState.initRegisterLabels(prefs.getOutputOptions(Constants.CHIP_TX));
+    }
+
+    public EmulationFramework getFramework() {
+        return framework;
+    }
+
+    /**
+     * Loads a firmware image and resets the chip, enabling its timers if requested by prefs
+     */
+    public void loadImage(int chip, File imageFile) {
+        framework.initialize(chip, imageFile);
+        if (prefs.isAutoEnableTimers(chip)) {
+            for (ProgrammableTimer timer : framework.getPlatform(chip).getProgrammableTimers()) {
+                timer.setActive(true);
+            }
+        }
+    }
+
+    /**
+     * Replays the inputs recorded in the given journal during the next runs. Must be called after images are loaded,
+     * or after the state is loaded, as inputs recorded before the current time are skipped
+     */
+    public void replayInputs(File journalFile) throws IOException, ParsingException {
+        framework.getMasterClock().setInputJournal(new InputJournal(framework, InputJournal.load(journalFile)));
+    }
+
+    /**
+     * Runs all loaded chips in the calling thread, until they stop or the given emulated time has elapsed
+     * @param durationPs maximum emulated time, in picoseconds
+     * @param endAddresses for each chip, null or an address at which to stop. May be null
+     * @return true if the duration elapsed, false if all chips stopped before
+     */
+    public boolean run(long durationPs, Integer[] endAddresses) {
+        for (int chip = 0; chip < 2; chip++) {
+            if (framework.isImageLoaded(chip)) {
+                stopReasons[chip] = null;
+                framework.prepareBreakTriggers(chip, EmulationFramework.ExecutionMode.RUN, endAddresses == null ? null : endAddresses[chip]);
+                framework.prepareEmulation(chip);
+            }
+        }
+        MasterClock masterClock = framework.getMasterClock();
+        return masterClock.runUntil(masterClock.getTotalElapsedTimePs() + durationPs);
+    }
+
+    /**
+     * Captures the current state, to create forked emulations from it. Must not be called while running
+     */
+    public FrameworkSnapshot takeSnapshot() {
+        return new FrameworkSnapshot(framework);
+    }
+
+    /**
+     * Creates emulations starting from the current state, using the same prefs. Must not be called while running.
+     * Inputs being replayed by this emulation are not replayed by the children
+     * @param numChildren number of children to create
+     */
+    public List<HeadlessEmulation> fork(int numChildren) {
+        FrameworkSnapshot snapshot = takeSnapshot();
+        List<HeadlessEmulation> children = new ArrayList<>();
+        for (int i = 0; i < numChildren; i++) {
+            children.add(new HeadlessEmulation(prefs, snapshot));
+        }
+        return children;
+    }
+
+    public Object getStopReason(int chip) {
+        return stopReasons[chip];
+    }
+
+    /**
+     * @return a one-line description of the stop reason of the chip
+     */
+    public String getStopReasonText(int chip) {
+        Object reason = stopReasons[chip];
+        if (reason == null) {
+            return "";
+        }
+        if (reason instanceof BreakCondition) {
+            BreakCondition breakCondition = (BreakCondition) reason;
+            return breakCondition.getBreakTrigger() == null ? breakCondition.getClass().getSimpleName() : breakCondition.getBreakTrigger().getName();
+        }
+        if (reason instanceof Exception) {
+            return reason.getClass().getSimpleName() + ": " + ((Exception) reason).getMessage();
+        }
+        return reason.toString();
+    }
+
+    public void dispose() {
+        framework.dispose();
+    }
+
+    private ClockableCallbackHandler getCallbackHandler(final int chip) {
+        return new ClockableCallbackHandler() {
+            @Override
+            public void onNormalExit(Object o) {
+                // Only keep the first reason, others are consequences
+                if (stopReasons[chip] == null) {
+                    stopReasons[chip] = o;
+                }
+            }
+
+            @Override
+            public void onException(Exception e) {
+                if (stopReasons[chip] == null) {
+                    stopReasons[chip] = e;
+                }
+            }
+        };
+    }
+}
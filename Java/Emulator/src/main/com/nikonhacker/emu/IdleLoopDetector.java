@@ -0,0 +1,86 @@
+package com.nikonhacker.emu;
+
+import com.nikonhacker.disassembly.CPUState;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+
+import java.util.Arrays;
+
+/**
+ * Detects a CPU spinning in a tight loop that has no effect other than reading registers or memory,
+ * such as an idle task or a loop polling a status bit.
+ *
+ * A loop start is the target of a short backward jump. If the CPU gets back to it with exactly the same register
+ * values and without any memory write in between, the next iterations will do the same, until an interrupt is
+ * accepted or a peripheral changes the value being polled.
+ * An iteration reading the counter of a running timer is never idle, even if it happens to read the same value:
+ * timers are computed on demand, so the counter advances without any write or event, and fast-forwarding would let
+ * a delay loop see a counter that jumped to the next event (e.g. wrapped), running late by a full period.
+ * As peripheral registers are often served by I/O listeners rather than stored in memory, such a change cannot be
+ * seen here: the Emulator runs the loop again each time the MasterClock fast-forwards or processes an event.
+ */
+public class IdleLoopDetector {
+    /** Maximum length of a backward jump considered as the end of a loop, in bytes */
+    private static final int MAX_LOOP_SIZE = 64;
+    /** Maximum number of instructions in one iteration */
+    private static final int MAX_ITERATION_LENGTH = 32;
+
+    private boolean hasLoopStart;
+    private int     loopStartPc;
+    private int     previousPc;
+    private int     iterationLength;
+    private long    storeCountAtLoopStart;
+    private long    counterReadCountAtLoopStart;
+    private int[]   stateAtLoopStart;
+    private int[]   state;
+
+    /**
+     * Must be called before each instruction that is not in a delay slot
+     * @return true if the instruction about to be executed starts an iteration identical to the previous one
+     */
+    public boolean isIdleLoop(Platform platform) {
+        CPUState cpuState = platform.cpuState;
+        DebuggableMemory memory = platform.memory;
+        int pc = cpuState.pc;
+        boolean idle = false;
+        if (hasLoopStart && pc == loopStartPc) {
+            if (memory.getStoreCount() == storeCountAtLoopStart
+                    && platform.getRunningCounterReadCount() == counterReadCountAtLoopStart) {
+                cpuState.getStdState(state);
+                idle = Arrays.equals(state, stateAtLoopStart);
+            }
+            if (!idle) {
+                startIteration(pc, platform);
+            }
+        }
+        else {
+            int jumpSize = previousPc - pc;
+            if (jumpSize > 0 && jumpSize <= MAX_LOOP_SIZE) {
+                startIteration(pc, platform);
+            }
+            else if (hasLoopStart && ++iterationLength > MAX_ITERATION_LENGTH) {
+                hasLoopStart = false;
+            }
+        }
+        previousPc = pc;
+        return idle;
+    }
+
+    private void startIteration(int pc, Platform platform) {
+        CPUState cpuState = platform.cpuState;
+        int stateSize = cpuState.getNumStdRegisters() + 1;
+        if (state == null || state.length != stateSize) {
+            state = new int[stateSize];
+            stateAtLoopStart = new int[stateSize];
+        }
+        cpuState.getStdState(stateAtLoopStart);
+        storeCountAtLoopStart = platform.memory.getStoreCount();
+        counterReadCountAtLoopStart = platform.getRunningCounterReadCount();
+        loopStartPc = pc;
+        iterationLength = 0;
+        hasLoopStart = true;
+    }
+
+    public void reset() {
+        hasLoopStart = false;
+    }
+}
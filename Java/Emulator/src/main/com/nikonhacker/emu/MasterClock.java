@@ -1,6 +1,8 @@
 package com.nikonhacker.emu;
 
 import com.nikonhacker.Constants;
+import com.nikonhacker.emu.history.ExecutionHistory;
+import com.nikonhacker.emu.journal.InputJournal;
 
 import java.text.DecimalFormat;
 import java.util.*;
@@ -11,6 +13,11 @@ public class MasterClock implements Runnable {
     public static final long PS_PER_MS = 1_000_000_000;
     public static final long PS_PER_SEC = 1_000_000_000_000L;
 
+    /**
+     * Upper limit of a single fast-forward, in case no Clockable expects any event
+     */
+    private static final long MAX_FAST_FORWARD_PS = PS_PER_MS;
+
     private DecimalFormat milliSecondFormatter = new DecimalFormat("0000.000000000");
 
     private ClockableCallbackHandler[] clockableCallbackHandlers;
@@ -21,7 +28,44 @@ public class MasterClock implements Runnable {
 
     private boolean syncPlay = false;
 
-    private boolean running = false;
+    private transient boolean running = false;
+
+    /**
+     * Emulated time at which run() stops, see runUntil()
+     */
+    private long endTimePs = Long.MAX_VALUE;
+
+    /**
+     * Scheduled events, by time (see schedule())
+     */
+    private final PriorityQueue<ClockEvent> events = new PriorityQueue<>();
+
+    /**
+     * Time of the first scheduled event, or Long.MAX_VALUE if none
+     */
+    private long nextEventTimePs = Long.MAX_VALUE;
+
+    private long eventSequence;
+
+    /**
+     * If not null, external inputs are applied (and recorded or replayed) between steps
+     */
+    private transient InputJournal inputJournal;
+
+    /**
+     * If not null, checkpoints are taken periodically and each time the clock starts, to allow reverse execution
+     */
+    private transient ExecutionHistory executionHistory;
+
+    /**
+     * For each chip, the total duration during which it was paused. Chip time is MasterClock time minus that offset
+     */
+    private final long[] chipTimeOffsetPs = new long[2];
+
+    /**
+     * For each chip, the MasterClock time at which it was paused, or -1 if it runs
+     */
+    private final long[] chipPauseTimePs = {-1, -1};
 
     /**
      * The total elapsed time since the start of the MasterClock, in picoseconds (e-12)
@@ -35,6 +79,23 @@ public class MasterClock implements Runnable {
      */
     private long masterClockTickDurationPs;
 
+    /**
+     * The duration of a full execution of the steps, in picoseconds
+     */
+    private long periodDurationPs;
+
+    /**
+     * A flag set by an emulator entering an idle loop, indicating that time could perhaps be fast-forwarded
+     */
+    private boolean fastForwardRequested;
+
+    /**
+     * Incremented each time idle CPUs must check again that they are still idle: after time was fast-forwarded or
+     * events were processed, as a peripheral may have changed a value polled by their loop (e.g. a status register
+     * served by an I/O listener, which is not a memory write)
+     */
+    private transient long idleWakeUpCount;
+
     /**
      * A temp flag to indicate that the computing of intervals based on frequencies must be performed again
      * (due to a change in the list of Clockable, or a frequency change)
@@ -53,6 +114,14 @@ public class MasterClock implements Runnable {
         rescheduleRequested = true;
     }
 
+    public void requestFastForward() {
+        fastForwardRequested = true;
+    }
+
+    public final long getIdleWakeUpCount() {
+        return idleWakeUpCount;
+    }
+
     /**
      * Add a clockable object.
      * @param clockable the object to wake up repeatedly
@@ -154,6 +223,11 @@ public class MasterClock implements Runnable {
                 leastCommonCounterThreshold = intLCM(newThreshold, leastCommonCounterThreshold);
             }
         }
+        for (ClockableEntry entry : entries) {
+            if (!entry.isFrequencyZero) {
+                entry.ticksPerPeriod = leastCommonCounterThreshold / entry.counterThreshold;
+            }
+        }
         // TODO
         // coderat: Problem fixed for serial port transfer time at low baudrates (96 KBps or 9600 Bps) - they are ignored during
         // calculations by setting isPrecise=false
@@ -164,6 +238,7 @@ public class MasterClock implements Runnable {
             System.out.println("WARNING: MasterClock calculations take too long("+ leastCommonCounterThreshold +"), because frequencies are very different. Some timers will be unprecise !!!");
 
         masterClockTickDurationPs = PS_PER_SEC/leastCommonMultipleFrequency;
+        periodDurationPs = leastCommonCounterThreshold * masterClockTickDurationPs;
 
         // DEBUG
 //        System.err.println("MasterClock reconfigured with one tick=" + masterClockTickDurationPs + "ps, with the following entries:");
@@ -218,6 +293,26 @@ public class MasterClock implements Runnable {
         this.syncPlay = syncPlay;
     }
 
+    public InputJournal getInputJournal() {
+        return inputJournal;
+    }
+
+    public void setInputJournal(InputJournal inputJournal) {
+        this.inputJournal = inputJournal;
+    }
+
+    public ExecutionHistory getExecutionHistory() {
+        return executionHistory;
+    }
+
+    public void setExecutionHistory(ExecutionHistory executionHistory) {
+        this.executionHistory = executionHistory;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
     /**
      * This is the normal way to start the MasterClock asynchronously.
      * Does nothing if the clock is not already running.
@@ -229,6 +324,30 @@ public class MasterClock implements Runnable {
         }
     }
 
+    /**
+     * Runs the clock synchronously in the calling thread, until all entries are disabled or the given emulated time
+     * is reached. This allows several independent clocks to be driven by a pool of threads.
+     * @param endTimePs total elapsed time at which to stop, in picoseconds
+     * @return true if the clock stopped because the end time was reached
+     */
+    public boolean runUntil(long endTimePs) {
+        synchronized (this) {
+            if (running) {
+                throw new RuntimeException("Clock is already running");
+            }
+            running = true;
+            this.endTimePs = endTimePs;
+        }
+        try {
+            run();
+        }
+        finally {
+            running = false;
+            this.endTimePs = Long.MAX_VALUE;
+        }
+        return totalElapsedTimePs >= endTimePs;
+    }
+
     /**
      * This is the way to run the clock synchronously. Normally only called internally.
      * Use start() instead to start the clock.
@@ -238,14 +357,29 @@ public class MasterClock implements Runnable {
         List<ClockableEntry> entriesToDisable = new ArrayList<>();
         int stepNumber = 0;
         ClockExecutionStep step;
+        if (executionHistory != null) {
+            // The state may have been changed while the clock was stopped, so replay cannot go past this point
+            executionHistory.takeCheckpoint(true);
+        }
         // Infinite loop
         while (running) {
+            if (executionHistory != null && totalElapsedTimePs >= executionHistory.getNextCheckpointTimePs()) {
+                executionHistory.takeCheckpoint(false);
+            }
             if (rescheduleRequested) {
                 prepareSchedule();
             }
+            if (fastForwardRequested) {
+                fastForwardRequested = fastForward();
+                // Whether time was skipped or other Clockables kept ticking, make idle CPUs run one real iteration
+                idleWakeUpCount++;
+            }
             // Iterate on all steps
             for (stepNumber = 0; stepNumber < steps.size(); stepNumber++) {
                 step = steps.get(stepNumber);
+                if (inputJournal != null && totalElapsedTimePs >= inputJournal.getNextTimePs()) {
+                    inputJournal.applyDueInputs(totalElapsedTimePs);
+                }
                 // For each step, execute all entries that should run at this step
                 for (ClockableEntry currentEntry : step.entriesToRunAtThisStep) {
                     // TODO get rid of the isFrequencyZero by recomputing useful steps at each frequency change
@@ -273,6 +407,13 @@ public class MasterClock implements Runnable {
 
                     }
                 }
+                // Increment elapsed time. This must also be done if the clock stops below, as the step was executed
+                totalElapsedTimePs += step.stepDurationPs;
+
+                if (totalElapsedTimePs >= nextEventTimePs) {
+                    processEvents();
+                }
+
                 // Check if some entries need to be disabled
                 if (!entriesToDisable.isEmpty()) {
                     for (ClockableEntry entryToDisable : entriesToDisable) {
@@ -287,8 +428,11 @@ public class MasterClock implements Runnable {
                         break;
                     }
                 }
-                // Increment elapsed time
-                totalElapsedTimePs += step.stepDurationPs;
+
+                if (totalElapsedTimePs >= endTimePs) {
+                    running = false;
+                    break;
+                }
 
                 if (rescheduleRequested) {
                     // To perform reschedule, we need to exit the loop on steps
@@ -304,6 +448,45 @@ public class MasterClock implements Runnable {
         Collections.rotate(steps, -1 - stepNumber);
     }
 
+    /**
+     * Skips as many full periods as all running Clockables accept, e.g. when CPUs are idle and waiting for a timer.
+     * Skipping whole periods preserves the relative phase of all Clockables.
+     * @return false if fast-forward is pointless until requested again because an emulator is running
+     */
+    private boolean fastForward() {
+        long periodsToSkip = Math.max(1, MAX_FAST_FORWARD_PS / periodDurationPs);
+        // Do not go past the end of runUntil()
+        periodsToSkip = Math.min(periodsToSkip, (endTimePs - totalElapsedTimePs) / periodDurationPs);
+        // Nor skip scheduled events
+        periodsToSkip = Math.min(periodsToSkip, (nextEventTimePs - totalElapsedTimePs) / periodDurationPs);
+        // Nor inputs to replay
+        if (inputJournal != null) {
+            periodsToSkip = Math.min(periodsToSkip, (inputJournal.getNextTimePs() - totalElapsedTimePs) / periodDurationPs);
+        }
+        for (ClockableEntry entry : entries) {
+            if (entry.enabled && !entry.isFrequencyZero) {
+                if (!(entry.clockable instanceof FastForwardable)) {
+                    // This one must see all its ticks
+                    return true;
+                }
+                long skippableTicks = ((FastForwardable) entry.clockable).getSkippableTicks();
+                if (skippableTicks == 0) {
+                    return !(entry.clockable instanceof Emulator);
+                }
+                periodsToSkip = Math.min(periodsToSkip, skippableTicks / entry.ticksPerPeriod);
+            }
+        }
+        if (periodsToSkip > 0) {
+            for (ClockableEntry entry : entries) {
+                if (entry.enabled && !entry.isFrequencyZero) {
+                    ((FastForwardable) entry.clockable).skipTicks(periodsToSkip * entry.ticksPerPeriod);
+                }
+            }
+            totalElapsedTimePs += periodsToSkip * periodDurationPs;
+        }
+        return true;
+    }
+
     public void enableClockable(Clockable clockable) {
         for (ClockableEntry candidateEntry : entries) {
             if (candidateEntry.clockable == clockable) {
@@ -347,6 +530,7 @@ public class MasterClock implements Runnable {
     }
 
     private void setLinkedEntriesEnabled(int chip, boolean enabled) {
+        setChipPaused(chip, !enabled);
         for (ClockableEntry candidateEntry : entries) {
             if ((candidateEntry.enabled != enabled) && (candidateEntry.clockable.getChip() == chip)) {
                 if (!enabled && candidateEntry.clockableCallbackHandlerChip >= 0) {
@@ -370,8 +554,18 @@ public class MasterClock implements Runnable {
         return allEntriesDisabled;
     }
 
-    public void resetTotalElapsedTimePs() {
+    /**
+     * Resets MasterClock time. Chip times, and thus scheduled events, are not affected
+     */
+    public synchronized void resetTotalElapsedTimePs() {
+        for (int chip = 0; chip < chipTimeOffsetPs.length; chip++) {
+            chipTimeOffsetPs[chip] -= totalElapsedTimePs;
+            if (chipPauseTimePs[chip] >= 0) {
+                chipPauseTimePs[chip] -= totalElapsedTimePs;
+            }
+        }
         totalElapsedTimePs = 0;
+        updateEventTimes();
     }
 
 
@@ -391,6 +585,117 @@ public class MasterClock implements Runnable {
         return milliSecondFormatter.format(totalElapsedTimePs/(double)PS_PER_MS) + "ms";
     }
 
+    /**
+     * @return the emulated time of the given chip, which only advances while its emulator runs
+     */
+    public synchronized long getChipTimePs(int chip) {
+        return (chipPauseTimePs[chip] >= 0 ? chipPauseTimePs[chip] : totalElapsedTimePs) - chipTimeOffsetPs[chip];
+    }
+
+    /**
+     * Schedules an event, replacing its previous schedule if any.
+     * Events are processed at the end of the first step reaching their time, so they are late by less than one step.
+     * @param event the event to process
+     * @param chipTimePs the time at which to process it, in time of the event chip (see getChipTimePs())
+     */
+    public synchronized void schedule(ClockEvent event, long chipTimePs) {
+        if (event.scheduled) {
+            events.remove(event);
+        }
+        event.chipTimePs = chipTimePs;
+        event.timePs = toMasterClockTimePs(event.getChip(), chipTimePs);
+        event.sequence = eventSequence++;
+        event.scheduled = true;
+        events.add(event);
+        nextEventTimePs = events.peek().timePs;
+    }
+
+    /**
+     * Cancels an event. Does nothing if the event is not scheduled
+     */
+    public synchronized void cancel(ClockEvent event) {
+        if (event.scheduled) {
+            events.remove(event);
+            event.scheduled = false;
+            nextEventTimePs = events.isEmpty() ? Long.MAX_VALUE : events.peek().timePs;
+        }
+    }
+
+    /**
+     * Cancels all events of the given chip. Called when its platform is replaced
+     */
+    public synchronized void cancelAll(int chip) {
+        List<ClockEvent> scheduledEvents = new ArrayList<>(events);
+        for (ClockEvent event : scheduledEvents) {
+            if (event.getChip() == chip) {
+                cancel(event);
+            }
+        }
+    }
+
+    private void processEvents() {
+        ClockEvent event;
+        while ((event = pollDueEvent()) != null) {
+            idleWakeUpCount++;
+            try {
+                event.onEvent();
+            }
+            catch (Exception e) {
+                // Like a failing Clockable with no callback handler, the device is simply left as is
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return the first event whose time is reached, removed from the queue, or null if none
+     */
+    private synchronized ClockEvent pollDueEvent() {
+        ClockEvent event = events.peek();
+        if (event == null || event.timePs > totalElapsedTimePs) {
+            nextEventTimePs = (event == null) ? Long.MAX_VALUE : event.timePs;
+            return null;
+        }
+        events.poll();
+        event.scheduled = false;
+        nextEventTimePs = events.isEmpty() ? Long.MAX_VALUE : events.peek().timePs;
+        return event;
+    }
+
+    /**
+     * Freezes or resumes the time of a chip, and thus its events. Called when its emulator stops or starts
+     */
+    private synchronized void setChipPaused(int chip, boolean paused) {
+        if (paused == (chipPauseTimePs[chip] >= 0)) {
+            return;
+        }
+        if (paused) {
+            chipPauseTimePs[chip] = totalElapsedTimePs;
+        }
+        else {
+            chipTimeOffsetPs[chip] += totalElapsedTimePs - chipPauseTimePs[chip];
+            chipPauseTimePs[chip] = -1;
+        }
+        updateEventTimes();
+    }
+
+    private long toMasterClockTimePs(int chip, long chipTimePs) {
+        return (chipPauseTimePs[chip] >= 0) ? Long.MAX_VALUE : chipTimePs + chipTimeOffsetPs[chip];
+    }
+
+    /**
+     * Recomputes the MasterClock time of all events after a change of chip time offsets
+     */
+    private void updateEventTimes() {
+        List<ClockEvent> scheduledEvents = new ArrayList<>(events);
+        events.clear();
+        for (ClockEvent event : scheduledEvents) {
+            event.timePs = toMasterClockTimePs(event.getChip(), event.chipTimePs);
+            events.add(event);
+        }
+        nextEventTimePs = events.isEmpty() ? Long.MAX_VALUE : events.peek().timePs;
+    }
+
 
     //
     // Code from http://stackoverflow.com/questions/4201860/how-to-find-gcf-lcm-on-a-set-of-numbers
@@ -455,6 +760,8 @@ public class MasterClock implements Runnable {
         final int clockableCallbackHandlerChip;
         int counterValue     = 0;
         int counterThreshold = 0;
+        /** Number of times this entry runs during a full execution of the steps */
+        int ticksPerPeriod;
         boolean enabled;
         boolean isFrequencyZero;
         boolean isPrecise;
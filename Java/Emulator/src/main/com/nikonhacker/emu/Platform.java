@@ -57,6 +57,12 @@ public class Platform {
 
     private List<SerialDevice> serialDevices;
 
+    /**
+     * Number of reads of a counting timer, see IdleLoopDetector. Plain field: it is updated by the emulator thread,
+     * and an occasional read from another thread (e.g. the UI) only delays idle detection by one iteration
+     */
+    private transient long runningCounterReadCount;
+
 
     public Platform(MasterClock masterClock) {
         this.masterClock = masterClock;
@@ -66,6 +72,17 @@ public class Platform {
         return masterClock;
     }
 
+    /**
+     * Must be called when the counter of a running timer is read, as its value changes without any store or event
+     */
+    public void onRunningCounterRead() {
+        runningCounterReadCount++;
+    }
+
+    public long getRunningCounterReadCount() {
+        return runningCounterReadCount;
+    }
+
     public CPUState getCpuState() {
         return cpuState;
     }
@@ -224,4 +241,18 @@ public class Platform {
     public void setMirrorBox(MirrorBox mirrorBox) {
         this.mirrorBox = mirrorBox;
     }
+
+    /**
+     * Releases the threads held by the devices of this platform. Must be called when it is discarded or replaced,
+     * once it is no longer running
+     */
+    public void dispose() {
+        if (jpegCodec != null) {
+            for (JpegCodec codec : jpegCodec) {
+                if (codec != null) {
+                    codec.dispose();
+                }
+            }
+        }
+    }
 }
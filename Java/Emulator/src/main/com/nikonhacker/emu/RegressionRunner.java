@@ -0,0 +1,290 @@
+package com.nikonhacker.emu;
+
+import com.nikonhacker.Constants;
+import com.nikonhacker.Format;
+import com.nikonhacker.Prefs;
+import com.nikonhacker.disassembly.ParsingException;
+import com.nikonhacker.emu.coverage.CoverageMap;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Runs a suite of emulation scenarios in parallel, each one on its own HeadlessEmulation.
+ *
+ * Each non-blank line of the scenario file that does not start with # describes one scenario:
+ * <pre>name frImage txImage durationMs [fr=address] [tx=address] [eeprom=file] [frcov=file] [txcov=file] [state=file] [journal=file] [from=name]</pre>
+ * where an image can be "-" to leave the chip unloaded, and addresses are optional stop addresses.
+ * frcov and txcov save the instructions executed by each chip as a CoverageMap, to be merged and reported by CoverageTool.
+ * state resumes from a state saved by the UI instead of loading images, and journal replays the inputs recorded by
+ * the UI (see InputJournal) from the reset or from that state.
+ * from resumes from the final state of a scenario described earlier in the file, which then runs only once, however
+ * many scenarios resume from it (e.g. boot the camera once and navigate the menus in many ways). Images must be "-".
+ * Scenarios resuming from the same state share its memory pages copy-on-write, see HeadlessEmulation.fork().
+ * A tab-separated line is printed for each scenario, in file order, with the final state of each chip.
+ */
+public class RegressionRunner {
+    private static final String RESULT_HEADER = "scenario\tresult\temulated_ms\tfr_pc\tfr_cycles\tfr_stop\ttx_pc\ttx_cycles\ttx_stop\twall_ms";
+
+    public static class Scenario {
+        String    name;
+        File[]    images       = new File[2];
+        long      durationPs;
+        Integer[] endAddresses = new Integer[2];
+        File      eepromFile;
+        File[]    coverageFiles = new File[2];
+        File      stateFile;
+        File      journalFile;
+        String    fromName;
+        /** true if other scenarios resume from the final state of this one */
+        boolean   isForked;
+    }
+
+    private static class ScenarioResult {
+        final String            line;
+        /** Final state, if the scenario is forked */
+        final FrameworkSnapshot snapshot;
+
+        ScenarioResult(String line, FrameworkSnapshot snapshot) {
+            this.line = line;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage : " + RegressionRunner.class.getName() + " [-t threads] <scenario file>");
+        System.out.println("Scenario file lines: name frImage|- txImage|- durationMs [fr=address] [tx=address] [eeprom=file] [frcov=file] [txcov=file] [state=file] [journal=file] [from=name]");
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) {
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        String scenarioFileName = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-t":
+                        numThreads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        if (scenarioFileName != null) {
+                            usage();
+                        }
+                        scenarioFileName = args[i];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+            usage();
+        }
+        if (scenarioFileName == null) {
+            usage();
+        }
+
+        try {
+            List<Scenario> scenarios = readScenarios(new File(scenarioFileName));
+            List<String> results = run(scenarios, numThreads);
+            System.out.println(RESULT_HEADER);
+            int errors = 0;
+            for (String result : results) {
+                System.out.println(result);
+                if (result.contains("\tERROR\t")) errors++;
+            }
+            System.out.println(scenarios.size() + " scenario(s) run, " + errors + " error(s).");
+            if (errors > 0) {
+                System.exit(1);
+            }
+        } catch (IOException | ParsingException e) {
+            System.err.println(e.getMessage());
+            usage();
+        }
+    }
+
+    public static List<Scenario> readScenarios(File scenarioFile) throws IOException, ParsingException {
+        List<Scenario> scenarios = new ArrayList<>();
+        Map<String, Scenario> scenariosByName = new HashMap<>();
+        File baseDir = scenarioFile.getAbsoluteFile().getParentFile();
+        try (BufferedReader reader = new BufferedReader(new FileReader(scenarioFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = StringUtils.split(line);
+                if (fields.length < 4) {
+                    throw new ParsingException("Incomplete scenario line: " + line);
+                }
+                Scenario scenario = new Scenario();
+                scenario.name = fields[0];
+                for (int chip = 0; chip < 2; chip++) {
+                    if (!"-".equals(fields[1 + chip])) {
+                        scenario.images[chip] = resolve(baseDir, fields[1 + chip]);
+                    }
+                }
+                try {
+                    scenario.durationPs = Long.parseLong(fields[3]) * MasterClock.PS_PER_MS;
+                } catch (NumberFormatException e) {
+                    throw new ParsingException("Invalid duration in scenario line: " + line);
+                }
+                for (int i = 4; i < fields.length; i++) {
+                    String[] option = StringUtils.split(fields[i], "=", 2);
+                    if (option.length != 2) {
+                        throw new ParsingException("Invalid option '" + fields[i] + "' in scenario line: " + line);
+                    }
+                    switch (option[0].toLowerCase()) {
+                        case "fr":
+                            scenario.endAddresses[Constants.CHIP_FR] = Format.parseUnsigned(option[1]);
+                            break;
+                        case "tx":
+                            scenario.endAddresses[Constants.CHIP_TX] = Format.parseUnsigned(option[1]);
+                            break;
+                        case "eeprom":
+                            scenario.eepromFile = resolve(baseDir, option[1]);
+                            break;
+                        case "frcov":
+                            scenario.coverageFiles[Constants.CHIP_FR] = resolve(baseDir, option[1]);
+                            break;
+                        case "txcov":
+                            scenario.coverageFiles[Constants.CHIP_TX] = resolve(baseDir, option[1]);
+                            break;
+                        case "state":
+                            scenario.stateFile = resolve(baseDir, option[1]);
+                            break;
+                        case "journal":
+                            scenario.journalFile = resolve(baseDir, option[1]);
+                            break;
+                        case "from":
+                            Scenario parent = scenariosByName.get(option[1]);
+                            if (parent == null) {
+                                throw new ParsingException("Unknown scenario '" + option[1] + "' (it must be described before) in scenario line: " + line);
+                            }
+                            parent.isForked = true;
+                            scenario.fromName = parent.name;
+                            break;
+                        default:
+                            throw new ParsingException("Unknown option '" + fields[i] + "' in scenario line: " + line);
+                    }
+                }
+                if (scenario.fromName != null && (scenario.images[0] != null || scenario.images[1] != null || scenario.stateFile != null)) {
+                    throw new ParsingException("Images and state cannot be combined with 'from' in scenario line: " + line);
+                }
+                scenarios.add(scenario);
+                scenariosByName.put(scenario.name, scenario);
+            }
+        }
+        return scenarios;
+    }
+
+    private static File resolve(File baseDir, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(baseDir, path);
+    }
+
+    /**
+     * @return one result line per scenario, in the same order
+     */
+    public static List<String> run(List<Scenario> scenarios, int numThreads) {
+        // All instances use default prefs, hence the same output options
+        HeadlessEmulation.initSharedTables(new Prefs());
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<ScenarioResult>> futures = new ArrayList<>();
+        final Map<String, Future<ScenarioResult>> futuresByName = new HashMap<>();
+        for (final Scenario scenario : scenarios) {
+            // Scenarios are started in file order, so a scenario waiting for the state it resumes from never blocks
+            // the thread that would produce it
+            Future<ScenarioResult> future = executor.submit(new Callable<ScenarioResult>() {
+                @Override
+                public ScenarioResult call() throws Exception {
+                    FrameworkSnapshot snapshot = (scenario.fromName == null) ? null : futuresByName.get(scenario.fromName).get().snapshot;
+                    return run(scenario, snapshot);
+                }
+            });
+            futures.add(future);
+            futuresByName.put(scenario.name, future);
+        }
+        executor.shutdown();
+
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < scenarios.size(); i++) {
+            try {
+                results.add(futures.get(i).get().line);
+            } catch (InterruptedException | ExecutionException e) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                results.add(scenarios.get(i).name + "\tERROR\t\t\t\t" + cause + "\t\t\t\t");
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param snapshot the state to resume from, if the scenario resumes from another one
+     */
+    private static ScenarioResult run(Scenario scenario, FrameworkSnapshot snapshot) throws IOException, ParsingException {
+        long start = System.currentTimeMillis();
+        Prefs prefs = new Prefs();
+        if (scenario.eepromFile != null) {
+            prefs.setEepromInitMode(Prefs.EepromInitMode.LAST_LOADED);
+            prefs.setLastEepromFileName(scenario.eepromFile.getPath());
+        }
+        HeadlessEmulation emulation;
+        if (snapshot != null) {
+            emulation = new HeadlessEmulation(prefs, snapshot);
+        }
+        else if (scenario.stateFile != null) {
+            emulation = new HeadlessEmulation(prefs, scenario.stateFile);
+        }
+        else {
+            emulation = new HeadlessEmulation(prefs);
+            for (int chip = 0; chip < 2; chip++) {
+                if (scenario.images[chip] != null) {
+                    emulation.loadImage(chip, scenario.images[chip]);
+                }
+            }
+        }
+        for (int chip = 0; chip < 2; chip++) {
+            if (scenario.coverageFiles[chip] != null && emulation.getFramework().isImageLoaded(chip)) {
+                emulation.getFramework().getEmulator(chip).setCoverage(new CoverageMap());
+            }
+        }
+        if (scenario.journalFile != null) {
+            emulation.replayInputs(scenario.journalFile);
+        }
+        boolean endTimeReached = emulation.run(scenario.durationPs, scenario.endAddresses);
+        FrameworkSnapshot finalState = scenario.isForked ? emulation.takeSnapshot() : null;
+        emulation.dispose();
+
+        EmulationFramework framework = emulation.getFramework();
+        for (int chip = 0; chip < 2; chip++) {
+            if (scenario.coverageFiles[chip] != null && framework.isImageLoaded(chip)) {
+                framework.getEmulator(chip).getCoverage().save(scenario.coverageFiles[chip]);
+            }
+        }
+        String result = endTimeReached ? "END_TIME" : "STOPPED";
+        StringBuilder chipResults = new StringBuilder();
+        for (int chip = 0; chip < 2; chip++) {
+            if (framework.isImageLoaded(chip)) {
+                if (emulation.getStopReason(chip) instanceof Exception) {
+                    result = "ERROR";
+                }
+                chipResults.append("\t0x").append(Format.asHex(framework.getPlatform(chip).getCpuState().getPc(), 8))
+                        .append("\t").append(framework.getEmulator(chip).getTotalCycles())
+                        .append("\t").append(emulation.getStopReasonText(chip));
+            }
+            else {
+                chipResults.append("\t\t\t");
+            }
+        }
+        return new ScenarioResult(scenario.name
+                + "\t" + result
+                + "\t" + framework.getMasterClock().getFormatedTotalElapsedTimeMs()
+                + chipResults
+                + "\t" + (System.currentTimeMillis() - start), finalState);
+    }
+}
@@ -60,6 +60,12 @@ public class TxEmulator extends Emulator {
     public BreakCondition onClockTick() throws EmulationException {
         // TODO skip clock ticks if previous instruction required several cycles
 
+        // Do not execute anything while the CPU is spinning in an idle loop
+        if (context.nextPc == null && isIdle()) {
+            idleTick();
+            return null;
+        }
+
         try {
             statement.reset();
 
@@ -78,24 +84,27 @@ public class TxEmulator extends Emulator {
 
             // LOG
             logIfRequested(logger);
+            if (traceRecorder != null) {
+                traceRecorder.recordInstruction(platform.getMasterClock().getTotalElapsedTimePs(), platform.cpuState, statement);
+            }
+
+            int pc = platform.cpuState.pc;
 
             // ACTUAL INSTRUCTION EXECUTION
             statement.getInstruction().getSimulationCode().simulate(statement, context);
 
             // Notify CPU cycle listeners
-            int cycleListenerNumber = 0;
-            while (cycleListenerNumber < cycleCounterListeners.size()) {
-                CycleCounterListener cycleCounterListener = cycleCounterListeners.get(cycleListenerNumber);
-                if (cycleCounterListener.onCycleCountChange(totalCycles, 1)) {
-                    cycleListenerNumber++;
-                }
-                else {
-                    cycleCounterListeners.remove(cycleCounterListener);
-                }
-            }
+            notifyCycleCounterListeners(1);
 
             totalCycles ++; // approximation
 
+            if (profiler != null) {
+                profiler.onInstruction(pc, statement.getInstruction(), 1);
+            }
+            if (coverage != null) {
+                coverage.add(pc, statement.getNumBytes());
+            }
+
             /* Delay slot processing */
             if (context.nextPc != null) {
                 if (context.delaySlotDone) {
@@ -131,12 +140,18 @@ public class TxEmulator extends Emulator {
                                     printer2.indent();
                                 }
                             }
+                            if (traceRecorder != null) {
+                                traceRecorder.recordInterrupt(platform.getMasterClock().getTotalElapsedTimePs(), interruptRequest);
+                            }
                             // TODO : We probably should not remove the request from queue automatically.
                             // TODO   This has to be done explicitely by writing to INTCLR register
                             platform.interruptController.removeEdgeTriggeredRequest(interruptRequest);
                             // TODO : Currently, interrupts are not checked in delay slots (see above).
                             // TODO   Permit that and use address of branch instruction instead of PC if in delay slot !
                             // Note : must use getPc() so that current ISA mode is stored and restored when returning from interrupt
+                            if (profiler != null) {
+                                profiler.onInterrupt(interruptRequest.getInterruptNumber());
+                            }
                             context.pushInterrupt(interruptRequest);
                             ((TxInterruptController)platform.interruptController).processInterrupt((TxInterruptRequest) interruptRequest, platform.cpuState.getPc(), context);
                         }
@@ -0,0 +1,157 @@
+package com.nikonhacker.emu.coverage;
+
+import com.nikonhacker.Format;
+import com.nikonhacker.disassembly.ParsingException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Set of executed instructions, with one bit per halfword (the instruction alignment of both FR and TX).
+ * Bits are kept in 64KB pages allocated upon first execution in that page, so that recording only costs a few
+ * operations per instruction.
+ *
+ * Maps are saved as text, with one line per range of executed halfwords, so that the files of two runs can be
+ * compared with a regular diff tool. Maps of parallel runs are merged with addAll().
+ */
+public class CoverageMap {
+    private static final String HEADER = "# Executed address ranges (start end, inclusive)";
+
+    private static final int PAGE_BITS = 16;
+    private static final int NUM_PAGES = 1 << (32 - PAGE_BITS);
+    /** Number of longs needed to store one bit per halfword of a page */
+    private static final int PAGE_LONGS = (1 << PAGE_BITS) / 2 / 64;
+
+    private final long[][] pages = new long[NUM_PAGES][];
+
+    /**
+     * Marks the instruction at the given address as executed
+     * @param numBytes size of the instruction, so that saved ranges cover instructions entirely
+     */
+    public final void add(int address, int numBytes) {
+        for (int offset = 0; offset < numBytes; offset += 2) {
+            add(address + offset);
+        }
+    }
+
+    private void add(int address) {
+        long[] bits = pages[address >>> PAGE_BITS];
+        if (bits == null) {
+            bits = new long[PAGE_LONGS];
+            pages[address >>> PAGE_BITS] = bits;
+        }
+        bits[(address & 0xFFFF) >>> 7] |= 1L << (address >>> 1);
+    }
+
+    public boolean contains(int address) {
+        long[] bits = pages[address >>> PAGE_BITS];
+        return bits != null && (bits[(address & 0xFFFF) >>> 7] & (1L << (address >>> 1))) != 0;
+    }
+
+    /**
+     * Adds all addresses of other to this map
+     */
+    public void addAll(CoverageMap other) {
+        for (int page = 0; page < NUM_PAGES; page++) {
+            long[] source = other.pages[page];
+            if (source != null) {
+                if (pages[page] == null) {
+                    pages[page] = source.clone();
+                }
+                else {
+                    for (int i = 0; i < PAGE_LONGS; i++) {
+                        pages[page][i] |= source[i];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a new map with the addresses of this map that are not in other
+     */
+    public CoverageMap subtract(CoverageMap other) {
+        CoverageMap result = new CoverageMap();
+        for (int page = 0; page < NUM_PAGES; page++) {
+            long[] bits = pages[page];
+            if (bits != null) {
+                long[] resultBits = bits.clone();
+                if (other.pages[page] != null) {
+                    for (int i = 0; i < PAGE_LONGS; i++) {
+                        resultBits[i] &= ~other.pages[page][i];
+                    }
+                }
+                result.pages[page] = resultBits;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the executed ranges, as {start, end} pairs with end being the address of the last executed halfword
+     */
+    public List<int[]> getRanges() {
+        List<int[]> ranges = new ArrayList<>();
+        int[] range = null;
+        for (int page = 0; page < NUM_PAGES; page++) {
+            long[] bits = pages[page];
+            for (int halfword = 0; halfword < (1 << PAGE_BITS) / 2; halfword++) {
+                if (bits != null && (bits[halfword >>> 6] & (1L << halfword)) != 0) {
+                    int address = (page << PAGE_BITS) | (halfword << 1);
+                    if (range == null) {
+                        range = new int[]{address, address};
+                        ranges.add(range);
+                    }
+                    else {
+                        range[1] = address;
+                    }
+                }
+                else {
+                    range = null;
+                    if (bits == null) {
+                        break;
+                    }
+                }
+            }
+        }
+        return ranges;
+    }
+
+    public void save(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            write(writer);
+        }
+    }
+
+    public void write(PrintWriter writer) {
+        writer.println(HEADER);
+        for (int[] range : getRanges()) {
+            writer.println("0x" + Format.asHex(range[0], 8) + " 0x" + Format.asHex(range[1], 8));
+        }
+    }
+
+    public static CoverageMap load(File file) throws IOException, ParsingException {
+        CoverageMap map = new CoverageMap();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = StringUtils.split(line);
+                if (fields.length != 2) {
+                    throw new ParsingException("Invalid line in coverage file " + file + ": " + line);
+                }
+                int start = Format.parseUnsigned(fields[0]);
+                int end = Format.parseUnsigned(fields[1]);
+                for (long address = start & 0xFFFFFFFFL; address <= (end & 0xFFFFFFFFL); address += 2) {
+                    map.add((int) address);
+                }
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,220 @@
+package com.nikonhacker.emu.coverage;
+
+import com.nikonhacker.Format;
+import com.nikonhacker.disassembly.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Matches a CoverageMap with the functions of a CodeStructure, to compute which instructions and basic blocks of
+ * each function were executed.
+ *
+ * A basic block starts at the function entry, at each label, and after each instruction changing the flow (after its
+ * delay slot, if any). A block counts as executed if its first instruction was.
+ */
+public class CoverageReport {
+
+    public static class FunctionCoverage {
+        private final Function function;
+        private int numInstructions;
+        private int numCoveredInstructions;
+        private int numBlocks;
+        private int numCoveredBlocks;
+
+        private FunctionCoverage(Function function) {
+            this.function = function;
+        }
+
+        public Function getFunction() {
+            return function;
+        }
+
+        public int getNumInstructions() {
+            return numInstructions;
+        }
+
+        public int getNumCoveredInstructions() {
+            return numCoveredInstructions;
+        }
+
+        public int getNumBlocks() {
+            return numBlocks;
+        }
+
+        public int getNumCoveredBlocks() {
+            return numCoveredBlocks;
+        }
+
+        public boolean isEntered() {
+            return numCoveredInstructions > 0;
+        }
+
+        public double getPercentage() {
+            return numInstructions == 0 ? 0 : numCoveredInstructions * 100.0 / numInstructions;
+        }
+    }
+
+    private final CoverageMap   coverage;
+    private final CodeStructure codeStructure;
+
+    /** Function coverages, by function address */
+    private final SortedMap<Integer, FunctionCoverage> functionCoverages = new TreeMap<>();
+
+    public CoverageReport(CoverageMap coverage, CodeStructure codeStructure) {
+        this.coverage = coverage;
+        this.codeStructure = codeStructure;
+        for (int address : codeStructure.getAllFunctionAddresses()) {
+            Function function = codeStructure.getFunction(address);
+            FunctionCoverage functionCoverage = new FunctionCoverage(function);
+            for (int statementAddress : getStatementAddresses(function)) {
+                Statement statement = codeStructure.getStatement(statementAddress);
+                boolean covered = coverage.contains(statementAddress);
+                functionCoverage.numInstructions++;
+                if (covered) {
+                    functionCoverage.numCoveredInstructions++;
+                }
+                if (isBlockStart(function, statementAddress)) {
+                    functionCoverage.numBlocks++;
+                    if (covered) {
+                        functionCoverage.numCoveredBlocks++;
+                    }
+                }
+            }
+            functionCoverages.put(address, functionCoverage);
+        }
+    }
+
+    public Collection<FunctionCoverage> getFunctionCoverages() {
+        return functionCoverages.values();
+    }
+
+    /**
+     * @return the addresses of the statements of the function, in ascending order
+     */
+    private List<Integer> getStatementAddresses(Function function) {
+        List<CodeSegment> segments = new ArrayList<>(function.getCodeSegments());
+        Collections.sort(segments, new Comparator<CodeSegment>() {
+            @Override
+            public int compare(CodeSegment o1, CodeSegment o2) {
+                return Integer.compare(o1.getStart(), o2.getStart());
+            }
+        });
+        List<Integer> addresses = new ArrayList<>();
+        for (CodeSegment segment : segments) {
+            Integer address = segment.getStart();
+            while (address != null && address <= segment.getEnd()) {
+                if (codeStructure.isStatement(address)) {
+                    addresses.add(address);
+                }
+                address = codeStructure.getAddressOfStatementAfter(address);
+            }
+        }
+        return addresses;
+    }
+
+    private boolean isBlockStart(Function function, int address) {
+        if (address == function.getAddress() || codeStructure.isLabel(address)) {
+            return true;
+        }
+        Integer previousAddress = codeStructure.getAddressOfStatementBefore(address);
+        if (previousAddress == null) {
+            return true;
+        }
+        Instruction previous = codeStructure.getStatement(previousAddress).getInstruction();
+        if (previous != null && previous.getFlowType() != Instruction.FlowType.NONE && !previous.hasDelaySlot()) {
+            return true;
+        }
+        // Check if previous statement is the delay slot of a flow change
+        Integer beforePreviousAddress = codeStructure.getAddressOfStatementBefore(previousAddress);
+        if (beforePreviousAddress != null) {
+            Instruction beforePrevious = codeStructure.getStatement(beforePreviousAddress).getInstruction();
+            return beforePrevious != null && beforePrevious.getFlowType() != Instruction.FlowType.NONE && beforePrevious.hasDelaySlot();
+        }
+        return false;
+    }
+
+    /**
+     * Writes one line per function, sorted by address, so that reports of two runs can be compared with diff
+     */
+    public void writeSummary(PrintWriter writer) {
+        int numInstructions = 0;
+        int numCoveredInstructions = 0;
+        int numEntered = 0;
+        writer.println("address\tcovered%\tinstructions\tblocks\tname");
+        for (FunctionCoverage functionCoverage : functionCoverages.values()) {
+            writer.println("0x" + Format.asHex(functionCoverage.function.getAddress(), 8)
+                    + "\t" + String.format("%.1f", functionCoverage.getPercentage())
+                    + "\t" + functionCoverage.numCoveredInstructions + "/" + functionCoverage.numInstructions
+                    + "\t" + functionCoverage.numCoveredBlocks + "/" + functionCoverage.numBlocks
+                    + "\t" + functionCoverage.function.getName());
+            numInstructions += functionCoverage.numInstructions;
+            numCoveredInstructions += functionCoverage.numCoveredInstructions;
+            if (functionCoverage.isEntered()) {
+                numEntered++;
+            }
+        }
+        writer.println("# " + numEntered + "/" + functionCoverages.size() + " functions entered, "
+                + numCoveredInstructions + "/" + numInstructions + " instructions executed");
+    }
+
+    /**
+     * Writes the coverage in the lcov tracefile format, using instruction addresses as line numbers
+     * @param testName name of the run
+     * @param sourceName name of the firmware
+     */
+    public void writeLcov(PrintWriter writer, String testName, String sourceName) {
+        writer.println("TN:" + testName);
+        writer.println("SF:" + sourceName);
+        int numEntered = 0;
+        for (FunctionCoverage functionCoverage : functionCoverages.values()) {
+            writer.println("FN:" + (functionCoverage.function.getAddress() & 0xFFFFFFFFL) + "," + functionCoverage.function.getName());
+        }
+        for (FunctionCoverage functionCoverage : functionCoverages.values()) {
+            writer.println("FNDA:" + (functionCoverage.isEntered() ? 1 : 0) + "," + functionCoverage.function.getName());
+            if (functionCoverage.isEntered()) {
+                numEntered++;
+            }
+        }
+        writer.println("FNF:" + functionCoverages.size());
+        writer.println("FNH:" + numEntered);
+        // Statements shared by several functions must only be listed once
+        SortedSet<Integer> addresses = new TreeSet<>();
+        for (FunctionCoverage functionCoverage : functionCoverages.values()) {
+            addresses.addAll(getStatementAddresses(functionCoverage.function));
+        }
+        int numCovered = 0;
+        for (int address : addresses) {
+            boolean covered = coverage.contains(address);
+            writer.println("DA:" + (address & 0xFFFFFFFFL) + "," + (covered ? 1 : 0));
+            if (covered) {
+                numCovered++;
+            }
+        }
+        writer.println("LF:" + addresses.size());
+        writer.println("LH:" + numCovered);
+        writer.println("end_of_record");
+    }
+
+    /**
+     * Writes the disassembly of all functions, with executed instructions marked by '+' and others by '#####'
+     */
+    public void writeAnnotatedDisassembly(PrintWriter writer, Set<OutputOption> outputOptions) throws IOException {
+        for (FunctionCoverage functionCoverage : functionCoverages.values()) {
+            Function function = functionCoverage.function;
+            writer.println();
+            writer.println("; " + function.getName() + ": " + String.format("%.1f", functionCoverage.getPercentage()) + "% ("
+                    + functionCoverage.numCoveredInstructions + "/" + functionCoverage.numInstructions + " instructions, "
+                    + functionCoverage.numCoveredBlocks + "/" + functionCoverage.numBlocks + " blocks)");
+            for (int address : getStatementAddresses(function)) {
+                if (codeStructure.isLabel(address)) {
+                    writer.println("          " + codeStructure.getLabelName(address) + ":");
+                }
+                writer.print(coverage.contains(address) ? "       +  " : "   #####  ");
+                Disassembler.printDisassembly(writer, codeStructure.getStatement(address), address, 0, outputOptions);
+            }
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,118 @@
+package com.nikonhacker.emu.coverage;
+
+import com.nikonhacker.disassembly.*;
+import com.nikonhacker.disassembly.fr.Dfr;
+import com.nikonhacker.disassembly.fr.FrCPUState;
+import com.nikonhacker.disassembly.fr.FrInstructionSet;
+import com.nikonhacker.disassembly.fr.FrStatement;
+import com.nikonhacker.disassembly.tx.Dtx;
+import com.nikonhacker.disassembly.tx.TxCPUState;
+import com.nikonhacker.disassembly.tx.TxInstructionSet;
+import com.nikonhacker.disassembly.tx.TxStatement;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.*;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Command line tool to combine the coverage files saved by emulation runs (see RegressionRunner) and report them
+ * against the functions of the disassembled firmware.
+ */
+public class CoverageTool {
+
+    private static void usage() {
+        System.out.println("Usage : " + CoverageTool.class.getName() + " merge <output file> <coverage file> [<coverage file> [...]]");
+        System.out.println("        " + CoverageTool.class.getName() + " diff <coverage file 1> <coverage file 2>");
+        System.out.println("        " + CoverageTool.class.getName() + " summary|lcov|asm <options file> <binary> <coverage file> [<output file>]");
+        System.out.println("Options files are the .dfr.txt or .dtx.txt files used to disassemble the binaries.");
+        System.out.println("merge combines coverage files of several runs.");
+        System.out.println("diff lists the address ranges executed by only one of the runs.");
+        System.out.println("summary writes one line per function, lcov writes an lcov tracefile with addresses as line numbers,");
+        System.out.println("asm writes the disassembly of all functions with executed instructions marked.");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            usage();
+        }
+        try {
+            switch (args[0]) {
+                case "merge":
+                    CoverageMap merged = new CoverageMap();
+                    for (int i = 2; i < args.length; i++) {
+                        merged.addAll(CoverageMap.load(new File(args[i])));
+                    }
+                    merged.save(new File(args[1]));
+                    break;
+                case "diff":
+                    if (args.length != 3) {
+                        usage();
+                    }
+                    CoverageMap coverage1 = CoverageMap.load(new File(args[1]));
+                    CoverageMap coverage2 = CoverageMap.load(new File(args[2]));
+                    PrintWriter diffWriter = new PrintWriter(System.out);
+                    diffWriter.println("# Only in " + args[1]);
+                    coverage1.subtract(coverage2).write(diffWriter);
+                    diffWriter.println("# Only in " + args[2]);
+                    coverage2.subtract(coverage1).write(diffWriter);
+                    diffWriter.flush();
+                    break;
+                case "summary":
+                case "lcov":
+                case "asm":
+                    if (args.length < 4 || args.length > 5) {
+                        usage();
+                    }
+                    report(args[0], new File(args[1]), new File(args[2]), new File(args[3]), (args.length == 5) ? new File(args[4]) : null);
+                    break;
+                default:
+                    usage();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void report(String format, File optionsFile, File binary, File coverageFile, File outputFile) throws IOException, ParsingException, DisassemblyException {
+        Set<OutputOption> outputOptions = EnumSet.noneOf(OutputOption.class);
+        for (OutputOption outputOption : OutputOption.values()) {
+            if (outputOption.isDefaultValue()) {
+                outputOptions.add(outputOption);
+            }
+        }
+        outputOptions.add(OutputOption.STRUCTURE);
+        FrInstructionSet.init(outputOptions);
+        FrStatement.initFormatChars(outputOptions);
+        FrCPUState.initRegisterLabels(outputOptions);
+        TxInstructionSet.init(outputOptions);
+        TxStatement.initFormatChars(outputOptions);
+        TxCPUState.initRegisterLabels(outputOptions);
+
+        Disassembler disassembler = optionsFile.getName().toLowerCase().endsWith(".dtx.txt") ? new Dtx() : new Dfr();
+        disassembler.setDebugPrintWriter(new PrintWriter(new NullOutputStream()));
+        disassembler.setOutputOptions(EnumSet.copyOf(outputOptions));
+        disassembler.setOutputFileName(null);
+        if (!disassembler.processOptions(new String[]{"-x", optionsFile.getPath(), binary.getPath()})) {
+            throw new ParsingException("Incorrect options in " + optionsFile);
+        }
+        disassembler.initialize();
+        CodeStructure codeStructure = disassembler.disassembleMemRanges();
+
+        CoverageReport report = new CoverageReport(CoverageMap.load(coverageFile), codeStructure);
+        try (PrintWriter writer = (outputFile != null) ? new PrintWriter(new BufferedWriter(new FileWriter(outputFile))) : new PrintWriter(System.out)) {
+            switch (format) {
+                case "summary":
+                    report.writeSummary(writer);
+                    break;
+                case "lcov":
+                    report.writeLcov(writer, coverageFile.getName(), binary.getName());
+                    break;
+                default:
+                    report.writeAnnotatedDisassembly(writer, outputOptions);
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.nikonhacker.emu.history;
+
+import com.nikonhacker.Prefs;
+import com.nikonhacker.disassembly.CPUState;
+import com.nikonhacker.emu.EmulationFramework;
+import com.nikonhacker.emu.Emulator;
+import com.nikonhacker.emu.FrameworkSnapshot;
+import com.nikonhacker.emu.MasterClock;
+import com.nikonhacker.emu.journal.InputJournal;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+import com.nikonhacker.emu.memory.Memory;
+import com.nikonhacker.emu.memory.listener.MemoryActivityListener;
+import com.nikonhacker.emu.trigger.BreakTrigger;
+import com.nikonhacker.emu.trigger.condition.BreakCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reverse execution, based on checkpoints taken by the MasterClock and on deterministic re-execution.
+ *
+ * A checkpoint holds a FrameworkSnapshot (serialized peripherals, CPUs and clock, and copy-on-write snapshots of the
+ * memories), and the number of inputs recorded so far by the InputJournal.
+ * Checkpoints are taken periodically, and each time the clock starts, as the state may have been changed while it
+ * was stopped. To go back in time, the last checkpoint before the target time is restored into a new framework, which
+ * is then run up to the target time while replaying the recorded inputs. Searches (previous instruction, breakpoint,
+ * write) re-execute one interval between checkpoints after the other, from the most recent one, until a match is
+ * found.
+ *
+ * The number of checkpoints is bounded: when the limit is reached, the checkpoint whose removal creates the smallest
+ * gap relative to its age is evicted, so that checkpoints get exponentially spaced, dense near the present and sparse
+ * in the past. Checkpoints taken when the clock started are only evicted as the oldest one.
+ *
+ * Re-execution is only exact if the clock stops for all chips at once (sync play, or a single chip) and if idle loop
+ * fast-forward is disabled, as the idle loop detector state is not part of the checkpoints.
+ */
+public class ExecutionHistory {
+    public static final int  DEFAULT_MAX_CHECKPOINTS = 32;
+    public static final long DEFAULT_INTERVAL_PS     = 100 * MasterClock.PS_PER_MS;
+
+    private static class Checkpoint {
+        final long              timePs;
+        final boolean           isStart;
+        final FrameworkSnapshot snapshot;
+        final int               numInputs;
+
+        Checkpoint(boolean isStart, FrameworkSnapshot snapshot, int numInputs) {
+            this.timePs = snapshot.getTimePs();
+            this.isStart = isStart;
+            this.snapshot = snapshot;
+            this.numInputs = numInputs;
+        }
+    }
+
+    private final Prefs prefs;
+    private final int   maxCheckpoints;
+    private final long  intervalPs;
+
+    private EmulationFramework framework;
+    private InputJournal       inputJournal;
+
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+
+    private volatile long nextCheckpointTimePs;
+
+    public ExecutionHistory(EmulationFramework framework, Prefs prefs) {
+        this(framework, prefs, DEFAULT_MAX_CHECKPOINTS, DEFAULT_INTERVAL_PS);
+    }
+
+    /**
+     * Starts recording the history of the given framework, using its input journal if it is recording.
+     * Checkpoints are only taken once this history is set on the MasterClock
+     */
+    public ExecutionHistory(EmulationFramework framework, Prefs prefs, int maxCheckpoints, long intervalPs) {
+        if (maxCheckpoints < 2) {
+            throw new IllegalArgumentException("At least 2 checkpoints are required");
+        }
+        this.prefs = prefs;
+        this.maxCheckpoints = maxCheckpoints;
+        this.intervalPs = intervalPs;
+        InputJournal existingJournal = framework.getMasterClock().getInputJournal();
+        if (existingJournal != null && existingJournal.isReplaying()) {
+            throw new RuntimeException("History cannot be recorded while inputs are replayed");
+        }
+        follow(framework, existingJournal != null ? existingJournal : new InputJournal(framework));
+    }
+
+    private void follow(EmulationFramework framework, InputJournal inputJournal) {
+        this.framework = framework;
+        this.inputJournal = inputJournal;
+        framework.getMasterClock().setInputJournal(inputJournal);
+        framework.getMasterClock().setExecutionHistory(this);
+    }
+
+    public EmulationFramework getFramework() {
+        return framework;
+    }
+
+    public final long getNextCheckpointTimePs() {
+        return nextCheckpointTimePs;
+    }
+
+    public synchronized int getNumCheckpoints() {
+        return checkpoints.size();
+    }
+
+    /**
+     * @return the time of the oldest checkpoint, before which it is not possible to go back, or -1 if none
+     */
+    public synchronized long getStartTimePs() {
+        return checkpoints.isEmpty() ? -1 : checkpoints.get(0).timePs;
+    }
+
+    /**
+     * Takes a checkpoint of the current state. Called by the MasterClock before a step
+     * @param isStart true if the clock is starting, in which case the checkpoint cannot be replaced by re-execution
+     */
+    public synchronized void takeCheckpoint(boolean isStart) {
+        FrameworkSnapshot snapshot;
+        try {
+            snapshot = new FrameworkSnapshot(framework);
+        }
+        catch (RuntimeException e) {
+            e.printStackTrace();
+            System.err.println("Could not take a checkpoint. Execution history is disabled");
+            framework.getMasterClock().setExecutionHistory(null);
+            return;
+        }
+        long timePs = snapshot.getTimePs();
+        if (!checkpoints.isEmpty() && checkpoints.get(checkpoints.size() - 1).timePs == timePs) {
+            // Clock restarted without running. The new checkpoint holds any change made meanwhile
+            isStart |= checkpoints.remove(checkpoints.size() - 1).isStart;
+        }
+        checkpoints.add(new Checkpoint(isStart, snapshot, inputJournal.getInputs().size()));
+        if (checkpoints.size() > maxCheckpoints) {
+            evictCheckpoint();
+        }
+        nextCheckpointTimePs = timePs + intervalPs;
+    }
+
+    private void evictCheckpoint() {
+        long nowPs = checkpoints.get(checkpoints.size() - 1).timePs;
+        int evictedIndex = 0;
+        double lowestCost = Double.MAX_VALUE;
+        for (int i = 1; i < checkpoints.size() - 1; i++) {
+            Checkpoint checkpoint = checkpoints.get(i);
+            if (!checkpoint.isStart) {
+                double cost = (checkpoints.get(i + 1).timePs - checkpoints.get(i - 1).timePs) / (double) (nowPs - checkpoint.timePs);
+                if (cost < lowestCost) {
+                    lowestCost = cost;
+                    evictedIndex = i;
+                }
+            }
+        }
+        checkpoints.remove(evictedIndex);
+    }
+
+    /**
+     * Goes back to the state before the last instruction executed by the given chip
+     * @return the framework in that state, followed by this history from now on, or null if not in history
+     */
+    public EmulationFramework stepBack(final int chip) {
+        Probe probe = new Probe() {
+            @Override
+            void install(EmulationFramework restored) {
+                restored.getEmulator(chip).addBreakCondition(new ProbeCondition(this, restored.getMasterClock(), false) {
+                    @Override
+                    boolean isMatch(CPUState cpuState) {
+                        return true;
+                    }
+                });
+            }
+        };
+        long timePs = findLastMatch(probe);
+        return (timePs < 0) ? null : travelTo(timePs);
+    }
+
+    /**
+     * Goes back to the last time the given chip reached one of the given addresses, excluding the current position
+     * @return the framework in that state, followed by this history from now on, or null if not in history
+     */
+    public EmulationFramework runBackToBreakpoint(final int chip, final Set<Integer> pcs) {
+        Probe probe = new Probe() {
+            @Override
+            void install(EmulationFramework restored) {
+                restored.getEmulator(chip).addBreakCondition(new ProbeCondition(this, restored.getMasterClock(), true) {
+                    @Override
+                    boolean isMatch(CPUState cpuState) {
+                        return pcs.contains(cpuState.getPc() & ~1);
+                    }
+                });
+            }
+        };
+        long timePs = findLastMatch(probe);
+        // Break conditions are evaluated after the instruction, so stop right after the step that reached the address
+        return (timePs < 0) ? null : travelTo(timePs + 1);
+    }
+
+    /**
+     * Goes back to the state before the last write to the given byte address in the memory of the given chip
+     * @return the framework in that state, followed by this history from now on, or null if not in history
+     */
+    public EmulationFramework runBackToLastWrite(final int chip, final int address) {
+        Probe probe = new Probe() {
+            @Override
+            void install(EmulationFramework restored) {
+                restored.getPlatform(chip).getMemory().addActivityListener(new WriteProbeListener(this, restored.getMasterClock(), address));
+            }
+        };
+        long timePs = findLastMatch(probe);
+        return (timePs < 0) ? null : travelTo(timePs);
+    }
+
+    /**
+     * Re-executes the intervals between checkpoints from the most recent one, until the probe matches
+     * @return the time of the last step at which the probe matched, or -1 if none
+     */
+    private synchronized long findLastMatch(Probe probe) {
+        long endPs = framework.getMasterClock().getTotalElapsedTimePs();
+        boolean isLastInterval = true;
+        for (int index = checkpoints.size() - 1; index >= 0; index--) {
+            Checkpoint checkpoint = checkpoints.get(index);
+            if (checkpoint.timePs >= endPs) {
+                continue;
+            }
+            EmulationFramework restored = restore(checkpoint);
+            for (int chip = 0; chip < 2; chip++) {
+                if (restored.getEmulator(chip) != null) {
+                    removeBreakingConditions(restored.getEmulator(chip));
+                }
+            }
+            probe.limitPs = endPs;
+            probe.lastMatchPs = -1;
+            probe.pendingMatchPs = -1;
+            probe.install(restored);
+            try {
+                restored.getMasterClock().runUntil(endPs);
+            }
+            finally {
+                restored.disposePlatforms();
+            }
+            if (!isLastInterval) {
+                // Execution went on after the end of this interval
+                probe.commitPendingMatch();
+            }
+            if (probe.lastMatchPs >= 0) {
+                return probe.lastMatchPs;
+            }
+            endPs = checkpoint.timePs;
+            isLastInterval = false;
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the conditions that would stop re-execution. As the original run stopped where they matched, they can
+     * only match at the end of an interval, but they would prevent the probe from seeing the last instruction
+     */
+    private static void removeBreakingConditions(Emulator emulator) {
+        List<BreakCondition> conditions = emulator.getBreakConditions();
+        emulator.clearBreakConditions();
+        for (BreakCondition condition : conditions) {
+            if (condition.getBreakTrigger() != null && !condition.getBreakTrigger().mustBreak()) {
+                emulator.addBreakCondition(condition);
+            }
+        }
+    }
+
+    /**
+     * Restores the last checkpoint before the given time and re-executes up to it.
+     * Checkpoints after that time are dropped and this history follows the new framework from now on
+     * @return the framework at the first step boundary at or after the given time
+     */
+    private synchronized EmulationFramework travelTo(long timePs) {
+        Checkpoint checkpoint = null;
+        for (Checkpoint candidate : checkpoints) {
+            if (candidate.timePs <= timePs) {
+                checkpoint = candidate;
+            }
+        }
+        if (checkpoint == null) {
+            return null;
+        }
+        EmulationFramework restored = restore(checkpoint);
+        MasterClock masterClock = restored.getMasterClock();
+        if (masterClock.getTotalElapsedTimePs() < timePs) {
+            masterClock.runUntil(timePs);
+        }
+        for (int chip = 0; chip < 2; chip++) {
+            restored.setEmulatorStopped(chip);
+        }
+        long restoredTimePs = masterClock.getTotalElapsedTimePs();
+        while (checkpoints.get(checkpoints.size() - 1) != checkpoint && checkpoints.get(checkpoints.size() - 1).timePs >= restoredTimePs) {
+            checkpoints.remove(checkpoints.size() - 1);
+        }
+        nextCheckpointTimePs = checkpoints.get(checkpoints.size() - 1).timePs + intervalPs;
+
+        framework.getMasterClock().setExecutionHistory(null);
+        follow(restored, masterClock.getInputJournal().continueRecording());
+        return restored;
+    }
+
+    /**
+     * @return a new framework in the state of the given checkpoint, replaying the inputs recorded after it
+     */
+    private EmulationFramework restore(Checkpoint checkpoint) {
+        EmulationFramework restored = checkpoint.snapshot.restore(prefs);
+        restored.setupCallbacks(null, null);
+        restored.getMasterClock().setInputJournal(new InputJournal(restored, inputJournal.getInputs(), checkpoint.numInputs));
+        return restored;
+    }
+
+    /**
+     * Something to look for while re-executing an interval between checkpoints
+     */
+    private abstract static class Probe {
+        /** Matches at or after this time are ignored */
+        long limitPs;
+        long lastMatchPs  = -1;
+        /** A match that only counts if execution goes on after it */
+        long pendingMatchPs = -1;
+
+        abstract void install(EmulationFramework restored);
+
+        void commitPendingMatch() {
+            if (pendingMatchPs >= 0) {
+                lastMatchPs = pendingMatchPs;
+                pendingMatchPs = -1;
+            }
+        }
+    }
+
+    /**
+     * A condition that never breaks, but records the time of the last instruction matching isMatch()
+     */
+    private abstract static class ProbeCondition implements BreakCondition {
+        private final Probe       probe;
+        private final MasterClock masterClock;
+        private final boolean     isCurrentPositionExcluded;
+
+        /**
+         * @param isCurrentPositionExcluded if true, as conditions are evaluated after each instruction, a match is
+         *                                  only committed when another instruction follows, so that the state reached
+         *                                  by the last instruction is not reported
+         */
+        ProbeCondition(Probe probe, MasterClock masterClock, boolean isCurrentPositionExcluded) {
+            this.probe = probe;
+            this.masterClock = masterClock;
+            this.isCurrentPositionExcluded = isCurrentPositionExcluded;
+        }
+
+        abstract boolean isMatch(CPUState cpuState);
+
+        @Override
+        public BreakTrigger getBreakTrigger() {
+            return null;
+        }
+
+        @Override
+        public boolean matches(CPUState cpuState, Memory memory) {
+            long timePs = masterClock.getTotalElapsedTimePs();
+            if (timePs < probe.limitPs) {
+                probe.commitPendingMatch();
+                if (isMatch(cpuState)) {
+                    if (isCurrentPositionExcluded) {
+                        probe.pendingMatchPs = timePs;
+                    }
+                    else {
+                        probe.lastMatchPs = timePs;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Records the time of the last store covering the given address
+     */
+    private static class WriteProbeListener implements MemoryActivityListener {
+        private final Probe       probe;
+        private final MasterClock masterClock;
+        private final int         address;
+
+        WriteProbeListener(Probe probe, MasterClock masterClock, int address) {
+            this.probe = probe;
+            this.masterClock = masterClock;
+            this.address = address;
+        }
+
+        @Override
+        public boolean matches(int address) {
+            // Stores are notified with their first address
+            return this.address - address >= 0 && this.address - address < 4;
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return true;
+        }
+
+        @Override
+        public Byte onLoadData8(byte[] pageData, int address, byte value, DebuggableMemory.AccessSource accessSource) {
+            return null;
+        }
+
+        @Override
+        public Integer onLoadData16(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+            return null;
+        }
+
+        @Override
+        public Integer onLoadData32(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+            return null;
+        }
+
+        @Override
+        public void onLoadInstruction8(byte[] pageData, int address, byte value, DebuggableMemory.AccessSource accessSource) {
+        }
+
+        @Override
+        public void onLoadInstruction16(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+        }
+
+        @Override
+        public void onLoadInstruction32(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+        }
+
+        @Override
+        public void onStore8(byte[] pageData, int address, byte value, DebuggableMemory.AccessSource accessSource) {
+            onStore(address, 1);
+        }
+
+        @Override
+        public void onStore16(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+            onStore(address, 2);
+        }
+
+        @Override
+        public void onStore32(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+            onStore(address, 4);
+        }
+
+        private void onStore(int address, int numBytes) {
+            long timePs = masterClock.getTotalElapsedTimePs();
+            if (this.address - address < numBytes && timePs < probe.limitPs) {
+                probe.lastMatchPs = timePs;
+            }
+        }
+    }
+}
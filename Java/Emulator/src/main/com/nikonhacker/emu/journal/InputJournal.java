@@ -0,0 +1,289 @@
+package com.nikonhacker.emu.journal;
+
+import com.nikonhacker.disassembly.ParsingException;
+import com.nikonhacker.emu.EmulationFramework;
+import com.nikonhacker.emu.MasterClock;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Journal of the inputs that enter the emulation from outside (buttons, lens, A/D values, interrupts requested by
+ * the user or by triggers), keyed on MasterClock time, so that a run can be reproduced exactly and without user
+ * interaction, e.g. by RegressionRunner.
+ *
+ * While recording, inputs submitted from other threads are not applied immediately but queued, and the MasterClock
+ * applies them between two steps, at which time they are timestamped. While replaying, the MasterClock applies each
+ * input before the first step starting at or after its time, so it happens at exactly the same point as in the
+ * recorded run. Values read by devices (AD_VALUE) are returned in the recorded order instead.
+ *
+ * A journal only reproduces a run if replay starts from the same state as the recording: after a reset with the same
+ * images and prefs, or after loading the state saved when recording started.
+ */
+public class InputJournal {
+    private static final String HEADER = "# time_ps\ttype\tchip\tkey\tvalue";
+
+    public enum InputType {
+        /** A front panel button changed state. key is the button key, value the new state */
+        BUTTON,
+        /** A lens was plugged (value=1) or unplugged (value=0) */
+        LENS,
+        /** An interrupt was requested. value is the interrupt number */
+        INTERRUPT,
+        /** An interrupt request was withdrawn. value is the interrupt number */
+        WITHDRAW_INTERRUPT,
+        /** A value was returned by an A/D value provider. key is the unit name and channel */
+        AD_VALUE
+    }
+
+    public static class Input {
+        long            timePs;
+        final InputType type;
+        final int       chip;
+        final String    key;
+        final int       value;
+
+        public Input(InputType type, int chip, String key, int value) {
+            this.type = type;
+            this.chip = chip;
+            this.key = key;
+            this.value = value;
+        }
+
+        public long getTimePs() {
+            return timePs;
+        }
+
+        public InputType getType() {
+            return type;
+        }
+
+        public int getChip() {
+            return chip;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+
+    private final EmulationFramework framework;
+    private final boolean            replaying;
+
+    /** All inputs, in time order. Only accessed by the MasterClock thread, or while it is stopped */
+    private final List<Input> inputs;
+
+    /** Inputs submitted from other threads while recording, not applied yet */
+    private final List<Input> pendingInputs = new ArrayList<>();
+
+    /** While replaying, the index of the first input to replay */
+    private int startIndex;
+
+    /** While replaying, the next input to apply at a step boundary */
+    private int nextInputIndex;
+
+    /** While replaying, the inputs applied or returned so far, in that order */
+    private final List<Input> replayedInputs = new ArrayList<>();
+
+    /** While replaying, recorded values by chip and key, with the next one to return */
+    private final Map<String, Deque<Input>> values = new HashMap<>();
+
+    /** Time of the next input to apply at a step boundary. Checked by the MasterClock at each step */
+    private volatile long nextTimePs = Long.MAX_VALUE;
+
+    /**
+     * Creates a journal recording the inputs of the given framework
+     */
+    public InputJournal(EmulationFramework framework) {
+        this(framework, false, new ArrayList<Input>());
+    }
+
+    /**
+     * Creates a journal replaying the given inputs on the given framework. Inputs older than the current time of its
+     * MasterClock (e.g. if the framework was loaded from a state) are skipped
+     */
+    public InputJournal(EmulationFramework framework, List<Input> inputs) {
+        this(framework, inputs, getFirstIndexAt(inputs, framework.getMasterClock().getTotalElapsedTimePs()));
+    }
+
+    /**
+     * Creates a journal replaying the given inputs on the given framework, starting at the given index
+     * (e.g. the number of inputs recorded when a checkpoint was taken)
+     */
+    public InputJournal(EmulationFramework framework, List<Input> inputs, int startIndex) {
+        this(framework, true, inputs);
+        this.startIndex = startIndex;
+        nextInputIndex = startIndex;
+        for (Input input : inputs.subList(startIndex, inputs.size())) {
+            if (input.type == InputType.AD_VALUE) {
+                String valueKey = input.chip + input.key;
+                if (!values.containsKey(valueKey)) {
+                    values.put(valueKey, new ArrayDeque<Input>());
+                }
+                values.get(valueKey).add(input);
+            }
+        }
+        updateNextTime();
+    }
+
+    private InputJournal(EmulationFramework framework, boolean replaying, List<Input> inputs) {
+        this.framework = framework;
+        this.replaying = replaying;
+        this.inputs = inputs;
+    }
+
+    private static int getFirstIndexAt(List<Input> inputs, long timePs) {
+        int index = 0;
+        while (index < inputs.size() && inputs.get(index).timePs < timePs) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Stops replaying. Only valid for a replaying journal
+     * @return a journal recording the inputs of the same framework from now on, that already contains the inputs
+     * before the start of the replay and the inputs replayed so far
+     */
+    public InputJournal continueRecording() {
+        List<Input> recordedInputs = new ArrayList<>(inputs.subList(0, startIndex));
+        recordedInputs.addAll(replayedInputs);
+        return new InputJournal(framework, false, recordedInputs);
+    }
+
+    public boolean isReplaying() {
+        return replaying;
+    }
+
+    public List<Input> getInputs() {
+        return inputs;
+    }
+
+    public final long getNextTimePs() {
+        return nextTimePs;
+    }
+
+    /**
+     * Submits an input coming from outside the MasterClock thread (e.g. from the UI).
+     * If the clock is running, the input is applied at the next step boundary. Ignored while replaying
+     */
+    public void submit(Input input) {
+        if (replaying) {
+            System.err.println("Input " + input.type + " ignored: inputs are being replayed");
+            return;
+        }
+        synchronized (pendingInputs) {
+            pendingInputs.add(input);
+            nextTimePs = 0;
+        }
+        MasterClock masterClock = framework.getMasterClock();
+        synchronized (masterClock) {
+            if (!masterClock.isRunning()) {
+                applyDueInputs(masterClock.getTotalElapsedTimePs());
+            }
+        }
+    }
+
+    /**
+     * Records an input applied by the MasterClock thread itself (e.g. an interrupt requested by a trigger)
+     */
+    public void record(Input input) {
+        if (!replaying) {
+            input.timePs = framework.getMasterClock().getTotalElapsedTimePs();
+            inputs.add(input);
+        }
+    }
+
+    /**
+     * @return the next recorded value for the given chip and key, or null if none (or not replaying)
+     */
+    public Integer nextValue(int chip, String key) {
+        if (replaying) {
+            Deque<Input> recordedValues = values.get(chip + key);
+            if (recordedValues != null && !recordedValues.isEmpty()) {
+                Input input = recordedValues.poll();
+                replayedInputs.add(input);
+                return input.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies all inputs due at the given time. Called by the MasterClock before each step
+     */
+    public void applyDueInputs(long timePs) {
+        if (replaying) {
+            while (nextInputIndex < inputs.size() && inputs.get(nextInputIndex).timePs <= timePs) {
+                Input input = inputs.get(nextInputIndex++);
+                if (input.type != InputType.AD_VALUE) {
+                    replayedInputs.add(input);
+                    framework.applyInput(input);
+                }
+            }
+            updateNextTime();
+        }
+        else {
+            List<Input> dueInputs;
+            synchronized (pendingInputs) {
+                dueInputs = new ArrayList<>(pendingInputs);
+                pendingInputs.clear();
+                nextTimePs = Long.MAX_VALUE;
+            }
+            for (Input input : dueInputs) {
+                input.timePs = timePs;
+                inputs.add(input);
+                framework.applyInput(input);
+            }
+        }
+    }
+
+    private void updateNextTime() {
+        // Values are consumed by devices, not applied at step boundaries
+        while (nextInputIndex < inputs.size() && inputs.get(nextInputIndex).type == InputType.AD_VALUE) {
+            nextInputIndex++;
+        }
+        nextTimePs = (nextInputIndex < inputs.size()) ? inputs.get(nextInputIndex).timePs : Long.MAX_VALUE;
+    }
+
+    public void save(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            writer.println(HEADER);
+            for (Input input : inputs) {
+                writer.println(input.timePs + "\t" + input.type.name() + "\t" + input.chip + "\t"
+                        + (input.key == null ? "-" : input.key) + "\t" + input.value);
+            }
+        }
+    }
+
+    public static List<Input> load(File file) throws IOException, ParsingException {
+        List<Input> inputs = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = StringUtils.split(line, '\t');
+                if (fields.length != 5) {
+                    throw new ParsingException("Invalid line in input journal " + file + ": " + line);
+                }
+                try {
+                    Input input = new Input(InputType.valueOf(fields[1]), Integer.parseInt(fields[2]),
+                            "-".equals(fields[3]) ? null : fields[3], Integer.parseInt(fields[4]));
+                    input.timePs = Long.parseLong(fields[0]);
+                    inputs.add(input);
+                } catch (IllegalArgumentException e) {
+                    throw new ParsingException("Invalid line in input journal " + file + ": " + line);
+                }
+            }
+        }
+        return inputs;
+    }
+}
@@ -35,6 +35,9 @@ public abstract class AbstractMemory implements Memory {
     byte writableMemory[][];
     byte executableMemory[][];
 
+    /** Pages also referenced by a MemorySnapshot, which must be copied before being written to */
+    boolean sharedPages[];
+
     /** Do we have more optimal nio mmap operation? */
     boolean HAVE_java_nio_FileChannelImpl_nio_mmap_file = false;
 
@@ -53,6 +56,7 @@ public abstract class AbstractMemory implements Memory {
         readableMemory = new byte[NUM_PAGES][];
         writableMemory = new byte[NUM_PAGES][];
         executableMemory = new byte[NUM_PAGES][];
+        sharedPages = new boolean[NUM_PAGES];
     }
 
     /** Return the offset part of the address */
@@ -139,6 +143,7 @@ public abstract class AbstractMemory implements Memory {
             }
 
             // Allocate pages
+            sharedPages[pte + i] = false;
             readableMemory[pte + i] = read ? pages[i] : new byte[0];
             writableMemory[pte + i] = write ? pages[i] : new byte[0];
             executableMemory[pte + i] = exec ? pages[i] : new byte[0];
@@ -394,6 +399,10 @@ public abstract class AbstractMemory implements Memory {
                 map(pte << OFFSET_BITS, getPageSize(), true, !isWriteProtected, true);
                 page = getPage(pte);
             }
+            else if (sharedPages[pte]) {
+                unsharePage(pte);
+                page = getPage(pte);
+            }
             int bytesRead = fis.read(page, offset, bytesToRead);
             if (bytesRead != bytesToRead) {
                 throw new IOException("Error : expected " + bytesToRead + " bytes but could only read " + bytesRead);
@@ -433,6 +442,9 @@ public abstract class AbstractMemory implements Memory {
             while (bytesPushed < rangeSize) {
                 int page = getPTE(address);
                 int offset = getOffset(address);
+                if (sharedPages[page]) {
+                    unsharePage(page);
+                }
                 byte[] pageBuffer = getPage(page);
                 int byteCount = Math.min(rangeSize - bytesPushed, PAGE_SIZE - offset);
                 buffer.get(pageBuffer, offset, byteCount);
@@ -474,6 +486,58 @@ public abstract class AbstractMemory implements Memory {
         return numPages;
     }
 
+    /**
+     * Captures the current contents of memory. Pages are not copied: they are shared with the snapshot, and this
+     * memory copies each of them before its first write (subclasses must call unsharePage() from their store methods)
+     */
+    public MemorySnapshot takeSnapshot() {
+        MemorySnapshot snapshot = new MemorySnapshot(getNumUsedPages());
+        int index = 0;
+        for (int i = 0; i < NUM_PAGES; i++) {
+            if ((readableMemory[i] != null) || (writableMemory[i] != null) || (executableMemory[i] != null)) {
+                snapshot.pageNumbers[index] = i;
+                snapshot.readablePages[index] = readableMemory[i];
+                snapshot.writablePages[index] = writableMemory[i];
+                snapshot.executablePages[index] = executableMemory[i];
+                sharedPages[i] = true;
+                index++;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Restores the contents of memory captured by takeSnapshot(). The snapshot is left unchanged and can be restored
+     * again later
+     */
+    public void restoreSnapshot(MemorySnapshot snapshot) {
+        clear();
+        for (int index = 0; index < snapshot.pageNumbers.length; index++) {
+            int i = snapshot.pageNumbers[index];
+            readableMemory[i] = snapshot.readablePages[index];
+            writableMemory[i] = snapshot.writablePages[index];
+            executableMemory[i] = snapshot.executablePages[index];
+            sharedPages[i] = true;
+        }
+    }
+
+    /**
+     * Replaces a page shared with a snapshot by a copy, before it is written to
+     * @return the writable copy
+     */
+    final byte[] unsharePage(int pte) {
+        // Protected accesses are mapped to empty arrays, which need no copy
+        byte[] page = readableMemory[pte];
+        if (page == null || page.length == 0) page = writableMemory[pte];
+        if (page == null || page.length == 0) page = executableMemory[pte];
+        byte[] copy = page.clone();
+        if (readableMemory[pte] == page) readableMemory[pte] = copy;
+        if (writableMemory[pte] == page) writableMemory[pte] = copy;
+        if (executableMemory[pte] == page) executableMemory[pte] = copy;
+        sharedPages[pte] = false;
+        return writableMemory[pte];
+    }
+
     public void saveAllToStream(OutputStream outputStream) throws IOException {
         // Header contains one byte per page, each with the 3 LSB representing R/W/X
         for (int i = 0; i < NUM_PAGES; i++) {
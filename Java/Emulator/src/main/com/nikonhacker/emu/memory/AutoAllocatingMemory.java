@@ -151,6 +151,9 @@ public class AutoAllocatingMemory extends AbstractMemory implements Memory {
             map(truncateToPage(addr), PAGE_SIZE, true, true, true);
             pageData = writableMemory[getPTE(addr)];
         }
+        else if (sharedPages[getPTE(addr)]) {
+            pageData = unsharePage(getPTE(addr));
+        }
         pageData[getOffset(addr)] = (byte) value;
     }
 
@@ -28,6 +28,16 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
 
     private List<MemoryActivityListener> activityListeners = new ArrayList<MemoryActivityListener>();
 
+    /**
+     * Incremented at each store. Only meant to detect that memory was modified between two points in time (see
+     * IdleLoopDetector). Volatile so that the emulator thread sees stores of the DMA thread without delay.
+     * The increment is not atomic: concurrent stores of two threads may count once, which is enough to see a change
+     */
+    private volatile long storeCount;
+
+    /** If not null, receives a count of each access */
+    private MemoryAccessStatistics accessStatistics;
+
     public enum AccessSource{
         /** Access due to code reading/writing to memory */
         CODE,
@@ -64,6 +74,21 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
         return activityListeners.remove(activityListener);
     }
 
+    /**
+     * Provide statistics to count accesses into, or null to stop counting
+     */
+    public void setAccessStatistics(MemoryAccessStatistics accessStatistics) {
+        this.accessStatistics = accessStatistics;
+    }
+
+    public MemoryAccessStatistics getAccessStatistics() {
+        return accessStatistics;
+    }
+
+    public long getStoreCount() {
+        return storeCount;
+    }
+
     /**
      * Perform a byte load where the sign extended result fills the return value
      *
@@ -86,6 +111,9 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
 
             byte value = pageData[offset];
             if (accessSource != null) {
+                if (accessStatistics != null) {
+                    accessStatistics.count(addr, MemoryAccessStatistics.READ, accessSource);
+                }
                 for (MemoryActivityListener activityListener : activityListeners) {
                     if (activityListener.matches(addr)) {
                         Byte b = activityListener.onLoadData8(pageData, addr, value, accessSource);
@@ -127,6 +155,9 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
 
             byte value = pageData[offset];
             if (accessSource != null) {
+                if (accessStatistics != null) {
+                    accessStatistics.count(addr, MemoryAccessStatistics.READ, accessSource);
+                }
                 for (MemoryActivityListener activityListener : activityListeners) {
                     if (activityListener.matches(addr)) {
                         Byte b = activityListener.onLoadData8(pageData, addr, value, accessSource);
@@ -158,6 +189,9 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
     public int loadSigned16(int addr, AccessSource accessSource) {
         int value = (loadSigned8(addr, null) << 8) | loadUnsigned8(addr + 1, null);
         if (accessSource != null) {
+            if (accessStatistics != null) {
+                accessStatistics.count(addr, MemoryAccessStatistics.READ, accessSource);
+            }
             for (MemoryActivityListener activityListener : activityListeners) {
                 if (activityListener.matches(addr)) {
                     Integer i = activityListener.onLoadData16(readableMemory[getPTE(addr)], addr, value, accessSource);
@@ -186,6 +220,9 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
     public int loadUnsigned16(int addr, AccessSource accessSource) {
         int value = (loadUnsigned8(addr, null) << 8) | loadUnsigned8(addr + 1, null);
         if (accessSource != null) {
+            if (accessStatistics != null) {
+                accessStatistics.count(addr, MemoryAccessStatistics.READ, accessSource);
+            }
             for (MemoryActivityListener activityListener : activityListeners) {
                 if (activityListener.matches(addr)) {
                     Integer i = activityListener.onLoadData16(readableMemory[getPTE(addr)], addr, value, accessSource);
@@ -214,6 +251,9 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
         int value = (loadSigned8(addr, null) << 24) | (loadUnsigned8(addr + 1, null) << 16)
                 | (loadUnsigned8(addr + 2, null) << 8) | loadUnsigned8(addr + 3, null);
         if (accessSource != null) {
+            if (accessStatistics != null) {
+                accessStatistics.count(addr, MemoryAccessStatistics.READ, accessSource);
+            }
             for (MemoryActivityListener activityListener : activityListeners) {
                 if (activityListener.matches(addr)) {
                     Integer i = activityListener.onLoadData32(readableMemory[getPTE(addr)], addr, value, accessSource);
@@ -241,6 +281,9 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
         int page = getPTE(addr);
         int offset = getOffset(addr);
         if (accessSource != null) {
+            if (accessStatistics != null) {
+                accessStatistics.count(addr, MemoryAccessStatistics.EXEC, accessSource);
+            }
             for (MemoryActivityListener activityListener : activityListeners) {
                 if (activityListener.matches(addr)) {
                     activityListener.onLoadInstruction8(executableMemory[page], addr, executableMemory[page][offset], accessSource);
@@ -257,6 +300,9 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
     public int loadInstruction16(int addr, AccessSource accessSource) {
         int value = (loadInstruction8(addr, null) << 8) | loadInstruction8(addr + 1, null);
         if (accessSource != null) {
+            if (accessStatistics != null) {
+                accessStatistics.count(addr, MemoryAccessStatistics.EXEC, accessSource);
+            }
             for (MemoryActivityListener activityListener : activityListeners) {
                 if (activityListener.matches(addr)) {
                     activityListener.onLoadInstruction16(executableMemory[getPTE(addr)], addr, value, accessSource);
@@ -281,6 +327,9 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
                 | (loadInstruction8(addr + 1, null) << 16)
                 | (loadInstruction8(addr + 2, null) << 8) | loadInstruction8(addr + 3, null);
         if (accessSource != null) {
+            if (accessStatistics != null) {
+                accessStatistics.count(addr, MemoryAccessStatistics.EXEC, accessSource);
+            }
             for (MemoryActivityListener activityListener : activityListeners) {
                 if (activityListener.matches(addr)) {
                     activityListener.onLoadInstruction32(executableMemory[getPTE(addr)], addr, value, accessSource);
@@ -309,7 +358,13 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
             map(truncateToPage(addr), PAGE_SIZE, true, true, true);
             pageData = writableMemory[page];
         }
+        else if (sharedPages[page]) {
+            pageData = unsharePage(page);
+        }
         if (accessSource != null) {
+            if (accessStatistics != null) {
+                accessStatistics.count(addr, MemoryAccessStatistics.WRITE, accessSource);
+            }
             for (MemoryActivityListener activityListener : activityListeners) {
                 if (activityListener.matches(addr)) {
                     activityListener.onStore8(pageData, addr, (byte) value, accessSource);
@@ -317,6 +372,7 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
             }
         }
         pageData[offset] = (byte) value;
+        storeCount++;
     }
 
     /**
@@ -331,6 +387,9 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
 
     public void store16(int addr, int value, AccessSource accessSource) {
         if (accessSource != null) {
+            if (accessStatistics != null) {
+                accessStatistics.count(addr, MemoryAccessStatistics.WRITE, accessSource);
+            }
             for (MemoryActivityListener activityListener : activityListeners) {
                 if (activityListener.matches(addr)) {
                     activityListener.onStore16(writableMemory[getPTE(addr)], addr, value, accessSource);
@@ -353,6 +412,9 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
 
     public void store32(int addr, int value, AccessSource accessSource) {
         if (accessSource != null) {
+            if (accessStatistics != null) {
+                accessStatistics.count(addr, MemoryAccessStatistics.WRITE, accessSource);
+            }
             for (MemoryActivityListener activityListener : activityListeners) {
                 if (activityListener.matches(addr)) {
                     activityListener.onStore32(writableMemory[getPTE(addr)], addr, value, accessSource);
@@ -365,4 +427,116 @@ public class DebuggableMemory extends AbstractMemory implements Memory {
         store8(addr + 3, value, null);
     }
 
+    /**
+     * Perform a block load, copying page by page instead of byte by byte.
+     * Listeners are still notified of each byte, so that they can log or override values
+     *
+     * @param addr the address of the first byte to load
+     * @param destination the array to copy data to
+     * @param destinationOffset the position of the first byte in destination
+     * @param length the number of bytes to load
+     * @param accessSource the source of the access, or null to skip listeners
+     */
+    public void loadBlock(int addr, byte[] destination, int destinationOffset, int length, AccessSource accessSource) {
+        while (length > 0) {
+            int page = getPTE(addr);
+            int offset = getOffset(addr);
+            byte[] pageData = readableMemory[page];
+            if (pageData == null) {
+                map(truncateToPage(addr), PAGE_SIZE, true, true, true);
+                pageData = readableMemory[page];
+            }
+            int count = Math.min(length, PAGE_SIZE - offset);
+            System.arraycopy(pageData, offset, destination, destinationOffset, count);
+            if (accessSource != null) {
+                if (accessStatistics != null) {
+                    accessStatistics.countRange(addr, count, MemoryAccessStatistics.READ, accessSource);
+                }
+                for (MemoryActivityListener activityListener : activityListeners) {
+                    for (int i = 0; i < count; i++) {
+                        if (activityListener.matches(addr + i)) {
+                            Byte b = activityListener.onLoadData8(pageData, addr + i, destination[destinationOffset + i], accessSource);
+                            if (b != null) {
+                                destination[destinationOffset + i] = b;
+                            }
+                        }
+                    }
+                }
+            }
+            addr += count;
+            destinationOffset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Perform a block store of bytes, see storeBlock(int, byte[], int, int, int, AccessSource)
+     */
+    public void storeBlock(int addr, byte[] source, int sourceOffset, int length, AccessSource accessSource) {
+        storeBlock(addr, source, sourceOffset, length, 1, accessSource);
+    }
+
+    /**
+     * Perform a block store, copying page by page instead of byte by byte.
+     * Listeners are still notified of each access, as if the block had been stored by successive stores of
+     * accessSize bytes, but only once the whole block is stored
+     *
+     * @param addr the address of the first byte to store
+     * @param source the array to copy data from, in big endian order
+     * @param sourceOffset the position of the first byte in source
+     * @param length the number of bytes to store, a multiple of accessSize
+     * @param accessSize the size of the accesses notified to listeners: 1, 2 or 4
+     * @param accessSource the source of the access, or null to skip listeners
+     */
+    public void storeBlock(int addr, byte[] source, int sourceOffset, int length, int accessSize, AccessSource accessSource) {
+        if (length % accessSize != 0) {
+            throw new IllegalArgumentException("Block length " + length + " is not a multiple of " + accessSize);
+        }
+        int startAddr = addr;
+        int startOffset = sourceOffset;
+        int totalLength = length;
+        while (length > 0) {
+            int page = getPTE(addr);
+            int offset = getOffset(addr);
+            byte[] pageData = writableMemory[page];
+            if (pageData == null) {
+                map(truncateToPage(addr), PAGE_SIZE, true, true, true);
+                pageData = writableMemory[page];
+            }
+            else if (sharedPages[page]) {
+                pageData = unsharePage(page);
+            }
+            int count = Math.min(length, PAGE_SIZE - offset);
+            System.arraycopy(source, sourceOffset, pageData, offset, count);
+            storeCount++;
+            addr += count;
+            sourceOffset += count;
+            length -= count;
+        }
+        if (accessSource != null) {
+            if (accessStatistics != null) {
+                accessStatistics.countRange(startAddr, totalLength, MemoryAccessStatistics.WRITE, accessSource);
+            }
+            for (MemoryActivityListener activityListener : activityListeners) {
+                for (int i = 0; i < totalLength; i += accessSize) {
+                    int unitAddr = startAddr + i;
+                    if (activityListener.matches(unitAddr)) {
+                        byte[] pageData = writableMemory[getPTE(unitAddr)];
+                        int s = startOffset + i;
+                        switch (accessSize) {
+                            case 1:
+                                activityListener.onStore8(pageData, unitAddr, source[s], accessSource);
+                                break;
+                            case 2:
+                                activityListener.onStore16(pageData, unitAddr, ((source[s] & 0xFF) << 8) | (source[s + 1] & 0xFF), accessSource);
+                                break;
+                            default:
+                                activityListener.onStore32(pageData, unitAddr, ((source[s] & 0xFF) << 24) | ((source[s + 1] & 0xFF) << 16)
+                                        | ((source[s + 2] & 0xFF) << 8) | (source[s + 3] & 0xFF), accessSource);
+                        }
+                    }
+                }
+            }
+        }
+    }
 }
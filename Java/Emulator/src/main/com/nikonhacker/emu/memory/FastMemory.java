@@ -121,6 +121,9 @@ public class FastMemory extends AbstractMemory implements Memory  {
      * @param addr  the address of where to store
      */
     public final void store8(int addr, int value) {
+        if (sharedPages[AbstractMemory.getPTE(addr)]) {
+            unsharePage(AbstractMemory.getPTE(addr));
+        }
         writableMemory[AbstractMemory.getPTE(addr)][AbstractMemory.getOffset(addr)] = (byte) value;
     }
 
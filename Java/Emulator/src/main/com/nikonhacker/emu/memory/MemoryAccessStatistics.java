@@ -0,0 +1,195 @@
+package com.nikonhacker.emu.memory;
+
+import java.util.EnumSet;
+
+/**
+ * Counts reads, writes and instruction fetches per block of BLOCK_SIZE bytes, separately for each AccessSource.
+ *
+ * Counting is done directly by DebuggableMemory (see DebuggableMemory.setAccessStatistics()) instead of through
+ * a catch-all MemoryActivityListener, and counters are only allocated for pages that are actually accessed.
+ *
+ * Each AccessSource has its own stripe of counters, so that the emulator, DMA and image transfer threads never
+ * write to the same arrays. Counters are plain ints written without synchronization: readers (typically the GUI)
+ * must go through takeSnapshot(), which switches the writers to a fresh epoch. A writer may still be counting in the
+ * epoch it read just before the switch, so snapshots only include epochs retired by an earlier call, and thus lag
+ * one call behind.
+ *
+ * Epochs start without any page array, so the first access of a writer in a new epoch allocates one and writes the
+ * volatile publishedPages of that epoch. Reading it gives the reader a happens-before edge on the page arrays and
+ * counts that writer produced in the previous epoch. Increments of a source that has not accessed memory again
+ * since the switch are only visible in practice, which is acceptable for statistics meant for display.
+ */
+public class MemoryAccessStatistics {
+    public static final int READ  = 0;
+    public static final int WRITE = 1;
+    public static final int EXEC  = 2;
+    public static final int NUM_KINDS = 3;
+
+    public static final int BLOCK_BITS = 5;
+    public static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    public static final int BLOCKS_PER_PAGE = AbstractMemory.PAGE_SIZE >>> BLOCK_BITS;
+
+    private static final int NUM_STRIPES = DebuggableMemory.AccessSource.values().length;
+
+    /** Counters currently being written to by the emulation threads */
+    private volatile Epoch current = new Epoch(0);
+
+    /** Epoch retired by the previous snapshot. Writers that read current just before the switch may still use it */
+    private Epoch retired;
+
+    /** Sum of all epochs before retired, which no thread writes to anymore */
+    private final Epoch totals = new Epoch(0);
+
+    /**
+     * Counters of one epoch: [stripe][page][block * NUM_KINDS + kind].
+     * Page arrays are only allocated upon first access to that page.
+     */
+    private static class Epoch {
+        private final int number;
+        private final int[][][] counters = new int[NUM_STRIPES][AbstractMemory.NUM_PAGES][];
+        /** Number of page arrays allocated. Written after each allocation to publish it to the reader */
+        private volatile int publishedPages;
+
+        private Epoch(int number) {
+            this.number = number;
+        }
+
+        /**
+         * Volatile read, to be done before reading the counters of this epoch
+         */
+        private boolean isEmpty() {
+            return publishedPages == 0;
+        }
+
+        private void add(Epoch other) {
+            if (other.isEmpty()) {
+                return;
+            }
+            for (int stripe = 0; stripe < NUM_STRIPES; stripe++) {
+                for (int page = 0; page < AbstractMemory.NUM_PAGES; page++) {
+                    int[] source = other.counters[stripe][page];
+                    if (source != null) {
+                        int[] destination = counters[stripe][page];
+                        if (destination == null) {
+                            counters[stripe][page] = source.clone();
+                            publishedPages++;
+                        }
+                        else {
+                            for (int i = 0; i < destination.length; i++) {
+                                destination[i] += source[i];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public final void count(int address, int kind, DebuggableMemory.AccessSource accessSource) {
+        Epoch epoch = current;
+        int[][] pages = epoch.counters[accessSource.ordinal()];
+        int page = AbstractMemory.getPTE(address);
+        int[] blocks = pages[page];
+        if (blocks == null) {
+            blocks = new int[BLOCKS_PER_PAGE * NUM_KINDS];
+            pages[page] = blocks;
+            epoch.publishedPages++;
+        }
+        blocks[(AbstractMemory.getOffset(address) >>> BLOCK_BITS) * NUM_KINDS + kind]++;
+    }
+
+    /**
+     * Counts one access to each block overlapped by the given range
+     */
+    public final void countRange(int address, int length, int kind, DebuggableMemory.AccessSource accessSource) {
+        int lastBlockAddress = (address + length - 1) & ~(BLOCK_SIZE - 1);
+        for (int blockAddress = address & ~(BLOCK_SIZE - 1); blockAddress != lastBlockAddress + BLOCK_SIZE; blockAddress += BLOCK_SIZE) {
+            count(blockAddress, kind, accessSource);
+        }
+    }
+
+    /**
+     * Starts a new epoch and returns the counts accumulated up to the previous call.
+     * Meant to be called periodically from a single reader thread.
+     */
+    public synchronized Snapshot takeSnapshot() {
+        Epoch previous = retired;
+        retired = current;
+        current = new Epoch(retired.number + 1);
+
+        if (previous != null) {
+            // Writers that moved on to retired published what they counted in previous when allocating its first pages
+            retired.isEmpty();
+            totals.add(previous);
+        }
+        Snapshot snapshot = new Snapshot(previous == null ? -1 : previous.number);
+        snapshot.add(totals);
+        return snapshot;
+    }
+
+    /**
+     * Counts of all epochs up to a given one. Never modified once returned
+     */
+    public static class Snapshot {
+        private final int epoch;
+        private final Epoch counts = new Epoch(0);
+
+        private Snapshot(int epoch) {
+            this.epoch = epoch;
+        }
+
+        private void add(Epoch epoch) {
+            counts.add(epoch);
+        }
+
+        /**
+         * @return the number of the last epoch included, or -1 if none
+         */
+        public int getEpoch() {
+            return epoch;
+        }
+
+        /**
+         * @return true if at least one access to the given page was counted
+         */
+        public boolean isPageAccessed(int page) {
+            for (int stripe = 0; stripe < NUM_STRIPES; stripe++) {
+                if (counts.counters[stripe][page] != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the number of accesses of the given kind to a whole page, by the given sources
+         */
+        public long getPageCount(int page, int kind, EnumSet<DebuggableMemory.AccessSource> accessSources) {
+            long count = 0;
+            for (DebuggableMemory.AccessSource accessSource : accessSources) {
+                int[] blocks = counts.counters[accessSource.ordinal()][page];
+                if (blocks != null) {
+                    for (int i = kind; i < blocks.length; i += NUM_KINDS) {
+                        count += blocks[i];
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @return the number of accesses of the given kind to the block containing address, by the given sources
+         */
+        public int getBlockCount(int address, int kind, EnumSet<DebuggableMemory.AccessSource> accessSources) {
+            int count = 0;
+            int index = (AbstractMemory.getOffset(address) >>> BLOCK_BITS) * NUM_KINDS + kind;
+            for (DebuggableMemory.AccessSource accessSource : accessSources) {
+                int[] blocks = counts.counters[accessSource.ordinal()][AbstractMemory.getPTE(address)];
+                if (blocks != null) {
+                    count += blocks[index];
+                }
+            }
+            return count;
+        }
+    }
+}
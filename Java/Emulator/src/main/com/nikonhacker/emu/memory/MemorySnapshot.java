@@ -0,0 +1,24 @@
+package com.nikonhacker.emu.memory;
+
+/**
+ * Contents of an AbstractMemory at a given time, see AbstractMemory.takeSnapshot().
+ * Pages are shared with the memory until it writes to them, so a snapshot only costs the page table entries of used
+ * pages, plus the pages written after it was taken.
+ */
+public class MemorySnapshot {
+    final int[]    pageNumbers;
+    final byte[][] readablePages;
+    final byte[][] writablePages;
+    final byte[][] executablePages;
+
+    MemorySnapshot(int numPages) {
+        pageNumbers = new int[numPages];
+        readablePages = new byte[numPages][];
+        writablePages = new byte[numPages][];
+        executablePages = new byte[numPages][];
+    }
+
+    public int getNumPages() {
+        return pageNumbers.length;
+    }
+}
@@ -1,6 +1,5 @@
 package com.nikonhacker.emu.memory.listener;
 
-import com.nikonhacker.Format;
 import com.nikonhacker.disassembly.CPUState;
 import com.nikonhacker.emu.MasterClock;
 import com.nikonhacker.emu.memory.DebuggableMemory;
@@ -8,82 +7,54 @@ import com.nikonhacker.emu.memory.DebuggableMemory;
 import java.io.PrintWriter;
 import java.util.Set;
 
+/**
+ * Logs accesses to the matching addresses.
+ * Accesses are only enqueued in an AccessLogRing on the emulator thread. Formatting and printing is done by the
+ * formatter thread of the ring, so close() must be called once the listener is removed from memory.
+ */
 public abstract class AbstractAccessLoggerActivityListener implements MemoryActivityListener {
-    private PrintWriter                        printWriter;
     private CPUState                           cpuState;
     private Set<DebuggableMemory.AccessSource> selectedAccessSources;
-    private MasterClock                        masterClock;
+    private AccessLogRing                      ring;
 
     public AbstractAccessLoggerActivityListener(PrintWriter printWriter, CPUState cpuState, Set<DebuggableMemory.AccessSource> selectedAccessSources, MasterClock masterClock) {
-        this.printWriter = printWriter;
+        this(new AccessLogRing(printWriter, masterClock), cpuState, selectedAccessSources);
+    }
+
+    /**
+     * @param ring a ring configured with a specific overflow policy or binary output
+     */
+    public AbstractAccessLoggerActivityListener(AccessLogRing ring, CPUState cpuState, Set<DebuggableMemory.AccessSource> selectedAccessSources) {
+        this.ring = ring;
         this.cpuState = cpuState;
         this.selectedAccessSources = selectedAccessSources;
-        this.masterClock = masterClock;
+    }
+
+    /**
+     * Writes pending accesses and stops the formatter thread
+     */
+    public void close() {
+        ring.close();
     }
 
 
     public Byte onLoadData8(byte[] pageData, int address, byte value, DebuggableMemory.AccessSource accessSource) {
         if (selectedAccessSources.contains(accessSource)) {
-            String msg = "            read from 0x" + Format.asHex(address, 8) + " : 0x" + Format.asHex(value & 0xFF, 2) + "        ";
-            switch (accessSource) {
-                case CODE:
-                    msg += "(@0x" + Format.asHex(cpuState.pc, 8) + ")";
-                    break;
-                case DMA:
-                    msg += "(DMA ctrlr)";
-                    break;
-                case IMGA:
-                    msg += "(IMGA ctrlr)";
-                    break;
-            }
-            if (masterClock != null) {
-                msg = masterClock.getFormatedTotalElapsedTimeMs() + " " + msg;
-            }
-            printWriter.println(msg);
+            ring.log(AccessLogRing.KIND_READ, 1, address, value & 0xFF, cpuState.pc, accessSource);
         }
         return null;
     }
 
     public Integer onLoadData16(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
         if (selectedAccessSources.contains(accessSource)) {
-            String msg = "            read from 0x" + Format.asHex(address, 8) + " : 0x" + Format.asHex(value & 0xFFFF, 4) + "      ";
-            switch (accessSource) {
-                case CODE:
-                    msg += "(@0x" + Format.asHex(cpuState.pc, 8) + ")";
-                    break;
-                case DMA:
-                    msg += "(DMA ctrlr)";
-                    break;
-                case IMGA:
-                    msg += "(IMGA ctrlr)";
-                    break;
-            }
-            if (masterClock != null) {
-                msg = masterClock.getFormatedTotalElapsedTimeMs() + " " + msg;
-            }
-            printWriter.println(msg);
+            ring.log(AccessLogRing.KIND_READ, 2, address, value & 0xFFFF, cpuState.pc, accessSource);
         }
         return null;
     }
 
     public Integer onLoadData32(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
         if (selectedAccessSources.contains(accessSource)) {
-            String msg = "            read from 0x" + Format.asHex(address, 8) + " : 0x" + Format.asHex(value, 8) + "  ";
-            switch (accessSource) {
-                case CODE:
-                    msg += "(@0x" + Format.asHex(cpuState.pc, 8) + ")";
-                    break;
-                case DMA:
-                    msg += "(DMA ctrlr)";
-                    break;
-                case IMGA:
-                    msg += "(IMGA ctrlr)";
-                    break;
-            }
-            if (masterClock != null) {
-                msg = masterClock.getFormatedTotalElapsedTimeMs() + " " + msg;
-            }
-            printWriter.println(msg);
+            ring.log(AccessLogRing.KIND_READ, 4, address, value, cpuState.pc, accessSource);
         }
         return null;
     }
@@ -91,128 +62,38 @@ public abstract class AbstractAccessLoggerActivityListener implements MemoryActi
 
     public void onLoadInstruction8(byte[] pageData, int address, byte value, DebuggableMemory.AccessSource accessSource) {
         if (selectedAccessSources.contains(accessSource)) {
-            String msg = "   CODE EXECUTED from 0x" + Format.asHex(address, 8) + " : 0x" + Format.asHex(value & 0xFF, 2) + "        ";
-            switch (accessSource) {
-                case CODE:
-                    msg += "(@0x" + Format.asHex(cpuState.pc, 8) + ")";
-                    break;
-                case DMA:
-                    msg += "(DMA ctrlr)";
-                    break;
-                case IMGA:
-                    msg += "(IMGA ctrlr)";
-                    break;
-            }
-            if (masterClock != null) {
-                msg = masterClock.getFormatedTotalElapsedTimeMs() + " " + msg;
-            }
-            printWriter.println(msg);
+            ring.log(AccessLogRing.KIND_EXECUTE, 1, address, value & 0xFF, cpuState.pc, accessSource);
         }
     }
 
     public void onLoadInstruction16(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
         if (selectedAccessSources.contains(accessSource)) {
-            String msg = "   CODE EXECUTED from 0x" + Format.asHex(address, 8) + " : 0x" + Format.asHex(value & 0xFFFF, 4) + "      ";
-            switch (accessSource) {
-                case CODE:
-                    msg += "(@0x" + Format.asHex(cpuState.pc, 8) + ")";
-                    break;
-                case DMA:
-                    msg += "(DMA ctrlr)";
-                    break;
-                case IMGA:
-                    msg += "(IMGA ctrlr)";
-                    break;
-            }
-            if (masterClock != null) {
-                msg = masterClock.getFormatedTotalElapsedTimeMs() + " " + msg;
-            }
-            printWriter.println(msg);
+            ring.log(AccessLogRing.KIND_EXECUTE, 2, address, value & 0xFFFF, cpuState.pc, accessSource);
         }
     }
 
     public void onLoadInstruction32(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
         if (selectedAccessSources.contains(accessSource)) {
-            String msg = "   CODE EXECUTED from 0x" + Format.asHex(address, 8) + " : 0x" + Format.asHex(value, 8) + "  ";
-            switch (accessSource) {
-                case CODE:
-                    msg += "(@0x" + Format.asHex(cpuState.pc, 8) + ")";
-                    break;
-                case DMA:
-                    msg += "(DMA ctrlr)";
-                    break;
-                case IMGA:
-                    msg += "(IMGA ctrlr)";
-                    break;
-            }
-            if (masterClock != null) {
-                msg = masterClock.getFormatedTotalElapsedTimeMs() + " " + msg;
-            }
-            printWriter.println(msg);
+            ring.log(AccessLogRing.KIND_EXECUTE, 4, address, value, cpuState.pc, accessSource);
         }
     }
 
 
     public void onStore8(byte[] pageData, int address, byte value, DebuggableMemory.AccessSource accessSource) {
         if (selectedAccessSources.contains(accessSource)) {
-            String msg = "0x" + Format.asHex(value & 0xFF, 2) + "       written to 0x" + Format.asHex(address, 8) + "               ";
-            switch (accessSource) {
-                case CODE:
-                    msg += "(@0x" + Format.asHex(cpuState.pc, 8) + ")";
-                    break;
-                case DMA:
-                    msg += "(DMA ctrlr)";
-                    break;
-                case IMGA:
-                    msg += "(IMGA ctrlr)";
-                    break;
-            }
-            if (masterClock != null) {
-                msg = masterClock.getFormatedTotalElapsedTimeMs() + " " + msg;
-            }
-            printWriter.println(msg);
+            ring.log(AccessLogRing.KIND_WRITE, 1, address, value & 0xFF, cpuState.pc, accessSource);
         }
     }
 
     public void onStore16(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
         if (selectedAccessSources.contains(accessSource)) {
-            String msg = "0x" + Format.asHex(value & 0xFFFF, 4) + "     written to 0x" + Format.asHex(address, 8) + "               ";
-            switch (accessSource) {
-                case CODE:
-                    msg += "(@0x" + Format.asHex(cpuState.pc, 8) + ")";
-                    break;
-                case DMA:
-                    msg += "(DMA ctrlr)";
-                    break;
-                case IMGA:
-                    msg += "(IMGA ctrlr)";
-                    break;
-            }
-            if (masterClock != null) {
-                msg = masterClock.getFormatedTotalElapsedTimeMs() + " " + msg;
-            }
-            printWriter.println(msg);
+            ring.log(AccessLogRing.KIND_WRITE, 2, address, value & 0xFFFF, cpuState.pc, accessSource);
         }
     }
 
     public void onStore32(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
         if (selectedAccessSources.contains(accessSource)) {
-            String msg = "0x" + Format.asHex(value, 8) + " written to 0x" + Format.asHex(address, 8) + "               ";
-            switch (accessSource) {
-                case CODE:
-                    msg += "(@0x" + Format.asHex(cpuState.pc, 8) + ")";
-                    break;
-                case DMA:
-                    msg += "(DMA ctrlr)";
-                    break;
-                case IMGA:
-                    msg += "(IMGA ctrlr)";
-                    break;
-            }
-            if (masterClock != null) {
-                msg = masterClock.getFormatedTotalElapsedTimeMs() + " " + msg;
-            }
-            printWriter.println(msg);
+            ring.log(AccessLogRing.KIND_WRITE, 4, address, value, cpuState.pc, accessSource);
         }
     }
 }
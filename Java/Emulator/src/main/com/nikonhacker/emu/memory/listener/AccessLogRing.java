@@ -0,0 +1,250 @@
+package com.nikonhacker.emu.memory.listener;
+
+import com.nikonhacker.Format;
+import com.nikonhacker.emu.MasterClock;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer single-consumer ring of memory access events, so that access loggers do not format nor print on
+ * the emulator thread.
+ *
+ * The producer (the thread emulating both chips, which also runs DMA and other controllers) stores fixed-size
+ * events in preallocated arrays. A formatter thread consumes them in batches and either prints them in the
+ * historical text format or, if a binary output is given, writes them as fixed-size big-endian records:
+ * <pre>
+ *  0: long time in ps
+ *  8: int  address
+ * 12: int  value
+ * 16: int  pc
+ * 20: byte kind (KIND_xxx)
+ * 21: byte size in bytes
+ * 22: byte access source ordinal
+ * 23: byte reserved
+ * </pre>
+ * When the ring is full, the producer either waits for the formatter, or drops the event and the formatter reports
+ * the number of dropped events, depending on the OverflowPolicy.
+ */
+public class AccessLogRing {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    public static final int KIND_READ    = 0;
+    public static final int KIND_EXECUTE = 1;
+    public static final int KIND_WRITE   = 2;
+
+    public enum OverflowPolicy {
+        /** The emulator waits until the formatter catches up. Nothing is lost */
+        BLOCK,
+        /** The event is dropped. The number of dropped events is logged */
+        DROP
+    }
+
+    private static final long IDLE_WAIT_NS = 1000000;
+
+    private final int    mask;
+    private final long[] times;
+    private final int[]  addresses;
+    private final int[]  values;
+    private final int[]  pcs;
+    /** kind << 16 | size << 8 | access source ordinal */
+    private final int[]  descriptors;
+
+    /** Sequence of the next event to write. Only written by the producer */
+    private final AtomicLong tail = new AtomicLong();
+    /** Sequence of the next event to read. Only written by the consumer */
+    private final AtomicLong head = new AtomicLong();
+    /** Producer's copy of head, refreshed only when the ring seems full */
+    private long cachedHead;
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    private final OverflowPolicy   overflowPolicy;
+    private final MasterClock      masterClock;
+    private final PrintWriter      printWriter;
+    private final DataOutputStream binaryOutput;
+    private final Thread           formatterThread;
+    private volatile boolean       closed;
+
+    private final DecimalFormat milliSecondFormatter = new DecimalFormat("0000.000000000");
+
+    /**
+     * @param printWriter text destination, ignored if binaryOutput is not null
+     * @param binaryOutput if not null, events are written there without formatting
+     * @param masterClock used to timestamp events. If null, events are not timestamped
+     * @param capacity number of events in the ring. Must be a power of 2
+     */
+    public AccessLogRing(PrintWriter printWriter, DataOutputStream binaryOutput, MasterClock masterClock, OverflowPolicy overflowPolicy, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+        }
+        this.printWriter = printWriter;
+        this.binaryOutput = binaryOutput;
+        this.masterClock = masterClock;
+        this.overflowPolicy = overflowPolicy;
+        mask = capacity - 1;
+        times = new long[capacity];
+        addresses = new int[capacity];
+        values = new int[capacity];
+        pcs = new int[capacity];
+        descriptors = new int[capacity];
+
+        formatterThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "Access log formatter");
+        formatterThread.setDaemon(true);
+        formatterThread.start();
+    }
+
+    public AccessLogRing(PrintWriter printWriter, MasterClock masterClock) {
+        this(printWriter, null, masterClock, OverflowPolicy.BLOCK, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Enqueues an event. Must always be called from the same thread
+     */
+    public void log(int kind, int size, int address, int value, int pc, DebuggableMemory.AccessSource accessSource) {
+        long sequence = tail.get();
+        if (sequence - cachedHead > mask) {
+            cachedHead = head.get();
+            while (sequence - cachedHead > mask) {
+                if (overflowPolicy == OverflowPolicy.DROP || closed) {
+                    droppedEvents.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(formatterThread);
+                Thread.yield();
+                cachedHead = head.get();
+            }
+        }
+        int slot = (int) sequence & mask;
+        times[slot] = (masterClock == null) ? -1 : masterClock.getTotalElapsedTimePs();
+        addresses[slot] = address;
+        values[slot] = value;
+        pcs[slot] = pc;
+        descriptors[slot] = kind << 16 | size << 8 | accessSource.ordinal();
+        // Publishes the event. Ordered write, cheaper than a volatile one
+        tail.lazySet(sequence + 1);
+    }
+
+    /**
+     * Stops the formatter thread once all pending events are written
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(formatterThread);
+        try {
+            formatterThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume() {
+        StringBuilder msg = new StringBuilder();
+        while (true) {
+            // Read closed before tail, so that no event published before close() is missed
+            boolean mustStop = closed;
+            long available = tail.get();
+            long sequence = head.get();
+            if (sequence == available) {
+                reportDroppedEvents();
+                if (mustStop) {
+                    break;
+                }
+                if (printWriter != null) {
+                    printWriter.flush();
+                }
+                LockSupport.parkNanos(IDLE_WAIT_NS);
+                continue;
+            }
+            try {
+                for (; sequence < available; sequence++) {
+                    int slot = (int) sequence & mask;
+                    if (binaryOutput != null) {
+                        writeBinary(slot);
+                    }
+                    else {
+                        msg.setLength(0);
+                        format(msg, slot);
+                        printWriter.println(msg);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing access log: " + e.getMessage());
+                closed = true;
+            }
+            // Releases the slots to the producer
+            head.lazySet(available);
+        }
+        try {
+            if (binaryOutput != null) {
+                binaryOutput.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing access log: " + e.getMessage());
+        }
+    }
+
+    private void reportDroppedEvents() {
+        long dropped = droppedEvents.getAndSet(0);
+        if (dropped > 0 && printWriter != null && binaryOutput == null) {
+            printWriter.println("... " + dropped + " access(es) not logged");
+        }
+    }
+
+    private void writeBinary(int slot) throws IOException {
+        binaryOutput.writeLong(times[slot]);
+        binaryOutput.writeInt(addresses[slot]);
+        binaryOutput.writeInt(values[slot]);
+        binaryOutput.writeInt(pcs[slot]);
+        int descriptor = descriptors[slot];
+        binaryOutput.writeByte(descriptor >>> 16);
+        binaryOutput.writeByte(descriptor >>> 8);
+        binaryOutput.writeByte(descriptor);
+        binaryOutput.writeByte(0);
+    }
+
+    private void format(StringBuilder msg, int slot) {
+        int descriptor = descriptors[slot];
+        int kind = descriptor >>> 16;
+        int size = (descriptor >>> 8) & 0xFF;
+        DebuggableMemory.AccessSource accessSource = DebuggableMemory.AccessSource.values()[descriptor & 0xFF];
+        String value = Format.asHex(values[slot], size * 2);
+        String padding = "        ".substring(size * 2);
+
+        if (times[slot] >= 0) {
+            msg.append(milliSecondFormatter.format(times[slot] / (double) MasterClock.PS_PER_MS)).append("ms ");
+        }
+        switch (kind) {
+            case KIND_READ:
+                msg.append("            read from 0x").append(Format.asHex(addresses[slot], 8)).append(" : 0x").append(value).append(padding).append("  ");
+                break;
+            case KIND_EXECUTE:
+                msg.append("   CODE EXECUTED from 0x").append(Format.asHex(addresses[slot], 8)).append(" : 0x").append(value).append(padding).append("  ");
+                break;
+            default:
+                msg.append("0x").append(value).append(padding).append(" written to 0x").append(Format.asHex(addresses[slot], 8)).append("               ");
+                break;
+        }
+        switch (accessSource) {
+            case CODE:
+                msg.append("(@0x").append(Format.asHex(pcs[slot], 8)).append(")");
+                break;
+            case DMA:
+                msg.append("(DMA ctrlr)");
+                break;
+            case IMGA:
+                msg.append("(IMGA ctrlr)");
+                break;
+        }
+    }
+}
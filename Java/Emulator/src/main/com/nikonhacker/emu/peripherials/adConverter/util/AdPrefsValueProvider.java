@@ -1,6 +1,8 @@
 package com.nikonhacker.emu.peripherials.adConverter.util;
 
 import com.nikonhacker.Prefs;
+import com.nikonhacker.emu.MasterClock;
+import com.nikonhacker.emu.journal.InputJournal;
 import com.nikonhacker.emu.peripherials.adConverter.AdValueProvider;
 
 import java.util.ArrayList;
@@ -13,10 +15,12 @@ public class AdPrefsValueProvider implements AdValueProvider {
     private Prefs prefs;
     private int chip;
     private Map<String, Integer> indices;
+    private MasterClock masterClock;
 
-    public AdPrefsValueProvider(Prefs prefs, int chip) {
+    public AdPrefsValueProvider(Prefs prefs, int chip, MasterClock masterClock) {
         this.prefs = prefs;
         this.chip = chip;
+        this.masterClock = masterClock;
         indices = new HashMap<>();
     }
 
@@ -24,9 +28,26 @@ public class AdPrefsValueProvider implements AdValueProvider {
         return "Preferences";
     }
 
+    /**
+     * Values can be changed in prefs at any time, so they are recorded in the input journal, if any,
+     * and taken from it when replaying
+     */
     @Override
     public int getAnalogValue(char unitName, int channel) {
         String key = "" + unitName + channel;
+        InputJournal inputJournal = masterClock.getInputJournal();
+        if (inputJournal == null) {
+            return getPrefsValue(key);
+        }
+        Integer value = inputJournal.nextValue(chip, key);
+        if (value == null) {
+            value = getPrefsValue(key);
+            inputJournal.record(new InputJournal.Input(InputJournal.InputType.AD_VALUE, chip, key, value));
+        }
+        return value;
+    }
+
+    private int getPrefsValue(String key) {
         if (prefs.isAdValueFromList(chip)) {
             List<Integer> values = prefs.getAdValueList(chip, key);
             if (values == null) {
@@ -64,4 +85,8 @@ public class AdPrefsValueProvider implements AdValueProvider {
     public final void setPrefs(Prefs prefs) {
         this.prefs = prefs;
     }
+
+    public final void setMasterClock(MasterClock masterClock) {
+        this.masterClock = masterClock;
+    }
 }
@@ -1,6 +1,8 @@
 package com.nikonhacker.emu.peripherials.clock;
 
 import com.nikonhacker.emu.Platform;
+import com.nikonhacker.emu.peripherials.programmableTimer.ProgrammableTimer;
+import com.nikonhacker.emu.peripherials.serialInterface.SerialInterface;
 
 public abstract class ClockGenerator {
     protected Platform platform;
@@ -11,4 +13,23 @@ public abstract class ClockGenerator {
     public void setPlatform(Platform platform) {
         this.platform = platform;
     }
+
+    /**
+     * Must be called after a change of frequencies, so that timers and serial interfaces take it into account
+     */
+    protected void onFrequencyChange() {
+        platform.getMasterClock().requestResheduling();
+        ProgrammableTimer[] programmableTimers = platform.getProgrammableTimers();
+        if (programmableTimers != null) {
+            for (ProgrammableTimer programmableTimer : programmableTimers) {
+                programmableTimer.updateFrequency();
+            }
+        }
+        SerialInterface[] serialInterfaces = platform.getSerialInterfaces();
+        if (serialInterfaces != null) {
+            for (SerialInterface serialInterface : serialInterfaces) {
+                serialInterface.updateFrequency();
+            }
+        }
+    }
 }
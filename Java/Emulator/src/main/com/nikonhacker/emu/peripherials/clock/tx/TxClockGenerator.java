@@ -291,7 +291,7 @@ public class TxClockGenerator extends ClockGenerator {
                 break;
         }
 
-        platform.getMasterClock().requestResheduling();
+        onFrequencyChange();
         // System.out.println(toString());
     }
 
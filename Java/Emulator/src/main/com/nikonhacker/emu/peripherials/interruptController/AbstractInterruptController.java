@@ -3,11 +3,10 @@ package com.nikonhacker.emu.peripherials.interruptController;
 import com.nikonhacker.emu.Platform;
 import com.nikonhacker.emu.interrupt.InterruptRequest;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public abstract class AbstractInterruptController implements InterruptController {
-    protected final List<InterruptRequest> interruptRequestQueue = new ArrayList<InterruptRequest>();
+    protected final InterruptRequestTable interruptRequestTable;
 
     /**
      * TODO this is weird: interruptController requires a platform
@@ -15,8 +14,9 @@ public abstract class AbstractInterruptController implements InterruptController
      */
     protected Platform platform;
 
-    public AbstractInterruptController(Platform platform) {
+    public AbstractInterruptController(Platform platform, InterruptRequestTable interruptRequestTable) {
         this.platform = platform;
+        this.interruptRequestTable = interruptRequestTable;
     }
 
     public abstract boolean request(int interruptNumber);
@@ -30,22 +30,12 @@ public abstract class AbstractInterruptController implements InterruptController
 
     /**
      * This is the way to remove a request by number
+     * Note: the slot of an interrupt request in the table is its number
      * @param interruptNumber
      */
     @Override
     public void removeRequest(int interruptNumber) {
-        synchronized (interruptRequestQueue) {
-            InterruptRequest requestToRemove = null;
-            for (InterruptRequest interruptRequest : interruptRequestQueue) {
-                if (interruptRequest.getInterruptNumber() == interruptNumber) {
-                    requestToRemove = interruptRequest;
-                    break;
-                }
-            }
-            if (requestToRemove != null) {
-                interruptRequestQueue.remove(requestToRemove);
-            }
-        }
+        interruptRequestTable.remove(interruptNumber);
     }
 
     /**
@@ -53,9 +43,7 @@ public abstract class AbstractInterruptController implements InterruptController
      * @param interruptRequest
      */
     public void removeRequest(InterruptRequest interruptRequest) {
-        synchronized (interruptRequestQueue) {
-            interruptRequestQueue.remove(interruptRequest);
-        }
+        interruptRequestTable.remove(interruptRequest);
     }
 
     /**
@@ -63,7 +51,7 @@ public abstract class AbstractInterruptController implements InterruptController
      * @return
      */
     public boolean hasPendingRequests() {
-        return !interruptRequestQueue.isEmpty();
+        return !interruptRequestTable.isEmpty();
     }
 
     /**
@@ -71,18 +59,14 @@ public abstract class AbstractInterruptController implements InterruptController
      * @return
      */
     public InterruptRequest getNextRequest() {
-        synchronized (interruptRequestQueue) {
-            if (interruptRequestQueue.isEmpty()) {
-                return null;
-            }
-            else {
-                return interruptRequestQueue.get(0);
-            }
-        }
+        return interruptRequestTable.getFirst();
     }
 
+    /**
+     * @return a copy of the pending requests, sorted by priority
+     */
     public List<InterruptRequest> getInterruptRequestQueue() {
-        return interruptRequestQueue;
+        return interruptRequestTable.toList();
     }
 
 }
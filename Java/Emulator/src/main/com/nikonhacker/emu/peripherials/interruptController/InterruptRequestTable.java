@@ -0,0 +1,273 @@
+package com.nikonhacker.emu.peripherials.interruptController;
+
+import com.nikonhacker.emu.interrupt.InterruptRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free replacement for a sorted list of pending interrupt requests.
+ *
+ * Each request occupies a fixed slot (normally its interrupt number), so that at most one request per slot is pending.
+ * Requests are also grouped by priority level (level 0 being the most important one). For each level, a bitmap
+ * indicates the occupied slots, and a summary bitmap indicates the non-empty levels. The next request to serve is
+ * thus found with two bit scans: first non-empty level, then lowest slot in that level.
+ *
+ * Slot and level of a request are determined by subclasses. Within a level, a lower slot means a higher priority.
+ * Requests must not be modified while they are in the table: remove them, modify them, then add them again.
+ *
+ * The slots are the reference: the bitmaps are updated after each change of a slot, and may briefly disagree with
+ * it while another thread changes the same slot, in which case getFirst() falls back to a full scan.
+ */
+public abstract class InterruptRequestTable {
+    private static final Comparator<InterruptRequest> BY_PRIORITY = new Comparator<InterruptRequest>() {
+        @Override
+        public int compare(InterruptRequest o1, InterruptRequest o2) {
+            return Integer.compare(o1.getPriority(), o2.getPriority());
+        }
+    };
+
+    private final int numSlots;
+    private final int wordsPerLevel;
+
+    private final AtomicReferenceArray<InterruptRequest> requests;
+    /** One bitmap of slots per level */
+    private final AtomicLongArray                        levelBitmaps;
+    /** One bit per non-empty level */
+    private final AtomicLongArray                        levelSummary;
+    private final AtomicInteger                          numPendingRequests = new AtomicInteger();
+
+    public InterruptRequestTable(int numSlots, int numLevels) {
+        this.numSlots = numSlots;
+        this.wordsPerLevel = (numSlots + 63) >>> 6;
+        requests = new AtomicReferenceArray<InterruptRequest>(numSlots);
+        levelBitmaps = new AtomicLongArray(numLevels * wordsPerLevel);
+        levelSummary = new AtomicLongArray((numLevels + 63) >>> 6);
+    }
+
+    /**
+     * @return the slot this request occupies, between 0 and numSlots - 1
+     */
+    protected abstract int getSlot(InterruptRequest interruptRequest);
+
+    /**
+     * @return the priority level of this request, between 0 (highest priority) and numLevels - 1
+     */
+    protected abstract int getLevel(InterruptRequest interruptRequest);
+
+    /**
+     * Adds a request, unless a request with the same or better priority is already pending in the same slot
+     * @param interruptRequest
+     * @return true if the request was added
+     */
+    public boolean add(InterruptRequest interruptRequest) {
+        int slot = getSlot(interruptRequest);
+        while (true) {
+            InterruptRequest currentRequest = requests.get(slot);
+            if (currentRequest != null && currentRequest.getPriority() <= interruptRequest.getPriority()) {
+                // Old is better. No change
+                return false;
+            }
+            if (requests.compareAndSet(slot, currentRequest, interruptRequest)) {
+                if (currentRequest != null) {
+                    updateBit(getLevel(currentRequest), slot);
+                }
+                else {
+                    numPendingRequests.incrementAndGet();
+                }
+                updateBit(getLevel(interruptRequest), slot);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes the request pending in the given slot, if any
+     * @param slot
+     * @return the removed request, or null if the slot was empty
+     */
+    public InterruptRequest remove(int slot) {
+        while (true) {
+            InterruptRequest currentRequest = requests.get(slot);
+            if (currentRequest == null) {
+                return null;
+            }
+            if (remove(currentRequest, slot)) {
+                return currentRequest;
+            }
+        }
+    }
+
+    /**
+     * Removes the given request object, if it is still pending
+     * @param interruptRequest
+     * @return true if it was removed
+     */
+    public boolean remove(InterruptRequest interruptRequest) {
+        return remove(interruptRequest, getSlot(interruptRequest));
+    }
+
+    private boolean remove(InterruptRequest interruptRequest, int slot) {
+        if (requests.compareAndSet(slot, interruptRequest, null)) {
+            updateBit(getLevel(interruptRequest), slot);
+            numPendingRequests.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public InterruptRequest get(int slot) {
+        return requests.get(slot);
+    }
+
+    /**
+     * @return true if at least one request is pending. This is a single volatile read
+     */
+    public boolean isEmpty() {
+        return numPendingRequests.get() == 0;
+    }
+
+    /**
+     * @return the highest priority request, or null if none is pending
+     */
+    public InterruptRequest getFirst() {
+        if (numPendingRequests.get() == 0) {
+            return null;
+        }
+        int level = firstSetBit(levelSummary, 0, levelSummary.length());
+        if (level >= 0) {
+            int slot = firstSetBit(levelBitmaps, level * wordsPerLevel, wordsPerLevel);
+            if (slot >= 0) {
+                InterruptRequest request = requests.get(slot);
+                if (request != null && getLevel(request) == level) {
+                    return request;
+                }
+            }
+        }
+        // Bitmaps are being updated by another thread. Fall back to a full scan
+        return scanFirst();
+    }
+
+    private InterruptRequest scanFirst() {
+        InterruptRequest first = null;
+        for (int slot = 0; slot < numSlots; slot++) {
+            InterruptRequest request = requests.get(slot);
+            if (request != null && (first == null || request.getPriority() < first.getPriority())) {
+                first = request;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @return a copy of the pending requests, by decreasing priority. Meant for display purpose only
+     */
+    public List<InterruptRequest> toList() {
+        List<InterruptRequest> list = new ArrayList<InterruptRequest>();
+        for (int slot = 0; slot < numSlots; slot++) {
+            InterruptRequest request = requests.get(slot);
+            if (request != null) {
+                list.add(request);
+            }
+        }
+        Collections.sort(list, BY_PRIORITY);
+        return list;
+    }
+
+    /**
+     * Makes the bit of the slot in the given level reflect the request now in the slot.
+     * Another thread may change the slot between the read and the bitmap update, which would then be stale (e.g. a
+     * remove clearing the bit just set by a concurrent add). The slot is thus read again after the update, and the
+     * update is redone until the slot did not change meanwhile. Every change of a slot being followed by this call
+     * for the levels of its old and new requests, the last update of each bit is always based on the final slot.
+     */
+    private void updateBit(int level, int slot) {
+        while (true) {
+            InterruptRequest request = requests.get(slot);
+            boolean occupied = request != null && getLevel(request) == level;
+            if (occupied) {
+                setBit(level, slot);
+            }
+            else {
+                clearBit(level, slot);
+            }
+            if (requests.get(slot) == request) {
+                return;
+            }
+        }
+    }
+
+    private void setBit(int level, int slot) {
+        int index = level * wordsPerLevel + (slot >>> 6);
+        long mask = 1L << slot;
+        long word;
+        do {
+            word = levelBitmaps.get(index);
+        } while ((word & mask) == 0 && !levelBitmaps.compareAndSet(index, word, word | mask));
+        setSummaryBit(level);
+    }
+
+    private void clearBit(int level, int slot) {
+        int index = level * wordsPerLevel + (slot >>> 6);
+        long mask = 1L << slot;
+        long word;
+        do {
+            word = levelBitmaps.get(index);
+        } while ((word & mask) != 0 && !levelBitmaps.compareAndSet(index, word, word & ~mask));
+        refreshSummary(level);
+    }
+
+    private void setSummaryBit(int level) {
+        int index = level >>> 6;
+        long mask = 1L << level;
+        long word;
+        do {
+            word = levelSummary.get(index);
+        } while ((word & mask) == 0 && !levelSummary.compareAndSet(index, word, word | mask));
+    }
+
+    /**
+     * Clears the summary bit of an empty level. The level is checked again afterwards, in case a concurrent add
+     * set a slot bit just before the summary bit was cleared
+     */
+    private void refreshSummary(int level) {
+        if (isLevelEmpty(level)) {
+            int index = level >>> 6;
+            long mask = 1L << level;
+            long word;
+            do {
+                word = levelSummary.get(index);
+            } while ((word & mask) != 0 && !levelSummary.compareAndSet(index, word, word & ~mask));
+            if (!isLevelEmpty(level)) {
+                setSummaryBit(level);
+            }
+        }
+    }
+
+    private boolean isLevelEmpty(int level) {
+        for (int i = level * wordsPerLevel; i < (level + 1) * wordsPerLevel; i++) {
+            if (levelBitmaps.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of the first bit set in the given words, relative to the first word, or -1 if none is set
+     */
+    private static int firstSetBit(AtomicLongArray bitmap, int firstWord, int numWords) {
+        for (int i = 0; i < numWords; i++) {
+            long word = bitmap.get(firstWord + i);
+            if (word != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return -1;
+    }
+}
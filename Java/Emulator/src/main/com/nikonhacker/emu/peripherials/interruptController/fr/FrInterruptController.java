@@ -10,8 +10,8 @@ import com.nikonhacker.emu.memory.DebuggableMemory;
 import com.nikonhacker.emu.memory.listener.fr.ExpeedIoListener;
 import com.nikonhacker.emu.peripherials.interruptController.AbstractInterruptController;
 import com.nikonhacker.emu.peripherials.interruptController.InterruptControllerException;
+import com.nikonhacker.emu.peripherials.interruptController.InterruptRequestTable;
 
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -111,7 +111,28 @@ public class FrInterruptController extends AbstractInterruptController {
     }
 
     public FrInterruptController(Platform platform) {
-        super(platform);
+        super(platform, new FrInterruptRequestTable());
+    }
+
+    /**
+     * One slot per interrupt number (0x00-0xFF).
+     * Levels are NMI first, then ICR 0x00 (highest) to 0x1F (lowest)
+     */
+    private static class FrInterruptRequestTable extends InterruptRequestTable {
+        public FrInterruptRequestTable() {
+            super(256, 33);
+        }
+
+        @Override
+        protected int getSlot(InterruptRequest interruptRequest) {
+            return interruptRequest.getInterruptNumber() & 0xFF;
+        }
+
+        @Override
+        protected int getLevel(InterruptRequest interruptRequest) {
+            FrInterruptRequest frInterruptRequest = (FrInterruptRequest) interruptRequest;
+            return frInterruptRequest.isNMI() ? 0 : 1 + (frInterruptRequest.getICR() & 0x1F);
+        }
     }
 
     /**
@@ -153,28 +174,8 @@ public class FrInterruptController extends AbstractInterruptController {
      * @return
      */
     public boolean request(InterruptRequest interruptRequest) {
-        FrInterruptRequest newInterruptRequest = (FrInterruptRequest) interruptRequest;
-        synchronized (interruptRequestQueue) {
-            for (InterruptRequest currentInterruptRequest : interruptRequestQueue) {
-                FrInterruptRequest currentFrInterruptRequest = (FrInterruptRequest) currentInterruptRequest;
-                if (currentFrInterruptRequest.getInterruptNumber() == newInterruptRequest.getInterruptNumber()) {
-                    // Same number. Keep highest priority one
-                    if ((newInterruptRequest.isNMI() && !currentFrInterruptRequest.isNMI())
-                            || (newInterruptRequest.getICR() < currentFrInterruptRequest.getICR())) {
-                        // New is better. Remove old one then go on adding
-                        interruptRequestQueue.remove(currentFrInterruptRequest);
-                        break;
-                    }
-                    else {
-                        // Old is better. No change to the list. Exit
-                        return false;
-                    }
-                }
-            }
-            interruptRequestQueue.add(newInterruptRequest);
-            Collections.sort(interruptRequestQueue);
-            return true;
-        }
+        // Same number replaces a pending request only if it has a better priority (NMI, then lower ICR)
+        return interruptRequestTable.add(interruptRequest);
     }
 
     public void removeEdgeTriggeredRequest(InterruptRequest interruptRequest) {
@@ -336,18 +337,14 @@ public class FrInterruptController extends AbstractInterruptController {
     }
 
     public void updateRequestICR(int interruptNumber, byte icr) {
-        synchronized (interruptRequestQueue) {
-            for (InterruptRequest interruptRequest : interruptRequestQueue) {
-                FrInterruptRequest frInterruptRequest = (FrInterruptRequest) interruptRequest;
-                if (frInterruptRequest.getInterruptNumber() == interruptNumber) {
-                    if (icr == 0x1F) {
-                        System.err.println("Disabling interrupt 0x" + Format.asHex(interruptNumber, 2));
-                    }
-                    frInterruptRequest.setICR(icr & 0x1F | 0x10);
-                    Collections.sort(interruptRequestQueue);
-                    break;
-                }
+        // Priority level changes, so request must be taken out of the table while it is updated
+        FrInterruptRequest frInterruptRequest = (FrInterruptRequest) interruptRequestTable.remove(interruptNumber);
+        if (frInterruptRequest != null) {
+            if (icr == 0x1F) {
+                System.err.println("Disabling interrupt 0x" + Format.asHex(interruptNumber, 2));
             }
+            frInterruptRequest.setICR(icr & 0x1F | 0x10);
+            interruptRequestTable.add(frInterruptRequest);
         }
     }
 
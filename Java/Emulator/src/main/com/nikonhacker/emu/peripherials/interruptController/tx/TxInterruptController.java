@@ -11,8 +11,8 @@ import com.nikonhacker.emu.interrupt.tx.Type;
 import com.nikonhacker.emu.memory.listener.tx.TxIoListener;
 import com.nikonhacker.emu.peripherials.dmaController.tx.TxDmaController;
 import com.nikonhacker.emu.peripherials.interruptController.AbstractInterruptController;
+import com.nikonhacker.emu.peripherials.interruptController.InterruptRequestTable;
 
-import java.util.Collections;
 
 /**
  * This is based on the Toshiba hardware specification for TMP19A44FDA/FE/F10XBG
@@ -304,7 +304,7 @@ public class TxInterruptController extends AbstractInterruptController {
     }
 
     public TxInterruptController(Platform platform) {
-        super(platform);
+        super(platform, new TxInterruptRequestTable());
         for (int i=INTDMA0; i<=INTDMA7; i++) {
             // DMA interrupts are active Low
             interruptChannelValue[i] = 1;
@@ -314,6 +314,39 @@ public class TxInterruptController extends AbstractInterruptController {
         }
     }
 
+    /**
+     * One slot per hardware interrupt number (0-127), followed by one slot per other request type.
+     * Levels are by type priority, then by interrupt level (7 is the highest)
+     */
+    private static class TxInterruptRequestTable extends InterruptRequestTable {
+        private static final int NUM_TYPE_PRIORITIES = 17;
+
+        public TxInterruptRequestTable() {
+            super(hardwareInterruptDescription.length + Type.values().length, NUM_TYPE_PRIORITIES * 8);
+        }
+
+        static int getTypeSlot(Type type) {
+            return hardwareInterruptDescription.length + type.ordinal();
+        }
+
+        @Override
+        protected int getSlot(InterruptRequest interruptRequest) {
+            TxInterruptRequest txInterruptRequest = (TxInterruptRequest) interruptRequest;
+            if (txInterruptRequest.getType() == Type.HARDWARE_INTERRUPT) {
+                return txInterruptRequest.getInterruptNumber();
+            }
+            else {
+                return getTypeSlot(txInterruptRequest.getType());
+            }
+        }
+
+        @Override
+        protected int getLevel(InterruptRequest interruptRequest) {
+            TxInterruptRequest txInterruptRequest = (TxInterruptRequest) interruptRequest;
+            return (NUM_TYPE_PRIORITIES - 1 - txInterruptRequest.getType().getPriority()) * 8 + (7 - (txInterruptRequest.getLevel() & 7));
+        }
+    }
+
     /**
      * Request a hardware interrupt with the given number
      * @param interruptNumber between 0 and 127d, See spec section 6.5.1.5
@@ -364,37 +397,13 @@ public class TxInterruptController extends AbstractInterruptController {
             }
         }
         TxInterruptRequest newInterruptRequest = (TxInterruptRequest) interruptRequest;
-        synchronized (interruptRequestQueue) {
-            // See if it's not already in queue
-            for (InterruptRequest currentInterruptRequest : interruptRequestQueue) {
-                TxInterruptRequest currentTxInterruptRequest = (TxInterruptRequest) currentInterruptRequest;
-                if (currentTxInterruptRequest.getType() == newInterruptRequest.getType()) {
-                    // Same type. Only HW interrupt can have multiple instances
-                    if (newInterruptRequest.getType() != Type.HARDWARE_INTERRUPT) {
-                        // ignore new interrupt of same type as an already waiting one
-                        return false;
-                    }
-                    else {
-                        // 2 HW interrupts can coexist if they have different numbers
-                        if (newInterruptRequest.getInterruptNumber() == currentTxInterruptRequest.getInterruptNumber()) {
-                            // check priority and keep the highest one (whatever that means :-))
-                            if ((newInterruptRequest.getPriority() < currentTxInterruptRequest.getPriority())) {
-                                // New is better. Remove old one then go on adding
-                                interruptRequestQueue.remove(currentTxInterruptRequest);
-                                break;
-                            }
-                            else {
-                                // Old is better. No change to the list. Exit
-                                return false;
-                            }
-                        }
-                    }
-                }
-            }
-            interruptRequestQueue.add(newInterruptRequest);
-            Collections.sort(interruptRequestQueue);
-            return true;
+        if (newInterruptRequest.getType() != Type.HARDWARE_INTERRUPT
+                && interruptRequestTable.get(TxInterruptRequestTable.getTypeSlot(newInterruptRequest.getType())) != null) {
+            // Only HW interrupt can have multiple instances: ignore new interrupt of same type as an already waiting one
+            return false;
         }
+        // 2 HW interrupts can coexist if they have different numbers. If same number, keep the highest priority one
+        return interruptRequestTable.add(newInterruptRequest);
     }
 
     public void removeEdgeTriggeredRequest(InterruptRequest interruptRequest) {
@@ -38,6 +38,15 @@ public abstract class IoPort {
     protected InterruptController interruptController;
 
     protected VariableFunctionPin[] pins = new VariableFunctionPin[8];
+
+    /**
+     * Pins configured as output, with their masks in the port value.
+     * These arrays are rebuilt each time the configuration changes, so that setValue() only iterates on relevant pins
+     */
+    private VariableFunctionPin[] outputPins     = new VariableFunctionPin[0];
+    private int[]                 outputPinMasks = new int[0];
+    /** Set upon configuration change, so that the next setValue() outputs all values, even unchanged ones */
+    private boolean               forceOutput    = true;
     protected PinFunction[] inputFunctions = new PinFunction[8];
     protected PinFunction[] outputFunctions = new PinFunction[8];
 
@@ -69,22 +78,22 @@ public abstract class IoPort {
             int mask = 1 << bitNumber;
             if (pins[bitNumber].isInput()) {
                 // IN
-                Integer inputValue = pins[bitNumber].getInputValue();
+                int inputValue = pins[bitNumber].getInputValue();
                 // dangling inputs are considered low level
-                if (inputValue != null && inputValue != 0) {
+                if (inputValue != Pin.HIGH_Z && inputValue != 0) {
                     value |= mask;
                 }
             }
             else {
                 // OUT
-                Integer outputValue = pins[bitNumber].getOutputValue();
-                if (outputValue != null) {
+                int outputValue = pins[bitNumber].getOutputValue();
+                if (outputValue != Pin.HIGH_Z) {
                     if (outputValue != 0) {
                         value |= mask;
                     }
                 }
                 else {
-                    if (logPinMessages) System.err.println("OutputValue is null for pin " + pins[bitNumber].getName());
+                    if (logPinMessages) System.err.println("OutputValue is HIGH_Z for pin " + pins[bitNumber].getName());
                 }
             }
         }
@@ -95,14 +104,39 @@ public abstract class IoPort {
      * Method called by CPU to set the value
      */
     public void setValue(byte newValue) {
-        // Forward to individual output pins
+        // Forward to individual output pins, but only if their value changes
+        for (int i = 0; i < outputPins.length; i++) {
+            int pinValue = ((newValue & outputPinMasks[i]) != 0)?1:0;
+            if (forceOutput || outputPins[i].outputValue != pinValue) {
+                outputPins[i].setOutputValue(pinValue);
+            }
+        }
+        forceOutput = false;
+    }
+
+    /**
+     * Rebuilds the list of output pins. Must be called when the direction of pins changes
+     */
+    protected void updateOutputPins() {
+        int numOutputPins = 0;
+        for (int bitNumber = 0; bitNumber < 8; bitNumber++) {
+            if (!pins[bitNumber].isInput()) {
+                numOutputPins++;
+            }
+        }
+        VariableFunctionPin[] newOutputPins = new VariableFunctionPin[numOutputPins];
+        int[] newOutputPinMasks = new int[numOutputPins];
+        int i = 0;
         for (int bitNumber = 0; bitNumber < 8; bitNumber++) {
-            int mask = 1 << bitNumber;
             if (!pins[bitNumber].isInput()) {
-                // pin is configured as output. Set the value of the output port
-                pins[bitNumber].setOutputValue(((newValue & mask) != 0)?1:0);
+                newOutputPins[i] = pins[bitNumber];
+                newOutputPinMasks[i] = 1 << bitNumber;
+                i++;
             }
         }
+        outputPins = newOutputPins;
+        outputPinMasks = newOutputPinMasks;
+        forceOutput = true;
     }
 
     /**
@@ -125,6 +159,7 @@ public abstract class IoPort {
         for (int bitNumber = 0; bitNumber < 8; bitNumber++) {
             getPin(bitNumber).setIsInput((directionOutput & (1 << bitNumber)) == 0);
         }
+        updateOutputPins();
         for (IoPortConfigListener ioPortConfigListener : ioPortConfigListeners) {
             ioPortConfigListener.onConfigChange(portNumber);
         }
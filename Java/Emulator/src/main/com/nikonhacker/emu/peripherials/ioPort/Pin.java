@@ -2,6 +2,12 @@ package com.nikonhacker.emu.peripherials.ioPort;
 
 /** Plain pin */
 public class Pin {
+    /**
+     * Value of a pin that is not driven (floating, high impedance).
+     * Driven pins have the value 0 or 1
+     */
+    public static final int HIGH_Z = -1;
+
     /**
      * This is the pin name, not its function
      */
@@ -16,7 +22,7 @@ public class Pin {
      * This is the value set by the component this pin belongs to,
      * that can be read by the component whose pin is connected to this one.
      */
-    protected Integer outputValue;
+    protected int outputValue = HIGH_Z;
 
     private boolean isInput        = true;
     private boolean isInputEnabled = true;
@@ -49,21 +55,21 @@ public class Pin {
 
     public void setConnectedPin(Pin connectedPin) {
         this.connectedPin = connectedPin;
-        if (connectedPin != null && outputValue != null) {
+        if (connectedPin != null && outputValue != HIGH_Z) {
             connectedPin.setInputValue(outputValue);
         }
     }
 
     /**
      * To be called by the device this pin belongs to.
-     * @return the output value of the connected pin, if any. Otherwise, returns null and logs the problem.
+     * @return the output value of the connected pin, if any. Otherwise, returns HIGH_Z and logs the problem.
      */
-    public Integer getInputValue() {
+    public int getInputValue() {
         if (connectedPin != null) {
             return connectedPin.getOutputValue();
         }
         if (logPinMessages) System.out.println("No pin is connected to " + name);
-        return null;
+        return HIGH_Z;
     }
 
     /**
@@ -76,7 +82,7 @@ public class Pin {
     /**
      * To be called by the external component connected to this pin
      */
-    public Integer getOutputValue() {
+    public int getOutputValue() {
         return outputValue;
     }
 
@@ -9,6 +9,10 @@ import com.nikonhacker.emu.peripherials.ioPort.function.PinFunction;
  */
 public class VariableFunctionPin extends Pin {
     private PinFunction function;
+    /** function, if it is an input one. Cached to avoid instanceof tests on each value */
+    private AbstractInputPinFunction inputFunction;
+    /** function, if it is an output one. Cached to avoid instanceof tests on each value */
+    private AbstractOutputPinFunction outputFunction;
 
     public VariableFunctionPin(String name) {
         super(name);
@@ -16,12 +20,17 @@ public class VariableFunctionPin extends Pin {
 
     public void setFunction(PinFunction function) {
         this.function = function;
+        inputFunction = (function instanceof AbstractInputPinFunction) ? (AbstractInputPinFunction) function : null;
+        outputFunction = (function instanceof AbstractOutputPinFunction) ? (AbstractOutputPinFunction) function : null;
         // If we just assigned an input function to the pin
         // and this pin is connected to something
         // and this something has an output value (e.g. not just and I/O wire),
         // then pass that value to the function
-        if (function instanceof AbstractInputPinFunction && getConnectedPin() != null && getConnectedPin().getOutputValue() != null) {
-            ((AbstractInputPinFunction) function).setValue(getConnectedPin().getOutputValue());
+        if (inputFunction != null && getConnectedPin() != null) {
+            int connectedOutputValue = getConnectedPin().getOutputValue();
+            if (connectedOutputValue != HIGH_Z) {
+                inputFunction.setValue(connectedOutputValue);
+            }
         }
     }
 
@@ -29,9 +38,9 @@ public class VariableFunctionPin extends Pin {
      * To be called by CPU code
      */
     @Override
-    public Integer getInputValue() {
+    public int getInputValue() {
         // Just check that this input pin is configured as input
-        if (!(function instanceof AbstractInputPinFunction)) {
+        if (inputFunction == null) {
             if (logPinMessages) {
                 System.err.println("Code is trying to read pin " + getName() + " although it is " +
                         (function==null
@@ -51,8 +60,8 @@ public class VariableFunctionPin extends Pin {
      * This implementation delegates the behaviour to the attached function, if any
      */
     public void setInputValue(int value) {
-        if (function instanceof AbstractInputPinFunction) {
-            ((AbstractInputPinFunction) function).setValue(value);
+        if (inputFunction != null) {
+            inputFunction.setValue(value);
         }
         else {
             if (logPinMessages) {
@@ -67,16 +76,16 @@ public class VariableFunctionPin extends Pin {
     }
 
     public final boolean isInputFunction() {
-        return (function instanceof AbstractInputPinFunction);
+        return inputFunction != null;
     }
     /**
      * To be called by external component
      * This implementation delegates the behaviour to the attached function, if any
      */
     @Override
-    public Integer getOutputValue() {
-        if (function instanceof AbstractOutputPinFunction) {
-            return ((AbstractOutputPinFunction) function).getValue(outputValue);
+    public int getOutputValue() {
+        if (outputFunction != null) {
+            return outputFunction.getValue(outputValue);
         }
         else {
             if (logPinMessages) {
@@ -85,10 +94,10 @@ public class VariableFunctionPin extends Pin {
                                 ?"not configured as output"
                                 :("configured as " + function.getClass().getSimpleName())
                         )
-                        + ". Returning null...");
+                        + ". Returning HIGH_Z...");
             }
         }
-        return null;
+        return HIGH_Z;
     }
 
     /**
@@ -97,7 +106,7 @@ public class VariableFunctionPin extends Pin {
     @Override
     public void setOutputValue(int value) {
         // Just check that this input pin is configured as output
-        if (!(function instanceof AbstractOutputPinFunction)) {
+        if (outputFunction == null) {
             if (logPinMessages) {
                 System.err.println("Code is trying to set pin " + getName() + " to " + value + " although it is " +
                         (function==null
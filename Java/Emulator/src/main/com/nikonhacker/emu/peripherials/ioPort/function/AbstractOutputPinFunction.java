@@ -18,7 +18,7 @@ public abstract class AbstractOutputPinFunction implements PinFunction {
      * The default output value (set by the CPU using setOutputValue) is passed in case the function wants to return it
      *
      * @param defaultOutputValue
-     * @return
+     * @return 0, 1 or Pin.HIGH_Z
      */
-    public abstract Integer getValue(Integer defaultOutputValue);
+    public abstract int getValue(int defaultOutputValue);
 }
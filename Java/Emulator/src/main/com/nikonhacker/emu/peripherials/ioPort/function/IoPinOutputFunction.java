@@ -9,7 +9,7 @@ public class IoPinOutputFunction extends AbstractOutputPinFunction {
     }
 
     @Override
-    public Integer getValue(Integer defaultOutputValue) {
+    public int getValue(int defaultOutputValue) {
         return defaultOutputValue;
     }
 
@@ -1,6 +1,7 @@
 package com.nikonhacker.emu.peripherials.ioPort.function.tx;
 
 import com.nikonhacker.Constants;
+import com.nikonhacker.emu.peripherials.ioPort.Pin;
 import com.nikonhacker.emu.peripherials.ioPort.function.AbstractOutputPinFunction;
 
 public class TxIoPinSbiClockFunction extends AbstractOutputPinFunction {
@@ -20,8 +21,8 @@ public class TxIoPinSbiClockFunction extends AbstractOutputPinFunction {
     }
 
     @Override
-    public Integer getValue(Integer defaultOutputValue) {
+    public int getValue(int defaultOutputValue) {
         if (logPinMessages) System.out.println("TxIoPinSbiClockFunction.getValue not implemented for pin " + getShortName());
-        return null;
+        return Pin.HIGH_Z;
     }
 }
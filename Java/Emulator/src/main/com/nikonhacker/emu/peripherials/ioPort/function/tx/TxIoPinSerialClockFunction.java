@@ -2,6 +2,7 @@ package com.nikonhacker.emu.peripherials.ioPort.function.tx;
 
 import com.nikonhacker.Constants;
 import com.nikonhacker.emu.memory.listener.tx.TxIoListener;
+import com.nikonhacker.emu.peripherials.ioPort.Pin;
 import com.nikonhacker.emu.peripherials.ioPort.function.AbstractOutputPinFunction;
 
 public class TxIoPinSerialClockFunction extends AbstractOutputPinFunction {
@@ -33,8 +34,8 @@ public class TxIoPinSerialClockFunction extends AbstractOutputPinFunction {
     }
 
     @Override
-    public Integer getValue(Integer defaultOutputValue) {
+    public int getValue(int defaultOutputValue) {
         if (logPinMessages) System.out.println("TxIoPinSerialClockFunction.getValue not implemented for pin " + getShortName());
-        return null;
+        return Pin.HIGH_Z;
     }
 }
@@ -37,7 +37,7 @@ public class TxIoPinTimerInputFunction extends AbstractInputPinFunction {
                 // IN0
                 if (timer.getTbmodTbclk() == 0b00) {
                     // Event counter mode
-                    timer.onClockTick();
+                    timer.onPinPulse();
                 }
                 else {
                     // Capture mode
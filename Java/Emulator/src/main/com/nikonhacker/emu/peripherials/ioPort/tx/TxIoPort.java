@@ -147,6 +147,8 @@ public class TxIoPort extends IoPort {
                 pins[pinNumber].setFunction(outputFunctions[pinNumber]);
             }
         }
+        // Functions changed, so make sure next value written is output to all pins
+        updateOutputPins();
     }
 
     public byte getOpenDrainControlRegister() {
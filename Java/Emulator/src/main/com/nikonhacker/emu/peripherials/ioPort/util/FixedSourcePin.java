@@ -21,7 +21,7 @@ public class FixedSourcePin extends Pin {
     }
 
     @Override
-    public Integer getOutputValue() {
+    public int getOutputValue() {
         return forcedOutputValue;
     }
 
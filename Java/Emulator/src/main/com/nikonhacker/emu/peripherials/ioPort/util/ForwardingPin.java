@@ -17,12 +17,12 @@ public class ForwardingPin extends Pin {
     }
 
     @Override
-    public Integer getOutputValue() {
+    public int getOutputValue() {
         if (targetPin.getConnectedPin() != null) {
             return targetPin.getConnectedPin().getOutputValue();
         }
         else {
-            return null;
+            return HIGH_Z;
         }
     }
 
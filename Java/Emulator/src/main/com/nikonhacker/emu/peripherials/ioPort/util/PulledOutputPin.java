@@ -13,7 +13,7 @@ public class PulledOutputPin extends Pin {
     }
 
     @Override
-    public Integer getInputValue() {
+    public int getInputValue() {
         throw new RuntimeException("getInputValue() should never be called");
     }
 
@@ -1,4 +1,8 @@
 package com.nikonhacker.emu.peripherials.jpegCodec;
 
 public interface JpegCodec {
+    /**
+     * Releases the threads held by this codec, when its platform is discarded or replaced
+     */
+    public void dispose();
 }
@@ -1,6 +1,8 @@
 package com.nikonhacker.emu.peripherials.jpegCodec.fr;
 
 import com.nikonhacker.Format;
+import com.nikonhacker.emu.CycleCounterListener;
+import com.nikonhacker.emu.Emulator;
 import com.nikonhacker.emu.Platform;
 import com.nikonhacker.emu.memory.DebuggableMemory;
 import com.nikonhacker.emu.peripherials.jpegCodec.JpegCodec;
@@ -8,11 +10,20 @@ import com.nikonhacker.emu.peripherials.interruptController.fr.FrInterruptContro
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
+import java.io.IOException;
 import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
 
 /*
     Usecase: decode JPEG to YCbCr422
@@ -100,98 +111,68 @@ WaitForEventFlag
 
 // helper
 /*
- coderat: attempt to extend class ByteArrayInputStream failed, because
-          it hardly rely on "byte[] buf" that we do not have here. So
-          add a new input stream class. Another possibility would be to
-          implement directly subclass of ImageInputStreamImpl.
+ ImageInputStream directly over a byte array holding the JPEG data.
+ ImageIO.createImageInputStream() would wrap a plain InputStream in a cache stream
+ that copies everything once more, so implement ImageInputStreamImpl instead.
 */
-class DebuggableMemoryInputStream extends java.io.InputStream {
-    private DebuggableMemory memory;
-    private int size,addr;
+class ByteArrayImageInputStream extends ImageInputStreamImpl {
+    private final byte[] buffer;
+    private final int size;
 
-    protected int pos = 0;
-    protected int mark = 0;
-
-    DebuggableMemoryInputStream(int addr, int size, DebuggableMemory memory) {
-        this.addr = addr;
+    ByteArrayImageInputStream(byte[] buffer, int size) {
+        this.buffer = buffer;
         this.size = size;
-        this.memory = memory;
-    }
-
-    public synchronized int available()  {
-        return size - pos;
     }
 
-    public synchronized int read() {
-        if (pos>=size)
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= size) {
             return -1;
-        return memory.loadUnsigned8(addr + (pos++), DebuggableMemory.AccessSource.IMGA);
-    }
-
-    public synchronized int read(byte[] b) {
-        // from oracle doc
-        if (b.length==0)
-            return 0;
-        return this.read(b,0,b.length);
+        }
+        return buffer[(int) (streamPos++)] & 0xFF;
     }
 
-    public synchronized int read(byte[] b, int off, int len) {
-        // from oracle doc
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
         if (b == null) {
             throw new NullPointerException();
         }
-        // from oracle doc
         if (off < 0 || len < 0 || len > b.length - off) {
             throw new IndexOutOfBoundsException();
         }
-        if (pos >= size) {
-            return -1;
-        }
-        if (len > size-pos) {
-            len = size - pos;
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
         }
-        if (len>0) {
-            // TODO optimize to use .loadBlock()
-            for (int i=0;i<len;i++) {
-                b[off++] = (byte)memory.loadUnsigned8(addr + (pos++), DebuggableMemory.AccessSource.IMGA);
-            }
+        if (streamPos >= size) {
+            return -1;
         }
+        len = (int) Math.min(len, size - streamPos);
+        System.arraycopy(buffer, (int) streamPos, b, off, len);
+        streamPos += len;
         return len;
     }
 
-    public synchronized void reset() {
-        pos = mark;
-    }
-
-    public synchronized long skip(long n) {
-        if (n<=0)
-            return 0;
-        if (n > size-pos) {
-            n = size-pos;
-        }
-        pos += n;
-        return n;
-    }
-
-    public synchronized void mark(int readlimit) {
-        mark = pos;
-    }
-
-    public boolean markSupported() {
-        return true;
-    }
-
-    public void close() {
-    }
-
-    public void rewind() {
-        pos = mark = 0;
+    @Override
+    public long length() {
+        return size;
     }
 }
 
-public class FrJpegCodec implements JpegCodec {
+public class FrJpegCodec implements JpegCodec, CycleCounterListener {
+    /**
+     * Emulated decoding speed, used to delay the completion interrupt of a decode command.
+     * Decoding itself runs on a worker thread in the meantime
+     */
+    private static final int DECODE_BYTES_PER_CYCLE = 4;
+    private static final int MIN_DECODE_CYCLES      = 100;
+
     private int codecNumber;
     private Platform platform;
+    private Emulator emulator;
 
     private int addrJpeg, addrY, addrCb, addrCr;
 
@@ -203,15 +184,39 @@ public class FrJpegCodec implements JpegCodec {
 
     private int command;
 
-    private BufferedImage image = null;
+    /**
+     * Decoded image, waiting for its transfer. Not saved: it is decoded again from jpegBuffer after a restore,
+     * see getImage()
+     */
+    private transient BufferedImage image = null;
+
+    /**
+     * Last transferred image, reused as destination if next image has the same size.
+     * Only set once image no longer refers to it, and handed over to the worker at the next decode
+     */
+    private transient BufferedImage decodeBuffer = null;
+    /**
+     * Copy of the compressed JPEG data, reused from one command to the next.
+     * Saved with the state, so that a pending decode or a decoded image survive a checkpoint or a saved state
+     */
+    private byte[] jpegBuffer;
+    /** Size of the data in jpegBuffer while a decode is pending or its image is not transferred yet, 0 otherwise */
+    private int jpegDataSize;
+    private transient ImageReader jpegReader;
+    private transient ExecutorService decoder;
+    /** Worker decode, or null if decoding is done synchronously, after a restore */
+    private transient Future<BufferedImage> pendingDecode;
+    private boolean decoding;
+    private long remainingDecodeCycles;
 
     private int outputWidth, outputHeight;
     private byte interruptStatus, errorCode, reg000;
     private int transferInterruptStatus;
 
-    public FrJpegCodec(int codecNumber, Platform platform) {
+    public FrJpegCodec(int codecNumber, Platform platform, Emulator emulator) {
         this.codecNumber = codecNumber;
         this.platform = platform;
+        this.emulator = emulator;
     }
 
     public void setSrcAddrJpeg(int value) {
@@ -329,18 +334,12 @@ public class FrJpegCodec implements JpegCodec {
         } else {
             switch (value) {
                 case 0x8000:    // decode JPEG header, report errors or width and height
-                    if (loadImage()) {
-                        interruptStatus = 8;
-                        reg000 |= 1;
-                    } else {
-                        System.out.println("JpegCodec (" + codecNumber + "): decoding header failed");
-                        interruptStatus = 0x20;
-                        errorCode = 1;
-                    }
-                    reg402 |= 0x80;
-                    platform.getSharedInterruptCircuit().request(FrInterruptController.IMAGE_28_SHARED_REQUEST_NR, 29-codecNumber);
+                    startDecode();
                     break;
                 case 0x2000:    // transfer decoded JPEG data
+                    // the firmware may not wait for the end of decoding
+                    finishPendingDecode();
+                    BufferedImage image = getImage();
                     if (image==null)
                         throw new RuntimeException("JpegCodec (" + codecNumber +"): not possible to transfer data");
                     if (convertRgbToYCbCr422(image)) {
@@ -355,9 +354,10 @@ public class FrJpegCodec implements JpegCodec {
                     }
                     reg402 |= 0x80;
                     platform.getSharedInterruptCircuit().request(FrInterruptController.IMAGE_28_SHARED_REQUEST_NR, 29-codecNumber);
-                    // important: dispose and remove image
-                    image.flush();
-                    image=null;
+                    // important: remove image. Its raster is kept in decodeBuffer for next decode
+                    decodeBuffer = image;
+                    this.image = null;
+                    jpegDataSize = 0;
                     break;
                 default:
                     System.out.println("JpegCodec (" + codecNumber + "): unsupported command 0x" + Format.asHex(value, 4));
@@ -370,29 +370,44 @@ public class FrJpegCodec implements JpegCodec {
     }
 
     public byte getJPEGWidthHi() {
+        BufferedImage image = getImage();
         if (image==null)
             return 0;
         return (byte)((image.getWidth()>>8)&0xFF);
     }
 
     public byte getJPEGWidthLo() {
+        BufferedImage image = getImage();
         if (image==null)
             return 0;
         return (byte)(image.getWidth()&0xFF);
     }
 
     public byte getJPEGHeightHi() {
+        BufferedImage image = getImage();
         if (image==null)
             return 0;
         return (byte)((image.getHeight()>>8)&0xFF);
     }
 
     public byte getJPEGHeightLo() {
+        BufferedImage image = getImage();
         if (image==null)
             return 0;
         return (byte)(image.getHeight()&0xFF);
     }
 
+    /**
+     * @return the decoded image waiting for its transfer, or null if none. After a restore, the image is decoded
+     * again from the saved compressed data
+     */
+    private BufferedImage getImage() {
+        if (image == null && jpegDataSize > 0 && !decoding) {
+            image = decodeImage(jpegBuffer, jpegDataSize, null);
+        }
+        return image;
+    }
+
     public void setOutputWidth(int value) {
         if ((value & 0xF)!=0)
             throw new RuntimeException("JpegCodec (" + codecNumber +"): output width not aligned to 16");
@@ -441,56 +456,200 @@ public class FrJpegCodec implements JpegCodec {
         return errorCode;
     }
 
-    public boolean loadImage() {
-        /* Method 3 */
-        final DebuggableMemoryInputStream stream = new DebuggableMemoryInputStream(addrJpeg,sizeJpeg*512,platform.getMemory());
+    /**
+     * Copies compressed data out of emulator memory, then hands decoding over to a worker thread.
+     * The completion interrupt is raised by onCycleCountChange() once the emulated decoding time has elapsed
+     */
+    private void startDecode() {
+        // previous command may not be complete yet
+        finishPendingDecode();
+        final int size = sizeJpeg * 512;
+        if (jpegBuffer == null || jpegBuffer.length < size) {
+            jpegBuffer = new byte[size];
+        }
+        platform.getMemory().loadBlock(addrJpeg, jpegBuffer, 0, size, DebuggableMemory.AccessSource.IMGA);
+
+        final byte[] data = jpegBuffer;
+        // image may still be waiting for its transfer, but decodeBuffer is never the same raster
+        final BufferedImage destination = decodeBuffer;
+        decodeBuffer = null;
+        jpegDataSize = size;
+        decoding = true;
+        pendingDecode = getDecoder().submit(new Callable<BufferedImage>() {
+            @Override
+            public BufferedImage call() throws Exception {
+                return decodeImage(data, size, destination);
+            }
+        });
+        remainingDecodeCycles = Math.max(MIN_DECODE_CYCLES, size / DECODE_BYTES_PER_CYCLE);
+        // register timer (add is protected against multiple adds of the same listener)
+        emulator.addCycleCounterListener(this);
+    }
+
+    @Override
+    public boolean onCycleCountChange(long oldCount, int increment) {
+        remainingDecodeCycles -= increment;
+        if (remainingDecodeCycles > 0) {
+            return true;
+        }
+        completeDecode();
+        return false;
+    }
+
+    /**
+     * Completes the pending decode command, if any, without waiting for the emulated decoding time
+     */
+    private void finishPendingDecode() {
+        if (decoding) {
+            emulator.removeCycleCounterListener(this);
+            completeDecode();
+        }
+    }
+
+    private void completeDecode() {
+        if (!decoding) {
+            return;
+        }
+        try {
+            if (pendingDecode == null) {
+                // the worker decode was lost by a restore: decode the saved data now
+                image = decodeImage(jpegBuffer, jpegDataSize, null);
+            }
+            else {
+                // only blocks if the worker is slower than the emulated codec
+                image = pendingDecode.get();
+            }
+        } catch (InterruptedException e) {
+            image = null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            image = null;
+        } finally {
+            pendingDecode = null;
+            decoding = false;
+        }
 
-        // get only JPEG readers: we do not want to read other image types!
-        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("jpg");
+        if (image != null) {
+            interruptStatus = 8;
+            reg000 |= 1;
+        } else {
+            System.out.println("JpegCodec (" + codecNumber + "): decoding header failed");
+            jpegDataSize = 0;
+            interruptStatus = 0x20;
+            errorCode = 1;
+        }
+        reg402 |= 0x80;
+        platform.getSharedInterruptCircuit().request(FrInterruptController.IMAGE_28_SHARED_REQUEST_NR, 29-codecNumber);
+    }
 
-        if (readers.hasNext()) {
+    /**
+     * Runs on the decoder thread, or on the emulator thread when decoding again after a restore
+     * @param destination an image no longer used, to decode into if it has the right size, or null
+     * @return the decoded image, or null if data could not be decoded
+     */
+    private BufferedImage decodeImage(byte[] data, int size, BufferedImage destination) {
+        ImageReader reader = getJpegReader();
+        if (reader == null) {
+            return null;
+        }
+        BufferedImage decoded = null;
+        ImageInputStream iis = new ByteArrayImageInputStream(data, size);
+        try {
+            reader.setInput(iis, true, true);
+            ImageReadParam param = reader.getDefaultReadParam();
+            // reuse previous raster if sizes match
+            if (destination != null && destination.getWidth() == reader.getWidth(0) && destination.getHeight() == reader.getHeight(0)) {
+                param.setDestination(destination);
+            }
             try {
-                ImageInputStream iis = ImageIO.createImageInputStream(stream);
-
-                // try each reader and find one
-                while (readers.hasNext()) {
-                    ImageReader reader = readers.next();
-                    ImageReadParam param = reader.getDefaultReadParam();
-                    try {
-                        reader.setInput(iis, true, true);
-                        image = reader.read(0, param);
-                        // if found
-                        if (image!=null)
-                            break;
-                    } catch (java.io.IOException e) {
-                        // ignore and try next reader
-                    } finally {
-                        // absolutely necessary
-                        reader.dispose();
-                    }
-                    stream.rewind();
+                decoded = reader.read(0, param);
+            } catch (IIOException e) {
+                if (param.getDestination() == null) {
+                    throw e;
                 }
-                iis.close();
-            } catch (java.io.IOException e) {
-                // ImageInputStream create/close can also throw, so catch
+                // previous raster is not compatible with this image type, let the reader allocate a new one
+                iis.seek(0);
+                reader.setInput(iis, true, true);
+                decoded = reader.read(0, reader.getDefaultReadParam());
             }
+        } catch (IOException e) {
+            // this is not exception case
+            return null;
+        } finally {
+            reader.setInput(null);
         }
-		if (image==null) {
-		    // this is not exception case
-		    return false;
-		}
-        if (image.getAlphaRaster() != null) {
+        if (decoded.getAlphaRaster() != null) {
             throw new RuntimeException("Alpha channel is not allowed in JPEG");
         }
 
-        final int width = image.getWidth();
-        final int height = image.getHeight();
+        final int width = decoded.getWidth();
+        final int height = decoded.getHeight();
 
-		if (width<=0 || width>0xFFFF || (width&1)!=0 || height<=0 || height>0xFFFF){
+        if (width<=0 || width>0xFFFF || (width&1)!=0 || height<=0 || height>0xFFFF){
             throw new RuntimeException("invalid image properties");
         }
-        return true;
+        return decoded;
     }
+
+    /**
+     * Drops the pending decode command, if any, and stops the decoder thread once the reader is released.
+     * A new thread is started if the codec is used again
+     */
+    @Override
+    public void dispose() {
+        if (decoding) {
+            emulator.removeCycleCounterListener(this);
+            decoding = false;
+            jpegDataSize = 0;
+        }
+        if (pendingDecode != null) {
+            pendingDecode.cancel(true);
+            pendingDecode = null;
+        }
+        if (decoder != null) {
+            // a decode may still be using the reader: release it after, on the decoder thread
+            final ImageReader reader = jpegReader;
+            jpegReader = null;
+            decoder.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (reader != null) {
+                        reader.dispose();
+                    }
+                }
+            });
+            decoder.shutdown();
+            decoder = null;
+        }
+    }
+
+    private ImageReader getJpegReader() {
+        if (jpegReader == null) {
+            // get only JPEG readers: we do not want to read other image types!
+            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("jpg");
+            if (readers.hasNext()) {
+                jpegReader = readers.next();
+            }
+        }
+        return jpegReader;
+    }
+
+    private ExecutorService getDecoder() {
+        if (decoder == null) {
+            decoder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "JpegCodec " + codecNumber + " decoder");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return decoder;
+    }
+
     /*
      calculate Y4 for YCbCr444 and YCbCr422
      float used for better performance
@@ -545,15 +704,17 @@ public class FrJpegCodec implements JpegCodec {
         // use byte array for performance reason
         final byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
 
-        final int addY = widthY - width;
-        final int addCbCr = widthCbCr - (width>>1);
+        // rows are built in local buffers and written with one block store each
+        final byte[] rowY = new byte[width];
+        final byte[] rowCb = new byte[width>>1];
+        final byte[] rowCr = new byte[width>>1];
         int offsetY = addrY;
         int offsetCb = addrCb;
         int offsetCr = addrCr;
 
         // create output data and obey alignment
-        for (int pixel = 0; pixel < pixels.length; offsetY += addY, offsetCb += addCbCr, offsetCr += addCbCr) {
-            for (int i=0; i< width; i+=2, pixel += 6, offsetY+=2) {
+        for (int pixel = 0; pixel < pixels.length; offsetY += widthY, offsetCb += widthCbCr, offsetCr += widthCbCr) {
+            for (int i=0, c=0; i< width; i+=2, c++, pixel += 6) {
                 /* coderat: this implementation was selected after performance tests
                    I use canonical calculation formula, because it is closest to original
                    But still 1-2 values out of 256 differs from original result (are rounded higher)
@@ -568,12 +729,15 @@ public class FrJpegCodec implements JpegCodec {
                 final int g2 = ((int)pixels[pixel+4] & 0xFF);
                 final int r2 = ((int)pixels[pixel+5] & 0xFF);
 
-                // TODO optimize to use .storeBlock(), because can be up to 16Mpix
                 // coderat: no clamp is need here, because conversion formules RGB->YCbCr are already biased
-                memory.store16(offsetY, (getY(r1, g1, b1)<<8)|getY(r2, g2, b2), DebuggableMemory.AccessSource.IMGA);
-                memory.store8(offsetCb++, getCb2(r1, g1, b1, r2, g2, b2), DebuggableMemory.AccessSource.IMGA);
-                memory.store8(offsetCr++, getCr2(r1, g1, b1, r2, g2, b2), DebuggableMemory.AccessSource.IMGA);
+                rowY[i] = (byte) getY(r1, g1, b1);
+                rowY[i+1] = (byte) getY(r2, g2, b2);
+                rowCb[c] = (byte) getCb2(r1, g1, b1, r2, g2, b2);
+                rowCr[c] = (byte) getCr2(r1, g1, b1, r2, g2, b2);
             }
+            memory.storeBlock(offsetY, rowY, 0, rowY.length, 2, DebuggableMemory.AccessSource.IMGA);
+            memory.storeBlock(offsetCb, rowCb, 0, rowCb.length, DebuggableMemory.AccessSource.IMGA);
+            memory.storeBlock(offsetCr, rowCr, 0, rowCr.length, DebuggableMemory.AccessSource.IMGA);
         }
         return true;
     }
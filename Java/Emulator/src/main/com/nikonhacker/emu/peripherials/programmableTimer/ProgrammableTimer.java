@@ -1,9 +1,17 @@
 package com.nikonhacker.emu.peripherials.programmableTimer;
 
-import com.nikonhacker.emu.Clockable;
+import com.nikonhacker.emu.ClockEvent;
+import com.nikonhacker.emu.MasterClock;
 import com.nikonhacker.emu.Platform;
 
-public abstract class ProgrammableTimer implements Clockable {
+/**
+ * Timers are not clocked at each of their ticks. Instead, the counter is computed from elapsed emulated time when
+ * the timer is accessed (see sync()), and a single event is scheduled on the MasterClock at the next tick having an
+ * effect (interrupt, reload, compare match...).
+ * Subclasses describe a tick with tick(), skipTicks() and getTicksToNextEvent(), and must call sync() before
+ * accessing their state and reschedule() after changing it.
+ */
+public abstract class ProgrammableTimer {
 
     /** Lower boundary of sustainable interval between emulator scheduler ticks */
     @Deprecated
@@ -40,41 +48,168 @@ public abstract class ProgrammableTimer implements Clockable {
     @Deprecated
     protected long intervalNanoseconds = 1000000000L; // in ns/Timertick. For example, intervalNanoseconds=1000000000 ns/Timertick means f = 1Hz
 
+    /** Chip time of the last tick taken into account in the timer state */
+    private long referenceTimePs;
+
+    /** Duration of a tick while the timer counts, or 0 if it doesn't */
+    private long tickPeriodPs;
+
+    /** Event scheduled at the next tick having an effect */
+    private final ClockEvent event;
+
     public ProgrammableTimer(int timerNumber, Platform platform) {
         this.timerNumber = timerNumber;
         this.platform = platform;
+        this.event = new ClockEvent(getChip()) {
+            @Override
+            public void onEvent() {
+                synchronized (ProgrammableTimer.this) {
+                    sync();
+                    reschedule();
+                }
+            }
+        };
     }
 
     public int getTimerNumber() {
         return timerNumber;
     }
 
-    public int getCurrentValue() {
+    public synchronized int getCurrentValue() {
+        sync();
+        onCounterRead();
         return currentValue;
     }
 
-    public void setCurrentValue(int currentValue) {
+    public synchronized void setCurrentValue(int currentValue) {
+        sync();
         this.currentValue = currentValue;
+        reschedule();
     }
 
-    public void setActive(boolean active) {
+    public synchronized void setActive(boolean active) {
+        sync();
         this.active = active;
+        reschedule();
     }
 
     public boolean isActive() {
         return active;
     }
 
-    protected void register() {
-        platform.getMasterClock().add(this);
+    /**
+     * @return the number of increments needed by a 32-bit counter to go from the first value to the second one.
+     * Identical values require a full turn (2^32 increments)
+     */
+    protected static long getCountDistance(int from, int to) {
+        long distance = (to - from) & 0xFFFFFFFFL;
+        return distance == 0 ? (1L << 32) : distance;
+    }
+
+    /**
+     * @return Constants.CHIP_FR or Constants.CHIP_TX
+     */
+    public abstract int getChip();
+
+    /**
+     * @return the frequency of the ticks, in Hertz
+     */
+    public abstract int getFrequencyHz();
+
+    /**
+     * @return true if the counter currently advances with emulated time
+     */
+    protected abstract boolean isCounting();
+
+    /**
+     * Performs one tick, with all its effects
+     */
+    protected abstract void tick();
+
+    /**
+     * @return the number of ticks up to and including the next one having an effect other than changing the counter,
+     * at least 1, or Long.MAX_VALUE if there is none
+     */
+    protected abstract long getTicksToNextEvent();
+
+    /**
+     * Advances the counter as if tick() had been called the given number of times
+     * @param ticks a number of ticks lower than the value returned by getTicksToNextEvent()
+     */
+    protected abstract void skipTicks(long ticks);
+
+    /**
+     * Must be called when the counter register is read. A loop polling a counting timer sees a new value at each
+     * tick, without any store nor event, so it must not be considered idle
+     */
+    protected void onCounterRead() {
+        if (tickPeriodPs > 0) {
+            platform.onRunningCounterRead();
+        }
+    }
+
+    /**
+     * Performs all ticks elapsed since the last call, exactly as if they had been performed one by one
+     */
+    protected void sync() {
+        if (tickPeriodPs > 0) {
+            long ticks = (platform.getMasterClock().getChipTimePs(getChip()) - referenceTimePs) / tickPeriodPs;
+            if (ticks > 0) {
+                referenceTimePs += ticks * tickPeriodPs;
+                while (ticks > 0 && isCounting()) {
+                    long ticksToEvent = getTicksToNextEvent();
+                    if (ticks < ticksToEvent) {
+                        skipTicks(ticks);
+                        break;
+                    }
+                    skipTicks(ticksToEvent - 1);
+                    tick();
+                    ticks -= ticksToEvent;
+                }
+                reschedule();
+            }
+        }
     }
 
-    protected void updateFrequency() {
-        platform.getMasterClock().requestResheduling();
+    /**
+     * Starts or stops counting according to the current state, and schedules the event at the next tick having an
+     * effect. Must be called after any change of the state, sync() having been called before it.
+     */
+    protected void reschedule() {
+        MasterClock masterClock = platform.getMasterClock();
+        int frequencyHz = isCounting() ? getFrequencyHz() : 0;
+        if (frequencyHz <= 0) {
+            tickPeriodPs = 0;
+            masterClock.cancel(event);
+            return;
+        }
+        long nowPs = masterClock.getChipTimePs(getChip());
+        long newTickPeriodPs = MasterClock.PS_PER_SEC / frequencyHz;
+        if (tickPeriodPs == 0) {
+            // Starting now
+            referenceTimePs = nowPs;
+        }
+        else if (referenceTimePs + newTickPeriodPs < nowPs) {
+            // The frequency increased. Time elapsed since the last tick was spent at the previous frequency, so the
+            // current tick ends now, instead of the ticks of the new frequency being due since then
+            referenceTimePs = nowPs - newTickPeriodPs;
+        }
+        tickPeriodPs = newTickPeriodPs;
+        long ticksToEvent = getTicksToNextEvent();
+        if (ticksToEvent == Long.MAX_VALUE) {
+            masterClock.cancel(event);
+        }
+        else {
+            masterClock.schedule(event, referenceTimePs + ticksToEvent * tickPeriodPs);
+        }
     }
 
-    protected void unRegister() {
-        platform.getMasterClock().remove(this);
+    /**
+     * Must be called when the frequency of the source clock changes
+     */
+    public synchronized void updateFrequency() {
+        sync();
+        reschedule();
     }
 
     @Override
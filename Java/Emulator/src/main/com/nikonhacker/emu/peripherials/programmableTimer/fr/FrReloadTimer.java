@@ -44,16 +44,20 @@ public class FrReloadTimer extends ProgrammableTimer {
      * Set reload value
      * @param tmrlra
      */
-    public void setTmrlra(int tmrlra) {
+    public synchronized void setTmrlra(int tmrlra) {
+        sync();
         this.tmrlra = tmrlra;
     }
 
 
-    public int getTmr() {
+    public synchronized int getTmr() {
+        sync();
+        onCounterRead();
         return currentValue;
     }
 
-    public int getTmcsr() {
+    public synchronized int getTmcsr() {
+        sync();
         // bits15-14 are reserved and read as 0
         // bit2 is underflow flag
         // bit0 is always read as 0
@@ -64,7 +68,7 @@ public class FrReloadTimer extends ProgrammableTimer {
      * Set configuration
      * @param tmcsr
      */
-    public void setTmcsr(int tmcsr) {
+    public synchronized void setTmcsr(int tmcsr) {
         // TRGM1-0
         if ((tmcsr & TMCSR_TRGM_MASK()) != 0) {
             throw new RuntimeException("Error configuring reload timer " + timerNumber + ": only TRGM0/1=0b00 is supported (TMCSR" + timerNumber + "=0b" + Format.asBinary(tmcsr, 16) + ")");
@@ -73,29 +77,13 @@ public class FrReloadTimer extends ProgrammableTimer {
         // GATE: ignored
         // OUTL: ignored
 
-        // read old values
-        int oldDivider = getDivider();
-        boolean wasEnabled = isTmcsrCnteSet();
+        // account for ticks elapsed with the old configuration
+        sync();
 
         // store new register
         this.tmcsr = tmcsr;
-
-        // compare values with old, and reconfigure if needed
-        int newDivider = getDivider();
         enabled = isTmcsrCnteSet();
 
-        if (wasEnabled & !enabled) {
-            // Stopping
-            unRegister();
-        }
-        if (oldDivider != newDivider) {
-            updateFrequency();
-        }
-        if (!wasEnabled && enabled) {
-            // Starting
-            register();
-        }
-
         // Clear underflow status if requested (UF written as 0)
         if (!isTmcsrUfSet()) {
             isInUnderflowCondition = false;
@@ -106,6 +94,9 @@ public class FrReloadTimer extends ProgrammableTimer {
         if (isTmcsrTrgSet()) {
             currentValue = tmrlra;
         }
+
+        // start, stop or change frequency
+        reschedule();
     }
 
     private int TMCSR_TRGM_MASK() {
@@ -177,27 +168,44 @@ public class FrReloadTimer extends ProgrammableTimer {
     }
 
     @Override
-    public Object onClockTick() throws Exception {
-        if (active) {
-            currentValue--;
-            if (currentValue==0) {
-                isInUnderflowCondition = true;
-                if (isTmcsrInteSet()) {
-                    requestInterrupt();
-                }
-                if (isTmcsrReldSet()) {
-                    currentValue = tmrlra;
-                } else {
-                    enabled = false;
-                    unRegister();
-                }
-            }
+    protected boolean isCounting() {
+        return enabled && active;
+    }
+
+    @Override
+    protected void tick() {
+        currentValue--;
+        if (currentValue==0) {
+            underflow();
+        }
+    }
+
+    protected void underflow() {
+        isInUnderflowCondition = true;
+        if (isTmcsrInteSet()) {
+            requestInterrupt();
         }
-        return null;
+        if (isTmcsrReldSet()) {
+            currentValue = tmrlra;
+        } else {
+            enabled = false;
+        }
+    }
+
+    @Override
+    protected long getTicksToNextEvent() {
+        // Underflow occurs at the tick bringing currentValue to 0
+        return getCountDistance(0, currentValue);
+    }
+
+    @Override
+    protected void skipTicks(long ticks) {
+        currentValue -= ticks;
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
+        sync();
         return getName() + " @" + getFrequencyString() + ": TMR" + Format.asHex(timerNumber, 1)
                 + ", TMCSR=0b" + Format.asBinary(tmcsr, 16) + ", TMRLRA=" + tmrlra + "d"
                 + (isTmcsrInteSet() ? ", interrupt enabled" : ", interrupt disabled")
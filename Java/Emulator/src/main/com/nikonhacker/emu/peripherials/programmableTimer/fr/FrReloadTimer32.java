@@ -49,25 +49,19 @@ public class FrReloadTimer32 extends FrReloadTimer {
      * it seems be the 32-bit reload timer always counts (tmrlra+1) pulses according to datasheet while the 16-bit reload timer counts exactly tmrlra...
      */
     @Override
-    public Object onClockTick() throws Exception {
-        if (active) {
-            if (currentValue==0) {
-                isInUnderflowCondition = true;
-                if (isTmcsrInteSet()) {
-                    requestInterrupt();
-                }
-                if (isTmcsrReldSet()) {
-                    // reload timer counts always (tmrlra+1) pulses according to datasheet
-                    currentValue = tmrlra;
-                } else {
-                    enabled = false;
-                    unRegister();
-                }
-            } else {
-                currentValue--;
-            }
+    protected void tick() {
+        if (currentValue==0) {
+            // reload timer counts always (tmrlra+1) pulses according to datasheet
+            underflow();
+        } else {
+            currentValue--;
         }
-        return null;
+    }
+
+    @Override
+    protected long getTicksToNextEvent() {
+        // Underflow occurs at the tick following the one that brought currentValue to 0
+        return (currentValue & 0xFFFFFFFFL) + 1;
     }
 
 }
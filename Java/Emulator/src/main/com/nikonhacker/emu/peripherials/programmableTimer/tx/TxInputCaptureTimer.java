@@ -81,23 +81,13 @@ public class TxInputCaptureTimer extends ProgrammableTimer implements CpuPowerMo
 
     /**
      * Enable or disable timer.
-     * This registers/unregisters the timer to the MasterClock
      * @param tcen
      */
-    public void setTcen(int tcen) {
-        boolean wasEnabled = isTcenTcenSet();
-
+    public synchronized void setTcen(int tcen) {
+        sync();
         this.tcen = tcen;
-
         enabled = isTcenTcenSet();
-
-        if (wasEnabled && !enabled) {
-            unRegister();
-        }
-
-        if (!wasEnabled && enabled) {
-            register();
-        }
+        reschedule();
     }
 
     public boolean isTcenTcenSet() {
@@ -113,7 +103,8 @@ public class TxInputCaptureTimer extends ProgrammableTimer implements CpuPowerMo
      * Stop or starts the timer.
      * @param tbtrun
      */
-    public void setTbtrun(int tbtrun) {
+    public synchronized void setTbtrun(int tbtrun) {
+        sync();
         this.tbtrun = tbtrun;
 
         if (isTbtrunTbtcapSet()) {
@@ -127,6 +118,7 @@ public class TxInputCaptureTimer extends ProgrammableTimer implements CpuPowerMo
             currentValue = 0;
         }
         updateOperate();
+        reschedule();
     }
 
     private boolean isTbtrunTbtrunSet() {
@@ -150,14 +142,10 @@ public class TxInputCaptureTimer extends ProgrammableTimer implements CpuPowerMo
         return tbtcr;
     }
 
-    public void setTbtcr(int tbtcr) {
-        int oldDivider = getDivider();
+    public synchronized void setTbtcr(int tbtcr) {
+        sync();
         this.tbtcr = tbtcr;
-        int newDivider = getDivider();
-
-        if (oldDivider != newDivider) {
-            updateFrequency();
-        }
+        reschedule();
 
         // Noise reduction is meaningless for an emulator
     }
@@ -186,11 +174,11 @@ public class TxInputCaptureTimer extends ProgrammableTimer implements CpuPowerMo
     }
 
 
-    public int getTbtcap() {
+    public synchronized int getTbtcap() {
         return tbtcap;
     }
 
-    public void setTbtcap(int tbtcap) {
+    public synchronized void setTbtcap(int tbtcap) {
         this.tbtcap = tbtcap;
     }
 
@@ -215,7 +203,8 @@ public class TxInputCaptureTimer extends ProgrammableTimer implements CpuPowerMo
         return cmpctl[compareChannel];
     }
 
-    public void setCmpctl(int compareChannel, int cmpctl) {
+    public synchronized void setCmpctl(int compareChannel, int cmpctl) {
+        sync();
         this.cmpctl[compareChannel] = cmpctl;
 
         // The role of the timer flip-flop is not well described in the Input Capture spec (chap 12).
@@ -234,6 +223,7 @@ public class TxInputCaptureTimer extends ProgrammableTimer implements CpuPowerMo
             default :
                 // don't care
         }
+        reschedule();
     }
 
     private boolean isCmpctlCmpenSet(int compareChannel) {
@@ -253,11 +243,13 @@ public class TxInputCaptureTimer extends ProgrammableTimer implements CpuPowerMo
     }
 
 
-    public int getTccmp(int compareChannel) {
+    public synchronized int getTccmp(int compareChannel) {
+        sync();
         return tccmp[compareChannel];
     }
 
-    public void setTccmp(int compareChannel, int tccmp) {
+    public synchronized void setTccmp(int compareChannel, int tccmp) {
+        sync();
         if (isCmpctlCmprdeSet(compareChannel)) {
             // Double buffering
             this.tccmpBuf[compareChannel] = tccmp;
@@ -266,6 +258,7 @@ public class TxInputCaptureTimer extends ProgrammableTimer implements CpuPowerMo
             // No double buffering
             this.tccmp[compareChannel] = tccmp;
         }
+        reschedule();
     }
 
 
@@ -274,27 +267,33 @@ public class TxInputCaptureTimer extends ProgrammableTimer implements CpuPowerMo
     }
 
     // TODO use this
-    public boolean getFf(int compareChannel) {
+    public synchronized boolean getFf(int compareChannel) {
+        sync();
         return ff[compareChannel];
     }
 
 
     // TODO use this
-    public void performCapture(int captureChannel) {
+    public synchronized void performCapture(int captureChannel) {
+        sync();
         tccap[captureChannel] = currentValue;
         platform.getInterruptController().request(TxInterruptController.INTCAP0 + captureChannel);
     }
 
 
     @Override
-    public void onCpuPowerModeChange(TxCPUState.PowerMode powerMode) {
+    public synchronized void onCpuPowerModeChange(TxCPUState.PowerMode powerMode) {
+        sync();
         updateOperate();
+        reschedule();
     }
 
     @Override
-    public void setActive(boolean active) {
-        super.setActive(active);
+    public synchronized void setActive(boolean active) {
+        sync();
+        this.active = active;
         updateOperate();
+        reschedule();
     }
 
     private void updateOperate() {
@@ -321,42 +320,62 @@ public class TxInputCaptureTimer extends ProgrammableTimer implements CpuPowerMo
     }
 
     @Override
-    public Object onClockTick() {
-        if (operate) {
-            currentValue++;
-
-            // Comparators
-            for (int compareChannel = 0; compareChannel < TxIoListener.NUM_COMPARE_CHANNEL; compareChannel++) {
-                if (isCmpctlCmpenSet(compareChannel)) {
-                    if (currentValue == tccmp[compareChannel]) {
-                        // Comparator matches
-                        platform.getInterruptController().request(TxInterruptController.INTCMP0 + compareChannel);
-
-                        // Spec Block diagram also indicates INTCAP0 in this block. Typo I guess...
-                        if (isCmpctlTcffenSet(compareChannel)) {
-                            toggleFf(compareChannel);
-                        }
-                        // TODO set output pin TCCOUT0 + comparechannel = 1;
-
-                        // Load buffered value if double buffering
-                        if (isCmpctlCmprdeSet(compareChannel)) {
-                            tccmp[compareChannel] = tccmpBuf[compareChannel];
-                        }
+    protected boolean isCounting() {
+        return enabled && operate;
+    }
+
+    @Override
+    protected void tick() {
+        currentValue++;
+
+        // Comparators
+        for (int compareChannel = 0; compareChannel < TxIoListener.NUM_COMPARE_CHANNEL; compareChannel++) {
+            if (isCmpctlCmpenSet(compareChannel)) {
+                if (currentValue == tccmp[compareChannel]) {
+                    // Comparator matches
+                    platform.getInterruptController().request(TxInterruptController.INTCMP0 + compareChannel);
+
+                    // Spec Block diagram also indicates INTCAP0 in this block. Typo I guess...
+                    if (isCmpctlTcffenSet(compareChannel)) {
+                        toggleFf(compareChannel);
+                    }
+                    // TODO set output pin TCCOUT0 + comparechannel = 1;
+
+                    // Load buffered value if double buffering
+                    if (isCmpctlCmprdeSet(compareChannel)) {
+                        tccmp[compareChannel] = tccmpBuf[compareChannel];
                     }
                 }
             }
+        }
+
+        // Detect overflow at 32bit
+        if (currentValue == 0) {
+            // overflow : interrupt
+            platform.getInterruptController().request(TxInterruptController.INTTBT);
+        }
+    }
 
-            // Detect overflow at 32bit
-            if (currentValue == 0) {
-                // overflow : interrupt
-                platform.getInterruptController().request(TxInterruptController.INTTBT);
+    @Override
+    protected long getTicksToNextEvent() {
+        // Next event is the first of overflow and enabled comparator matches
+        long ticksToEvent = getCountDistance(currentValue, 0);
+        for (int compareChannel = 0; compareChannel < TxIoListener.NUM_COMPARE_CHANNEL; compareChannel++) {
+            if (isCmpctlCmpenSet(compareChannel)) {
+                ticksToEvent = Math.min(ticksToEvent, getCountDistance(currentValue, tccmp[compareChannel]));
             }
         }
-        return null;
+        return ticksToEvent;
+    }
+
+    @Override
+    protected void skipTicks(long ticks) {
+        currentValue += ticks;
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
+        sync();
         int requestLevel = ((TxInterruptController) platform.getInterruptController()).getRequestLevel(TxInterruptController.INTTBT);
         return getName() + " @" + getFrequencyString() + ": TCEN=0x" + Format.asHex(getTcen(), 2)
                 + ", TBTRUN=0x" + Format.asHex(getTbtrun(), 2)
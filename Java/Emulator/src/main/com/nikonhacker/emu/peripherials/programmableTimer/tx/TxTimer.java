@@ -91,26 +91,13 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
 
     /**
      * Enable or disable timer.
-     * This registers/unregisters the timer to the MasterClock
      * @param tben
      */
-    public void setTben(int tben) {
-        boolean wasEnabled = isTbenTbenSet();
-
+    public synchronized void setTben(int tben) {
+        sync();
         this.tben = tben;
-
         enabled = isTbenTbenSet();
-
-        if (wasEnabled && !enabled) {
-            unRegister();
-        }
-
-        if (!wasEnabled && enabled) {
-            // Register unless it is pin-driven
-            if (getTbmodTbclk() != TBCLK_PIN_DRIVEN) {
-                register();
-            }
-        }
+        reschedule();
     }
 
     private boolean isTbenTbenSet() {
@@ -126,7 +113,8 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
      * Stop or starts the timer.
      * @param tbrun
      */
-    public void setTbrun(int tbrun) {
+    public synchronized void setTbrun(int tbrun) {
+        sync();
         this.tbrun = tbrun;
 
         // if counter is enabled and prescaler is enabled
@@ -140,6 +128,7 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
             currentValue = 0;
         }
         updateOperate();
+        reschedule();
     }
 
     private boolean isTbrunTbprunSet() {
@@ -155,12 +144,14 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
         return tbcr;
     }
 
-    public void setTbcr(int tbcr) {
+    public synchronized void setTbcr(int tbcr) {
+        sync();
         this.tbcr = tbcr;
         if (isTbcrTbsyncSet()) {
             throw new RuntimeException("Attempt to configure " + getName() + " in synchronization mode. This is not supported for now.");
         }
         updateOperate();
+        reschedule();
     }
 
     private boolean isTbcrI2tbSet() {
@@ -179,27 +170,10 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
         return tbmod;
     }
 
-    public void setTbmod(int tbmod) {
-        int oldTbclk = getTbmodTbclk();
+    public synchronized void setTbmod(int tbmod) {
+        // account for ticks elapsed with the old clock source
+        sync();
         this.tbmod = tbmod;
-        int newTbclk = getTbmodTbclk();
-
-        if (oldTbclk != newTbclk) {
-            if (enabled) {
-                if ((oldTbclk != TBCLK_PIN_DRIVEN) && (newTbclk == TBCLK_PIN_DRIVEN)) {
-                    // from clock to pin => unregister
-                    unRegister();
-                }
-                if ((oldTbclk != TBCLK_PIN_DRIVEN) && (newTbclk != TBCLK_PIN_DRIVEN)) {
-                    // from clock to aanother clock => recompute frequencies
-                    updateFrequency();
-                }
-                if ((oldTbclk == TBCLK_PIN_DRIVEN) && (newTbclk != TBCLK_PIN_DRIVEN)) {
-                    // from pin to clock => register
-                    register();
-                }
-            }
-        }
 
         if (isTbmodTbcp0Set()) {
             // Software capture request
@@ -211,6 +185,7 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
         }
         // Spec says TBnCLK "**Clears** and controls the TMRBn up-counter."
         currentValue = 0;
+        reschedule();
     }
 
     public boolean isTbmodTbcp0Set() {
@@ -244,7 +219,8 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
         return tbffcr | 0b11000011;
     }
 
-    public void setTbffcr(int tbffcr) {
+    public synchronized void setTbffcr(int tbffcr) {
+        sync();
         this.tbffcr = tbffcr;
         switch (getTbffcrTbff0c()) {
             case 0b00: toggleFf0(); break;
@@ -276,7 +252,8 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
 
 
 
-    public int getTbst() {
+    public synchronized int getTbst() {
+        sync();
         int value = tbst;
         tbst = 0;
         return value;
@@ -295,7 +272,8 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
         return tbim;
     }
 
-    public void setTbim(int tbim) {
+    public synchronized void setTbim(int tbim) {
+        sync();
         this.tbim = tbim;
     }
 
@@ -311,13 +289,17 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
         return (tbim & TBIM_TBIM0Fn_MASK) != 0;
     }
 
-    public int getTbuc() {
+    public synchronized int getTbuc() {
+        sync();
+        onCounterRead();
         return currentValue;
     }
 
-    public void setTbuc(int tbuc) {
+    public synchronized void setTbuc(int tbuc) {
+        sync();
         // only 16-bit are writable
         this.currentValue = tbuc & 0xFFFF;
+        reschedule();
     }
 
     private void toggleFf0() {
@@ -332,15 +314,18 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
     // TODO
     // "The value of TB0FF0 can be output to the timer output pin, TB0OUT (shared with P54).
     // To enable timer output, the port 5 related registers P5CR and P5FC must be programmed beforehand."
-    public boolean isFf0() {
+    public synchronized boolean isFf0() {
+        sync();
         return ff0;
     }
 
-    public int getTbrg0() {
+    public synchronized int getTbrg0() {
+        sync();
         return tbrg0;
     }
 
-    public void setTbrg0(int tbrg0) {
+    public synchronized void setTbrg0(int tbrg0) {
+        sync();
         // only 16-bit are writable
         tbrg0 = tbrg0 & 0xFFFF;
         // "If double buffering is enabled, data is transferred from register buffer 0 to the TB0RG0/1
@@ -350,18 +335,32 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
             this.tbrg0buf = tbrg0;
         }
         else {
-            // No double buffering
+            // No double buffering: the buffer is written too, so that it is valid once double buffering is enabled
             this.tbrg0 = tbrg0;
+            this.tbrg0buf = tbrg0;
         }
+        reschedule();
     }
 
-    public int getTbrg1() {
+    public synchronized int getTbrg1() {
+        sync();
         return tbrg1;
     }
 
-    public void setTbrg1(int tbrg1) {
+    public synchronized void setTbrg1(int tbrg1) {
+        sync();
         // only 16-bit are writable
-        this.tbrg1 = tbrg1 & 0xFFFF;
+        tbrg1 = tbrg1 & 0xFFFF;
+        if (isTbcrTbwbfSet()) {
+            // Double buffering
+            this.tbrg1buf = tbrg1;
+        }
+        else {
+            // No double buffering: the buffer is written too, so that it is valid once double buffering is enabled
+            this.tbrg1 = tbrg1;
+            this.tbrg1buf = tbrg1;
+        }
+        reschedule();
     }
 
     public int getTbcp0() {
@@ -372,7 +371,8 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
         this.tbcp0 = tbcp0;
     }
 
-    public void performCapture0() {
+    public synchronized void performCapture0() {
+        sync();
         setTbcp0(currentValue);
         if (isTbffcrTbc0t1Set()) {
             toggleFf0();
@@ -387,7 +387,8 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
         this.tbcp1 = tbcp1;
     }
 
-    public void performCapture1() {
+    public synchronized void performCapture1() {
+        sync();
         setTbcp1(currentValue);
         if (isTbffcrTbc1t1Set()) {
             toggleFf0();
@@ -395,14 +396,18 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
     }
 
     @Override
-    public void onCpuPowerModeChange(TxCPUState.PowerMode powerMode) {
+    public synchronized void onCpuPowerModeChange(TxCPUState.PowerMode powerMode) {
+        sync();
         updateOperate();
+        reschedule();
     }
 
     @Override
-    public void setActive(boolean active) {
-        super.setActive(active);
+    public synchronized void setActive(boolean active) {
+        sync();
+        this.active = active;
         updateOperate();
+        reschedule();
     }
 
     private void updateOperate() {
@@ -432,72 +437,101 @@ public class TxTimer extends ProgrammableTimer implements CpuPowerModeChangeList
         return TxInterruptController.INTTB0 + timerNumber + (timerNumber>0xF ? TxInterruptController.INTTB10-TxInterruptController.INTTBF-1 : 0);
     }
 
-    @Override
-    public Object onClockTick() {
-//        System.out.println(getName() + (operate?" operates":" doesn't operate"));
+    /**
+     * Called on each pulse of the external TBnIN0 pin, when the timer is pin-driven
+     */
+    public synchronized void onPinPulse() {
         if (operate) {
-            boolean interruptCondition = false;
-            currentValue++;
-
-            // coderat: always check overflow first, because value could be invalid (17-bit)
-            // Detect overflow at 16bit
-            if (currentValue > MAX_COUNTER_VALUE) {
-                // overflow
-                tbst |= TBST_INTTB0Fn_MASK;
-                if (!isTbimTbim0fnSet()) {
-                    interruptCondition = true;
-                }
-                currentValue = 0;
-            }
+            tick();
+        }
+    }
 
-            // Comparator 0
-            if (currentValue == tbrg0) {
-                // CP0 matches
-                tbst |= TBST_INTTBn0_MASK;
-                if (!isTbimTbimn0Set()) {
-                    interruptCondition = true;
-                }
-                // Toggle if requested
-                if (isTbffcrTbE0t1Set()) {
-                    toggleFf0();
-                }
-                // Load buffered value if double buffering
-                if (isTbcrTbwbfSet()) {
-                    tbrg0 = tbrg0buf;
-                }
+    @Override
+    protected boolean isCounting() {
+        return enabled && operate && getTbmodTbclk() != TBCLK_PIN_DRIVEN;
+    }
+
+    @Override
+    protected void tick() {
+        boolean interruptCondition = false;
+        currentValue++;
+
+        // coderat: always check overflow first, because value could be invalid (17-bit)
+        // Detect overflow at 16bit
+        if (currentValue > MAX_COUNTER_VALUE) {
+            // overflow
+            tbst |= TBST_INTTB0Fn_MASK;
+            if (!isTbimTbim0fnSet()) {
+                interruptCondition = true;
             }
+            currentValue = 0;
+        }
 
-            // Comparator 1
-            if (currentValue == tbrg1) {
-                // CP1 matches
-                tbst |= TBST_INTTBn1_MASK;
-                if (!isTbimTbimn1Set()) {
-                    interruptCondition = true;
-                }
-                // Toggle if requested
-                if (isTbffcrTbE1t1Set()) {
-                    toggleFf0();
-                }
-                // Clear if requested (CP1 only)
-                if (isTbmodTbcleSet()) {
-                    // "1": Clears up-counter if there is a match with timer register 1 (TBnRG1).
-                    currentValue = 0;
-                }
-                // Load buffered value if double buffering
-                if (isTbcrTbwbfSet()) {
-                    tbrg1 = tbrg1buf;
-                }
+        // Comparator 0
+        if (currentValue == tbrg0) {
+            // CP0 matches
+            tbst |= TBST_INTTBn0_MASK;
+            if (!isTbimTbimn0Set()) {
+                interruptCondition = true;
+            }
+            // Toggle if requested
+            if (isTbffcrTbE0t1Set()) {
+                toggleFf0();
             }
+            // Load buffered value if double buffering
+            if (isTbcrTbwbfSet()) {
+                tbrg0 = tbrg0buf;
+            }
+        }
 
-            if (interruptCondition) {
-                platform.getInterruptController().request(getInterruptNumber());
+        // Comparator 1
+        if (currentValue == tbrg1) {
+            // CP1 matches
+            tbst |= TBST_INTTBn1_MASK;
+            if (!isTbimTbimn1Set()) {
+                interruptCondition = true;
+            }
+            // Toggle if requested
+            if (isTbffcrTbE1t1Set()) {
+                toggleFf0();
+            }
+            // Clear if requested (CP1 only)
+            if (isTbmodTbcleSet()) {
+                // "1": Clears up-counter if there is a match with timer register 1 (TBnRG1).
+                currentValue = 0;
             }
+            // Load buffered value if double buffering
+            if (isTbcrTbwbfSet()) {
+                tbrg1 = tbrg1buf;
+            }
+        }
+
+        if (interruptCondition) {
+            platform.getInterruptController().request(getInterruptNumber());
         }
-        return null;
     }
 
     @Override
-    public String toString() {
+    protected long getTicksToNextEvent() {
+        // Next event is the first of overflow, CP0 match and CP1 match
+        long ticksToEvent = MAX_COUNTER_VALUE + 1 - currentValue;
+        if (tbrg0 > currentValue) {
+            ticksToEvent = Math.min(ticksToEvent, tbrg0 - currentValue);
+        }
+        if (tbrg1 > currentValue) {
+            ticksToEvent = Math.min(ticksToEvent, tbrg1 - currentValue);
+        }
+        return Math.max(1, ticksToEvent);
+    }
+
+    @Override
+    protected void skipTicks(long ticks) {
+        currentValue += ticks;
+    }
+
+    @Override
+    public synchronized String toString() {
+        sync();
         int requestLevel = ((TxInterruptController) platform.getInterruptController()).getRequestLevel(getInterruptNumber());
         return getName() + " @" + getFrequencyString() + ": TB" + Format.asHex(timerNumber, 1) + "EN=0x" + Format.asHex(getTben(), 2)
                 + ", RUN=0x" + Format.asHex(getTbrun(), 2)
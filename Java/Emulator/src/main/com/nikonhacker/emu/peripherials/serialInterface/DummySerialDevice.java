@@ -2,7 +2,7 @@ package com.nikonhacker.emu.peripherials.serialInterface;
 
 public class DummySerialDevice extends SerialDevice {
     @Override
-    public void write(Integer value) {
+    public void write(int value) {
         // ignore
     }
 
@@ -1,6 +1,12 @@
 package com.nikonhacker.emu.peripherials.serialInterface;
 
 public abstract class SerialDevice {
+    /**
+     * Value written or read when a clock cycle occurs but no actual data is available (e.g. buffer underrun)
+     * Real values are 5 to 9 bits, so they are never negative
+     */
+    public static final int NO_DATA = -1;
+
     protected SerialDevice sourceDevice;
     protected SerialDevice targetDevice;
 
@@ -38,7 +44,11 @@ public abstract class SerialDevice {
 
     public abstract void onBitNumberChange(SerialDevice serialDevice, int numBits);
 
-    public abstract void write(Integer value);
+    /**
+     * Transmits a value to this device
+     * @param value 5 to 9 bits value, or NO_DATA
+     */
+    public abstract void write(int value);
     
     public void readHalfDuplex() {
         throw new RuntimeException("readHalfDuplex() no implemented");
@@ -47,9 +47,9 @@ public abstract class SerialInterface extends SerialDevice {
      * Gets the data transmitted via Serial port
      * This can only be called by external software to simulate data reading by another device
      * @return 5 to 9 bits integer corresponding to a single value read by a device from this serial port,
-     * or null in case no value is ready
+     * or NO_DATA in case no value is ready
      */
-    public abstract Integer read();
+    public abstract int read();
 
     // RECEPTION LOGIC
 
@@ -58,7 +58,7 @@ public abstract class SerialInterface extends SerialDevice {
      * This can only be called by external software to simulate data writing by another device
      * @param value integer (5 to 9 bits) corresponding to a single value written by an external device to this serial port
      */
-    public abstract void write(Integer value);
+    public abstract void write(int value);
 
     public abstract int getNumBits();
 
@@ -68,10 +68,16 @@ public abstract class SerialInterface extends SerialDevice {
         targetDevice.onBitNumberChange(this, nbBits);
     }
 
-    public void valueReady(Integer value) {
+    public void valueReady(int value) {
         targetDevice.write(value);
     }
 
+    /**
+     * Must be called when the frequency of the serial clock changes, so that a pending transfer takes it into account
+     */
+    public void updateFrequency() {
+    }
+
 
     @Override
     public String toString() {
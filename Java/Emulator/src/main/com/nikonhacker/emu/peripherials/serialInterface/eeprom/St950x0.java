@@ -39,7 +39,8 @@ public abstract class St950x0 extends SpiSlaveDevice {
 
     // Current command processing state
     private Command currentCommand = null;
-    private Integer currentAddress = null;
+    private static final int NONE = -1; // nothing received yet
+    private int currentAddress = NONE;
 
     private int numBits = 8;
 
@@ -116,7 +117,7 @@ public abstract class St950x0 extends SpiSlaveDevice {
                 clearWriteLatchEnabled();
             }
             currentCommand = null;
-            currentAddress = null;
+            currentAddress = NONE;
         }
         super.setSelected(selected);
     }
@@ -140,7 +141,7 @@ public abstract class St950x0 extends SpiSlaveDevice {
         // This has no effect.
     }
 
-    public Integer read() {
+    public int read() {
         if (currentCommand == null) {
             // This clock is due to the command being received. Return a dummy byte
             return (int) DUMMY_BYTE;
@@ -151,7 +152,7 @@ public abstract class St950x0 extends SpiSlaveDevice {
                 return statusRegister;
             case READ0:
             case READ1:
-                if (currentAddress == null) {
+                if (currentAddress == NONE) {
                     // This clock is due to the address being received. Return a dummy byte
                     return (int) DUMMY_BYTE;
                 }
@@ -173,9 +174,9 @@ public abstract class St950x0 extends SpiSlaveDevice {
         }
     }
 
-    public void write(Integer value) {
-        if (value == null) {
-            throw new RuntimeException("St950x0.write(null)");
+    public void write(int value) {
+        if (value == NO_DATA) {
+            throw new RuntimeException("St950x0.write(NO_DATA)");
         }
         else {
             int byteValue = value & 0xFF;
@@ -218,7 +219,7 @@ public abstract class St950x0 extends SpiSlaveDevice {
             }
             else if (currentCommand == Command.READ0 || currentCommand == Command.READ1 || currentCommand == Command.WRITE0 || currentCommand == Command.WRITE1) {
                 write1offset = 0x100;
-                if (currentAddress == null) {
+                if (currentAddress == NONE) {
                     // "decode" 2nd byte as an address
                     if (currentCommand == Command.READ0 || currentCommand == Command.WRITE0) {
                         // Page 0
@@ -11,7 +11,7 @@ public class FMountCircuit extends SerialInterface {
     
     private Pin toTXPin;
     private FromTXPin fromTXPin;
-    private LensDevice lens;
+    private volatile LensDevice lens;
     private int lensPin2,txPin2;
     
     // ------------------------ Safe methods
@@ -71,15 +71,17 @@ public class FMountCircuit extends SerialInterface {
         toTXPin.setOutputValue( (lensPin2==0 || txPin2==0)? 0 : 1 );
     }
 
-    public synchronized Integer read() {
-        Integer value;
+    /*
+        Not synchronized, as it is called for each value. Lens can be (un)plugged concurrently, so work on a local copy
+     */
+    public int read() {
+        LensDevice lens = this.lens;
         if (lens!=null) {
-            value = lens.read();
+            return lens.read();
         } else {
             // always sample a value
-            value = (int)0xFF;
+            return 0xFF;
         }
-        return value;
     }
 
     @Override
@@ -87,7 +89,8 @@ public class FMountCircuit extends SerialInterface {
         targetDevice.write(read());
     }
 
-    public synchronized void write(Integer value) {
+    public void write(int value) {
+        LensDevice lens = this.lens;
         // F-Mount serial bus is one-wire, so transmit same byte back
         if (lens!=null) {
             // invert byte
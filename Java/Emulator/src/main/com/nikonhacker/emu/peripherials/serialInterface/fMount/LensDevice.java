@@ -23,7 +23,10 @@ public abstract class LensDevice extends SerialDevice {
     public void onTimer() {
     }
 
-    public abstract Integer read();
+    /**
+     * @return the value sent by the lens, or NO_DATA if it has nothing to send
+     */
+    public abstract int read();
 
     public void unplug() {
     }
@@ -73,7 +73,7 @@ public class LensPrototype extends LensDevice implements Clockable {
         Mount write byte serially (called from FMountCircuit)
      */
     @Override
-    public void write(Integer value) {
+    public void write(int value) {
         if (testCommandAborted())
             return;
         // if command byte
@@ -171,9 +171,9 @@ public class LensPrototype extends LensDevice implements Clockable {
     /**
         Mount reads byte serially (called from FMountCircuit)
      */
-    public Integer read() {
+    public int read() {
         if (testCommandAborted())
-            return null;
+            return NO_DATA;
 
         if (state==State.SEND_BYTES) {
             final int ch = transferData[transferData.length - (transferCount--)];
@@ -194,7 +194,7 @@ public class LensPrototype extends LensDevice implements Clockable {
             fMountCircuit.setPin2Value(1);
             return ch;
         }
-        return null;
+        return NO_DATA;
     }
 
     /**
@@ -19,12 +19,12 @@ public class Nhhs2 extends SerialInterface {
         this.name = name;
     }
 
-    public Integer read() {
+    public int read() {
         // This clock is due to the command being received. Return a dummy byte
         return (int) DUMMY_BYTE;
     }
 
-    public void write(Integer value) {
+    public void write(int value) {
             int byteValue = value & 0xFF;
 //            if (!selected) {
 //                throw new RuntimeException("Nhhs2.write(0x" + Format.asHex(byteValue & 0xFF, 2) + ") called while chip is not SELECTed !");
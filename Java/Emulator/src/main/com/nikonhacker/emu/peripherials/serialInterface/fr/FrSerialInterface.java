@@ -2,19 +2,17 @@ package com.nikonhacker.emu.peripherials.serialInterface.fr;
 
 import com.nikonhacker.Constants;
 import com.nikonhacker.Format;
-import com.nikonhacker.emu.Clockable;
 import com.nikonhacker.emu.Platform;
 import com.nikonhacker.emu.peripherials.clock.fr.FrClockGenerator;
 import com.nikonhacker.emu.peripherials.interruptController.fr.FrInterruptController;
 import com.nikonhacker.emu.peripherials.serialInterface.SerialInterface;
-
-import java.util.LinkedList;
-import java.util.Queue;
+import com.nikonhacker.emu.peripherials.serialInterface.util.IntFifo;
+import com.nikonhacker.emu.peripherials.serialInterface.util.SerialTransferEvent;
 
 /**
  * Behaviour based on spec in http://edevice.fujitsu.com/fj/MANUAL/MANUALp/en-pdf/CM71-10147-2E.pdf
  */
-public class FrSerialInterface extends SerialInterface implements Clockable {
+public class FrSerialInterface extends SerialInterface {
     public static final int FIFO_SIZE = 128; // Spec says 16, but code splits message at 0x80
 
     public static final int SCR_TXE_MASK  = 0b0000_0001;
@@ -73,18 +71,18 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
 
     // Note: SSEL89AB/RDRM/TDRM don't seem to be used in the Expeed implementation
 
-    private final Queue<Integer> fifo1Backend = new LinkedList<Integer>();
-    private final Queue<Integer> fifo2Backend = new LinkedList<Integer>();
+    private final IntFifo fifo1Backend = new IntFifo(FIFO_SIZE);
+    private final IntFifo fifo2Backend = new IntFifo(FIFO_SIZE);
 
     /**
      * FIFO1. null if disabled, otherwise = fifo1Backend
      */
-    private Queue<Integer> fifo1 = null;
+    private IntFifo fifo1 = null;
 
     /**
      * FIFO2. null if disabled, otherwise = fifo2Backend
      */
-    private Queue<Integer> fifo2 = null;
+    private IntFifo fifo2 = null;
 
     private int baudRateGenerator;
 
@@ -93,10 +91,27 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
     private int rxInterruptNumber, txInterruptNumber;
     private int rxInterruptSource, txInterruptSource;
 
-    private int bitNumberBeingTransferred = 0;
+    /** Delays the transfer of each value according to the baud rate */
+    private final SerialTransferEvent transferEvent;
 
     public FrSerialInterface(int serialInterfaceNumber, Platform platform, boolean logSerialMessages) {
         super(serialInterfaceNumber, platform, logSerialMessages);
+        transferEvent = new SerialTransferEvent(Constants.CHIP_FR, platform.getMasterClock()) {
+            @Override
+            protected int getFrequencyHz() {
+                return FrSerialInterface.this.getFrequencyHz();
+            }
+
+            @Override
+            protected int getNumBitsPerValue() {
+                return getNumBits() /* TODO + start/stop/parity if UART */;
+            }
+
+            @Override
+            protected boolean transferValue() {
+                return FrSerialInterface.this.transferValue();
+            }
+        };
         // TODO : we still do not know the interrupt numbers for reception.
         // But all handlers are same, so should work with same interrupt
         switch (serialInterfaceNumber) {
@@ -213,6 +228,7 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
         }
 
         this.smr = smr;
+        updateFrequency();
     }
 
     public int getSmrMode() {
@@ -337,7 +353,7 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
             removeInterrupt(txInterruptNumber,txInterruptSource);
         }
 
-        Queue<Integer> txFifo = isTxFifo1()?fifo1:fifo2;
+        IntFifo txFifo = isTxFifo1()?fifo1:fifo2;
 
         // "Transmission data cannot be written to the transmission data register (TDR)
         // when the transmission data empty flag (SSR:TDRE) is set to "0"
@@ -380,7 +396,7 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
     }
 
     private final int getNbTxValuesWaiting() {
-        final Queue<Integer> txFifo = isTxFifo1()?fifo1:fifo2;
+        final IntFifo txFifo = isTxFifo1()?fifo1:fifo2;
         if (txFifo == null) {
             return (isSsrTdreSet() ? 0 : 1);
         }
@@ -391,17 +407,15 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
         // In slave mode, we have to wait for a byte to come in and use its clock to transmit
         if (!isSlaveAndClockInputEnabled() &&
               (isScrTxeSet() && getNbTxValuesWaiting()>0)  ) {
-            // Insert delay of a few CPU cycles.
-            platform.getMasterClock().add(this, -1, true, false);
+            // Each value is transferred by transferEvent, once all its bits have been clocked
+            transferEvent.start();
         }
     }
 
-    @Override
     public int getChip() {
         return Constants.CHIP_FR;
     }
 
-    @Override
     public int getFrequencyHz() {
         int freq;
         if (getSmrMode()==SMR_MODE_CSIO) {
@@ -413,38 +427,32 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
         return freq;
     }
     /**
-     * The goal of this is to delay the actual transfer according to the currently selected baud rate
+     * Called at the end of each value, as delayed according to the currently selected baud rate
+     * @return true if transfer goes on
      */
-    @Override
-    public Object onClockTick() throws Exception {
-        bitNumberBeingTransferred++;
-        if (bitNumberBeingTransferred == getNumBits() /* TODO + start/stop/parity if UART */) {
-            bitNumberBeingTransferred = 0;
-
-            if (!isScrTxeSet()) {
-                // half-duplex receive (clock master)
+    private boolean transferValue() {
+        if (!isScrTxeSet()) {
+            // half-duplex receive (clock master)
+            if (isScrRxeSet()) {
+                targetDevice.readHalfDuplex();
+                // device may stop reception automatically if FIFO was used and configured like this
                 if (isScrRxeSet()) {
-                    targetDevice.readHalfDuplex();
-                    // device may stop reception automatically if FIFO was used and configured like this
-                    if (isScrRxeSet()) {
-                        return null;
-                    }
+                    return true;
                 }
-            } else {
-                // Transfer one byte
-                Integer value = read();
-                if (value != null) {
-                    super.valueReady(value);
-                    // device may stop transmission automatically if FIFO was used and configured like this
-                    if (isScrTxeSet()) {
-                        return null;
-                    }
+            }
+        } else {
+            // Transfer one byte
+            int value = read();
+            if (value != NO_DATA) {
+                super.valueReady(value);
+                // device may stop transmission automatically if FIFO was used and configured like this
+                if (isScrTxeSet()) {
+                    return true;
                 }
             }
-            // End of transmission - unregister
-            platform.getMasterClock().remove(this);
         }
-        return null;
+        // End of transmission
+        return false;
     }
 
     /**
@@ -452,8 +460,8 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
      * This can only be called by external software to simulate data reading by another device
      * @return 5 to 9 bits integer corresponding to a single value read by a device from this serial port
      */
-    public Integer read() {
-        Queue<Integer> txFifo = isTxFifo1()?fifo1:fifo2;
+    public int read() {
+        IntFifo txFifo = isTxFifo1()?fifo1:fifo2;
 
         if (!isScrTxeSet()) {
             if (logSerialMessages) System.err.println("FrSerialInterface.read()  was called while Tx is disabled");
@@ -480,7 +488,7 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
         }
         else {
             // Using FIFO for transmission
-            Integer value = txFifo.poll();
+            int value = txFifo.poll();
 
             if (txFifo.isEmpty()) {
                 // Spec says among "FDRQ setting condition": "The transmission FIFO is empty."
@@ -518,16 +526,16 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
      * This can only be called by external software to simulate data writing by another device
      * @param value integer (5 to 9 bits) corresponding to a single value written by an external device to this serial port
      */
-    public void write(Integer value) {
-        if (value == null) {
-            throw new RuntimeException("FrSerialInterface.write(null)");
+    public void write(int value) {
+        if (value == NO_DATA) {
+            throw new RuntimeException("FrSerialInterface.write(NO_DATA)");
         }
         else {
             if (!isScrRxeSet()) {
                 if (logSerialMessages) System.err.println("FrSerialInterface.write(0x" + Format.asHex(value, 2) + ") was called while Rx is disabled. Ignored");
             }
             else {
-                Queue<Integer> rxFifo;
+                IntFifo rxFifo;
                 int fbyteThreshold;
                 if (isRxFifo1()) {
                     rxFifo = fifo1;
@@ -619,32 +627,30 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
      * @return rdr
      */
     public int getRdr() {
-        Queue<Integer> rxFifo = isRxFifo1()?fifo1:fifo2;
+        IntFifo rxFifo = isRxFifo1()?fifo1:fifo2;
 
         int value;
-        synchronized (this) {
-            if (rxFifo == null) {
-                // Not using FIFO for reception
-                clearSsrRdrf();
-                value = rdr;
+        if (rxFifo == null) {
+            // Not using FIFO for reception
+            clearSsrRdrf();
+            value = rdr;
+        }
+        else {
+            // Using FIFO for reception
+            if (rxFifo.isEmpty()) {
+                throw new RuntimeException("FrSerialInterface.getRdr(): Attempt to read from empty FIFO");
+//                if (logSerialMessages) System.err.println("Attempt to read from empty FIFO");
+//                return -1;
             }
             else {
-                // Using FIFO for reception
+                value = rxFifo.poll();
                 if (rxFifo.isEmpty()) {
-                    throw new RuntimeException("FrSerialInterface.getRdr(): Attempt to read from empty FIFO");
-//                    if (logSerialMessages) System.err.println("Attempt to read from empty FIFO");
-//                    return -1;
-                }
-                else {
-                    value = rxFifo.poll();
-                    if (rxFifo.isEmpty()) {
-                        clearSsrRdrf();
-                    }
+                    clearSsrRdrf();
                 }
             }
-            if (((ssr & (SSR_ORE_MASK | SSR_RDRF_MASK)) == 0) && isScrRieSet()) {
-                removeInterrupt(rxInterruptNumber,rxInterruptSource);
-            }
+        }
+        if (((ssr & (SSR_ORE_MASK | SSR_RDRF_MASK)) == 0) && isScrRieSet()) {
+            removeInterrupt(rxInterruptNumber,rxInterruptSource);
         }
         return value;
     }
@@ -670,6 +676,12 @@ public class FrSerialInterface extends SerialInterface implements Clockable {
 
     private void updateBaudRateGenerator() {
         baudRateGenerator = ((bgr1 & 0xFF) << 8) | (bgr0 & 0xFF);
+        updateFrequency();
+    }
+
+    @Override
+    public void updateFrequency() {
+        transferEvent.updateFrequency();
     }
 
 
@@ -17,8 +17,9 @@ public class Imx071 extends SerialInterface {
     private Pin xvs;
     private Pin xhs;
 
-    private Integer address = null;
-    private Integer chipId = null;
+    private static final int NONE = -1; // nothing received yet
+    private int address = NONE;
+    private int chipId = NONE;
     private boolean xceHigh;
     private boolean sckHigh;
     private boolean sdiHigh;
@@ -106,17 +107,17 @@ public class Imx071 extends SerialInterface {
         return false;
     }
 
-    public Integer read() {
+    public int read() {
         throw new RuntimeException("Imx071.read not possible");
     }
 
     // ------------------------ Start of synchron methods
 
-    public void write(Integer value) {
+    public void write(int value) {
         if (isCommunicationEnabled()) {
-            if (chipId == null) {
+            if (chipId == NONE) {
                 chipId = value & 0xFF;
-            } else if (address == null) {
+            } else if (address == NONE) {
                 address = value & 0xFF;
             } else {
                 if (chipId==2)
@@ -133,8 +134,8 @@ public class Imx071 extends SerialInterface {
     private final void setXce(int value) {
         xceHigh = (value == 1 ? true : false);
         if (xceHigh) {
-            address = null;
-            chipId = null;
+            address = NONE;
+            chipId = NONE;
         }
     }
     private final void setSck(int value) {
@@ -14,8 +14,9 @@ public class Ei155 extends SerialInterface {
     private Pin cs;
     private Pin rdy;
 
-    private Integer address = null;
-    private Integer chipId = null;
+    private static final int NONE = -1; // nothing received yet
+    private int address = NONE;
+    private int chipId = NONE;
     private boolean csHigh;
     private int startBit;
     private int writtenValue;
@@ -71,17 +72,17 @@ public class Ei155 extends SerialInterface {
         return false;
     }
 
-    public Integer read() {
+    public int read() {
         throw new RuntimeException(name + ".read not possible");
     }
 
     // ------------------------ Start of synchron methods
 
-    public void write(Integer value) {
+    public void write(int value) {
         if (isCommunicationEnabled()) {
-            if (chipId == null) {
+            if (chipId == NONE) {
                 chipId = value & 0xFF;
-            } else if (address == null) {
+            } else if (address == NONE) {
                 address = value & 0xFF;
                 writtenValue = 0;
             } else {
@@ -95,7 +96,7 @@ public class Ei155 extends SerialInterface {
                             case 0x12: rdy.setOutputValue(0); break;
                             case 0x13: rdy.setOutputValue(1); break;
                         }
-                        address = null;
+                        address = NONE;
                         startBit = 16;
                     } else {
                         startBit -= 8;
@@ -111,8 +112,8 @@ public class Ei155 extends SerialInterface {
     private final void setCs(int value) {
         csHigh = (value == 1 ? true : false);
         if (csHigh) {
-            chipId = null;
-            address = null;
+            chipId = NONE;
+            address = NONE;
             startBit = 16;
         }
     }
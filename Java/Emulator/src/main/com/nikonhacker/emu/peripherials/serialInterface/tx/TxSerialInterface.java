@@ -2,20 +2,20 @@ package com.nikonhacker.emu.peripherials.serialInterface.tx;
 
 import com.nikonhacker.Constants;
 import com.nikonhacker.Format;
-import com.nikonhacker.emu.Clockable;
 import com.nikonhacker.emu.Platform;
 import com.nikonhacker.emu.peripherials.clock.tx.TxClockGenerator;
 import com.nikonhacker.emu.peripherials.interruptController.tx.TxInterruptController;
 import com.nikonhacker.emu.peripherials.serialInterface.SerialInterface;
-
-import java.util.LinkedList;
-import java.util.Queue;
+import com.nikonhacker.emu.peripherials.serialInterface.util.IntFifo;
+import com.nikonhacker.emu.peripherials.serialInterface.util.SerialTransferEvent;
 
 /**
  * Behaviour is based on Toshiba documentation TMP19A44F10XBG_TMP19A44FEXBG_en_datasheet_100401.pdf
  */
-public class TxSerialInterface extends SerialInterface implements Clockable {
+public class TxSerialInterface extends SerialInterface {
     private static final int SERIAL_RX_FIFO_SIZE = 4;
+    /** Initial capacity of FIFOs, large enough for both SIO and HSIO (in TxHSerialInterface) */
+    private static final int FIFO_CAPACITY = 32;
 
     public static final int EN_SIOE_MASK = 0b00000001;
 
@@ -84,7 +84,7 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
     /**
      * Rx FIFO
      */
-    protected Queue<Integer> rxFifo = new LinkedList<Integer>();
+    protected IntFifo rxFifo = new IntFifo(FIFO_CAPACITY);
     protected int rxInterruptFillLevel;
 
     /**
@@ -95,10 +95,11 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
     /**
      * Tx FIFO.
      */
-    protected Queue<Integer> txFifo = new LinkedList<Integer>();
+    protected IntFifo txFifo = new IntFifo(FIFO_CAPACITY);
     protected int txInterruptFillLevel;
 
-    private int bitNumberBeingTransferred = 0;
+    /** Delays the transfer of each value according to the baud rate */
+    private final SerialTransferEvent transferEvent;
 
     protected int en; // Enable register
     protected int cr; // Control register
@@ -129,6 +130,22 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
      */
     public TxSerialInterface(int serialInterfaceNumber, Platform platform, boolean logSerialMessages) {
         super(serialInterfaceNumber, platform, logSerialMessages);
+        transferEvent = new SerialTransferEvent(Constants.CHIP_TX, platform.getMasterClock()) {
+            @Override
+            protected int getFrequencyHz() {
+                return TxSerialInterface.this.getFrequencyHz();
+            }
+
+            @Override
+            protected int getNumBitsPerValue() {
+                return getNumBits() + getIntervalTimeInSclk() /* TODO + start/stop/parity if UART */;
+            }
+
+            @Override
+            protected boolean transferValue() {
+                return TxSerialInterface.this.transferValue();
+            }
+        };
     }
 
 
@@ -148,7 +165,7 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
 //        if (en == 0) {
 //            throw new RuntimeException("Attempt to receive data from disabled " + getName());
 //        }
-        Integer poll;
+        int poll;
 
         if (!isFcnfCnfgSet()) { // FIFO disabled
             poll = rxBuf;
@@ -160,7 +177,7 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
             // TODO signal if empty ?
         }
 
-        if (poll == null) {
+        if (poll == NO_DATA) {
 //            System.err.println(getName() + " - Attempt to read from empty buffer");
             return 0;
         }
@@ -206,6 +223,7 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
 
         // RB8 and error flags are not writable
         this.cr = (this.cr & 0b10011100) | (cr & 0b01100011);
+        updateFrequency();
     }
 
 
@@ -226,6 +244,9 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
         if (getMod0Sm() != 0b00) {
             if (logSerialMessages) System.err.println(getName() + " is being configured as UART. Only I/O serial mode is supported for now");
         }
+
+        // Clock source may have changed
+        updateFrequency();
     }
 
 
@@ -266,8 +287,8 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
                 if (!isMod0RxeSet() || !isIoMode() || isCrIocSet())
                     return;
         }
-        // Insert delay of a few CPU cycles.
-        platform.getMasterClock().add(this, -1, true, false);
+        // Each value is transferred by transferEvent, once all its bits have been clocked
+        transferEvent.start();
     }
 
 
@@ -300,6 +321,7 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
 
     public void setBrcr(int brcr) {
         this.brcr = brcr;
+        updateFrequency();
     }
 
 
@@ -309,6 +331,12 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
 
     public void setBradd(int bradd) {
         this.bradd = bradd & BRnADD_BRnK_MASK;
+        updateFrequency();
+    }
+
+    @Override
+    public void updateFrequency() {
+        transferEvent.updateFrequency();
     }
 
     public int getRfc() {
@@ -317,7 +345,7 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
 
     public void setRfc(int rfc) {
         if ((rfc & RFC_RFCS_MASK) != 0) {
-            rxFifo = new LinkedList<Integer>();
+            rxFifo.clear();
         }
         // TODO RFIS
         this.rfc = rfc;
@@ -336,7 +364,7 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
     public void setTfc(int tfc) {
         this.tfc = tfc;
         if (isTfcTfcsSet()) {
-            txFifo = new LinkedList<Integer>();
+            txFifo.clear();
         }
         // TODO TFIS
         computeTxFillLevel();
@@ -639,7 +667,6 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
      * Compute frequency
      * @return SIO_CLK
      */
-    @Override
     public int getFrequencyHz() {
         if (isIoMode()) {
             // I/O interface mode, clock is specified in the control register SC0CR
@@ -795,33 +822,33 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
      * @return 5 to 9 bits integer corresponding to a single value read by a device from this serial port
      */
     @Override
-    public Integer read() {
+    public int read() {
         if (isEnSet() && isMod1TxeSet() && isMod1FdpxTxSet()) {
             return getTxValue();
         }
         else {
             if (!isEnSet()) {
-                if (logSerialMessages) System.out.println(getName() + " is disabled. Returning null.");
+                if (logSerialMessages) System.out.println(getName() + " is disabled. Returning no data.");
             }
             else if (!isMod1TxeSet()) {
-                if (logSerialMessages) System.out.println("TX is disabled on " + getName() + ". Returning null.");
+                if (logSerialMessages) System.out.println("TX is disabled on " + getName() + ". Returning no data.");
             }
             else {
-                if (logSerialMessages) System.out.println("Duplex mode on " + getName() + " is " + getMod1Fdpx() + ". Returning null.");
+                if (logSerialMessages) System.out.println("Duplex mode on " + getName() + " is " + getMod1Fdpx() + ". Returning no data.");
             }
-            return null;
+            return NO_DATA;
         }
     }
 
-    private Integer getTxValue() {
+    private int getTxValue() {
         if (!isFcnfCnfgSet()) { // FIFO disabled
             if (isMod2TbempSet()) {
                 if (logSerialMessages) System.err.println(getName() + ": TX buffer underrun");
-                // There's no data in buffer => Underrun : new data to return. Return null
+                // There's no data in buffer => Underrun : new data to return. Return NO_DATA
                 if (isCrIocSet()) { // Buffer underrun can normally only happen in SCLK input mode. In SCLK output mode, clock is stopped
                     setCrPerr();
                 }
-                return null;
+                return NO_DATA;
             }
             setMod2Tbemp();
             if (isMod1FdpxTxSet()) {
@@ -836,10 +863,10 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
 //                if (isCrIocSet()) {// Buffer underrun can normally only happen in SCLK input mode. In SCLK output mode, clock is stopped
 //                    setCrPerr(); // TODO This is not explicitly specified in case of FIFO. Sounds logical but...
 //                }
-                return null;
+                return NO_DATA;
             }
             else {
-                Integer value = txFifo.poll();
+                int value = txFifo.poll();
                 if (isTfcTfisSet()?(txFifo.size() <= txInterruptFillLevel):(txFifo.size() == txInterruptFillLevel)) {
                     if (isFcnfTfieSet()) {
                         platform.getInterruptController().request(getTxInterruptNumber());
@@ -871,9 +898,9 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
      * @param value integer (5 to 9 bits) corresponding to a single value written by an external device to this serial port
      */
     @Override
-    public void write(Integer value) {
-        if (value == null) {
-            if (logSerialMessages) System.out.println("TxSerialInterface.write(null)");
+    public void write(int value) {
+        if (value == NO_DATA) {
+            if (logSerialMessages) System.out.println("TxSerialInterface.write(NO_DATA)");
         }
         else {
             if (isEnSet() && isMod0RxeSet() && isMod1FdpxRxSet()) {
@@ -993,43 +1020,36 @@ public class TxSerialInterface extends SerialInterface implements Clockable {
     }
 
 
-    @Override
     public int getChip() {
         return Constants.CHIP_TX;
     }
 
     /**
-     * The goal of this is to delay the actual transfer according to the currently selected baud rate
+     * Called at the end of each value, as delayed according to the currently selected baud rate
+     * @return true if transfer goes on
      */
-    @Override
-    public Object onClockTick() throws Exception {
-        bitNumberBeingTransferred++;
-        if (bitNumberBeingTransferred == getNumBits() + getIntervalTimeInSclk() /* TODO + start/stop/parity if UART */) {
-            bitNumberBeingTransferred = 0;
-
-            if (getMod1Fdpx()==MOD1_FDPX_RX_MASK) {
-                // half-duplex receive (clock master)
-                if (isEnSet() && isMod0RxeSet()) {
-                    targetDevice.readHalfDuplex();
-                    // device may stop reception automatically if FIFO was used and configured like this
-                    if (isMod0RxeSet()) {
-                        return null;
-                    }
+    private boolean transferValue() {
+        if (getMod1Fdpx()==MOD1_FDPX_RX_MASK) {
+            // half-duplex receive (clock master)
+            if (isEnSet() && isMod0RxeSet()) {
+                targetDevice.readHalfDuplex();
+                // device may stop reception automatically if FIFO was used and configured like this
+                if (isMod0RxeSet()) {
+                    return true;
                 }
-            } else {
-                // Transfer one byte
-                Integer value = read();
-                if (value != null) {
-                    super.valueReady(value);
-                    // device may stop transmission automatically if FIFO was used and configured like this
-                    if (isMod1TxeSet()) {
-                        return null;
-                    }
+            }
+        } else {
+            // Transfer one byte
+            int value = read();
+            if (value != NO_DATA) {
+                super.valueReady(value);
+                // device may stop transmission automatically if FIFO was used and configured like this
+                if (isMod1TxeSet()) {
+                    return true;
                 }
             }
-            // End of transmission - unregister
-            platform.getMasterClock().remove(this);
         }
-        return null;
+        // End of transmission
+        return false;
     }
 }
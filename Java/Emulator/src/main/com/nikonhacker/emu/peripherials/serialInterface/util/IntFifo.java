@@ -0,0 +1,59 @@
+package com.nikonhacker.emu.peripherials.serialInterface.util;
+
+import com.nikonhacker.emu.peripherials.serialInterface.SerialDevice;
+
+/**
+ * A ring buffer of int values, used as serial interface FIFO instead of a Queue&lt;Integer&gt;
+ * so that values can be transferred without boxing.
+ * Hardware FIFOs have a fixed size, which is normally checked by the caller before adding. If it is not, the buffer
+ * grows so that no value is lost.
+ */
+public class IntFifo {
+    private int[] values;
+    private int   head;
+    private int   size;
+
+    public IntFifo(int capacity) {
+        values = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            int[] newValues = new int[values.length * 2];
+            for (int i = 0; i < size; i++) {
+                newValues[i] = values[(head + i) % values.length];
+            }
+            values = newValues;
+            head = 0;
+        }
+        values[(head + size) % values.length] = value;
+        size++;
+    }
+
+    /**
+     * Removes and returns the oldest value
+     * @return the value, or SerialDevice.NO_DATA if the FIFO is empty
+     */
+    public int poll() {
+        if (size == 0) {
+            return SerialDevice.NO_DATA;
+        }
+        int value = values[head];
+        head = (head + 1) % values.length;
+        size--;
+        return value;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
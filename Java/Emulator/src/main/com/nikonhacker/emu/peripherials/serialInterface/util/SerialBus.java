@@ -97,9 +97,9 @@ public class SerialBus {
          * @param value
          */
         @Override
-        public void write(Integer value) {
-            for (InternalSlavePartner internalSlavePartner : internalSlavePartners) {
-                internalSlavePartner.reverseWrite(value);
+        public void write(int value) {
+            for (int i = 0; i < internalSlavePartners.size(); i++) {
+                internalSlavePartners.get(i).reverseWrite(value);
             }
         }
 
@@ -108,7 +108,7 @@ public class SerialBus {
             System.out.println("SerialTee$InternalAPartner.onBitNumberChange");
         }
 
-        public void reverseWrite(Integer value) {
+        public void reverseWrite(int value) {
             targetDevice.write(value);
         }
     }
@@ -126,7 +126,7 @@ public class SerialBus {
          * @param value
          */
         @Override
-        public void write(Integer value) {
+        public void write(int value) {
             internalMasterPartner.reverseWrite(value);
         }
 
@@ -135,7 +135,7 @@ public class SerialBus {
             System.out.println("SerialTee$InternalBPartner.onBitNumberChange");
         }
 
-        public void reverseWrite(Integer value) {
+        public void reverseWrite(int value) {
             targetDevice.write(value);
         }
     }
@@ -0,0 +1,105 @@
+package com.nikonhacker.emu.peripherials.serialInterface.util;
+
+import com.nikonhacker.emu.ClockEvent;
+import com.nikonhacker.emu.MasterClock;
+
+/**
+ * Delays the transfer of serial values according to the baud rate, without clocking the interface at each bit.
+ * While a transfer is in progress, one event is scheduled per value, at the time its last bit is transferred.
+ */
+public abstract class SerialTransferEvent extends ClockEvent {
+    private final MasterClock masterClock;
+    /** true between start() and the end of the transfer, even while no value can be scheduled */
+    private boolean started;
+    /** Frequency and chip time of the pending value, so that a clock change can reschedule it */
+    private int  scheduledFrequencyHz;
+    private long scheduledTimePs;
+
+    public SerialTransferEvent(int chip, MasterClock masterClock) {
+        super(chip);
+        this.masterClock = masterClock;
+    }
+
+    /**
+     * Starts transferring values, unless a transfer is already in progress
+     */
+    public void start() {
+        started = true;
+        if (!isScheduled()) {
+            scheduleNextValue();
+        }
+    }
+
+    public void stop() {
+        started = false;
+        masterClock.cancel(this);
+    }
+
+    /**
+     * Must be called when the serial clock changes, so that a transfer started while its frequency was 0 can proceed,
+     * and the remaining bits of a pending value are transferred at the new frequency
+     */
+    public void updateFrequency() {
+        if (!started) {
+            return;
+        }
+        if (!isScheduled()) {
+            scheduleNextValue();
+            return;
+        }
+        int frequencyHz = getFrequencyHz();
+        if (frequencyHz == scheduledFrequencyHz) {
+            return;
+        }
+        if (frequencyHz <= 0) {
+            // Clock became external. The value now waits for the other device
+            masterClock.cancel(this);
+            return;
+        }
+        long nowPs = masterClock.getChipTimePs(getChip());
+        long remainingPs = Math.max(0, scheduledTimePs - nowPs) * scheduledFrequencyHz / frequencyHz;
+        schedule(frequencyHz, nowPs + remainingPs);
+    }
+
+    @Override
+    public void onEvent() throws Exception {
+        if (transferValue()) {
+            scheduleNextValue();
+        }
+        else {
+            // Also cancels a start() called by the devices during the transfer
+            stop();
+        }
+    }
+
+    private void scheduleNextValue() {
+        int frequencyHz = getFrequencyHz();
+        if (frequencyHz <= 0) {
+            // Clock is external. Values are transferred at the pace of the other device
+            return;
+        }
+        schedule(frequencyHz, masterClock.getChipTimePs(getChip()) + getNumBitsPerValue() * MasterClock.PS_PER_SEC / frequencyHz);
+    }
+
+    private void schedule(int frequencyHz, long chipTimePs) {
+        scheduledFrequencyHz = frequencyHz;
+        scheduledTimePs = chipTimePs;
+        masterClock.schedule(this, chipTimePs);
+    }
+
+    /**
+     * @return the frequency of the serial clock, in Hertz, or 0 if it is an external clock
+     */
+    protected abstract int getFrequencyHz();
+
+    /**
+     * @return the number of serial clock cycles needed for one value
+     */
+    protected abstract int getNumBitsPerValue();
+
+    /**
+     * Performs the transfer of the value whose last bit has been reached
+     * @return true if transfer goes on with a next value
+     */
+    protected abstract boolean transferValue() throws Exception;
+}
@@ -0,0 +1,78 @@
+package com.nikonhacker.emu.peripherials.serialInterface.util;
+
+import com.nikonhacker.emu.peripherials.serialInterface.SerialDevice;
+
+import java.io.PrintWriter;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Formats logged serial values as hex and only forwards them to the PrintWriter by batches, because writing to the
+ * PrintWriter of a GUI text area for each value is very costly.
+ * A batch is flushed when it is full, when NO_DATA is logged (usually the end of a transfer), or at the latest
+ * FLUSH_DELAY_MS after its first value, so that short exchanges show up even if no other value follows
+ */
+class SerialValueLogBuffer {
+    private static final int VALUES_PER_BATCH = 16;
+    private static final long FLUSH_DELAY_MS = 100;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /** Shared by all buffers. At most one flush per buffer is pending */
+    private static Timer flushTimer;
+
+    private final PrintWriter printWriter;
+    private final char[] buffer = new char[VALUES_PER_BATCH * 4];
+    private int length = 0;
+    private int numValues = 0;
+    private boolean flushScheduled;
+
+    SerialValueLogBuffer(PrintWriter printWriter) {
+        this.printWriter = printWriter;
+    }
+
+    synchronized void log(int value, int mask) {
+        if (value == SerialDevice.NO_DATA) {
+            buffer[length++] = 'x';
+        }
+        else {
+            value &= mask;
+            if (value > 0xFF) {
+                buffer[length++] = HEX_DIGITS[(value >> 8) & 0xF];
+            }
+            buffer[length++] = HEX_DIGITS[(value >> 4) & 0xF];
+            buffer[length++] = HEX_DIGITS[value & 0xF];
+        }
+        buffer[length++] = ' ';
+        numValues++;
+        if (value == SerialDevice.NO_DATA || numValues == VALUES_PER_BATCH) {
+            flush();
+        }
+        else if (!flushScheduled) {
+            flushScheduled = true;
+            getFlushTimer().schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    synchronized (SerialValueLogBuffer.this) {
+                        flushScheduled = false;
+                        flush();
+                    }
+                }
+            }, FLUSH_DELAY_MS);
+        }
+    }
+
+    private static synchronized Timer getFlushTimer() {
+        if (flushTimer == null) {
+            flushTimer = new Timer("Serial log flush", true);
+        }
+        return flushTimer;
+    }
+
+    synchronized void flush() {
+        if (length > 0) {
+            printWriter.write(buffer, 0, length);
+            length = 0;
+            numValues = 0;
+        }
+    }
+}
@@ -17,7 +17,7 @@ public class SerialWire extends SerialDevice {
     }
 
     @Override
-    public void write(Integer value) {
+    public void write(int value) {
         targetDevice.write(value);
     }
 
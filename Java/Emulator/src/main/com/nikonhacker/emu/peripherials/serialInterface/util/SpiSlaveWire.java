@@ -18,7 +18,7 @@ public class SpiSlaveWire extends SpiSlaveDevice {
     }
 
     @Override
-    public void write(Integer value) {
+    public void write(int value) {
         targetDevice.write(value);
     }
 
@@ -0,0 +1,738 @@
+package com.nikonhacker.emu.profiler;
+
+import com.nikonhacker.Constants;
+import com.nikonhacker.Format;
+import com.nikonhacker.disassembly.CodeSegment;
+import com.nikonhacker.disassembly.CodeStructure;
+import com.nikonhacker.disassembly.Function;
+import com.nikonhacker.disassembly.Instruction;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Attributes the cycles of an emulator to the current µITRON task, to interrupt handlers and to functions.
+ *
+ * Cycles are accumulated in a calling context tree per task: the root of each tree is a task, and each node below
+ * is a function or an interrupt, called from its parent. The emulator reports each executed instruction, accepted
+ * interrupts and skipped (idle) cycles, and the profiler follows calls and returns, as well as task switches by
+ * watching pCurrentTCB after each jump, call or return. A jump back into a calling function is considered a return.
+ *
+ * In exact mode, all cycles are attributed to the function executing them. In sampling mode, the current function
+ * is only looked up every samplingIntervalCycles, which is cheaper but less precise.
+ *
+ * Cycles are also counted per instruction address, in a histogram made of primitive arrays allocated per code page,
+ * to find the hot spots inside functions.
+ *
+ * ExecutionProfilerBenchmark (in the tests) measures the overhead on a TX call-heavy loop: about 5-10% in exact mode
+ * and 3-5% in sampling mode, the histogram itself accounting for a few percent at most.
+ *
+ * Only the emulator thread may update the profile. Other threads can read it at any time, but values may be slightly
+ * inconsistent while emulation runs.
+ */
+public class ExecutionProfiler {
+    public static enum NodeType {
+        TASK, INTERRUPT, FUNCTION
+    }
+
+    /** Key of code outside any known function */
+    private static final int UNKNOWN_FUNCTION = -1;
+
+    /** Key of the task tree when task information is not available */
+    private static final int NO_TASK = -1;
+
+    private static final Node[] NO_NODES = new Node[0];
+
+    /** Number of address bits covered by one page of the PC histogram */
+    private static final int HISTOGRAM_PAGE_BITS = 16;
+    private static final int HISTOGRAM_OFFSET_MASK = (1 << HISTOGRAM_PAGE_BITS) - 1;
+
+    public static class Node {
+        private final NodeType type;
+        private final int      key;
+        private final Node     parent;
+
+        /** Replaced, never modified, so that it can be read by other threads */
+        private volatile Node[] children = NO_NODES;
+
+        private long selfCycles;
+
+        private Node(NodeType type, int key, Node parent) {
+            this.type = type;
+            this.key = key;
+            this.parent = parent;
+        }
+
+        public NodeType getType() {
+            return type;
+        }
+
+        /**
+         * @return the TCB address of a task, the number of an interrupt or the address of a function
+         */
+        public int getKey() {
+            return key;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        public Node[] getChildren() {
+            return children;
+        }
+
+        public long getSelfCycles() {
+            return selfCycles;
+        }
+
+        /**
+         * @return the cycles of this node and all its descendants
+         */
+        public long getTotalCycles() {
+            // Not recursive, as trees get very deep when returns are missed (longjmp, unbalanced RETI...)
+            long total = 0;
+            Deque<Node> nodesToVisit = new ArrayDeque<>();
+            nodesToVisit.push(this);
+            while (!nodesToVisit.isEmpty()) {
+                Node node = nodesToVisit.pop();
+                total += node.selfCycles;
+                for (Node child : node.children) {
+                    nodesToVisit.push(child);
+                }
+            }
+            return total;
+        }
+
+        private Node getChild(NodeType type, int key) {
+            Node[] currentChildren = children;
+            for (Node child : currentChildren) {
+                if (child.key == key && child.type == type) {
+                    return child;
+                }
+            }
+            Node child = new Node(type, key, this);
+            Node[] newChildren = Arrays.copyOf(currentChildren, currentChildren.length + 1);
+            newChildren[currentChildren.length] = child;
+            children = newChildren;
+            return child;
+        }
+    }
+
+    /**
+     * Cycles spent in a task, an interrupt or a function, whatever the calling context
+     */
+    public static class Entry {
+        private final NodeType type;
+        private final int      key;
+        private final String   name;
+        private long selfCycles;
+        private long totalCycles;
+
+        private Entry(NodeType type, int key, String name) {
+            this.type = type;
+            this.key = key;
+            this.name = name;
+        }
+
+        public NodeType getType() {
+            return type;
+        }
+
+        public int getKey() {
+            return key;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSelfCycles() {
+            return selfCycles;
+        }
+
+        /**
+         * @return the cycles spent in this entry and everything it called. Recursive calls are only counted once
+         */
+        public long getTotalCycles() {
+            return totalCycles;
+        }
+    }
+
+    private final int              chip;
+    private final DebuggableMemory memory;
+    private final CodeStructure    codeStructure;
+    private final int              samplingIntervalCycles;
+
+    // Code segments of all functions, sorted by start address. Addresses are stored with their sign bit flipped, so
+    // that they can be compared as signed ints
+    private final int[] segmentStarts;
+    private final int[] segmentEnds;
+    private final int[] segmentFunctions;
+
+    /** Bounds (sign flipped) of the code range containing the last located instruction. Empty if not located */
+    private int locatedStart = 0;
+    private int locatedEnd   = -1;
+    /** Function of that range */
+    private int locatedFunction;
+
+    private volatile Node[] roots = NO_NODES;
+    private final Map<Integer, Node> currentNodeByTask = new HashMap<>();
+    private int  currentTcb = NO_TASK;
+    private Node currentNode;
+
+    private Instruction.FlowType pendingFlowType;
+    /** Number of instructions before the target of the last call or return is reached */
+    private int pendingFlowDistance;
+
+    private long cyclesToNextSample;
+
+    /**
+     * Cycles per instruction address, by page. Pages are allocated on first use. Instructions being at least 16-bit
+     * aligned, each page has one counter per halfword
+     */
+    private final long[][] pcCycles = new long[1 << (32 - HISTOGRAM_PAGE_BITS)][];
+    /** Address of the last executed instruction, to which idle cycles are attributed */
+    private int lastPc;
+
+    /**
+     * @param samplingIntervalCycles 0 for exact accounting, or the number of cycles between samples
+     */
+    public ExecutionProfiler(int chip, DebuggableMemory memory, CodeStructure codeStructure, int samplingIntervalCycles) {
+        this.chip = chip;
+        this.memory = memory;
+        this.codeStructure = codeStructure;
+        this.samplingIntervalCycles = samplingIntervalCycles;
+        this.cyclesToNextSample = samplingIntervalCycles;
+
+        List<int[]> segments = new ArrayList<>();
+        if (codeStructure != null) {
+            for (Integer functionAddress : codeStructure.getAllFunctionAddresses()) {
+                Function function = codeStructure.getFunction(functionAddress);
+                for (CodeSegment codeSegment : function.getCodeSegments()) {
+                    segments.add(new int[]{codeSegment.getStart() ^ Integer.MIN_VALUE, codeSegment.getEnd() ^ Integer.MIN_VALUE, functionAddress});
+                }
+            }
+        }
+        Collections.sort(segments, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                return o1[0] < o2[0] ? -1 : (o1[0] == o2[0] ? 0 : 1);
+            }
+        });
+        segmentStarts = new int[segments.size()];
+        segmentEnds = new int[segments.size()];
+        segmentFunctions = new int[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            segmentStarts[i] = segments.get(i)[0];
+            segmentEnds[i] = segments.get(i)[1];
+            segmentFunctions[i] = segments.get(i)[2];
+        }
+
+        currentNode = getRoot(readCurrentTcb());
+        currentTcb = currentNode.key;
+    }
+
+    public int getChip() {
+        return chip;
+    }
+
+    public int getSamplingIntervalCycles() {
+        return samplingIntervalCycles;
+    }
+
+    public Node[] getRoots() {
+        return roots;
+    }
+
+    /**
+     * Must be called by the emulator after each executed instruction
+     * @param pc address of the instruction
+     * @param instruction the instruction
+     * @param cycles the number of cycles it took
+     */
+    public void onInstruction(int pc, Instruction instruction, int cycles) {
+        pc = pc & 0xFFFFFFFE; // ignore ISA mode bit of TX
+
+        if (pendingFlowDistance > 0 && --pendingFlowDistance == 0) {
+            onFlowTargetReached(pc);
+        }
+
+        lastPc = pc;
+        if (samplingIntervalCycles == 0) {
+            locate(pc);
+            currentNode.selfCycles += cycles;
+            addPcCycles(pc, cycles);
+        }
+        else {
+            cyclesToNextSample -= cycles;
+            if (cyclesToNextSample <= 0) {
+                locate(pc);
+                takeSamples();
+            }
+        }
+
+        switch (instruction.getFlowType()) {
+            case CALL:
+            case INT:
+                // The caller must be known before entering the callee
+                locate(pc);
+                onFlowInstruction(instruction);
+                break;
+            case RET:
+            case JMP:
+                onFlowInstruction(instruction);
+                break;
+        }
+    }
+
+    private void onFlowInstruction(Instruction instruction) {
+        pendingFlowType = instruction.getFlowType();
+        pendingFlowDistance = (instruction.getDelaySlotType() == Instruction.DelaySlotType.NONE) ? 1 : 2;
+        checkTaskSwitch();
+    }
+
+    /**
+     * Must be called by the emulator when an interrupt is accepted, before branching to its handler
+     */
+    public void onInterrupt(int interruptNumber) {
+        currentNode = currentNode.getChild(NodeType.INTERRUPT, interruptNumber);
+        pendingFlowDistance = 0;
+        forgetLocation();
+    }
+
+    /**
+     * Must be called by the emulator for cycles spent without executing instructions (idle CPU, fast-forward)
+     */
+    public void onIdleCycles(long cycles) {
+        if (samplingIntervalCycles == 0) {
+            currentNode.selfCycles += cycles;
+            addPcCycles(lastPc, cycles);
+        }
+        else {
+            cyclesToNextSample -= cycles;
+            takeSamples();
+        }
+    }
+
+    /**
+     * Attributes the elapsed sampling intervals to the current node and instruction
+     */
+    private void takeSamples() {
+        long cycles = 0;
+        while (cyclesToNextSample <= 0) {
+            cycles += samplingIntervalCycles;
+            cyclesToNextSample += samplingIntervalCycles;
+        }
+        currentNode.selfCycles += cycles;
+        addPcCycles(lastPc, cycles);
+    }
+
+    private void addPcCycles(int pc, long cycles) {
+        long[] page = pcCycles[pc >>> HISTOGRAM_PAGE_BITS];
+        if (page == null) {
+            page = new long[1 << (HISTOGRAM_PAGE_BITS - 1)];
+            pcCycles[pc >>> HISTOGRAM_PAGE_BITS] = page;
+        }
+        page[(pc & HISTOGRAM_OFFSET_MASK) >>> 1] += cycles;
+    }
+
+    private void onFlowTargetReached(int pc) {
+        if (pendingFlowType == Instruction.FlowType.RET) {
+            // Return to caller. Returning from the handler also leaves the interrupt
+            if (currentNode.type == NodeType.FUNCTION) {
+                currentNode = currentNode.parent;
+                if (currentNode.type == NodeType.INTERRUPT) {
+                    currentNode = currentNode.parent;
+                }
+            }
+            forgetLocation();
+        }
+        else if (pendingFlowType == Instruction.FlowType.JMP) {
+            // A jump back into a caller (e.g. "jr $ra" on TX) is a return. Other jumps are handled by locate()
+            int function = findFunction(pc);
+            if (pc != function) {
+                for (Node node = currentNode; node != null && node.type == NodeType.FUNCTION; node = node.parent) {
+                    if (node.key == function) {
+                        currentNode = node;
+                        break;
+                    }
+                }
+            }
+        }
+        else {
+            int callerFunction = (currentNode.type == NodeType.FUNCTION) ? currentNode.key : UNKNOWN_FUNCTION;
+            int function = findFunction(pc);
+            // A call to the same function is either recursive (landing on its entry) or a call that was not taken
+            if (function != callerFunction || pc == function) {
+                currentNode = currentNode.getChild(NodeType.FUNCTION, function);
+            }
+        }
+    }
+
+    /**
+     * Makes sure currentNode is the function containing pc, replacing it if execution jumped to another function
+     */
+    private void locate(int pc) {
+        int flippedPc = pc ^ Integer.MIN_VALUE;
+        if (flippedPc >= locatedStart && flippedPc <= locatedEnd
+                && currentNode.type == NodeType.FUNCTION && currentNode.key == locatedFunction) {
+            return;
+        }
+        int function = findFunction(pc);
+        if (currentNode.type != NodeType.FUNCTION) {
+            currentNode = currentNode.getChild(NodeType.FUNCTION, function);
+        }
+        else if (currentNode.key != function) {
+            currentNode = currentNode.parent.getChild(NodeType.FUNCTION, function);
+        }
+    }
+
+    private void forgetLocation() {
+        locatedStart = 0;
+        locatedEnd = -1;
+    }
+
+    /**
+     * @return the address of the function containing pc, or UNKNOWN_FUNCTION. Also remembers the code range
+     * around pc having the same result
+     */
+    private int findFunction(int pc) {
+        int flippedPc = pc ^ Integer.MIN_VALUE;
+        int high = findLastSegmentStartingBefore(flippedPc);
+        int low = high + 1;
+        if (high >= 0 && flippedPc <= segmentEnds[high]) {
+            locatedStart = segmentStarts[high];
+            locatedEnd = segmentEnds[high];
+            locatedFunction = segmentFunctions[high];
+        }
+        else {
+            // In a gap between segments
+            locatedStart = (high >= 0) ? segmentEnds[high] + 1 : Integer.MIN_VALUE;
+            locatedEnd = (low < segmentStarts.length) ? segmentStarts[low] - 1 : Integer.MAX_VALUE;
+            locatedFunction = UNKNOWN_FUNCTION;
+        }
+        return locatedFunction;
+    }
+
+    /**
+     * Same as findFunction, without touching the cached range, so that it can be called from other threads
+     */
+    private int getFunctionAt(int pc) {
+        int flippedPc = pc ^ Integer.MIN_VALUE;
+        int segment = findLastSegmentStartingBefore(flippedPc);
+        return (segment >= 0 && flippedPc <= segmentEnds[segment]) ? segmentFunctions[segment] : UNKNOWN_FUNCTION;
+    }
+
+    /**
+     * @return the index of the last segment starting at or before the given (sign flipped) address, or -1
+     */
+    private int findLastSegmentStartingBefore(int flippedPc) {
+        int low = 0;
+        int high = segmentStarts.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (segmentStarts[middle] <= flippedPc) {
+                low = middle + 1;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    private void checkTaskSwitch() {
+        int tcb = readCurrentTcb();
+        if (tcb != currentTcb) {
+            // Each task resumes where it was suspended
+            currentNodeByTask.put(currentTcb, currentNode);
+            Node node = currentNodeByTask.get(tcb);
+            currentNode = (node == null) ? getRoot(tcb) : node;
+            currentTcb = tcb;
+            forgetLocation();
+        }
+    }
+
+    private int readCurrentTcb() {
+        if (codeStructure == null || codeStructure.pCurrentTCB == null) {
+            return NO_TASK;
+        }
+        // No access source, so that memory listeners are not triggered
+        return memory.load32(codeStructure.pCurrentTCB, null);
+    }
+
+    private Node getRoot(int tcb) {
+        Node[] currentRoots = roots;
+        for (Node root : currentRoots) {
+            if (root.key == tcb) {
+                return root;
+            }
+        }
+        Node root = new Node(NodeType.TASK, tcb, null);
+        Node[] newRoots = Arrays.copyOf(currentRoots, currentRoots.length + 1);
+        newRoots[currentRoots.length] = root;
+        roots = newRoots;
+        return root;
+    }
+
+
+    // Reporting
+
+    public long getTotalCycles() {
+        long total = 0;
+        for (Node root : roots) {
+            total += root.getTotalCycles();
+        }
+        return total;
+    }
+
+    public String getName(Node node) {
+        return getName(node.type, node.key);
+    }
+
+    public String getName(NodeType type, int key) {
+        switch (type) {
+            case TASK:
+                return getTaskName(key);
+            case INTERRUPT:
+                return "interrupt 0x" + Format.asHex(key, 2);
+            default:
+                if (key == UNKNOWN_FUNCTION) {
+                    return "[unknown]";
+                }
+                String name = (codeStructure == null) ? null : codeStructure.getFunctionName(key);
+                return (name == null) ? ("0x" + Format.asHex(key, 8)) : name;
+        }
+    }
+
+    private String getTaskName(int tcb) {
+        if (tcb == NO_TASK) {
+            return "all";
+        }
+        if (tcb == 0) {
+            return "no task";
+        }
+        int taskId = getTaskId(tcb);
+        return (taskId > 0 ? "task " + taskId : "TCB") + " (0x" + Format.asHex(tcb, 8) + ")";
+    }
+
+    /**
+     * @return the µITRON id of the task with this TCB, or 0 if not found
+     */
+    private int getTaskId(int tcb) {
+        if (chip == Constants.CHIP_FR) {
+            // see FrItronTaskTable
+            if (codeStructure.tblTaskData != null) {
+                int numTasks = memory.loadUnsigned16(codeStructure.tblTaskData, null);
+                int elementSize = memory.loadUnsigned16(codeStructure.tblTaskData + 2, null);
+                for (int i = 0; i < numTasks && i < 128; i++) {
+                    if (memory.load32(codeStructure.tblTaskData + 4 + i * elementSize, null) == tcb) {
+                        return i + 1;
+                    }
+                }
+            }
+        }
+        else {
+            // see TxItronTaskTable
+            if (codeStructure.tblTCB != null && tcb - codeStructure.tblTCB >= 0 && (tcb - codeStructure.tblTCB) % 0x10 == 0) {
+                return (tcb - codeStructure.tblTCB) / 0x10 + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the cycles per task, interrupt and function, whatever the calling context
+     */
+    public List<Entry> getEntries() {
+        Map<Long, Entry> entries = new HashMap<>();
+        Map<Long, Integer> entriesInPath = new HashMap<>();
+        for (Node root : roots) {
+            addEntries(root, entries, entriesInPath);
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Adds the cycles of the tree below root to the entries, walking it depth first with an explicit stack, as trees
+     * get very deep when returns are missed
+     */
+    private void addEntries(Node root, Map<Long, Entry> entries, Map<Long, Integer> entriesInPath) {
+        Deque<PathElement> path = new ArrayDeque<>();
+        path.push(enterEntry(root, entries, entriesInPath));
+        while (!path.isEmpty()) {
+            PathElement element = path.peek();
+            if (element.nextChild < element.children.length) {
+                path.push(enterEntry(element.children[element.nextChild++], entries, entriesInPath));
+            }
+            else {
+                path.pop();
+                element.entry.selfCycles += element.selfCycles;
+                if (element.depth == null) {
+                    // Outermost occurrence in this path
+                    element.entry.totalCycles += element.totalCycles;
+                    entriesInPath.remove(element.entryKey);
+                }
+                else {
+                    entriesInPath.put(element.entryKey, element.depth);
+                }
+                if (!path.isEmpty()) {
+                    path.peek().totalCycles += element.totalCycles;
+                }
+            }
+        }
+    }
+
+    private PathElement enterEntry(Node node, Map<Long, Entry> entries, Map<Long, Integer> entriesInPath) {
+        Long entryKey = ((long) node.type.ordinal() << 32) | (node.key & 0xFFFFFFFFL);
+        Entry entry = entries.get(entryKey);
+        if (entry == null) {
+            entry = new Entry(node.type, node.key, getName(node));
+            entries.put(entryKey, entry);
+        }
+        Integer depth = entriesInPath.get(entryKey);
+        entriesInPath.put(entryKey, depth == null ? 1 : depth + 1);
+        return new PathElement(node, entryKey, entry, depth);
+    }
+
+    /**
+     * A node being visited by addEntries()
+     */
+    private static class PathElement {
+        private final Node[]  children;
+        private final Long    entryKey;
+        private final Entry   entry;
+        /** Number of occurrences of the entry above this node, or null if none */
+        private final Integer depth;
+        private final long    selfCycles;
+        private long totalCycles;
+        private int  nextChild;
+
+        private PathElement(Node node, Long entryKey, Entry entry, Integer depth) {
+            this.children = node.children;
+            this.entryKey = entryKey;
+            this.entry = entry;
+            this.depth = depth;
+            this.selfCycles = node.selfCycles;
+            this.totalCycles = selfCycles;
+        }
+    }
+
+    /**
+     * @param maxInstructions maximum number of addresses to return
+     * @return pairs of {address, cycles} for the instructions that took the most cycles, most expensive first
+     */
+    public List<long[]> getHotInstructions(int maxInstructions) {
+        PriorityQueue<long[]> hottest = new PriorityQueue<>(maxInstructions + 1, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] o1, long[] o2) {
+                return Long.compare(o1[1], o2[1]);
+            }
+        });
+        for (int pageNumber = 0; pageNumber < pcCycles.length; pageNumber++) {
+            long[] page = pcCycles[pageNumber];
+            if (page != null) {
+                for (int i = 0; i < page.length; i++) {
+                    if (page[i] != 0 && (hottest.size() < maxInstructions || page[i] > hottest.peek()[1])) {
+                        hottest.add(new long[]{(pageNumber << HISTOGRAM_PAGE_BITS) | (i << 1), page[i]});
+                        if (hottest.size() > maxInstructions) {
+                            hottest.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<long[]> result = new ArrayList<>(hottest);
+        Collections.sort(result, Collections.reverseOrder(hottest.comparator()));
+        return result;
+    }
+
+    /**
+     * Writes a text report listing the most expensive functions, by self and total cycles, and the most expensive
+     * instructions
+     */
+    public void writeReport(Writer writer, int maxLines) throws IOException {
+        long totalCycles = getTotalCycles();
+        writer.write("Execution profile of " + Constants.CHIP_LABEL[chip] + ": " + totalCycles + " cycles, "
+                + (samplingIntervalCycles == 0 ? "exact" : ("sampled every " + samplingIntervalCycles + " cycles")) + "\n");
+
+        List<Entry> functions = new ArrayList<>();
+        for (Entry entry : getEntries()) {
+            if (entry.type == NodeType.FUNCTION) {
+                functions.add(entry);
+            }
+        }
+
+        writer.write("\nFunctions by self cycles:\n");
+        Collections.sort(functions, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                return Long.compare(o2.selfCycles, o1.selfCycles);
+            }
+        });
+        writeFunctions(writer, functions, maxLines, totalCycles);
+
+        writer.write("\nFunctions by total cycles:\n");
+        Collections.sort(functions, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                return Long.compare(o2.totalCycles, o1.totalCycles);
+            }
+        });
+        writeFunctions(writer, functions, maxLines, totalCycles);
+
+        writer.write("\nHot instructions:\n");
+        writer.write(String.format("%14s %6s  %-10s %s\n", "cycles", "%", "address", "function"));
+        for (long[] hotInstruction : getHotInstructions(maxLines)) {
+            int address = (int) hotInstruction[0];
+            writer.write(String.format("%14d %6.2f  0x%s %s\n", hotInstruction[1], percent(hotInstruction[1], totalCycles),
+                    Format.asHex(address, 8), getName(NodeType.FUNCTION, getFunctionAt(address))));
+        }
+        writer.flush();
+    }
+
+    private void writeFunctions(Writer writer, List<Entry> functions, int maxLines, long totalCycles) throws IOException {
+        writer.write(String.format("%14s %6s %14s %6s  %s\n", "self", "%", "total", "%", "function"));
+        for (int i = 0; i < functions.size() && i < maxLines; i++) {
+            Entry entry = functions.get(i);
+            writer.write(String.format("%14d %6.2f %14d %6.2f  %s\n", entry.selfCycles, percent(entry.selfCycles, totalCycles),
+                    entry.totalCycles, percent(entry.totalCycles, totalCycles), entry.name));
+        }
+    }
+
+    private static double percent(long cycles, long totalCycles) {
+        return totalCycles == 0 ? 0 : cycles * 100.0 / totalCycles;
+    }
+
+    /**
+     * Writes the profile as "collapsed stacks", one line per calling context: names separated by semicolons,
+     * followed by a space and the number of cycles, as expected by flame graph tools
+     */
+    public void writeCollapsedStacks(Writer writer) throws IOException {
+        // Depth first, with explicit stacks as trees can be very deep
+        Deque<Node> nodesToVisit = new ArrayDeque<>();
+        Deque<String> prefixes = new ArrayDeque<>();
+        Node[] currentRoots = roots;
+        for (int i = currentRoots.length - 1; i >= 0; i--) {
+            nodesToVisit.push(currentRoots[i]);
+            prefixes.push("");
+        }
+        while (!nodesToVisit.isEmpty()) {
+            Node node = nodesToVisit.pop();
+            String stack = prefixes.pop() + getName(node).replace(';', ':');
+            long selfCycles = node.selfCycles;
+            if (selfCycles > 0) {
+                writer.write(stack + " " + selfCycles + "\n");
+            }
+            Node[] children = node.children;
+            for (int i = children.length - 1; i >= 0; i--) {
+                nodesToVisit.push(children[i]);
+                prefixes.push(stack + ";");
+            }
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,246 @@
+package com.nikonhacker.emu.trace;
+
+import com.nikonhacker.Constants;
+import com.nikonhacker.Format;
+import com.nikonhacker.disassembly.*;
+import com.nikonhacker.disassembly.fr.FrCPUState;
+import com.nikonhacker.disassembly.fr.FrInstructionSet;
+import com.nikonhacker.disassembly.fr.FrStatement;
+import com.nikonhacker.disassembly.tx.TxCPUState;
+import com.nikonhacker.disassembly.tx.TxInstructionSet;
+import com.nikonhacker.disassembly.tx.TxStatement;
+import com.nikonhacker.emu.MasterClock;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.DecimalFormat;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Converts a binary trace written by BinaryTraceRecorder to the text format of realtime disassembly logging.
+ * Instructions are disassembled again from their raw binary. If the trace contains register values, comments
+ * are the same as the ones of realtime logging, otherwise they only use what can be deduced from the instruction.
+ */
+public class BinaryTraceDecoder {
+    private static final int RECORDS_PER_READ = 4096;
+
+    private boolean includeTimestamp      = true;
+    private boolean includeIndent         = true;
+    private boolean includeInstruction    = true;
+    private boolean includeInterruptMarks = true;
+    private boolean includeWrites         = false;
+
+    private Set<OutputOption> outputOptions = EnumSet.copyOf(OutputOption.defaultFormatOptions);
+
+    private final DecimalFormat milliSecondFormatter = new DecimalFormat("0000.000000000");
+
+    private int                   chip;
+    private RawStatementFormatter formatter;
+    private CPUState              cpuState;
+    private int                   indent;
+
+    public void setIncludeTimestamp(boolean includeTimestamp) {
+        this.includeTimestamp = includeTimestamp;
+    }
+
+    public void setIncludeIndent(boolean includeIndent) {
+        this.includeIndent = includeIndent;
+    }
+
+    public void setIncludeInstruction(boolean includeInstruction) {
+        this.includeInstruction = includeInstruction;
+    }
+
+    public void setIncludeInterruptMarks(boolean includeInterruptMarks) {
+        this.includeInterruptMarks = includeInterruptMarks;
+    }
+
+    public void setIncludeWrites(boolean includeWrites) {
+        this.includeWrites = includeWrites;
+    }
+
+    public void setOutputOptions(Set<OutputOption> outputOptions) {
+        this.outputOptions = outputOptions;
+    }
+
+    /**
+     * Decodes the given trace file
+     * @param traceFile a file produced by BinaryTraceRecorder
+     * @param writer the destination of the text log
+     */
+    public void decode(File traceFile, Writer writer) throws IOException {
+        try (FileChannel channel = new FileInputStream(traceFile).getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORDS_PER_READ * TraceFormat.RECORD_SIZE);
+            // Start empty
+            buffer.flip();
+            if (!fill(channel, buffer)) {
+                throw new IOException("File " + traceFile + " is empty");
+            }
+            readHeader(buffer);
+            do {
+                while (buffer.remaining() >= TraceFormat.RECORD_SIZE) {
+                    decodeRecord(buffer, writer);
+                }
+            } while (fill(channel, buffer));
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads as many complete records as possible into the buffer, keeping any unread bytes
+     * @return false if no complete record is available
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.compact();
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            // keep reading
+        }
+        buffer.flip();
+        return buffer.remaining() >= TraceFormat.RECORD_SIZE;
+    }
+
+    private void readHeader(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        if (buffer.getInt(start) != TraceFormat.MAGIC) {
+            throw new IOException("Not a binary trace file");
+        }
+        int version = buffer.getShort(start + 4);
+        if (version != TraceFormat.VERSION) {
+            throw new IOException("Unsupported binary trace version: " + version);
+        }
+        chip = buffer.get(start + 6);
+        boolean hasRegisters = (buffer.get(start + 7) & TraceFormat.HEADER_FLAG_REGISTERS) != 0;
+        buffer.position(start + TraceFormat.RECORD_SIZE);
+
+        if (chip == Constants.CHIP_FR) {
+            FrInstructionSet.init(outputOptions);
+            FrStatement.initFormatChars(outputOptions);
+            FrCPUState.initRegisterLabels(outputOptions);
+        }
+        else {
+            TxInstructionSet.init(outputOptions);
+            TxStatement.initFormatChars(outputOptions);
+            TxCPUState.initRegisterLabels(outputOptions);
+        }
+        formatter = new RawStatementFormatter(chip, outputOptions);
+        cpuState = formatter.getCpuState();
+        if (hasRegisters) {
+            cpuState.setAllRegistersDefined();
+        }
+        indent = 0;
+    }
+
+    private void decodeRecord(ByteBuffer buffer, Writer writer) throws IOException {
+        int start = buffer.position();
+        byte type = buffer.get(start + TraceFormat.OFFSET_TYPE);
+        int id = buffer.getInt(start + TraceFormat.OFFSET_ID);
+        long timePs = buffer.getLong(start + TraceFormat.OFFSET_TIME);
+        long data = buffer.getLong(start + TraceFormat.OFFSET_DATA);
+        switch (type) {
+            case TraceFormat.TYPE_INSTRUCTION:
+                Instruction.FlowType flowType = Instruction.FlowType.values()[buffer.get(start + TraceFormat.OFFSET_FLOW_TYPE)];
+                int numBytes = buffer.get(start + TraceFormat.OFFSET_NUM_BYTES);
+                boolean is16bitIsa = (buffer.get(start + TraceFormat.OFFSET_FLAGS) & TraceFormat.FLAG_16BIT_ISA) != 0;
+                writeInstruction(writer, timePs, id, flowType, numBytes, is16bitIsa, data);
+                break;
+            case TraceFormat.TYPE_REGISTER:
+                if (id < cpuState.getNumStdRegisters()) {
+                    cpuState.setReg(id, (int) data);
+                }
+                else {
+                    cpuState.setStatusBits((int) data);
+                }
+                break;
+            case TraceFormat.TYPE_INTERRUPT:
+                if (includeInterruptMarks) {
+                    writer.write(formatTime(timePs) + " ------------------------- Accepting " + TraceFormat.decodeInterrupt(chip, id, data) + System.lineSeparator());
+                }
+                indent();
+                break;
+            case TraceFormat.TYPE_WRITE:
+                if (includeWrites) {
+                    int size = buffer.get(start + TraceFormat.OFFSET_NUM_BYTES);
+                    writer.write(formatTime(timePs) + "   write " + size + " byte(s) at 0x" + Format.asHex(id, 8) + " = 0x" + Format.asHex((int) data, size * 2) + System.lineSeparator());
+                }
+                break;
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+        buffer.position(start + TraceFormat.RECORD_SIZE);
+    }
+
+    private void writeInstruction(Writer writer, long timePs, int pc, Instruction.FlowType flowType, int numBytes, boolean is16bitIsa, long rawBinary) throws IOException {
+        StringBuilder msg = new StringBuilder();
+        if (includeTimestamp) {
+            msg.append(formatTime(timePs)).append(" ");
+        }
+        msg.append("0x").append(Format.asHex(pc, 8));
+
+        if (includeIndent) {
+            for (int i = 0; i < indent; i++) {
+                msg.append("  ");
+            }
+            switch (flowType) {
+                case CALL:
+                case INT:
+                    indent();
+                    break;
+                case RET:
+                    if (indent > 0) {
+                        indent--;
+                    }
+                    else {
+                        writer.write("<< requested outdent cannot be honored" + System.lineSeparator());
+                    }
+                    break;
+            }
+        }
+
+        if (includeInstruction) {
+            msg.append(" ").append(disassemble(pc, numBytes, is16bitIsa, rawBinary));
+        }
+        writer.write(msg.append(System.lineSeparator()).toString());
+    }
+
+    private void indent() {
+        if (includeIndent) {
+            indent++;
+        }
+    }
+
+    private String formatTime(long timePs) {
+        return milliSecondFormatter.format(timePs / (double) MasterClock.PS_PER_MS) + "ms";
+    }
+
+    private String disassemble(int pc, int numBytes, boolean is16bitIsa, long rawBinary) {
+        try {
+            return formatter.format(pc, numBytes, is16bitIsa, rawBinary).toString(outputOptions);
+        }
+        catch (DisassemblyException e) {
+            return "<cannot disassemble: " + e.getMessage() + ">";
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage BinaryTraceDecoder <trace file> [<text file>]");
+            System.err.println(" e.g. BinaryTraceDecoder FR_2014-01-01_12-00-00.trace FR.log");
+            System.exit(1);
+        }
+        Writer writer;
+        if (args.length > 1) {
+            writer = new BufferedWriter(new FileWriter(args[1]));
+        }
+        else {
+            writer = new BufferedWriter(new OutputStreamWriter(System.out));
+        }
+        try {
+            new BinaryTraceDecoder().decode(new File(args[0]), writer);
+        }
+        finally {
+            writer.close();
+        }
+    }
+}
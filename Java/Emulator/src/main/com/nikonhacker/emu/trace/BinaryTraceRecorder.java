@@ -0,0 +1,271 @@
+package com.nikonhacker.emu.trace;
+
+import com.nikonhacker.disassembly.CPUState;
+import com.nikonhacker.disassembly.Statement;
+import com.nikonhacker.emu.AddressRange;
+import com.nikonhacker.emu.interrupt.InterruptRequest;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records executed instructions to a binary trace file (see TraceFormat), as a fast alternative to DisassemblyLogger.
+ * Nothing is formatted during emulation: records are appended to a direct buffer which, once full, is handed over
+ * to a background thread writing it to the file. Buffers then go back to the pool, so that a fixed ring of buffers
+ * is used. If the disk cannot keep up, the emulator waits for a free buffer.
+ * Use BinaryTraceDecoder to get the text format back.
+ */
+public class BinaryTraceRecorder {
+    private static final int BUFFER_SIZE = 4096 * TraceFormat.RECORD_SIZE;
+    private static final int NUM_BUFFERS = 16;
+
+    /** Marker asking the writer thread to terminate */
+    private static final ByteBuffer END_OF_TRACE = ByteBuffer.allocate(0);
+
+    private final File                      file;
+    private final FileChannel               channel;
+    private final BlockingQueue<ByteBuffer> freeBuffers  = new ArrayBlockingQueue<>(NUM_BUFFERS);
+    private final BlockingQueue<ByteBuffer> fullBuffers  = new ArrayBlockingQueue<>(NUM_BUFFERS + 1);
+    private final Thread                    writerThread;
+    private volatile IOException            writeException;
+
+    private ByteBuffer buffer;
+    private boolean    closed;
+
+    private final boolean            includeRegisters;
+    private       int[]              registerValues;
+    private       int[]              newRegisterValues;
+    private       List<AddressRange> ranges;
+
+    /**
+     * Creates a new trace file
+     * @param file the file to write to
+     * @param chip Constants.CHIP_FR or Constants.CHIP_TX
+     * @param includeRegisters if true, register changes are also recorded, so that the decoder can produce the same
+     *                         comments as realtime logging
+     */
+    public BinaryTraceRecorder(File file, int chip, boolean includeRegisters) throws IOException {
+        this.file = file;
+        this.includeRegisters = includeRegisters;
+        channel = new FileOutputStream(file).getChannel();
+        for (int i = 0; i < NUM_BUFFERS; i++) {
+            freeBuffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+        buffer = freeBuffers.poll();
+
+        // Header
+        buffer.putInt(TraceFormat.MAGIC);
+        buffer.putShort((short) TraceFormat.VERSION);
+        buffer.put((byte) chip);
+        buffer.put((byte) (includeRegisters ? TraceFormat.HEADER_FLAG_REGISTERS : 0));
+        buffer.position(TraceFormat.RECORD_SIZE);
+
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBuffers();
+            }
+        }, "Trace writer " + file.getName());
+        writerThread.start();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Limit recorded instructions to the given ranges
+     * @param ranges by convention, null means no filtering
+     */
+    public void setRanges(List<AddressRange> ranges) {
+        this.ranges = ranges;
+    }
+
+    /**
+     * Records the statement about to be executed.
+     * Must be called after decoding, as the raw binary is taken from the statement
+     */
+    public synchronized void recordInstruction(long timePs, CPUState cpuState, Statement statement) {
+        if (closed || !mustRecord(cpuState.pc)) {
+            return;
+        }
+        if (includeRegisters) {
+            recordRegisterChanges(timePs, cpuState);
+        }
+        ByteBuffer record = nextRecord();
+        record.put(TraceFormat.TYPE_INSTRUCTION);
+        record.put((byte) statement.getInstruction().getFlowType().ordinal());
+        record.put((byte) statement.getNumBytes());
+        record.put((byte) (((cpuState.getPc() & 1) != 0) ? TraceFormat.FLAG_16BIT_ISA : 0));
+        record.putInt(cpuState.pc);
+        record.putLong(timePs);
+        record.putLong(statement.getRawBinary());
+    }
+
+    public synchronized void recordInterrupt(long timePs, InterruptRequest interruptRequest) {
+        if (closed) {
+            return;
+        }
+        ByteBuffer record = nextRecord();
+        record.put(TraceFormat.TYPE_INTERRUPT);
+        record.put((byte) 0);
+        record.put((byte) 0);
+        record.put((byte) 0);
+        record.putInt(interruptRequest.getInterruptNumber());
+        record.putLong(timePs);
+        record.putLong(TraceFormat.encodeInterrupt(interruptRequest));
+    }
+
+    /**
+     * Records a memory write. See TraceWriteListener
+     * @param numBytes 1, 2 or 4
+     */
+    public synchronized void recordWrite(long timePs, int address, int value, int numBytes, DebuggableMemory.AccessSource accessSource) {
+        if (closed) {
+            return;
+        }
+        ByteBuffer record = nextRecord();
+        record.put(TraceFormat.TYPE_WRITE);
+        record.put((byte) 0);
+        record.put((byte) numBytes);
+        record.put((byte) accessSource.ordinal());
+        record.putInt(address);
+        record.putLong(timePs);
+        record.putLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Records all registers that changed since the last recorded instruction (all registers the first time)
+     */
+    private void recordRegisterChanges(long timePs, CPUState cpuState) {
+        boolean firstTime = (registerValues == null);
+        if (firstTime) {
+            registerValues = new int[cpuState.getNumStdRegisters() + 1];
+            newRegisterValues = new int[registerValues.length];
+        }
+        cpuState.getStdState(newRegisterValues);
+        for (int i = 0; i < newRegisterValues.length; i++) {
+            if (firstTime || newRegisterValues[i] != registerValues[i]) {
+                ByteBuffer record = nextRecord();
+                record.put(TraceFormat.TYPE_REGISTER);
+                record.put((byte) 0);
+                record.put((byte) 0);
+                record.put((byte) 0);
+                record.putInt(i);
+                record.putLong(timePs);
+                record.putLong(newRegisterValues[i]);
+            }
+        }
+        int[] tmp = registerValues;
+        registerValues = newRegisterValues;
+        newRegisterValues = tmp;
+    }
+
+    private boolean mustRecord(int pc) {
+        if (ranges == null) return true;
+
+        for (AddressRange range : ranges) {
+            if (range.includes(pc)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ByteBuffer nextRecord() {
+        if (buffer.remaining() < TraceFormat.RECORD_SIZE) {
+            buffer.flip();
+            putUninterruptibly(fullBuffers, buffer);
+            buffer = takeUninterruptibly(freeBuffers);
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes pending records and closes the file.
+     * Further calls to record methods are ignored.
+     * @throws IOException if the trace could not be written completely
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.flip();
+            putUninterruptibly(fullBuffers, buffer);
+            buffer = null;
+            putUninterruptibly(fullBuffers, END_OF_TRACE);
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (writeException != null) {
+            throw writeException;
+        }
+    }
+
+    private void writeBuffers() {
+        while (true) {
+            ByteBuffer fullBuffer = takeUninterruptibly(fullBuffers);
+            if (fullBuffer == END_OF_TRACE) {
+                return;
+            }
+            if (writeException == null) {
+                try {
+                    while (fullBuffer.hasRemaining()) {
+                        channel.write(fullBuffer);
+                    }
+                } catch (IOException e) {
+                    // Keep recycling buffers so that emulation goes on. Error is reported upon close
+                    writeException = e;
+                }
+            }
+            fullBuffer.clear();
+            putUninterruptibly(freeBuffers, fullBuffer);
+        }
+    }
+
+    private static void putUninterruptibly(BlockingQueue<ByteBuffer> queue, ByteBuffer buffer) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(buffer);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ByteBuffer takeUninterruptibly(BlockingQueue<ByteBuffer> queue) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.nikonhacker.emu.trace;
+
+import com.nikonhacker.Constants;
+import com.nikonhacker.emu.interrupt.InterruptRequest;
+import com.nikonhacker.emu.interrupt.fr.FrInterruptRequest;
+import com.nikonhacker.emu.interrupt.tx.TxInterruptRequest;
+import com.nikonhacker.emu.interrupt.tx.Type;
+
+/**
+ * Layout of binary trace files.
+ *
+ * A trace file is a sequence of fixed-size big-endian records. The first one is a header:
+ * <pre>
+ *  0: int   MAGIC
+ *  4: short VERSION
+ *  6: byte  chip
+ *  7: byte  header flags
+ *  8-23: reserved
+ * </pre>
+ * All following records share the same layout:
+ * <pre>
+ *  0: byte  type
+ *  1: byte  flow type ordinal (instruction)
+ *  2: byte  number of bytes (instruction, memory write)
+ *  3: byte  record flags (instruction) or access source ordinal (memory write)
+ *  4: int   PC (instruction), register number (register), interrupt number (interrupt) or address (memory write)
+ *  8: long  timestamp in ps
+ * 16: long  raw instruction (instruction), new value (register), encoded request (interrupt) or value (memory write)
+ * </pre>
+ * Register records precede the instruction they apply to: they give the register values in effect before it
+ * is executed.
+ */
+public class TraceFormat {
+    public static final int MAGIC   = 0x4E485452; // "NHTR"
+    public static final int VERSION = 1;
+
+    public static final int RECORD_SIZE = 24;
+
+    public static final int OFFSET_TYPE      = 0;
+    public static final int OFFSET_FLOW_TYPE = 1;
+    public static final int OFFSET_NUM_BYTES = 2;
+    public static final int OFFSET_FLAGS     = 3;
+    public static final int OFFSET_ID        = 4;
+    public static final int OFFSET_TIME      = 8;
+    public static final int OFFSET_DATA      = 16;
+
+    public static final byte TYPE_INSTRUCTION = 0;
+    public static final byte TYPE_REGISTER    = 1;
+    public static final byte TYPE_INTERRUPT   = 2;
+    public static final byte TYPE_WRITE       = 3;
+
+    /** Header flag: register records are present */
+    public static final int HEADER_FLAG_REGISTERS = 0b00000001;
+
+    /** Instruction flag: instruction was executed in 16-bit ISA mode */
+    public static final int FLAG_16BIT_ISA = 0b00000001;
+
+    /**
+     * @return the chip-specific details of the request, packed in a long
+     */
+    public static long encodeInterrupt(InterruptRequest interruptRequest) {
+        if (interruptRequest instanceof FrInterruptRequest) {
+            FrInterruptRequest frInterruptRequest = (FrInterruptRequest) interruptRequest;
+            return (frInterruptRequest.isNMI() ? 0x100 : 0) | frInterruptRequest.getICR();
+        }
+        else {
+            TxInterruptRequest txInterruptRequest = (TxInterruptRequest) interruptRequest;
+            return (txInterruptRequest.getType().ordinal() << 8) | txInterruptRequest.getLevel();
+        }
+    }
+
+    public static InterruptRequest decodeInterrupt(int chip, int interruptNumber, long data) {
+        if (chip == Constants.CHIP_FR) {
+            return new FrInterruptRequest(interruptNumber, (data & 0x100) != 0, (int) (data & 0xFF));
+        }
+        else {
+            return new TxInterruptRequest(Type.values()[(int) (data >> 8)], interruptNumber, (int) (data & 0xFF));
+        }
+    }
+}
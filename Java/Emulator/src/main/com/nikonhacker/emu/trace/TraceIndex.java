@@ -0,0 +1,417 @@
+package com.nikonhacker.emu.trace;
+
+import com.nikonhacker.Constants;
+import com.nikonhacker.disassembly.CodeStructure;
+import com.nikonhacker.disassembly.Instruction;
+import com.nikonhacker.disassembly.fr.FrCPUState;
+import com.nikonhacker.disassembly.tx.TxCPUState;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Index of a binary trace file (see TraceFormat), used by TraceQuery to answer questions without a full scan.
+ *
+ * The trace is split in segments of SEGMENT_RECORDS records, each of which is memory-mapped on its own.
+ * For each segment, the index keeps its time bounds and the register values in effect at its start, so that
+ * register values at any record can be rebuilt by scanning a single segment.
+ * Executed PCs are indexed at the segment level: exact record numbers would take as much space as the trace itself,
+ * while scanning a mapped segment only takes a few milliseconds.
+ * Function calls are indexed exactly: for each function entry, the record numbers of the first instruction of each
+ * call and of the matching return.
+ *
+ * The index is saved next to the trace file and rebuilt when the trace is more recent.
+ * Record numbers start at 0 with the first record following the header.
+ */
+public class TraceIndex {
+    /** Records per segment (about 100MB) */
+    public static final int SEGMENT_RECORDS = 1 << 22;
+
+    private static final int    INDEX_MAGIC     = 0x4E485449; // "NHTI"
+    private static final int    INDEX_VERSION   = 1;
+    private static final String INDEX_EXTENSION = ".idx";
+
+    /** Deeper calls are considered lost (e.g. task switches) and dropped from the stack */
+    private static final int MAX_CALL_DEPTH = 1024;
+
+    private final File traceFile;
+
+    private int     chip;
+    private boolean hasRegisters;
+    private long    numRecords;
+    private int     numRegisters;
+
+    private long[]  segmentStartTimes;
+    private long[]  segmentEndTimes;
+    private int[][] segmentStartRegisters;
+
+    /** Map PC -> segments in which it was executed */
+    private Map<Integer, BitSet> pcSegments      = new HashMap<>();
+    /** Map PC -> record number of its first execution */
+    private Map<Integer, Long>   firstExecutions = new HashMap<>();
+    /** Map function entry -> (entry record, return record) pairs, in entry order. Return is -1 if not found */
+    private Map<Integer, LongArray> calls        = new HashMap<>();
+
+    private TraceIndex(File traceFile) {
+        this.traceFile = traceFile;
+    }
+
+    /**
+     * Opens the index of the given trace, building it if needed
+     */
+    public static TraceIndex open(File traceFile) throws IOException {
+        File indexFile = new File(traceFile.getPath() + INDEX_EXTENSION);
+        TraceIndex index = new TraceIndex(traceFile);
+        if (indexFile.exists() && indexFile.lastModified() >= traceFile.lastModified()) {
+            try {
+                index.load(indexFile);
+                return index;
+            } catch (IOException e) {
+                System.err.println("Rebuilding index " + indexFile + ": " + e.getMessage());
+                index = new TraceIndex(traceFile);
+            }
+        }
+        index.build();
+        try {
+            index.save(indexFile);
+        } catch (IOException e) {
+            System.err.println("Cannot save index " + indexFile + ": " + e.getMessage());
+        }
+        return index;
+    }
+
+    public File getTraceFile() {
+        return traceFile;
+    }
+
+    public int getChip() {
+        return chip;
+    }
+
+    public boolean hasRegisters() {
+        return hasRegisters;
+    }
+
+    public long getNumRecords() {
+        return numRecords;
+    }
+
+    public int getNumSegments() {
+        return segmentStartTimes.length;
+    }
+
+    public long getSegmentFirstRecord(int segment) {
+        return (long) segment * SEGMENT_RECORDS;
+    }
+
+    public long getSegmentStartTime(int segment) {
+        return segmentStartTimes[segment];
+    }
+
+    public long getSegmentEndTime(int segment) {
+        return segmentEndTimes[segment];
+    }
+
+    /**
+     * @return a copy of the register values in effect at the start of the given segment, in CPUState.getStdState() order
+     */
+    public int[] getSegmentStartRegisters(int segment) {
+        return segmentStartRegisters[segment].clone();
+    }
+
+    public int getSegment(long recordNumber) {
+        return (int) (recordNumber / SEGMENT_RECORDS);
+    }
+
+    /**
+     * @return the segments in which the instruction at the given address was executed
+     */
+    public BitSet getSegmentsExecuting(int pc) {
+        BitSet segments = pcSegments.get(pc & CodeStructure.IGNORE_ISA_BIT);
+        return segments == null ? new BitSet() : (BitSet) segments.clone();
+    }
+
+    /**
+     * @return the record number of the first execution of the given address, or null if it was never executed
+     */
+    public Long getFirstExecution(int pc) {
+        return firstExecutions.get(pc & CodeStructure.IGNORE_ISA_BIT);
+    }
+
+    /**
+     * @return the entry addresses of all functions called in the trace
+     */
+    public Set<Integer> getCalledFunctions() {
+        return Collections.unmodifiableSet(calls.keySet());
+    }
+
+    public int getNumCalls(int functionAddress) {
+        LongArray functionCalls = calls.get(functionAddress & CodeStructure.IGNORE_ISA_BIT);
+        return functionCalls == null ? 0 : functionCalls.size() / 2;
+    }
+
+    /**
+     * @return (entry record, return record) pairs, in entry order. Return record is -1 if the call did not return
+     */
+    public long[] getCalls(int functionAddress) {
+        LongArray functionCalls = calls.get(functionAddress & CodeStructure.IGNORE_ISA_BIT);
+        return functionCalls == null ? new long[0] : functionCalls.toArray();
+    }
+
+    /**
+     * Maps the given segment in memory. The returned buffer starts at the first record of the segment
+     */
+    public MappedByteBuffer map(FileChannel channel, int segment) throws IOException {
+        long firstRecord = getSegmentFirstRecord(segment);
+        long numSegmentRecords = Math.min(SEGMENT_RECORDS, numRecords - firstRecord);
+        return channel.map(FileChannel.MapMode.READ_ONLY, getPosition(firstRecord), numSegmentRecords * TraceFormat.RECORD_SIZE);
+    }
+
+    /**
+     * @return the position of the given record in the trace file
+     */
+    public static long getPosition(long recordNumber) {
+        return (recordNumber + 1) * TraceFormat.RECORD_SIZE;
+    }
+
+    private void readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(TraceFormat.RECORD_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // keep reading
+        }
+        if (header.hasRemaining() || header.getInt(0) != TraceFormat.MAGIC) {
+            throw new IOException("Not a binary trace file: " + traceFile);
+        }
+        if (header.getShort(4) != TraceFormat.VERSION) {
+            throw new IOException("Unsupported binary trace version: " + header.getShort(4));
+        }
+        chip = header.get(6);
+        hasRegisters = (header.get(7) & TraceFormat.HEADER_FLAG_REGISTERS) != 0;
+        numRegisters = (chip == Constants.CHIP_FR ? new FrCPUState() : new TxCPUState()).getNumStdRegisters() + 1;
+        // An incomplete last record (interrupted recording) is ignored
+        numRecords = Math.max(0, channel.size() / TraceFormat.RECORD_SIZE - 1);
+    }
+
+    private void build() throws IOException {
+        try (FileChannel channel = new FileInputStream(traceFile).getChannel()) {
+            readHeader(channel);
+            int numSegments = (int) ((numRecords + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS);
+            segmentStartTimes = new long[numSegments];
+            segmentEndTimes = new long[numSegments];
+            segmentStartRegisters = new int[numSegments][];
+
+            int[] registers = new int[numRegisters];
+            // Each frame is {function entry, position in the call list of that function}
+            Deque<int[]> callStack = new ArrayDeque<>();
+            boolean pendingCall = false;
+            boolean pendingDelaySlot = false;
+            int pendingNextPc = 0;
+
+            for (int segment = 0; segment < numSegments; segment++) {
+                MappedByteBuffer buffer = map(channel, segment);
+                int numSegmentRecords = buffer.limit() / TraceFormat.RECORD_SIZE;
+                long firstRecord = getSegmentFirstRecord(segment);
+                segmentStartRegisters[segment] = registers.clone();
+                segmentStartTimes[segment] = buffer.getLong(TraceFormat.OFFSET_TIME);
+                segmentEndTimes[segment] = buffer.getLong((numSegmentRecords - 1) * TraceFormat.RECORD_SIZE + TraceFormat.OFFSET_TIME);
+
+                for (int i = 0; i < numSegmentRecords; i++) {
+                    int offset = i * TraceFormat.RECORD_SIZE;
+                    int id = buffer.getInt(offset + TraceFormat.OFFSET_ID);
+                    switch (buffer.get(offset + TraceFormat.OFFSET_TYPE)) {
+                        case TraceFormat.TYPE_INSTRUCTION:
+                            long recordNumber = firstRecord + i;
+                            int numBytes = buffer.get(offset + TraceFormat.OFFSET_NUM_BYTES);
+                            indexExecution(id, segment, recordNumber);
+                            if (pendingCall) {
+                                if (id != pendingNextPc) {
+                                    // Jumped: this is the entry of the called function
+                                    pushCall(callStack, id, recordNumber);
+                                    pendingCall = false;
+                                }
+                                else if (pendingDelaySlot) {
+                                    pendingDelaySlot = false;
+                                    pendingNextPc += numBytes;
+                                }
+                                else {
+                                    // Sequential flow: conditional call not taken
+                                    pendingCall = false;
+                                }
+                            }
+                            switch (Instruction.FlowType.values()[buffer.get(offset + TraceFormat.OFFSET_FLOW_TYPE)]) {
+                                case CALL:
+                                case INT:
+                                    pendingCall = true;
+                                    pendingDelaySlot = true;
+                                    pendingNextPc = id + numBytes;
+                                    break;
+                                case RET:
+                                    if (!callStack.isEmpty()) {
+                                        int[] frame = callStack.pop();
+                                        calls.get(frame[0]).set(frame[1] + 1, recordNumber);
+                                    }
+                                    break;
+                            }
+                            break;
+                        case TraceFormat.TYPE_REGISTER:
+                            if (id < numRegisters) {
+                                registers[id] = (int) buffer.getLong(offset + TraceFormat.OFFSET_DATA);
+                            }
+                            break;
+                        case TraceFormat.TYPE_INTERRUPT:
+                            // Next instruction is the handler entry. Use an odd, unreachable PC
+                            pendingCall = true;
+                            pendingDelaySlot = false;
+                            pendingNextPc = 1;
+                            break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void indexExecution(int pc, int segment, long recordNumber) {
+        pc = pc & CodeStructure.IGNORE_ISA_BIT;
+        BitSet segments = pcSegments.get(pc);
+        if (segments == null) {
+            segments = new BitSet();
+            pcSegments.put(pc, segments);
+            firstExecutions.put(pc, recordNumber);
+        }
+        segments.set(segment);
+    }
+
+    private void pushCall(Deque<int[]> callStack, int functionAddress, long entryRecord) {
+        functionAddress = functionAddress & CodeStructure.IGNORE_ISA_BIT;
+        if (callStack.size() >= MAX_CALL_DEPTH) {
+            callStack.removeLast();
+        }
+        LongArray functionCalls = calls.get(functionAddress);
+        if (functionCalls == null) {
+            functionCalls = new LongArray();
+            calls.put(functionAddress, functionCalls);
+        }
+        callStack.push(new int[]{functionAddress, functionCalls.size()});
+        functionCalls.add(entryRecord);
+        functionCalls.add(-1);
+    }
+
+    private void save(File indexFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(traceFile.length());
+            out.writeInt(chip);
+            out.writeBoolean(hasRegisters);
+            out.writeLong(numRecords);
+            out.writeInt(numRegisters);
+            out.writeInt(segmentStartTimes.length);
+            for (int segment = 0; segment < segmentStartTimes.length; segment++) {
+                out.writeLong(segmentStartTimes[segment]);
+                out.writeLong(segmentEndTimes[segment]);
+                for (int value : segmentStartRegisters[segment]) {
+                    out.writeInt(value);
+                }
+            }
+            out.writeInt(pcSegments.size());
+            for (Map.Entry<Integer, BitSet> entry : pcSegments.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeLong(firstExecutions.get(entry.getKey()));
+                long[] words = entry.getValue().toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+            out.writeInt(calls.size());
+            for (Map.Entry<Integer, LongArray> entry : calls.entrySet()) {
+                out.writeInt(entry.getKey());
+                LongArray functionCalls = entry.getValue();
+                out.writeInt(functionCalls.size());
+                for (int i = 0; i < functionCalls.size(); i++) {
+                    out.writeLong(functionCalls.get(i));
+                }
+            }
+        }
+    }
+
+    private void load(File indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                throw new IOException("unsupported index format");
+            }
+            if (in.readLong() != traceFile.length()) {
+                throw new IOException("index does not match trace size");
+            }
+            chip = in.readInt();
+            hasRegisters = in.readBoolean();
+            numRecords = in.readLong();
+            numRegisters = in.readInt();
+            int numSegments = in.readInt();
+            segmentStartTimes = new long[numSegments];
+            segmentEndTimes = new long[numSegments];
+            segmentStartRegisters = new int[numSegments][numRegisters];
+            for (int segment = 0; segment < numSegments; segment++) {
+                segmentStartTimes[segment] = in.readLong();
+                segmentEndTimes[segment] = in.readLong();
+                for (int i = 0; i < numRegisters; i++) {
+                    segmentStartRegisters[segment][i] = in.readInt();
+                }
+            }
+            int numPcs = in.readInt();
+            for (int i = 0; i < numPcs; i++) {
+                int pc = in.readInt();
+                firstExecutions.put(pc, in.readLong());
+                long[] words = new long[in.readInt()];
+                for (int j = 0; j < words.length; j++) {
+                    words[j] = in.readLong();
+                }
+                pcSegments.put(pc, BitSet.valueOf(words));
+            }
+            int numFunctions = in.readInt();
+            for (int i = 0; i < numFunctions; i++) {
+                int functionAddress = in.readInt();
+                LongArray functionCalls = new LongArray();
+                int size = in.readInt();
+                for (int j = 0; j < size; j++) {
+                    functionCalls.add(in.readLong());
+                }
+                calls.put(functionAddress, functionCalls);
+            }
+        }
+    }
+
+    /**
+     * Growable array of primitive longs
+     */
+    private static class LongArray {
+        private long[] values = new long[16];
+        private int    size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+        void set(int index, long value) {
+            values[index] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package com.nikonhacker.emu.trace;
+
+import com.nikonhacker.Constants;
+import com.nikonhacker.Format;
+import com.nikonhacker.disassembly.*;
+import com.nikonhacker.disassembly.fr.Dfr;
+import com.nikonhacker.disassembly.tx.Dtx;
+import com.nikonhacker.emu.MasterClock;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.DecimalFormat;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Answers questions about a binary trace (see BinaryTraceRecorder) without emulating again, such as
+ * "all calls to function X between t1 and t2, with their arguments" or "first write to address Y".
+ *
+ * Queries rely on a TraceIndex to select the relevant segments, which are then scanned in parallel.
+ * Function names and parameters come from the symbols of a CodeStructure or of a disassembler options file,
+ * and arguments are formatted the same way as by BreakTrigger.log().
+ */
+public class TraceQuery {
+    private final TraceIndex      index;
+    private final FileChannel     channel;
+    private final ExecutorService executor;
+
+    /** Map address (without ISA bit) -> symbol */
+    private Map<Integer, Symbol> symbols = new HashMap<>();
+
+    private final DecimalFormat milliSecondFormatter = new DecimalFormat("0000.000000000");
+
+    public TraceQuery(File traceFile) throws IOException {
+        index = TraceIndex.open(traceFile);
+        channel = new FileInputStream(traceFile).getChannel();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    public TraceIndex getIndex() {
+        return index;
+    }
+
+    public void close() throws IOException {
+        executor.shutdownNow();
+        channel.close();
+    }
+
+    /**
+     * Uses the symbols declared in a disassembler options file (e.g. dfr.txt) for names and arguments
+     */
+    public void setSymbols(Map<Integer, Symbol> symbols) {
+        this.symbols = new HashMap<>();
+        for (Symbol symbol : symbols.values()) {
+            this.symbols.put(symbol.getAddress() & CodeStructure.IGNORE_ISA_BIT, symbol);
+        }
+    }
+
+    /**
+     * Uses the functions of an analysed code structure for names and arguments
+     */
+    public void setCodeStructure(CodeStructure codeStructure) {
+        symbols = new HashMap<>();
+        for (Integer address : codeStructure.getAllFunctionAddresses()) {
+            symbols.put(address & CodeStructure.IGNORE_ISA_BIT, codeStructure.getFunction(address));
+        }
+    }
+
+    /**
+     * @param text a symbol name or a hex address
+     * @return the address, or null if the text is neither
+     */
+    public Integer getAddress(String text) {
+        for (Symbol symbol : symbols.values()) {
+            if (text.equalsIgnoreCase(symbol.getName())) {
+                return symbol.getAddress() & CodeStructure.IGNORE_ISA_BIT;
+            }
+        }
+        try {
+            return Format.parseUnsigned(text);
+        }
+        catch (ParsingException e) {
+            return null;
+        }
+    }
+
+    public String getName(int address) {
+        Symbol symbol = symbols.get(address & CodeStructure.IGNORE_ISA_BIT);
+        return symbol == null ? "0x" + Format.asHex(address, 8) : symbol.getName();
+    }
+
+    /**
+     * @return all calls to the given function entering between fromPs and toPs, with register values at entry if the
+     * trace contains them
+     */
+    public List<Call> findCalls(final int functionAddress, final long fromPs, final long toPs) throws IOException {
+        long[] calls = index.getCalls(functionAddress);
+        // Group calls by segment of their entry
+        SortedMap<Integer, List<Long>> entriesBySegment = new TreeMap<>();
+        final Map<Long, Long> returns = new HashMap<>();
+        for (int i = 0; i < calls.length; i += 2) {
+            int segment = index.getSegment(calls[i]);
+            if (isInTimeRange(segment, fromPs, toPs)) {
+                List<Long> entries = entriesBySegment.get(segment);
+                if (entries == null) {
+                    entries = new ArrayList<>();
+                    entriesBySegment.put(segment, entries);
+                }
+                entries.add(calls[i]);
+                returns.put(calls[i], calls[i + 1]);
+            }
+        }
+
+        List<Callable<List<Call>>> tasks = new ArrayList<>();
+        for (final Map.Entry<Integer, List<Long>> entry : entriesBySegment.entrySet()) {
+            tasks.add(new Callable<List<Call>>() {
+                @Override
+                public List<Call> call() throws IOException {
+                    return findCallsInSegment(entry.getKey(), entry.getValue(), returns, functionAddress & CodeStructure.IGNORE_ISA_BIT, fromPs, toPs);
+                }
+            });
+        }
+        return runInParallel(tasks, false);
+    }
+
+    private List<Call> findCallsInSegment(int segment, List<Long> entryRecords, Map<Long, Long> returns, int functionAddress, long fromPs, long toPs) throws IOException {
+        List<Call> calls = new ArrayList<>();
+        MappedByteBuffer buffer = index.map(channel, segment);
+        long firstRecord = index.getSegmentFirstRecord(segment);
+        int[] registers = index.hasRegisters() ? index.getSegmentStartRegisters(segment) : null;
+        int offset = 0;
+        for (long entryRecord : entryRecords) {
+            int entryOffset = (int) (entryRecord - firstRecord) * TraceFormat.RECORD_SIZE;
+            if (registers != null) {
+                // Apply register changes up to (and including those preceding) the entry instruction
+                for (; offset < entryOffset; offset += TraceFormat.RECORD_SIZE) {
+                    if (buffer.get(offset + TraceFormat.OFFSET_TYPE) == TraceFormat.TYPE_REGISTER) {
+                        int register = buffer.getInt(offset + TraceFormat.OFFSET_ID);
+                        if (register < registers.length) {
+                            registers[register] = (int) buffer.getLong(offset + TraceFormat.OFFSET_DATA);
+                        }
+                    }
+                }
+            }
+            long entryTimePs = buffer.getLong(entryOffset + TraceFormat.OFFSET_TIME);
+            if (entryTimePs >= fromPs && entryTimePs <= toPs) {
+                long returnRecord = returns.get(entryRecord);
+                long returnTimePs = returnRecord < 0 ? -1 : readTime(returnRecord);
+                calls.add(new Call(entryRecord, entryTimePs, functionAddress, registers == null ? null : registers.clone(), returnRecord, returnTimePs));
+            }
+        }
+        return calls;
+    }
+
+    /**
+     * @return all executions of the instruction at the given address between fromPs and toPs
+     */
+    public List<Event> findExecutions(final int pc, final long fromPs, final long toPs) throws IOException {
+        BitSet segments = index.getSegmentsExecuting(pc);
+        List<Callable<List<Event>>> tasks = new ArrayList<>();
+        for (int segment = segments.nextSetBit(0); segment >= 0; segment = segments.nextSetBit(segment + 1)) {
+            if (isInTimeRange(segment, fromPs, toPs)) {
+                final int finalSegment = segment;
+                tasks.add(new Callable<List<Event>>() {
+                    @Override
+                    public List<Event> call() throws IOException {
+                        return findExecutionsInSegment(finalSegment, pc & CodeStructure.IGNORE_ISA_BIT, fromPs, toPs);
+                    }
+                });
+            }
+        }
+        return runInParallel(tasks, false);
+    }
+
+    private List<Event> findExecutionsInSegment(int segment, int pc, long fromPs, long toPs) throws IOException {
+        List<Event> executions = new ArrayList<>();
+        MappedByteBuffer buffer = index.map(channel, segment);
+        long firstRecord = index.getSegmentFirstRecord(segment);
+        for (int offset = 0; offset < buffer.limit(); offset += TraceFormat.RECORD_SIZE) {
+            if (buffer.get(offset + TraceFormat.OFFSET_TYPE) == TraceFormat.TYPE_INSTRUCTION
+                    && (buffer.getInt(offset + TraceFormat.OFFSET_ID) & CodeStructure.IGNORE_ISA_BIT) == pc) {
+                long timePs = buffer.getLong(offset + TraceFormat.OFFSET_TIME);
+                if (timePs >= fromPs && timePs <= toPs) {
+                    executions.add(new Event(firstRecord + offset / TraceFormat.RECORD_SIZE, timePs));
+                }
+            }
+        }
+        return executions;
+    }
+
+    /**
+     * @param firstOnly if true, only the first write is returned
+     * @return all writes covering the given address between fromPs and toPs.
+     * Requires a trace recorded with a TraceWriteListener
+     */
+    public List<Write> findWrites(final int address, final long fromPs, final long toPs, final boolean firstOnly) throws IOException {
+        List<Callable<List<Write>>> tasks = new ArrayList<>();
+        for (int segment = 0; segment < index.getNumSegments(); segment++) {
+            if (isInTimeRange(segment, fromPs, toPs)) {
+                final int finalSegment = segment;
+                tasks.add(new Callable<List<Write>>() {
+                    @Override
+                    public List<Write> call() throws IOException {
+                        return findWritesInSegment(finalSegment, address, fromPs, toPs, firstOnly);
+                    }
+                });
+            }
+        }
+        return runInParallel(tasks, firstOnly);
+    }
+
+    private List<Write> findWritesInSegment(int segment, int address, long fromPs, long toPs, boolean firstOnly) throws IOException {
+        List<Write> writes = new ArrayList<>();
+        MappedByteBuffer buffer = index.map(channel, segment);
+        long firstRecord = index.getSegmentFirstRecord(segment);
+        int pc = -1;
+        for (int offset = 0; offset < buffer.limit(); offset += TraceFormat.RECORD_SIZE) {
+            switch (buffer.get(offset + TraceFormat.OFFSET_TYPE)) {
+                case TraceFormat.TYPE_INSTRUCTION:
+                    pc = buffer.getInt(offset + TraceFormat.OFFSET_ID);
+                    break;
+                case TraceFormat.TYPE_WRITE:
+                    int writeAddress = buffer.getInt(offset + TraceFormat.OFFSET_ID);
+                    int numBytes = buffer.get(offset + TraceFormat.OFFSET_NUM_BYTES);
+                    if (address - writeAddress >= 0 && address - writeAddress < numBytes) {
+                        long timePs = buffer.getLong(offset + TraceFormat.OFFSET_TIME);
+                        if (timePs >= fromPs && timePs <= toPs) {
+                            writes.add(new Write(firstRecord + offset / TraceFormat.RECORD_SIZE, timePs, writeAddress, numBytes,
+                                    (int) buffer.getLong(offset + TraceFormat.OFFSET_DATA),
+                                    DebuggableMemory.AccessSource.values()[buffer.get(offset + TraceFormat.OFFSET_FLAGS)],
+                                    pc));
+                            if (firstOnly) {
+                                return writes;
+                            }
+                        }
+                    }
+                    break;
+            }
+        }
+        return writes;
+    }
+
+    private boolean isInTimeRange(int segment, long fromPs, long toPs) {
+        return index.getSegmentEndTime(segment) >= fromPs && index.getSegmentStartTime(segment) <= toPs;
+    }
+
+    private long readTime(long recordNumber) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        long position = TraceIndex.getPosition(recordNumber) + TraceFormat.OFFSET_TIME;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of trace");
+            }
+        }
+        return buffer.getLong(0);
+    }
+
+    /**
+     * Runs the given per-segment tasks in parallel and concatenates their results in segment order
+     * @param firstOnly if true, stop at the first non-empty result
+     */
+    private <T> List<T> runInParallel(List<Callable<List<T>>> tasks, boolean firstOnly) throws IOException {
+        List<Future<List<T>>> futures = new ArrayList<>();
+        for (Callable<List<T>> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<List<T>> future : futures) {
+                results.addAll(future.get());
+                if (firstOnly && !results.isEmpty()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Query interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for (Future<List<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    public String formatTime(long timePs) {
+        return milliSecondFormatter.format(timePs / (double) MasterClock.PS_PER_MS) + "ms";
+    }
+
+    /**
+     * Formats a call like BreakTrigger.log() does. String arguments cannot be dumped as memory is not part of the trace
+     */
+    public String format(Call call) {
+        String msg = formatTime(call.timePs) + " " + getName(call.functionAddress) + "(";
+        Symbol symbol = symbols.get(call.functionAddress);
+        if (symbol != null && symbol.getParameterList() != null) {
+            for (Symbol.Parameter parameter : symbol.getParameterList()) {
+                if (parameter.getInVariableName() != null) {
+                    if (!msg.endsWith("(")) {
+                        msg += ", ";
+                    }
+                    msg += parameter.getInVariableName() + "=";
+                    if (call.registers == null || parameter.getRegister() >= call.registers.length) {
+                        msg += "?";
+                    }
+                    else {
+                        msg += "0x" + Format.asHex(call.registers[parameter.getRegister()], 8);
+                    }
+                }
+            }
+        }
+        msg += ")";
+        if (call.returnTimePs < 0) {
+            msg += " did not return";
+        }
+        else {
+            msg += " returned after " + formatTime(call.returnTimePs - call.timePs);
+        }
+        return msg;
+    }
+
+    public String format(Write write) {
+        return formatTime(write.timePs) + " 0x" + Format.asHex(write.address, 8) + " = 0x" + Format.asHex(write.value, write.numBytes * 2)
+                + " (" + write.numBytes + " byte(s), " + write.accessSource
+                + (write.pc == -1 ? ")" : (", by " + getName(write.pc) + ")"));
+    }
+
+    /**
+     * A record of the trace
+     */
+    public static class Event {
+        public final long recordNumber;
+        public final long timePs;
+
+        public Event(long recordNumber, long timePs) {
+            this.recordNumber = recordNumber;
+            this.timePs = timePs;
+        }
+    }
+
+    /**
+     * A function call. The record is the first instruction of the called function
+     */
+    public static class Call extends Event {
+        public final int   functionAddress;
+        /** Register values at entry, in CPUState.getStdState() order, or null if the trace has no register */
+        public final int[] registers;
+        /** Record of the return instruction, or -1 if the function did not return */
+        public final long  returnRecordNumber;
+        public final long  returnTimePs;
+
+        public Call(long recordNumber, long timePs, int functionAddress, int[] registers, long returnRecordNumber, long returnTimePs) {
+            super(recordNumber, timePs);
+            this.functionAddress = functionAddress;
+            this.registers = registers;
+            this.returnRecordNumber = returnRecordNumber;
+            this.returnTimePs = returnTimePs;
+        }
+    }
+
+    /**
+     * A memory write
+     */
+    public static class Write extends Event {
+        public final int                           address;
+        public final int                           numBytes;
+        public final int                           value;
+        public final DebuggableMemory.AccessSource accessSource;
+        /** Address of the last instruction executed before the write in the same segment, or -1 */
+        public final int                           pc;
+
+        public Write(long recordNumber, long timePs, int address, int numBytes, int value, DebuggableMemory.AccessSource accessSource, int pc) {
+            super(recordNumber, timePs);
+            this.address = address;
+            this.numBytes = numBytes;
+            this.value = value;
+            this.accessSource = accessSource;
+            this.pc = pc;
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage TraceQuery [-o <options file>] <trace file> <query> [<from ms> [<to ms>]]");
+        System.err.println("Queries:");
+        System.err.println("  calls <function name or address>  calls to the function, with arguments");
+        System.err.println("  exec <address>                    executions of the instruction at address");
+        System.err.println("  writes <address>                  writes to address");
+        System.err.println("  firstwrite <address>              first write to address");
+        System.err.println("  functions                         number of calls of each function");
+        System.err.println(" e.g. TraceQuery -o dfr.txt FR_2014-01-01_12-00-00.trace calls sys_wai_flg 100 200");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int arg = 0;
+        String optionsFilename = null;
+        if (args.length > 1 && "-o".equals(args[0])) {
+            optionsFilename = args[1];
+            arg = 2;
+        }
+        if (args.length - arg < 2) {
+            usage();
+        }
+        TraceQuery query = new TraceQuery(new File(args[arg++]));
+        try {
+            if (optionsFilename != null) {
+                Disassembler disassembler = (query.getIndex().getChip() == Constants.CHIP_FR) ? new Dfr() : new Dtx();
+                disassembler.readOptions(optionsFilename);
+                query.setSymbols(disassembler.getSymbols());
+            }
+            String command = args[arg++];
+            Integer address = null;
+            if (!"functions".equals(command)) {
+                if (arg >= args.length) {
+                    usage();
+                }
+                address = query.getAddress(args[arg]);
+                if (address == null) {
+                    System.err.println("Unknown symbol or address: " + args[arg]);
+                    System.exit(1);
+                }
+                arg++;
+            }
+            long fromPs = arg < args.length ? (long) (Double.parseDouble(args[arg++]) * MasterClock.PS_PER_MS) : 0;
+            long toPs = arg < args.length ? (long) (Double.parseDouble(args[arg]) * MasterClock.PS_PER_MS) : Long.MAX_VALUE;
+
+            PrintWriter writer = new PrintWriter(System.out);
+            switch (command) {
+                case "calls":
+                    for (Call call : query.findCalls(address, fromPs, toPs)) {
+                        writer.println(query.format(call));
+                    }
+                    break;
+                case "exec":
+                    for (Event execution : query.findExecutions(address, fromPs, toPs)) {
+                        writer.println(query.formatTime(execution.timePs) + " 0x" + Format.asHex(address, 8) + " executed (record " + execution.recordNumber + ")");
+                    }
+                    break;
+                case "writes":
+                case "firstwrite":
+                    for (Write write : query.findWrites(address, fromPs, toPs, "firstwrite".equals(command))) {
+                        writer.println(query.format(write));
+                    }
+                    break;
+                case "functions":
+                    TraceIndex index = query.getIndex();
+                    List<Integer> functions = new ArrayList<>(index.getCalledFunctions());
+                    Collections.sort(functions);
+                    for (Integer function : functions) {
+                        writer.println("0x" + Format.asHex(function, 8) + " " + query.getName(function) + ": " + index.getNumCalls(function) + " call(s)");
+                    }
+                    break;
+                default:
+                    usage();
+            }
+            writer.flush();
+        }
+        finally {
+            query.close();
+        }
+    }
+}
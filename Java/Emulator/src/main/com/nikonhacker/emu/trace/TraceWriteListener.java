@@ -0,0 +1,71 @@
+package com.nikonhacker.emu.trace;
+
+import com.nikonhacker.emu.MasterClock;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+import com.nikonhacker.emu.memory.listener.MemoryActivityListener;
+
+/**
+ * Forwards all memory writes to a BinaryTraceRecorder, so that queries such as "first write to address X" can be
+ * answered from the trace (see TraceQuery)
+ */
+public class TraceWriteListener implements MemoryActivityListener {
+    private final BinaryTraceRecorder recorder;
+    private final MasterClock         masterClock;
+
+    public TraceWriteListener(BinaryTraceRecorder recorder, MasterClock masterClock) {
+        this.recorder = recorder;
+        this.masterClock = masterClock;
+    }
+
+    @Override
+    public boolean matches(int address) {
+        return true;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public Byte onLoadData8(byte[] pageData, int address, byte value, DebuggableMemory.AccessSource accessSource) {
+        return null;
+    }
+
+    @Override
+    public Integer onLoadData16(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+        return null;
+    }
+
+    @Override
+    public Integer onLoadData32(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+        return null;
+    }
+
+    @Override
+    public void onLoadInstruction8(byte[] pageData, int address, byte value, DebuggableMemory.AccessSource accessSource) {
+    }
+
+    @Override
+    public void onLoadInstruction16(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+    }
+
+    @Override
+    public void onLoadInstruction32(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+    }
+
+    @Override
+    public void onStore8(byte[] pageData, int address, byte value, DebuggableMemory.AccessSource accessSource) {
+        recorder.recordWrite(masterClock.getTotalElapsedTimePs(), address, value & 0xFF, 1, accessSource);
+    }
+
+    @Override
+    public void onStore16(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+        recorder.recordWrite(masterClock.getTotalElapsedTimePs(), address, value & 0xFFFF, 2, accessSource);
+    }
+
+    @Override
+    public void onStore32(byte[] pageData, int address, int value, DebuggableMemory.AccessSource accessSource) {
+        recorder.recordWrite(masterClock.getTotalElapsedTimePs(), address, value, 4, accessSource);
+    }
+}
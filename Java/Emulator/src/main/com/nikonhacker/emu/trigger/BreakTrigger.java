@@ -20,7 +20,6 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 
@@ -266,7 +265,7 @@ public class BreakTrigger {
      * @param platform the platform we're running
      * @param callStack optional call stack at the time the condition matches
      */
-    public void log(PrintWriter printWriter, Platform platform, Deque<CallStackItem> callStack) {
+    public void log(PrintWriter printWriter, Platform platform, List<CallStackItem> callStack) {
         String msg = platform.getMasterClock().getFormatedTotalElapsedTimeMs() + " ";
         if (function != null) {
             // This is a function call. Parse its arguments and log them
@@ -0,0 +1,106 @@
+package com.nikonhacker.encoding;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Table-driven CRC-16, MSB first, without reflection nor final xor
+ * (same as Jacksum's "crc:16,mask,init,false,false,0").
+ *
+ * Input is processed 8 bytes at a time ("slice-by-8"): tables[k][b] is the contribution of byte b followed by k zero
+ * bytes, so that the 8 lookups of a block are independent from each other.
+ * Tables only depend on the mask and are shared by all instances.
+ */
+public class Crc16 {
+    private static final ConcurrentMap<Integer, int[][]> tablesByMask = new ConcurrentHashMap<>();
+
+    private final int     mask;
+    private final int     initValue;
+    private final int[][] tables;
+
+    public Crc16(int initValue, int mask) {
+        this.initValue = initValue & 0xFFFF;
+        this.mask = mask & 0xFFFF;
+        this.tables = getTables(this.mask);
+    }
+
+    public int getInitValue() {
+        return initValue;
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    public int compute(byte[] buffer, int offset, int length) {
+        return update(initValue, buffer, offset, length);
+    }
+
+    /**
+     * Continues a computation
+     * @param crc the value returned for the preceding data, or the init value
+     */
+    public int update(int crc, byte[] buffer, int offset, int length) {
+        final int[] t0 = tables[0], t1 = tables[1], t2 = tables[2], t3 = tables[3];
+        final int[] t4 = tables[4], t5 = tables[5], t6 = tables[6], t7 = tables[7];
+        int i = offset;
+        int end = offset + length;
+        for (int blockEnd = end - 7; i < blockEnd; i += 8) {
+            crc = t7[((crc >> 8) ^ buffer[i]) & 0xFF]
+                ^ t6[(crc ^ buffer[i + 1]) & 0xFF]
+                ^ t5[buffer[i + 2] & 0xFF]
+                ^ t4[buffer[i + 3] & 0xFF]
+                ^ t3[buffer[i + 4] & 0xFF]
+                ^ t2[buffer[i + 5] & 0xFF]
+                ^ t1[buffer[i + 6] & 0xFF]
+                ^ t0[buffer[i + 7] & 0xFF];
+        }
+        for (; i < end; i++) {
+            crc = ((crc << 8) ^ t0[((crc >> 8) ^ buffer[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    /**
+     * Computes, for each bit of the init value, its contribution to the CRC of a message of the given length.
+     * As the CRC is linear, CRC(init, data) = CRC(0, data) ^ (xor of the contributions of the bits set in init),
+     * which allows trying all init values at the cost of 17 CRCs.
+     */
+    public int[] getInitContributions(int length) {
+        int[] contributions = new int[16];
+        byte[] zeros = new byte[Math.min(length, 0x10000)];
+        for (int bit = 0; bit < 16; bit++) {
+            int crc = 1 << bit;
+            for (int remaining = length; remaining > 0; remaining -= zeros.length) {
+                crc = update(crc, zeros, 0, Math.min(remaining, zeros.length));
+            }
+            contributions[bit] = crc;
+        }
+        return contributions;
+    }
+
+    private static int[][] getTables(int mask) {
+        int[][] tables = tablesByMask.get(mask);
+        if (tables == null) {
+            tables = new int[8][256];
+            for (int b = 0; b < 256; b++) {
+                int rem = b << 8;
+                for (int j = 0; j < 8; j++) {
+                    rem = ((rem & 0x8000) != 0) ? (rem << 1) ^ mask : rem << 1;
+                }
+                tables[0][b] = rem & 0xFFFF;
+            }
+            for (int k = 1; k < 8; k++) {
+                for (int b = 0; b < 256; b++) {
+                    int previous = tables[k - 1][b];
+                    tables[k][b] = ((previous << 8) ^ tables[0][previous >> 8]) & 0xFFFF;
+                }
+            }
+            int[][] existing = tablesByMask.putIfAbsent(mask, tables);
+            if (existing != null) {
+                tables = existing;
+            }
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,398 @@
+package com.nikonhacker.encoding;
+
+import com.nikonhacker.Constants;
+import com.nikonhacker.Format;
+import com.nikonhacker.disassembly.CodeStructure;
+import com.nikonhacker.disassembly.Disassembler;
+import com.nikonhacker.disassembly.OutputOption;
+import com.nikonhacker.disassembly.ParsingException;
+import com.nikonhacker.disassembly.fr.Dfr;
+import com.nikonhacker.disassembly.fr.FrCPUState;
+import com.nikonhacker.disassembly.fr.FrInstructionSet;
+import com.nikonhacker.disassembly.fr.FrStatement;
+import com.nikonhacker.disassembly.tx.Dtx;
+import com.nikonhacker.disassembly.tx.TxCPUState;
+import com.nikonhacker.disassembly.tx.TxInstructionSet;
+import com.nikonhacker.disassembly.tx.TxStatement;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Processes a whole archive of firmware files in one JVM:
+ * <ul>
+ * <li>firmware packages are decoded and unpacked (see FirmwarePipeline)</li>
+ * <li>NKLD and NOP files are decrypted</li>
+ * <li>unpacked entries (or input files) for which a disassembler options file exists in the conf dir
+ * (e.g. b640101b.dfr.txt for b640101b.bin) are disassembled with structure analysis</li>
+ * </ul>
+ * Files and disassemblies are processed in parallel on a work-stealing pool. Instruction tables are initialized once
+ * for all disassemblies, as they all use the same output options.
+ * Results are summarized in an index.txt file in the destination dir, with one tab-separated line per entry.
+ */
+public class FirmwareBatchAnalyzer {
+    private static final int NKLD_MAGIC = 0x87C7CAAC;
+
+    private static final String INDEX_HEADER = "file\ttype\tversion\tentry\tlength\tstored_crc\tcomputed_crc\tfunctions\tstatus";
+
+    private final File                   destDir;
+    private final Set<OutputOption>      outputOptions;
+    private final boolean                writeAsm;
+    /** Options files found in confDir, by lowercase name */
+    private final Map<String, File>      confFiles = new HashMap<>();
+
+    /**
+     * One line of the summary index
+     */
+    public static class IndexLine {
+        public String file;
+        public String type;
+        public String version = "";
+        public String entry = "";
+        public long   length = -1;
+        public int    storedCrc = -1;
+        public int    computedCrc = -1;
+        public int    numFunctions = -1;
+        public String status = "OK";
+
+        IndexLine(String file, String type) {
+            this.file = file;
+            this.type = type;
+        }
+
+        @Override
+        public String toString() {
+            return file + "\t" + type + "\t" + version + "\t" + entry
+                    + "\t" + (length < 0 ? "" : String.valueOf(length))
+                    + "\t" + (storedCrc < 0 ? "" : "0x" + Format.asHex(storedCrc, 4))
+                    + "\t" + (computedCrc < 0 ? "" : "0x" + Format.asHex(computedCrc, 4))
+                    + "\t" + (numFunctions < 0 ? "" : String.valueOf(numFunctions))
+                    + "\t" + status;
+        }
+    }
+
+    public FirmwareBatchAnalyzer(File confDir, File destDir, Set<OutputOption> outputOptions, boolean writeAsm) {
+        this.destDir = destDir;
+        this.outputOptions = outputOptions;
+        this.writeAsm = writeAsm;
+        File[] files = (confDir == null) ? null : confDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                confFiles.put(file.getName().toLowerCase(), file);
+            }
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage : " + FirmwareBatchAnalyzer.class.getName() + " [options] <dir or manifest> <destdir>");
+        System.out.println("Options:");
+        System.out.println("-a                write .asm files alongside unpacked entries");
+        System.out.println("-c confdir        dir containing .dfr.txt and .dtx.txt options files (default: conf)");
+        System.out.println("-t threads        number of threads (default: number of cores)");
+        System.out.println("-w option         disassembler output option (e.g. -w noparameters)");
+        System.out.println("A manifest is a text file listing one firmware file per line. Lines starting with # are ignored.");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) {
+        File confDir = new File("conf");
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        boolean writeAsm = false;
+        Set<OutputOption> outputOptions = EnumSet.noneOf(OutputOption.class);
+        for (OutputOption outputOption : OutputOption.values()) {
+            if (outputOption.isDefaultValue()) {
+                outputOptions.add(outputOption);
+            }
+        }
+        outputOptions.add(OutputOption.STRUCTURE);
+
+        List<String> params = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-a":
+                        writeAsm = true;
+                        break;
+                    case "-c":
+                        confDir = new File(args[++i]);
+                        break;
+                    case "-t":
+                        numThreads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-w":
+                        if (!OutputOption.parseFlag(Constants.CHIP_FR, outputOptions, 'w', args[++i])) {
+                            usage();
+                        }
+                        break;
+                    default:
+                        params.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException | ParsingException e) {
+            System.err.println(e.getMessage());
+            usage();
+        }
+        if (params.size() != 2) {
+            usage();
+        }
+
+        try {
+            List<File> inputFiles = listInputFiles(new File(params.get(0)));
+            FirmwareBatchAnalyzer analyzer = new FirmwareBatchAnalyzer(confDir, new File(params.get(1)), outputOptions, writeAsm);
+            List<IndexLine> lines = analyzer.analyze(inputFiles, numThreads);
+            int errors = 0;
+            for (IndexLine line : lines) {
+                if (!"OK".equals(line.status)) errors++;
+            }
+            System.out.println(inputFiles.size() + " file(s) processed, " + lines.size() + " index line(s), " + errors + " problem(s).");
+        } catch (IOException e) {
+            e.printStackTrace();
+            usage();
+        }
+        System.out.println("Operation complete.");
+    }
+
+    /**
+     * @param source a dir, whose files are all processed, or a manifest file
+     */
+    public static List<File> listInputFiles(File source) throws IOException {
+        List<File> files = new ArrayList<>();
+        if (source.isDirectory()) {
+            File[] dirFiles = source.listFiles();
+            if (dirFiles != null) {
+                Arrays.sort(dirFiles);
+                for (File file : dirFiles) {
+                    if (file.isFile()) {
+                        files.add(file);
+                    }
+                }
+            }
+        }
+        else {
+            try (BufferedReader reader = new BufferedReader(new FileReader(source))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.length() > 0 && !line.startsWith("#")) {
+                        File file = new File(line);
+                        if (!file.isAbsolute()) {
+                            file = new File(source.getAbsoluteFile().getParentFile(), line);
+                        }
+                        files.add(file);
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Processes all files and writes index.txt in the destination dir
+     * @return the index lines, in input order
+     */
+    public List<IndexLine> analyze(List<File> inputFiles, int numThreads) throws IOException {
+        destDir.mkdirs();
+
+        // Fill the shared tables once, before any worker uses them
+        FrInstructionSet.init(outputOptions);
+        FrStatement.initFormatChars(outputOptions);
+        FrCPUState.initRegisterLabels(outputOptions);
+        TxInstructionSet.init(outputOptions);
+        TxStatement.initFormatChars(outputOptions);
+        TxCPUState.initRegisterLabels(outputOptions);
+
+        final List<FileTask> tasks = new ArrayList<>();
+        for (File inputFile : inputFiles) {
+            tasks.add(new FileTask(inputFile));
+        }
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            pool.invoke(new RecursiveTask<Void>() {
+                @Override
+                protected Void compute() {
+                    invokeAll(tasks);
+                    return null;
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+
+        List<IndexLine> lines = new ArrayList<>();
+        for (FileTask task : tasks) {
+            lines.addAll(task.join());
+        }
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter(new File(destDir, "index.txt")))) {
+            writer.println(INDEX_HEADER);
+            for (IndexLine line : lines) {
+                writer.println(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return the options file for the given binary, or null if there is none
+     */
+    private File getConfFile(String binaryName, int chip) {
+        String baseName = FilenameUtils.removeExtension(binaryName).toLowerCase();
+        return confFiles.get(baseName + (chip == Constants.CHIP_FR ? ".dfr.txt" : ".dtx.txt"));
+    }
+
+    /**
+     * Decodes one input file, then disassembles the resulting binaries in subtasks
+     */
+    private class FileTask extends RecursiveTask<List<IndexLine>> {
+        private static final long serialVersionUID = 1L;
+
+        private final File inputFile;
+
+        FileTask(File inputFile) {
+            this.inputFile = inputFile;
+        }
+
+        @Override
+        protected List<IndexLine> compute() {
+            final List<IndexLine> lines = new ArrayList<>();
+            String fileName = inputFile.getName();
+            final File outDir = new File(destDir, FilenameUtils.removeExtension(fileName));
+            List<DisassemblyTask> disassemblyTasks = new ArrayList<>();
+            try {
+                byte[] start = readStart(inputFile, 0x40);
+                if (start.length >= 4 && start[0] == 'N' && start[1] == 'O' && start[2] == 'P' && start[3] == 0) {
+                    IndexLine line = new IndexLine(fileName, "NOP");
+                    NopHeader nopHeader = NopUtils.getNopHeader(NopUtils.load(inputFile));
+                    line.version = nopHeader.name + " (" + nopHeader.shortName + ")";
+                    line.length = inputFile.length();
+                    outDir.mkdirs();
+                    new NopDecoder().decode(inputFile.getPath(), new File(outDir, fileName + ".bin").getPath(), true);
+                    lines.add(line);
+                }
+                else if (start.length >= 12 && NkldUtils.getUInt32(start, 8) == NKLD_MAGIC) {
+                    IndexLine line = new IndexLine(fileName, "NKLD");
+                    line.version = start[4] + "." + start[5];
+                    line.length = inputFile.length();
+                    outDir.mkdirs();
+                    new NkldDecoder().decode(inputFile.getPath(), new File(outDir, fileName + ".bin").getPath(), true);
+                    lines.add(line);
+                }
+                else if (start.length >= FirmwareUtils.getXorTypeDetectionLength() && FirmwareUtils.detectXorType(start) != 0) {
+                    final Map<String, IndexLine> entryLines = new LinkedHashMap<>();
+                    final String type = FirmwareUtils.detectXorType(start) == FirmwareUtils.STANDARD ? "package" : "package (model1)";
+                    new FirmwarePipeline().decode(inputFile, new FirmwarePipeline.DirectoryEntryHandler(outDir, true) {
+                        @Override
+                        public void endEntry(FirmwareFileEntry entry, int computedChecksum) throws IOException, FirmwareFormatException {
+                            super.endEntry(entry, computedChecksum);
+                            IndexLine line = new IndexLine(inputFile.getName(), type);
+                            line.entry = entry.getFileName();
+                            line.length = entry.getLength();
+                            line.storedCrc = entry.getCheckSum();
+                            line.computedCrc = computedChecksum;
+                            if (computedChecksum != entry.getCheckSum()) {
+                                line.status = "CRC error";
+                            }
+                            entryLines.put(entry.getFileName(), line);
+                        }
+                    });
+                    for (IndexLine line : entryLines.values()) {
+                        lines.add(line);
+                        DisassemblyTask task = createDisassemblyTask(new File(outDir, line.entry), line);
+                        if (task != null) {
+                            disassemblyTasks.add(task);
+                        }
+                    }
+                }
+                else {
+                    IndexLine line = new IndexLine(fileName, "binary");
+                    line.length = inputFile.length();
+                    DisassemblyTask task = createDisassemblyTask(inputFile, line);
+                    if (task == null) {
+                        line.status = "Unknown file type";
+                    }
+                    else {
+                        outDir.mkdirs();
+                        disassemblyTasks.add(task);
+                    }
+                    lines.add(line);
+                }
+            } catch (Exception e) {
+                IndexLine line = new IndexLine(fileName, "?");
+                line.status = "Error: " + e.getMessage();
+                lines.add(line);
+            }
+
+            // Run disassemblies in parallel. Idle workers steal them
+            invokeAll(disassemblyTasks);
+            System.out.println(fileName + " done.");
+            return lines;
+        }
+
+        private DisassemblyTask createDisassemblyTask(File binary, IndexLine line) {
+            File frConf = getConfFile(binary.getName(), Constants.CHIP_FR);
+            if (frConf != null) {
+                return new DisassemblyTask(new Dfr(), frConf, binary, line);
+            }
+            File txConf = getConfFile(binary.getName(), Constants.CHIP_TX);
+            if (txConf != null) {
+                return new DisassemblyTask(new Dtx(), txConf, binary, line);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Disassembles one binary with structure analysis, and stores the function count in its index line
+     */
+    private class DisassemblyTask extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final Disassembler disassembler;
+        private final File         confFile;
+        private final File         binary;
+        private final IndexLine    line;
+
+        DisassemblyTask(Disassembler disassembler, File confFile, File binary, IndexLine line) {
+            this.disassembler = disassembler;
+            this.confFile = confFile;
+            this.binary = binary;
+            this.line = line;
+        }
+
+        @Override
+        protected Void compute() {
+            File outDir = new File(destDir, FilenameUtils.removeExtension(line.file));
+            String baseName = FilenameUtils.removeExtension(binary.getName());
+            try (PrintWriter log = new PrintWriter(new FileWriter(new File(outDir, baseName + ".log")))) {
+                disassembler.setDebugPrintWriter(log);
+                Set<OutputOption> disassemblerOptions = EnumSet.noneOf(OutputOption.class);
+                disassemblerOptions.addAll(outputOptions);
+                disassembler.setOutputOptions(disassemblerOptions);
+                disassembler.setOutputFileName(writeAsm ? new File(outDir, baseName + ".asm").getPath() : null);
+                if (!disassembler.processOptions(new String[]{"-x", confFile.getPath(), binary.getPath()})) {
+                    throw new ParsingException("Incorrect options in " + confFile);
+                }
+                disassembler.initialize();
+                CodeStructure codeStructure = disassembler.disassembleMemRanges();
+                disassembler.cleanup();
+                if (codeStructure != null) {
+                    line.numFunctions = codeStructure.getNumFunctions();
+                }
+            } catch (Exception e) {
+                line.status = "Disassembly error: " + e.getMessage();
+            }
+            return null;
+        }
+    }
+
+    private static byte[] readStart(File file, int maxLength) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] bytes = new byte[(int) Math.min(maxLength, file.length())];
+            in.readFully(bytes);
+            return bytes;
+        }
+    }
+}
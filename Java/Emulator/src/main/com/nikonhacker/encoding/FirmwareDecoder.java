@@ -1,7 +1,6 @@
 package com.nikonhacker.encoding;
 
 import java.io.File;
-import java.util.List;
 
 public class FirmwareDecoder {
 
@@ -37,28 +36,9 @@ public class FirmwareDecoder {
             throw new FirmwareFormatException("Source file does not exist");
         } else {
             try {
-                byte[] source = FirmwareUtils.load(sourceFile);
-                int type = FirmwareUtils.tryXor(source);
-                if (type == 0) {
-                    throw new FirmwareFormatException("Unknown file type !!!");
-                }
-
-                List<FirmwareFileEntry> fileEntries = FirmwareUtils.unpack(source, type);
-                File unpackDir = new File(unpackDirName);
-                unpackDir.mkdirs();
-                for (FirmwareFileEntry fileEntry : fileEntries) {
-                    int computedCrc = FirmwareUtils.computeChecksum(fileEntry.getBuffer(), fileEntry.getOffset(), fileEntry.getLength());
-                    if (computedCrc != fileEntry.getCheckSum()) {
-                        String msg = "Warning : checksum not OK for " + fileEntry.getFileName() + ". Computed=" + computedCrc + ", stored=" + fileEntry.getCheckSum();
-                        if (ignoreCrcErrors) {
-                            System.err.println(msg);
-                        }
-                        else {
-                            throw new FirmwareFormatException(msg);
-                        }
-                    }
-                    FirmwareUtils.dumpFile(new File(unpackDir, fileEntry.getFileName()), fileEntry.getBuffer(), fileEntry.getOffset(), fileEntry.getLength());
-                }
+                new FirmwarePipeline().decode(sourceFile, new File(unpackDirName), ignoreCrcErrors);
+            } catch (FirmwareFormatException e) {
+                throw e;
             } catch (Exception e) {
                 throw new FirmwareFormatException(e);
             }
@@ -37,21 +37,19 @@ public class FirmwareEncoder {
             if (outDir!=null)
                 outDir.mkdirs();
 
-            List<FirmwareFileEntry> entries = new ArrayList<FirmwareFileEntry>();
+            List<File> inputFiles = new ArrayList<File>();
             for (String inputFilename : inputFilenames) {
                 File f = new File(inputFilename);
                 if (!f.exists()) {
                     throw new FirmwareFormatException("File '" + inputFilename + "' does not exist");
                 }
-                byte[] b = FirmwareUtils.load(f);
-                entries.add(new FirmwareFileEntry(f.getName(), b, 0, (int) f.length(), FirmwareUtils.computeChecksum(b, 0, (int) f.length())));
+                inputFiles.add(f);
             }
 
-            byte[] packed = FirmwareUtils.pack(entries);
-            byte[] encrypted = FirmwareUtils.xor(packed, FirmwareUtils.STANDARD);
-
-            FirmwareUtils.dumpFile(outFile, encrypted, 0, encrypted.length);
+            new FirmwarePipeline().encode(inputFiles, outFile);
 
+        } catch (FirmwareFormatException e) {
+            throw e;
         } catch (Exception e) {
             throw new FirmwareFormatException(e);
         }
@@ -0,0 +1,305 @@
+package com.nikonhacker.encoding;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming versions of FirmwareUtils.load()/tryXor()/unpack()/pack()/xor().
+ *
+ * Packages and entries are memory mapped and processed in one pass through a small reusable chunk, so that the size
+ * of a firmware never determines the amount of memory allocated:
+ * <ul>
+ * <li>decode() xors, checks the CRCs and hands each entry's contents to an EntryHandler</li>
+ * <li>encode() computes CRCs, xors and writes entries to the package as they are read</li>
+ * </ul>
+ * Instances are not thread safe, but can be reused for several packages.
+ */
+public class FirmwarePipeline {
+    /** Must be a multiple of 256, so that chunks start on xor blocks */
+    private static final int CHUNK_SIZE = 0x10000;
+
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    /**
+     * Receives the decoded contents of package entries
+     */
+    public interface EntryHandler {
+        /**
+         * Called before the first data of the entry. The entry has no buffer, and its checksum is not known yet
+         */
+        void startEntry(FirmwareFileEntry entry) throws IOException;
+
+        /**
+         * Called with consecutive parts of the entry. The buffer is only valid during the call
+         */
+        void entryData(FirmwareFileEntry entry, byte[] buffer, int offset, int length) throws IOException;
+
+        /**
+         * Called after the last data of the entry. The entry checksum is the stored one
+         */
+        void endEntry(FirmwareFileEntry entry, int computedChecksum) throws IOException, FirmwareFormatException;
+
+        /**
+         * Called instead of endEntry() when decoding fails after startEntry(), to release what was opened for the entry.
+         * Must not throw, so that the original error is reported
+         */
+        void abortEntry(FirmwareFileEntry entry);
+    }
+
+    /**
+     * Writes each entry to a file in a directory, checking its CRC
+     */
+    public static class DirectoryEntryHandler implements EntryHandler {
+        private final File    unpackDir;
+        private final boolean ignoreCrcErrors;
+        private FileChannel   channel;
+
+        public DirectoryEntryHandler(File unpackDir, boolean ignoreCrcErrors) {
+            this.unpackDir = unpackDir;
+            this.ignoreCrcErrors = ignoreCrcErrors;
+            unpackDir.mkdirs();
+        }
+
+        @Override
+        public void startEntry(FirmwareFileEntry entry) throws IOException {
+            channel = new FileOutputStream(new File(unpackDir, entry.getFileName())).getChannel();
+        }
+
+        @Override
+        public void entryData(FirmwareFileEntry entry, byte[] buffer, int offset, int length) throws IOException {
+            writeFully(channel, buffer, offset, length);
+        }
+
+        @Override
+        public void endEntry(FirmwareFileEntry entry, int computedChecksum) throws IOException, FirmwareFormatException {
+            try {
+                channel.close();
+            }
+            finally {
+                channel = null;
+            }
+            if (computedChecksum != entry.getCheckSum()) {
+                String msg = "Warning : checksum not OK for " + entry.getFileName() + ". Computed=" + computedChecksum + ", stored=" + entry.getCheckSum();
+                if (ignoreCrcErrors) {
+                    System.err.println(msg);
+                }
+                else {
+                    throw new FirmwareFormatException(msg);
+                }
+            }
+        }
+
+        @Override
+        public void abortEntry(FirmwareFileEntry entry) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                }
+                catch (IOException e) {
+                    // the error that stopped decoding is more relevant
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Decodes a package and passes its entries to the handler
+     * @return the entries, with their stored checksum but without buffer
+     */
+    public List<FirmwareFileEntry> decode(File sourceFile, EntryHandler handler) throws IOException, FirmwareFormatException {
+        try (FileChannel channel = new FileInputStream(sourceFile).getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new FirmwareFormatException("File is too large: " + sourceFile);
+            }
+            MappedByteBuffer source = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int size = (int) channel.size();
+
+            // Identify the xor tables and read the entry table
+            if (size < FirmwareUtils.getXorTypeDetectionLength()) {
+                throw new FirmwareFormatException("File is too small: " + sourceFile);
+            }
+            byte[] header = read(source, 0, FirmwareUtils.getXorTypeDetectionLength());
+            int type = FirmwareUtils.detectXorType(header);
+            if (type == 0) {
+                throw new FirmwareFormatException("Unknown file type !!!");
+            }
+            FirmwareUtils.xor(header, 0, header.length, 0, type);
+            long count = FirmwareUtils.getUInt32(header, 0x20);
+            long headerSize = FirmwareUtils.HEADER_SIZE + count * FirmwareUtils.ENTRY_SIZE;
+            if (count == 0 || headerSize > size) {
+                throw new FirmwareFormatException("Invalid entry count: " + count);
+            }
+            header = read(source, 0, (int) headerSize);
+            FirmwareUtils.xor(header, 0, header.length, 0, type);
+            List<FirmwareFileEntry> entries = FirmwareUtils.readEntryTable(header, type);
+
+            // Entries are decoded one at a time, so they must follow each other, each one followed by its CRC
+            int checksumOffset = FirmwareUtils.getPackageChecksumOffset(entries);
+            long previousEnd = headerSize;
+            for (FirmwareFileEntry entry : entries) {
+                if (entry.getOffset() < 0 || entry.getLength() < 0 || (long) entry.getOffset() + entry.getLength() + 2 > checksumOffset) {
+                    throw new FirmwareFormatException("Entry " + entry + " is out of the package");
+                }
+                if (entry.getOffset() < previousEnd) {
+                    throw new FirmwareFormatException("Entry " + entry + " overlaps the previous entry or the header");
+                }
+                previousEnd = (long) entry.getOffset() + entry.getLength() + 2;
+            }
+            if ((long) checksumOffset + FirmwareUtils.FOOTER_SIZE > size) {
+                throw new FirmwareFormatException("File is truncated: " + sourceFile);
+            }
+
+            // Single pass on the payload. Each chunk is decoded, added to the package CRC, then dispatched to the entries it overlaps
+            int numEntries = entries.size();
+            int[] computedChecksums = new int[numEntries];
+            int[] storedChecksums = new int[numEntries];
+            boolean[] started = new boolean[numEntries];
+            int packageChecksum = FirmwareUtils.packCrc.getInitValue();
+            for (int i = 0; i < numEntries; i++) {
+                computedChecksums[i] = FirmwareUtils.fileCrc.getInitValue();
+            }
+            // Entry started but not ended yet, if any
+            FirmwareFileEntry openEntry = null;
+            try {
+                for (int position = 0; position < checksumOffset; position += CHUNK_SIZE) {
+                    int length = Math.min(CHUNK_SIZE, checksumOffset - position);
+                    source.position(position);
+                    source.get(chunk, 0, length);
+                    FirmwareUtils.xor(chunk, 0, length, position, type);
+                    packageChecksum = FirmwareUtils.packCrc.update(packageChecksum, chunk, 0, length);
+
+                    int chunkEnd = position + length;
+                    for (int i = 0; i < numEntries; i++) {
+                        FirmwareFileEntry entry = entries.get(i);
+                        int dataEnd = entry.getOffset() + entry.getLength();
+                        int entryEnd = dataEnd + 2;
+                        if (entry.getOffset() >= chunkEnd || entryEnd <= position) {
+                            continue;
+                        }
+                        if (!started[i]) {
+                            handler.startEntry(entry);
+                            started[i] = true;
+                            openEntry = entry;
+                        }
+                        // Contents
+                        int start = Math.max(position, entry.getOffset());
+                        int end = Math.min(chunkEnd, dataEnd);
+                        if (end > start) {
+                            computedChecksums[i] = FirmwareUtils.fileCrc.update(computedChecksums[i], chunk, start - position, end - start);
+                            handler.entryData(entry, chunk, start - position, end - start);
+                        }
+                        // Stored CRC, which can straddle chunks
+                        for (int crcPosition = Math.max(position, dataEnd); crcPosition < Math.min(chunkEnd, entryEnd); crcPosition++) {
+                            storedChecksums[i] = (storedChecksums[i] << 8) | (chunk[crcPosition - position] & 0xFF);
+                        }
+                        if (entryEnd <= chunkEnd) {
+                            entry.setCheckSum(storedChecksums[i]);
+                            openEntry = null;
+                            handler.endEntry(entry, computedChecksums[i]);
+                        }
+                    }
+                }
+            }
+            finally {
+                if (openEntry != null) {
+                    handler.abortEntry(openEntry);
+                }
+            }
+
+            // Package checksum seems to be unused. Checking anyway...
+            byte[] footer = read(source, checksumOffset, FirmwareUtils.FOOTER_SIZE);
+            FirmwareUtils.xor(footer, 0, footer.length, checksumOffset, type);
+            FirmwareUtils.checkFooter(footer, 0, checksumOffset, packageChecksum);
+
+            return entries;
+        }
+    }
+
+    /**
+     * Decodes a package and writes its entries to a directory
+     */
+    public List<FirmwareFileEntry> decode(File sourceFile, File unpackDir, boolean ignoreCrcErrors) throws IOException, FirmwareFormatException {
+        return decode(sourceFile, new DirectoryEntryHandler(unpackDir, ignoreCrcErrors));
+    }
+
+    /**
+     * Builds and encrypts a STANDARD package containing the given files, in order
+     */
+    public void encode(List<File> inputFiles, File outFile) throws IOException {
+        List<FirmwareFileEntry> entries = new ArrayList<>();
+        for (File inputFile : inputFiles) {
+            if (inputFile.length() > Integer.MAX_VALUE) {
+                throw new IOException("File '" + inputFile + "' is too large");
+            }
+            entries.add(new FirmwareFileEntry(inputFile.getName(), null, 0, (int) inputFile.length(), 0));
+        }
+
+        byte[] header = new byte[FirmwareUtils.HEADER_SIZE + entries.size() * FirmwareUtils.ENTRY_SIZE];
+        FirmwareUtils.writeEntryTable(header, entries);
+
+        try (RandomAccessFile out = new RandomAccessFile(outFile, "rw")) {
+            out.setLength(0);
+            FileChannel outChannel = out.getChannel();
+            int position = 0;
+            int packageChecksum = FirmwareUtils.packCrc.getInitValue();
+
+            packageChecksum = FirmwareUtils.packCrc.update(packageChecksum, header, 0, header.length);
+            position = writeEncrypted(outChannel, header, header.length, position);
+
+            for (File inputFile : inputFiles) {
+                int fileChecksum = FirmwareUtils.fileCrc.getInitValue();
+                try (FileChannel inChannel = new FileInputStream(inputFile).getChannel()) {
+                    int size = (int) inChannel.size();
+                    MappedByteBuffer in = inChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    while (in.hasRemaining()) {
+                        int length = Math.min(CHUNK_SIZE, in.remaining());
+                        in.get(chunk, 0, length);
+                        fileChecksum = FirmwareUtils.fileCrc.update(fileChecksum, chunk, 0, length);
+                        packageChecksum = FirmwareUtils.packCrc.update(packageChecksum, chunk, 0, length);
+                        position = writeEncrypted(outChannel, chunk, length, position);
+                    }
+                }
+                FirmwareUtils.setUInt16(chunk, 0, fileChecksum);
+                packageChecksum = FirmwareUtils.packCrc.update(packageChecksum, chunk, 0, 2);
+                position = writeEncrypted(outChannel, chunk, 2, position);
+            }
+
+            byte[] footer = new byte[FirmwareUtils.FOOTER_SIZE];
+            FirmwareUtils.setUInt16(footer, 0, packageChecksum);
+            writeEncrypted(outChannel, footer, footer.length, position);
+        }
+    }
+
+    /**
+     * Encrypts the buffer in place and writes it
+     * @return the position after the written data
+     */
+    private static int writeEncrypted(FileChannel channel, byte[] buffer, int length, int position) throws IOException {
+        FirmwareUtils.xor(buffer, 0, length, position, FirmwareUtils.STANDARD);
+        writeFully(channel, buffer, 0, length);
+        return position + length;
+    }
+
+    private static void writeFully(FileChannel channel, byte[] buffer, int offset, int length) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, length);
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+    }
+
+    private static byte[] read(MappedByteBuffer source, int position, int length) {
+        byte[] bytes = new byte[length];
+        source.position(position);
+        source.get(bytes);
+        return bytes;
+    }
+}
@@ -1,15 +1,20 @@
 package com.nikonhacker.encoding;
 
-import jonelo.jacksum.JacksumAPI;
-import jonelo.jacksum.algorithm.AbstractChecksum;
 import org.apache.commons.io.FileUtils;
 
 import java.io.*;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FirmwareUtils {
     private static final int[] Xor_Ord1 = {
@@ -142,6 +147,31 @@ public class FirmwareUtils {
     private static final int CRC_INIT_FILE = 0x0000;
     private static final int CRC_INIT_PACK = 0xcd18;
 
+    static final Crc16 fileCrc = new Crc16(CRC_INIT_FILE, CRC_MASK);
+    static final Crc16 packCrc = new Crc16(CRC_INIT_PACK, CRC_MASK);
+
+    /** Size of the header, without the entry table */
+    static final int HEADER_SIZE = 0x30;
+    static final int ENTRY_SIZE = 0x20;
+    static final int FOOTER_SIZE = 0x10;
+
+    /**
+     * Within an aligned block of 256 bytes, only the first order table varies, so the xor key of a block is
+     * the first order table, xored with a constant byte. This is the first order table as longs, for each xorTables entry.
+     */
+    private static final long[][] xorOrd1Longs = new long[xorTables.length][];
+    static {
+        for (int index = 0; index < xorTables.length; index++) {
+            ByteBuffer ord1 = ByteBuffer.allocate(256).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < 256; i++) {
+                ord1.put((byte) xorTables[index][0][i]);
+            }
+            ord1.flip();
+            xorOrd1Longs[index] = new long[32];
+            ord1.asLongBuffer().get(xorOrd1Longs[index]);
+        }
+    }
+
     public static byte[] load(File f) throws IOException {
         FileInputStream fis = null;
 
@@ -163,21 +193,57 @@ public class FirmwareUtils {
     }
 
     public static byte[] xor(byte[] data, int index) throws IOException {
+        return xor(data, 0, data.length, 0, index);
+    }
+
+    /**
+     * Xors part of a package, in place
+     * @param data buffer containing the part
+     * @param offset offset of the part in data
+     * @param length length of the part
+     * @param position position of the part in the package, which determines the key
+     * @param index xorTables entry (STANDARD or MODEL1)
+     * @return data, or null if index is invalid
+     */
+    public static byte[] xor(byte[] data, int offset, int length, int position, int index) {
         if (index<1 || index>xorTables.length)
             return null;
         index--;
         final int [] xor1 = xorTables[index][0];
         final int [] xor2 = xorTables[index][1];
         final int [] xor3 = xorTables[index][2];
+        final long [] xor1Longs = xorOrd1Longs[index];
+
+        // Bytes before the first full block of 256 bytes
+        int delta = offset - position;
+        int end = position + length;
+        int fullBlocksStart = Math.min((position + 0xFF) & ~0xFF, end);
+        xorBytes(data, delta, position, fullBlocksStart, xor1, xor2, xor3);
+
+        // Full blocks of 256 bytes, 8 bytes at a time
+        ByteBuffer longView = ByteBuffer.wrap(data).order(ByteOrder.nativeOrder());
+        int fullBlocksEnd = Math.max(end & ~0xFF, fullBlocksStart);
+        for (int block = fullBlocksStart; block < fullBlocksEnd; block += 0x100) {
+            long blockKey = ((xor2[(block >> 8) & 0xFF] ^ xor3[(block >> 16) & 0xFF]) & 0xFF) * 0x0101010101010101L;
+            for (int j = 0; j < 32; j++) {
+                int i = delta + block + (j << 3);
+                longView.putLong(i, longView.getLong(i) ^ xor1Longs[j] ^ blockKey);
+            }
+        }
+
+        // Remaining bytes
+        xorBytes(data, delta, fullBlocksEnd, end, xor1, xor2, xor3);
+        return data;
+    }
 
-        for (int i = 0; i < data.length; i++) {
+    private static void xorBytes(byte[] data, int delta, int startPosition, int endPosition, int[] xor1, int[] xor2, int[] xor3) {
+        for (int i = startPosition; i < endPosition; i++) {
             int ord1_idx = i & 0xFF;
             int ord2_idx = (i >> 8) & 0xFF;
             int ord3_idx = (i >> 16) & 0xFF;
 
-            data[i] = (byte) (data[i] ^ xor1[ord1_idx] ^ xor2[ord2_idx] ^ xor3[ord3_idx]);
+            data[delta + i] = (byte) (data[delta + i] ^ xor1[ord1_idx] ^ xor2[ord2_idx] ^ xor3[ord3_idx]);
         }
-        return data;
     }
 
     public static void main(String[] args) throws IOException {
@@ -211,7 +277,7 @@ public class FirmwareUtils {
      * Reference implementation from Wikipedia and Simeon's rewrite
      * Not optimized
      */
-    public static int referenceComputeChecksum(byte[] buffer, int offset, int length, int initValue, int mask) throws NoSuchAlgorithmException {
+    public static int referenceComputeChecksum(byte[] buffer, int offset, int length, int initValue, int mask) {
 
         int rem = initValue;
 
@@ -231,43 +297,78 @@ public class FirmwareUtils {
     }
 
     /**
-     * Optimized implementation using Jacksum.
-     * Just faster.
-     *
-     * @throws NoSuchAlgorithmException
+     * Optimized implementation using cached slice-by-8 tables (see Crc16).
+     * Same result as Jacksum's "crc:16,mask,init,false,false,0".
      */
-    private static int fastComputeChecksum(byte[] buffer, int offset, int length, int initValue, int mask) throws NoSuchAlgorithmException {
-        AbstractChecksum checksum;
-        checksum = JacksumAPI.getChecksumInstance("crc:16," + Integer.toHexString(mask) + "," + Integer.toHexString(initValue) + ",false,false,0");
-
-        checksum.reset();
+    private static int fastComputeChecksum(byte[] buffer, int offset, int length, int initValue, int mask) {
+        return new Crc16(initValue, mask).compute(buffer, offset, length);
+    }
 
-        checksum.update(buffer, offset, length);
+    public static int computeChecksum(byte[] buffer, int offset, int length) {
+        return fileCrc.compute(buffer, offset, length);
+    }
 
-        return (int) checksum.getValue();
+    public static final int tryXor(byte[] data) throws IOException {
+        int i = detectXorType(data);
+        if (i != 0) {
+            xor(data, i);
+        }
+        return i;
     }
 
-    public static int computeChecksum(byte[] buffer, int offset, int length) throws NoSuchAlgorithmException {
-        return fastComputeChecksum(buffer, offset, length, CRC_INIT_FILE, CRC_MASK);
+    /**
+     * @param packageStart the first bytes of an encrypted package, at least getXorTypeDetectionLength() of them. Left unchanged
+     * @return the xorTables entry that decodes it, or 0 if none does
+     */
+    static int detectXorType(byte[] packageStart) {
+        for (int i = STANDARD; i <= xorTables.length; i++) {
+            byte [] decodedStart = Arrays.copyOf(packageStart, getXorTypeDetectionLength());
+            xor(decodedStart, 0, decodedStart.length, 0, i);
+
+            if (getUInt32(decodedStart, HEADER.length)<11 && getUInt32(decodedStart, HEADER.length + 4)<0x400)
+                return i;
+        }
+        return 0;
     }
 
-    public static final int tryXor(byte[] data) throws IOException {
-        int i;
+    static int getXorTypeDetectionLength() {
+        return HEADER.length + 8;
+    }
 
-        for (i=STANDARD; ;i++) {
-            byte [] packageStart = Arrays.copyOf(data, HEADER.length + 8);
-            packageStart = xor(packageStart,i);
-            if (packageStart==null)
-                return 0;
+    public static List<FirmwareFileEntry> unpack(byte[] buffer, int type) throws IOException {
+        List<FirmwareFileEntry> fileEntries = readEntryTable(buffer, type);
 
-            if (getUInt32(packageStart, HEADER.length)<11 && getUInt32(packageStart, HEADER.length + 4)<0x400)
-                break;
+        for (FirmwareFileEntry fileEntry : fileEntries) {
+            // Read CRC at the end of the block
+            fileEntry.setBuffer(buffer);
+            fileEntry.setCheckSum(getUInt16(buffer, fileEntry.getOffset() + fileEntry.getLength()));
         }
-        xor(data, i);
-        return i;
+
+        // Package checksum seems to be unused. Checking anyway...
+
+        int offset = getPackageChecksumOffset(fileEntries);
+        int computedChecksum = packCrc.compute(buffer, 0, offset);
+
+        checkFooter(buffer, offset, offset, computedChecksum);
+
+        return fileEntries;
+    }
+
+    /**
+     * @return the offset of the package checksum, right after the CRC of the last entry
+     */
+    static int getPackageChecksumOffset(List<FirmwareFileEntry> fileEntries) {
+        FirmwareFileEntry lastEntry = fileEntries.get(fileEntries.size() - 1);
+        return lastEntry.getOffset()  // start of last contained file
+             + lastEntry.getLength()  // length of last contained file
+             + 2;                     // length of CRC of last contained file
     }
 
-    public static List<FirmwareFileEntry> unpack(byte[] buffer, int type) throws IOException, NoSuchAlgorithmException {
+    /**
+     * Reads the entry table of a decoded package. Returned entries have no buffer nor checksum yet
+     * @param buffer buffer containing at least the header and entry table
+     */
+    static List<FirmwareFileEntry> readEntryTable(byte[] buffer, int type) {
         if (type==STANDARD)
             assertEquals(buffer, 0, 0x20, HEADER);
         int offset = 0x20;
@@ -291,35 +392,32 @@ public class FirmwareUtils {
             assertZero32(buffer, offset); offset +=4;
             assertZero32(buffer, offset); offset +=4;
 
-            // Read CRC at the end of the block
-            int packedFileChecksum = getUInt16(buffer, (int) (fileOffset + fileLength));
-
             // Create data structure for file description
-            fileEntries.add(new FirmwareFileEntry(firmwareName, buffer, (int) fileOffset, (int) fileLength, packedFileChecksum));
+            fileEntries.add(new FirmwareFileEntry(firmwareName, null, (int) fileOffset, (int) fileLength, 0));
         }
 
-        // Package checksum seems to be unused. Checking anyway...
-
-        offset = fileEntries.get((int) (count - 1)).getOffset()  // start of last contained file
-                + fileEntries.get((int) (count - 1)).getLength() // length of last contained file
-                + 2;                                             // length of CRC of last contained file
-        int computedChecksum = FirmwareUtils.fastComputeChecksum(buffer, 0, offset, CRC_INIT_PACK, CRC_MASK);
+        return fileEntries;
+    }
 
-        int packageChecksum = getUInt16(buffer, offset); offset +=2;
+    /**
+     * Checks the package checksum and trailing zeros of a decoded footer
+     * @param footer buffer containing the footer at footerOffset
+     * @param packageOffset offset of the footer in the package, for messages
+     */
+    static void checkFooter(byte[] footer, int footerOffset, int packageOffset, int computedChecksum) {
+        int packageChecksum = getUInt16(footer, footerOffset);
 
         if (packageChecksum != computedChecksum) {
-            System.err.println("Warning : computed payload checksum (" + computedChecksum + ") does not match the one stored at 0x" + Integer.toHexString(offset - 2) + " (" + packageChecksum + ")");
+            System.err.println("Warning : computed payload checksum (" + computedChecksum + ") does not match the one stored at 0x" + Integer.toHexString(packageOffset) + " (" + packageChecksum + ")");
         }
 
-        assertZero16(buffer, offset); offset +=2;
-        assertZero32(buffer, offset); offset +=4;
-        assertZero32(buffer, offset); offset +=4;
-        assertZero32(buffer, offset); offset +=4;
-
-        return fileEntries;
+        assertZero16(footer, footerOffset + 2);
+        assertZero32(footer, footerOffset + 4);
+        assertZero32(footer, footerOffset + 8);
+        assertZero32(footer, footerOffset + 12);
     }
 
-    private static void bruteFindOffset(byte[] buffer, int totalLength, int compareChecksum, int init, int mask) throws NoSuchAlgorithmException, IOException {
+    private static void bruteFindOffset(byte[] buffer, int totalLength, int compareChecksum, int init, int mask) throws IOException {
         String fileName = "d:\\work\\NikonForce.txt";
         FileWriter f = new FileWriter(fileName, true);
         f.write(new Date().toString());
@@ -339,32 +437,63 @@ public class FirmwareUtils {
     }
 
 
-    private static void bruteFindInitAndMask(byte[] buffer, int offset, int length, int compareChecksum, int startInit, int endInit, int startMask, int endMask) throws NoSuchAlgorithmException, IOException {
+    /**
+     * Masks are split among all cores. For each mask, the CRC is computed once with init 0, and the contribution of
+     * each init bit is computed once, so that each init value costs a few xors instead of a full CRC (see Crc16.getInitContributions()).
+     */
+    private static void bruteFindInitAndMask(final byte[] buffer, final int offset, final int length, final int compareChecksum, final int startInit, final int endInit, int startMask, final int endMask) throws IOException {
         String fileName = "d:\\work\\NikonForce.txt";
-        FileWriter f = new FileWriter(fileName, true);
+        final FileWriter f = new FileWriter(fileName, true);
         f.write(new Date().toString());
-        for (int mask = startMask; mask < endMask; mask++) {
-            printToWriterAndStdout(f, "-------------------------------------- MASK 0x" + Integer.toHexString(mask) + " --------------------------------------");
-            for (int init = startInit; init < endInit; init++) {
-                if (init % 0x100 == 0) {
-                    f.close();
-                    f = new FileWriter(fileName, true);
-                    printlnToWriterAndStdout(f, "");
-                    printToWriterAndStdout(f, Integer.toHexString(init));
-                }
-                System.out.print(".");
-                f.write(".");
-                int computedChecksum = FirmwareUtils.fastComputeChecksum(buffer, offset, length, init, mask);
-
-                if (compareChecksum == computedChecksum) {
-                    printlnToWriterAndStdout(f, "");
-                    printlnToWriterAndStdout(f, "============================================");
-                    printlnToWriterAndStdout(f, "Found : init = 0x" + Integer.toHexString(init) + " - mask = 0x" + Integer.toHexString(mask) + " on full file");
-                    printlnToWriterAndStdout(f, "============================================");
+        printlnToWriterAndStdout(f, "");
+        final AtomicInteger nextMask = new AtomicInteger(startMask);
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            futures.add(executorService.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    for (int mask = nextMask.getAndIncrement(); mask < endMask; mask = nextMask.getAndIncrement()) {
+                        Crc16 crc = new Crc16(0, mask);
+                        int zeroInitChecksum = crc.compute(buffer, offset, length);
+                        int[] contributions = crc.getInitContributions(length);
+                        for (int init = startInit; init < endInit; init++) {
+                            int computedChecksum = zeroInitChecksum;
+                            for (int bit = 0; bit < 16; bit++) {
+                                if ((init & (1 << bit)) != 0) {
+                                    computedChecksum ^= contributions[bit];
+                                }
+                            }
+                            if (compareChecksum == computedChecksum) {
+                                synchronized (f) {
+                                    printlnToWriterAndStdout(f, "============================================");
+                                    printlnToWriterAndStdout(f, "Found : init = 0x" + Integer.toHexString(init) + " - mask = 0x" + Integer.toHexString(mask) + " on full file");
+                                    printlnToWriterAndStdout(f, "============================================");
+                                    f.flush();
+                                }
+                            }
+                        }
+                        synchronized (f) {
+                            printlnToWriterAndStdout(f, "-------------------------------------- MASK 0x" + Integer.toHexString(mask) + " done --------------------------------------");
+                        }
+                    }
+                    return null;
                 }
+            }));
+        }
+        executorService.shutdown();
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            f.close();
         }
-        f.close();
     }
 
     private static void printToWriterAndStdout(FileWriter f, String msg) throws IOException {
@@ -401,30 +530,20 @@ public class FirmwareUtils {
         }
     }
 
-    public static byte[] pack(List<FirmwareFileEntry> fileEntries) throws IOException, NoSuchAlgorithmException {
-        int headerSize = 0x30 + fileEntries.size() * 0x20; // header
+    public static byte[] pack(List<FirmwareFileEntry> fileEntries) throws IOException {
+        int headerSize = HEADER_SIZE + fileEntries.size() * ENTRY_SIZE; // header
         int totalLength = headerSize;
         for (FirmwareFileEntry fileEntry : fileEntries) {
             totalLength += fileEntry.getLength() + 2;
         }
-        totalLength += 0x10; // footer
+        totalLength += FOOTER_SIZE; // footer
 
         byte[] buffer = new byte[totalLength];
 
-        for (int i = 0; i < 0x20; i++) {
-            buffer[i] = (byte) HEADER[i];
-        }
+        writeEntryTable(buffer, fileEntries);
 
-        setUInt32(buffer, 0x20, fileEntries.size());
-        setUInt32(buffer, 0x24, headerSize);
         int offset = headerSize;
-        for (int i = 0; i < fileEntries.size(); i++) {
-            // Fill header info
-            FirmwareFileEntry fileEntry = fileEntries.get(i);
-            setString(buffer, 0x30 + 0x20 * i, fileEntry.getFileName(), 0x10);
-            setUInt32(buffer, 0x40 + 0x20 * i, offset);
-            setUInt32(buffer, 0x44 + 0x20 * i, fileEntry.getLength() + 2);
-
+        for (FirmwareFileEntry fileEntry : fileEntries) {
             // Fill contents
             for (int j = 0; j < fileEntry.getLength(); j++) {
                 buffer[offset + j] = fileEntry.getBuffer()[fileEntry.getOffset() + j];
@@ -435,12 +554,35 @@ public class FirmwareUtils {
             setUInt16(buffer, offset, fileEntry.getCheckSum());
             offset += 2;
         }
-        int computedChecksum = FirmwareUtils.fastComputeChecksum(buffer, 0, offset, CRC_INIT_PACK, CRC_MASK);
+        int computedChecksum = packCrc.compute(buffer, 0, offset);
         setUInt16(buffer, offset, computedChecksum);
 
         return buffer;
     }
 
+    /**
+     * Writes the header and entry table of a package. Entries are laid out in order, each followed by its CRC
+     * @param buffer destination, of at least HEADER_SIZE + ENTRY_SIZE * fileEntries.size() bytes
+     */
+    static void writeEntryTable(byte[] buffer, List<FirmwareFileEntry> fileEntries) throws IOException {
+        int headerSize = HEADER_SIZE + fileEntries.size() * ENTRY_SIZE;
+        for (int i = 0; i < 0x20; i++) {
+            buffer[i] = (byte) HEADER[i];
+        }
+
+        setUInt32(buffer, 0x20, fileEntries.size());
+        setUInt32(buffer, 0x24, headerSize);
+        int offset = headerSize;
+        for (int i = 0; i < fileEntries.size(); i++) {
+            // Fill header info
+            FirmwareFileEntry fileEntry = fileEntries.get(i);
+            setString(buffer, 0x30 + 0x20 * i, fileEntry.getFileName(), 0x10);
+            setUInt32(buffer, 0x40 + 0x20 * i, offset);
+            setUInt32(buffer, 0x44 + 0x20 * i, fileEntry.getLength() + 2);
+            offset += fileEntry.getLength() + 2;
+        }
+    }
+
     public static void dumpFile(File file, byte[] buffer, int offset, int length) throws IOException {
         FileOutputStream fos = null;
         try
@@ -454,19 +596,19 @@ public class FirmwareUtils {
         }
     }
 
-    private static int getUInt16(byte[] buffer, int offset) {
+    static int getUInt16(byte[] buffer, int offset) {
         final int v0 = buffer[offset] & 0xFF;
         final int v1 = buffer[offset + 1] & 0xFF;
         return ((v0 << 8) | v1);
     }
 
-    private static void setUInt16(byte[] buffer, int offset, int value) {
+    static void setUInt16(byte[] buffer, int offset, int value) {
         buffer[offset + 1] = (byte) (value & 0xff);
         value = value >> 8;
         buffer[offset] = (byte) (value & 0xff);
     }
 
-    private static long getUInt32(byte[] buffer, int offset) {
+    static long getUInt32(byte[] buffer, int offset) {
         final long v0 = buffer[offset] & 0xFF;
         final long v1 = buffer[offset + 1] & 0xFF;
         final long v2 = buffer[offset + 2] & 0xFF;
@@ -474,7 +616,7 @@ public class FirmwareUtils {
         return ((v0 << 24) | (v1 << 16) | (v2 << 8) | v3);
     }
 
-    private static void setUInt32(byte[] buffer, int offset, int value) {
+    static void setUInt32(byte[] buffer, int offset, int value) {
         for (int i = 0; i < 4; i++) {
             buffer[offset + (3 - i)] = (byte) (value & 0xff);
             value = value >> 8;
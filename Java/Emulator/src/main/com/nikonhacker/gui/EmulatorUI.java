@@ -22,11 +22,15 @@ import com.nikonhacker.disassembly.tx.TxCPUState;
 import com.nikonhacker.emu.ClockableCallbackHandler;
 import com.nikonhacker.emu.EmulationException;
 import com.nikonhacker.emu.EmulationFramework;
+import com.nikonhacker.emu.MasterClock;
+import com.nikonhacker.emu.history.ExecutionHistory;
+import com.nikonhacker.emu.journal.InputJournal;
 import com.nikonhacker.emu.memory.DebuggableMemory;
 import com.nikonhacker.emu.memory.Memory;
-import com.nikonhacker.emu.memory.listener.TrackingMemoryActivityListener;
+import com.nikonhacker.emu.memory.MemoryAccessStatistics;
 import com.nikonhacker.emu.peripherials.lcd.fr.FrLcd;
 import com.nikonhacker.emu.peripherials.programmableTimer.ProgrammableTimer;
+import com.nikonhacker.emu.trigger.BreakTrigger;
 import com.nikonhacker.emu.trigger.condition.BreakCondition;
 import com.nikonhacker.encoding.FirmwareDecoder;
 import com.nikonhacker.encoding.FirmwareEncoder;
@@ -47,6 +51,7 @@ import com.nikonhacker.gui.component.interruptController.TxInterruptControllerFr
 import com.nikonhacker.gui.component.ioPort.IoPortsFrame;
 import com.nikonhacker.gui.component.itron.ITronObjectFrame;
 import com.nikonhacker.gui.component.itron.ITronReturnStackFrame;
+import com.nikonhacker.gui.component.profiler.ExecutionProfilerFrame;
 import com.nikonhacker.gui.component.memoryActivity.MemoryActivityViewerFrame;
 import com.nikonhacker.gui.component.memoryHexEditor.MemoryHexEditorFrame;
 import com.nikonhacker.gui.component.memoryMapped.Component4006Frame;
@@ -83,6 +88,7 @@ import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 public class EmulatorUI extends JFrame implements ActionListener {
 
@@ -112,7 +118,11 @@ public class EmulatorUI extends JFrame implements ActionListener {
     private static final String[] COMMAND_TOGGLE_CALL_STACK_WINDOW           = {"FR_TOGGLE_CALL_STACK_WINDOW", "TX_TOGGLE_CALL_STACK_WINDOW"};
     private static final String[] COMMAND_TOGGLE_ITRON_OBJECT_WINDOW         = {"FR_TOGGLE_ITRON_OBJECT_WINDOW", "TX_TOGGLE_ITRON_OBJECT_WINDOW"};
     private static final String[] COMMAND_TOGGLE_ITRON_RETURN_STACK_WINDOW   = {"FR_TOGGLE_ITRON_RETURN_STACK_WINDOW", "TX_TOGGLE_ITRON_RETURN_STACK_WINDOW"};
+    private static final String[] COMMAND_TOGGLE_EXECUTION_PROFILER_WINDOW   = {"FR_TOGGLE_EXECUTION_PROFILER_WINDOW", "TX_TOGGLE_EXECUTION_PROFILER_WINDOW"};
     private static final String[] COMMAND_CHIP_OPTIONS                       = {"FR_OPTIONS", "TX_OPTIONS"};
+    private static final String[] COMMAND_STEP_BACK                          = {"FR_STEP_BACK", "TX_STEP_BACK"};
+    private static final String[] COMMAND_RUN_BACK_TO_BREAKPOINT             = {"FR_RUN_BACK_TO_BREAKPOINT", "TX_RUN_BACK_TO_BREAKPOINT"};
+    private static final String[] COMMAND_RUN_BACK_TO_LAST_WRITE             = {"FR_RUN_BACK_TO_LAST_WRITE", "TX_RUN_BACK_TO_LAST_WRITE"};
 
     private static final String COMMAND_GENERATE_SYS_SYMBOLS         = "GENERATE_SYS_SYMBOLS";
     private static final String COMMAND_TOGGLE_COMPONENT_4006_WINDOW = "TOGGLE_COMPONENT_4006_WINDOW";
@@ -124,6 +134,8 @@ public class EmulatorUI extends JFrame implements ActionListener {
     private static final String COMMAND_DECODE_NKLD                  = "DECODE_NKLD";
     private static final String COMMAND_LOAD_STATE                   = "LOAD_STATE";
     private static final String COMMAND_SAVE_STATE                   = "SAVE_STATE";
+    private static final String COMMAND_TOGGLE_RECORD_INPUTS         = "TOGGLE_RECORD_INPUTS";
+    private static final String COMMAND_TOGGLE_RECORD_HISTORY        = "TOGGLE_RECORD_HISTORY";
     private static final String COMMAND_QUIT                         = "QUIT";
     private static final String COMMAND_ABOUT                        = "ABOUT";
     private static final String COMMAND_TEST                         = "TEST";
@@ -219,6 +231,11 @@ public class EmulatorUI extends JFrame implements ActionListener {
     private JCheckBoxMenuItem screenEmulatorMenuItem;
 
     private JCheckBoxMenuItem frontPanelMenuItem;
+    private JCheckBoxMenuItem recordInputsMenuItem;
+    private JCheckBoxMenuItem recordHistoryMenuItem;
+    private JMenuItem[] stepBackMenuItem          = new JMenuItem[2];
+    private JMenuItem[] runBackToBreakpointMenuItem = new JMenuItem[2];
+    private JMenuItem[] runBackToLastWriteMenuItem  = new JMenuItem[2];
 
     private JCheckBoxMenuItem[] disassemblyMenuItem             = new JCheckBoxMenuItem[2];
     private JCheckBoxMenuItem[] memoryActivityViewerMenuItem    = new JCheckBoxMenuItem[2];
@@ -226,6 +243,7 @@ public class EmulatorUI extends JFrame implements ActionListener {
     private JCheckBoxMenuItem[] callStackMenuItem               = new JCheckBoxMenuItem[2];
     private JCheckBoxMenuItem[] iTronObjectMenuItem             = new JCheckBoxMenuItem[2];
     private JCheckBoxMenuItem[] iTronReturnStackMenuItem        = new JCheckBoxMenuItem[2];
+    private JCheckBoxMenuItem[] executionProfilerMenuItem       = new JCheckBoxMenuItem[2];
 
     private JMenuItem[]         analyseMenuItem        = new JMenuItem[2];
     private JCheckBoxMenuItem[] codeStructureMenuItem  = new JCheckBoxMenuItem[2];
@@ -294,6 +312,7 @@ public class EmulatorUI extends JFrame implements ActionListener {
 
     private ITronObjectFrame[] ITronObjectFrame = new ITronObjectFrame[2];
     private ITronReturnStackFrame[] iTronReturnStackFrame = new ITronReturnStackFrame[2];
+    private ExecutionProfilerFrame[] executionProfilerFrame = new ExecutionProfilerFrame[2];
 
     // Misc UI related fields
     private String[]  statusText     = {STATUS_DEFAULT_TEXT, STATUS_DEFAULT_TEXT};
@@ -861,6 +880,13 @@ public class EmulatorUI extends JFrame implements ActionListener {
         tmpMenuItem.addActionListener(this);
         fileMenu.add(tmpMenuItem);
 
+        //Record inputs
+        recordInputsMenuItem = new JCheckBoxMenuItem("Record inputs");
+        recordInputsMenuItem.setToolTipText("Record buttons, lens, A/D values and interrupts so that the run can be replayed by RegressionRunner");
+        recordInputsMenuItem.setActionCommand(COMMAND_TOGGLE_RECORD_INPUTS);
+        recordInputsMenuItem.addActionListener(this);
+        fileMenu.add(recordInputsMenuItem);
+
         fileMenu.add(new JSeparator());
 
         //quit
@@ -926,6 +952,35 @@ public class EmulatorUI extends JFrame implements ActionListener {
             }
         }
 
+        runMenu.add(new JSeparator());
+
+        //record history
+        recordHistoryMenuItem = new JCheckBoxMenuItem("Record history");
+        recordHistoryMenuItem.setToolTipText("Take periodic checkpoints so that execution can go backwards");
+        recordHistoryMenuItem.setActionCommand(COMMAND_TOGGLE_RECORD_HISTORY);
+        recordHistoryMenuItem.addActionListener(this);
+        runMenu.add(recordHistoryMenuItem);
+
+        for (int chip = 0; chip < 2; chip++) {
+            //step back
+            stepBackMenuItem[chip] = new JMenuItem("Step " + Constants.CHIP_LABEL[chip] + " emulator back");
+            stepBackMenuItem[chip].setActionCommand(COMMAND_STEP_BACK[chip]);
+            stepBackMenuItem[chip].addActionListener(this);
+            runMenu.add(stepBackMenuItem[chip]);
+
+            //run back to breakpoint
+            runBackToBreakpointMenuItem[chip] = new JMenuItem("Run " + Constants.CHIP_LABEL[chip] + " emulator back to breakpoint");
+            runBackToBreakpointMenuItem[chip].setActionCommand(COMMAND_RUN_BACK_TO_BREAKPOINT[chip]);
+            runBackToBreakpointMenuItem[chip].addActionListener(this);
+            runMenu.add(runBackToBreakpointMenuItem[chip]);
+
+            //run back to last write
+            runBackToLastWriteMenuItem[chip] = new JMenuItem("Run " + Constants.CHIP_LABEL[chip] + " emulator back to last write to address...");
+            runBackToLastWriteMenuItem[chip].setActionCommand(COMMAND_RUN_BACK_TO_LAST_WRITE[chip]);
+            runBackToLastWriteMenuItem[chip].addActionListener(this);
+            runMenu.add(runBackToLastWriteMenuItem[chip]);
+        }
+
         //Set up the components menu.
         JMenu componentsMenu = new JMenu("Components");
         componentsMenu.setMnemonic(KeyEvent.VK_O);
@@ -1054,6 +1109,12 @@ public class EmulatorUI extends JFrame implements ActionListener {
             iTronReturnStackMenuItem[chip].addActionListener(this);
             traceMenu.add(iTronReturnStackMenuItem[chip]);
 
+            //µITRON Execution profiler
+            executionProfilerMenuItem[chip] = new JCheckBoxMenuItem("µITRON " + Constants.CHIP_LABEL[chip] + " Execution profiler");
+            executionProfilerMenuItem[chip].setActionCommand(COMMAND_TOGGLE_EXECUTION_PROFILER_WINDOW[chip]);
+            executionProfilerMenuItem[chip].addActionListener(this);
+            traceMenu.add(executionProfilerMenuItem[chip]);
+
             traceMenu.add(new JSeparator());
         }
 
@@ -1199,6 +1260,15 @@ public class EmulatorUI extends JFrame implements ActionListener {
         else if ((chip = getChipCommandMatchingAction(e, COMMAND_SETUP_BREAKPOINTS)) != Constants.CHIP_NONE) {
             toggleBreakTriggerList(chip);
         }
+        else if ((chip = getChipCommandMatchingAction(e, COMMAND_STEP_BACK)) != Constants.CHIP_NONE) {
+            stepBack(chip);
+        }
+        else if ((chip = getChipCommandMatchingAction(e, COMMAND_RUN_BACK_TO_BREAKPOINT)) != Constants.CHIP_NONE) {
+            runBackToBreakpoint(chip);
+        }
+        else if ((chip = getChipCommandMatchingAction(e, COMMAND_RUN_BACK_TO_LAST_WRITE)) != Constants.CHIP_NONE) {
+            runBackToLastWrite(chip);
+        }
         else if ((chip = getChipCommandMatchingAction(e, COMMAND_TOGGLE_MEMORY_HEX_EDITOR)) != Constants.CHIP_NONE) {
             toggleMemoryHexEditor(chip);
         }
@@ -1226,6 +1296,9 @@ public class EmulatorUI extends JFrame implements ActionListener {
         else if ((chip = getChipCommandMatchingAction(e, COMMAND_TOGGLE_ITRON_RETURN_STACK_WINDOW)) != Constants.CHIP_NONE) {
             toggleITronReturnStack(chip);
         }
+        else if ((chip = getChipCommandMatchingAction(e, COMMAND_TOGGLE_EXECUTION_PROFILER_WINDOW)) != Constants.CHIP_NONE) {
+            toggleExecutionProfiler(chip);
+        }
         else if ((chip = getChipCommandMatchingAction(e, COMMAND_SAVE_LOAD_MEMORY)) != Constants.CHIP_NONE) {
             openSaveLoadMemoryDialog(chip);
         }
@@ -1274,6 +1347,12 @@ public class EmulatorUI extends JFrame implements ActionListener {
         else if (COMMAND_SAVE_STATE.equals(e.getActionCommand())) {
             saveState();
         }
+        else if (COMMAND_TOGGLE_RECORD_INPUTS.equals(e.getActionCommand())) {
+            toggleRecordInputs();
+        }
+        else if (COMMAND_TOGGLE_RECORD_HISTORY.equals(e.getActionCommand())) {
+            toggleRecordHistory();
+        }
         else if (COMMAND_TOGGLE_SCREEN_EMULATOR.equals(e.getActionCommand())) {
             toggleScreenEmulator();
         }
@@ -1433,7 +1512,10 @@ public class EmulatorUI extends JFrame implements ActionListener {
                     final String source = sourceFile.getAbsolutePath();
                     setTitle(ApplicationInfo.getNameVersion() + " - Loading...");
 
-                    framework = EmulationFramework.load(source, prefs);
+                    EmulationFramework loadedFramework = EmulationFramework.load(source, prefs);
+                    framework.disposePlatforms();
+                    framework = loadedFramework;
+                    recordInputsMenuItem.setSelected(false);
                     framework.setupCallbacks(getCallbackHandler(0), getCallbackHandler(1));
                     framework.getMasterClock().setSyncPlay(prefs.isSyncPlay());
                     setTitle(ApplicationInfo.getNameVersion() + " - Loaded " + source);
@@ -1481,6 +1563,182 @@ public class EmulatorUI extends JFrame implements ActionListener {
         }
     }
 
+    private static final String JOURNAL_EXTENSION = ".journal.txt";
+
+    /**
+     * Starts recording inputs, or stops and saves them. To replay from a state instead of from a reset,
+     * save the state just before starting to record
+     */
+    private void toggleRecordInputs() {
+        MasterClock masterClock = framework.getMasterClock();
+        if (recordInputsMenuItem.isSelected()) {
+            masterClock.setInputJournal(new InputJournal(framework));
+            if (masterClock.getExecutionHistory() != null) {
+                // History must follow the new journal, so restart it
+                new ExecutionHistory(framework, prefs);
+            }
+            setStatusText(Constants.CHIP_TX, "Recording inputs from " + masterClock.getFormatedTotalElapsedTimeMs());
+        }
+        else {
+            InputJournal inputJournal = masterClock.getInputJournal();
+            if (masterClock.getExecutionHistory() == null) {
+                masterClock.setInputJournal(null);
+            }
+            if (inputJournal == null || inputJournal.getInputs().isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No input was recorded", "Done", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            final JFileChooser fc = new JFileChooser();
+            fc.setDialogTitle("Select destination file");
+            fc.setCurrentDirectory(new java.io.File("."));
+            fc.setFileSelectionMode(JFileChooser.FILES_ONLY);
+            fc.setFileFilter(Format.createFilter(JOURNAL_EXTENSION, "Input journal (*" + JOURNAL_EXTENSION + ")"));
+            if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                File destinationFile = fc.getSelectedFile();
+                if (!(destinationFile.getAbsolutePath().toLowerCase().endsWith(JOURNAL_EXTENSION))) {
+                    destinationFile = new File(destinationFile.getAbsolutePath() + JOURNAL_EXTENSION);
+                }
+                try {
+                    inputJournal.save(destinationFile);
+                    setStatusText(Constants.CHIP_TX, inputJournal.getInputs().size() + " inputs saved to " + destinationFile.getName());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    JOptionPane.showMessageDialog(this, "Error saving input journal\n" + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts or stops taking the checkpoints used to go back in time
+     */
+    private void toggleRecordHistory() {
+        if (recordHistoryMenuItem.isSelected()) {
+            String problem = null;
+            if (framework.isImageLoaded(Constants.CHIP_FR) && framework.isImageLoaded(Constants.CHIP_TX) && !prefs.isSyncPlay()) {
+                problem = "History requires sync play when both chips are loaded";
+            }
+            for (int chip = 0; chip < 2; chip++) {
+                if (framework.isImageLoaded(chip) && prefs.isIdleLoopFastForward(chip)) {
+                    problem = "History requires idle loop fast-forward to be disabled in " + Constants.CHIP_LABEL[chip] + " options";
+                }
+            }
+            if (problem != null) {
+                JOptionPane.showMessageDialog(this, problem, "Error", JOptionPane.ERROR_MESSAGE);
+                recordHistoryMenuItem.setSelected(false);
+                return;
+            }
+            // spying frames insert IO forwarding pins that cannot be part of checkpoints
+            closeAllSpyFrames();
+            new ExecutionHistory(framework, prefs);
+            setStatusText(Constants.CHIP_TX, "Recording history from " + framework.getMasterClock().getFormatedTotalElapsedTimeMs());
+        }
+        else {
+            stopRecordingHistory();
+        }
+        updateStates();
+    }
+
+    private void stopRecordingHistory() {
+        MasterClock masterClock = framework.getMasterClock();
+        if (masterClock.getExecutionHistory() != null) {
+            masterClock.setExecutionHistory(null);
+            if (!recordInputsMenuItem.isSelected()) {
+                masterClock.setInputJournal(null);
+            }
+        }
+    }
+
+    private void stepBack(final int chip) {
+        goBack(chip, "previous instruction", new Callable<EmulationFramework>() {
+            @Override
+            public EmulationFramework call() {
+                return framework.getMasterClock().getExecutionHistory().stepBack(chip);
+            }
+        });
+    }
+
+    private void runBackToBreakpoint(final int chip) {
+        final Set<Integer> pcs = new HashSet<>();
+        for (BreakTrigger breakTrigger : prefs.getTriggers(chip)) {
+            if (breakTrigger.isActive() && breakTrigger.getCpuStateFlags().pc != 0) {
+                pcs.add(breakTrigger.getCpuStateValues().getPc() & ~1);
+            }
+        }
+        if (pcs.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No active breakpoint on a " + Constants.CHIP_LABEL[chip] + " address", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        goBack(chip, "breakpoint", new Callable<EmulationFramework>() {
+            @Override
+            public EmulationFramework call() {
+                return framework.getMasterClock().getExecutionHistory().runBackToBreakpoint(chip, pcs);
+            }
+        });
+    }
+
+    private void runBackToLastWrite(final int chip) {
+        String value = JOptionPane.showInputDialog(this, "Address", "0x");
+        if (value == null) {
+            return;
+        }
+        final int address;
+        try {
+            address = Format.parseUnsigned(value.trim());
+        } catch (ParsingException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        goBack(chip, "write to 0x" + Format.asHex(address, 8), new Callable<EmulationFramework>() {
+            @Override
+            public EmulationFramework call() {
+                return framework.getMasterClock().getExecutionHistory().runBackToLastWrite(chip, address);
+            }
+        });
+    }
+
+    /**
+     * Re-executes from checkpoints, then continues with the framework returned by the given search, if any
+     * @param target what is searched, for messages
+     */
+    private void goBack(int chip, String target, Callable<EmulationFramework> search) {
+        if (framework.getMasterClock().getExecutionHistory() == null) {
+            JOptionPane.showMessageDialog(this, "History is not being recorded", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (framework.getMasterClock().isRunning()) {
+            JOptionPane.showMessageDialog(this, "Emulation must be paused first", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        EmulationFramework pastFramework;
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        try {
+            pastFramework = search.call();
+        } catch (Exception e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error going back in time\n" + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        } finally {
+            setCursor(Cursor.getDefaultCursor());
+        }
+        if (pastFramework == null) {
+            setStatusText(chip, "No " + target + " found in history");
+            return;
+        }
+        framework.disposePlatforms();
+        framework = pastFramework;
+        framework.setupCallbacks(getCallbackHandler(0), getCallbackHandler(1));
+        framework.getMasterClock().setSyncPlay(prefs.isSyncPlay());
+        // Frames are linked to the components of the previous framework
+        for (int c = 0; c < 2; c++) {
+            if (framework.isImageLoaded(c)) {
+                closeAllFrames(c, true);
+            }
+        }
+        setStatusText(chip, "Back to " + target + " at " + framework.getMasterClock().getFormatedTotalElapsedTimeMs());
+        updateStates();
+    }
+
     private void openGenerateSysSymbolsDialog() {
         GenerateSysSymbolsDialog generateSysSymbolsDialog = new GenerateSysSymbolsDialog(this, framework.getPlatform(Constants.CHIP_FR).getMemory());
         generateSysSymbolsDialog.startGeneration();
@@ -1703,6 +1961,9 @@ public class EmulatorUI extends JFrame implements ActionListener {
             setProgrammableTimerAnimationEnabled(chip, true);
         }
 
+        // The run starting now cannot be replayed from previous checkpoints
+        stopRecordingHistory();
+
         framework.initialize(chip, imageFile[chip]);
 
         setTitle(ApplicationInfo.getNameVersion() + " - " + (imageFile[Constants.CHIP_FR]==null?"(none)":imageFile[Constants.CHIP_FR].getName()) + " / " + (imageFile[Constants.CHIP_TX]==null?"(none)":imageFile[Constants.CHIP_TX].getName()));
@@ -1939,6 +2200,11 @@ public class EmulatorUI extends JFrame implements ActionListener {
         emulationOptionsPanel.add(dmaSynchronousCheckBox);
         emulationOptionsPanel.add(new JLabel("If checked, DMA operations will be performed immediately, pausing the CPU. Otherwise they are performed in a separate thread."));
 
+        final JCheckBox idleLoopFastForwardCheckBox = new JCheckBox("Fast-forward idle loops");
+        idleLoopFastForwardCheckBox.setSelected(prefs.isIdleLoopFastForward(chip));
+        emulationOptionsPanel.add(idleLoopFastForwardCheckBox);
+        emulationOptionsPanel.add(new JLabel("If checked, loops that only wait for an interrupt are not executed, and time jumps to the next timer or serial event. Uncheck to get exact traces."));
+
         final JCheckBox autoEnableTimersCheckBox = new JCheckBox("Auto enable timers");
         autoEnableTimersCheckBox.setSelected(prefs.isAutoEnableTimers(chip));
         emulationOptionsPanel.add(autoEnableTimersCheckBox);
@@ -2076,6 +2342,7 @@ public class EmulatorUI extends JFrame implements ActionListener {
             // save other prefs
             prefs.setFirmwareWriteProtected(chip, writeProtectFirmwareCheckBox.isSelected());
             prefs.setDmaSynchronous(chip, dmaSynchronousCheckBox.isSelected());
+            prefs.setIdleLoopFastForward(chip, idleLoopFastForwardCheckBox.isSelected());
             prefs.setAutoEnableTimers(chip, autoEnableTimersCheckBox.isSelected());
             prefs.setLogRegisterMessages(chip, logRegisterMessagesCheckBox.isSelected());
             prefs.setLogSerialMessages(chip, logSerialMessagesCheckBox.isSelected());
@@ -2329,6 +2596,11 @@ public class EmulatorUI extends JFrame implements ActionListener {
             iTronReturnStackFrame[chip] = null;
             if (mustReOpen) toggleITronReturnStack(chip);
         }
+        if (executionProfilerFrame[chip] != null) {
+            executionProfilerFrame[chip].dispose();
+            executionProfilerFrame[chip] = null;
+            if (mustReOpen) toggleExecutionProfiler(chip);
+        }
     }
 
     private final void closeSpyFrames(int chip, boolean mustReOpen) {
@@ -2640,6 +2912,20 @@ public class EmulatorUI extends JFrame implements ActionListener {
         updateState(chip);
     }
 
+    private void toggleExecutionProfiler(int chip) {
+        if (executionProfilerFrame[chip] == null) {
+            executionProfilerFrame[chip] = new ExecutionProfilerFrame("µITRON Execution profiler", "timer", true, true, false, true, chip, this, framework.getEmulator(chip), framework.getPlatform(chip).getMemory(), framework.getCodeStructure(chip));
+            executionProfilerFrame[chip].setAutoRefresh(framework.isEmulatorPlaying(chip));
+            addDocumentFrame(chip, executionProfilerFrame[chip]);
+            executionProfilerFrame[chip].display(true);
+        }
+        else {
+            executionProfilerFrame[chip].dispose();
+            executionProfilerFrame[chip] = null;
+        }
+        updateState(chip);
+    }
+
     private void toggleCodeStructureWindow(int chip) {
         if (codeStructureFrame[chip] == null) {
             codeStructureFrame[chip] = new CodeStructureFrame("Code structure", "code_structure", true, true, true, true, chip, this, framework.getPlatform(chip).getCpuState(), framework.getCodeStructure(chip));
@@ -2742,6 +3028,9 @@ public class EmulatorUI extends JFrame implements ActionListener {
                 else if (frame == iTronReturnStackFrame[chip]) {
                     toggleITronReturnStack(chip); return;
                 }
+                else if (frame == executionProfilerFrame[chip]) {
+                    toggleExecutionProfiler(chip); return;
+                }
             }
         System.err.println("EmulatorUI.frameClosing : Unknown frame is being closed. Please add handler for " + frame.getClass().getSimpleName());
     }
@@ -2766,6 +3055,8 @@ public class EmulatorUI extends JFrame implements ActionListener {
 
         if (chip == Constants.CHIP_FR) {
             frontPanelMenuItem.setSelected(frontPanelFrame != null);
+            // History may have been disabled by a failed checkpoint, or replaced by another framework
+            recordHistoryMenuItem.setSelected(framework.getMasterClock().getExecutionHistory() != null);
 
             frontPanelMenuItem.setEnabled(framework.isImageLoaded(Constants.CHIP_TX));
         }
@@ -2819,6 +3110,7 @@ public class EmulatorUI extends JFrame implements ActionListener {
         iTronObjectMenuItem[chip].setEnabled(framework.isImageLoaded(chip));
         iTronObjectButton[chip].setEnabled(framework.isImageLoaded(chip));
         iTronReturnStackMenuItem[chip].setEnabled(framework.isImageLoaded(chip));
+        executionProfilerMenuItem[chip].setEnabled(framework.isImageLoaded(chip));
 
         saveLoadMemoryMenuItem[chip].setEnabled(framework.isImageLoaded(chip));
         saveLoadMemoryButton[chip].setEnabled(framework.isImageLoaded(chip));
@@ -2837,14 +3129,22 @@ public class EmulatorUI extends JFrame implements ActionListener {
             // coderat: opening of IO Ports window or other spying window with runing emulation may cause unpredictable results,
             // because it runs asynchronously. In constructor a pin will be inserted in the middle of connection by 2
             // consequent calls that may fail to transfer value correctly in another thread !
-            serialDevicesMenuItem[chip].setEnabled(!framework.isEmulatorPlaying(chip)); if (chip==Constants.CHIP_TX) serialDevicesButton[chip].setEnabled(!framework.isEmulatorPlaying(chip));
-            serialInterfacesMenuItem[chip].setEnabled(!framework.isEmulatorPlaying(chip)); serialInterfacesButton[chip].setEnabled(!framework.isEmulatorPlaying(chip));
-            ioPortsMenuItem[chip].setEnabled(!framework.isEmulatorPlaying(chip)); ioPortsButton[chip].setEnabled(!framework.isEmulatorPlaying(chip));
+            // Spying windows are not allowed either while recording history, as pins cannot be part of checkpoints
+            boolean spyAllowed = !framework.isEmulatorPlaying(chip) && framework.getMasterClock().getExecutionHistory() == null;
+            serialDevicesMenuItem[chip].setEnabled(spyAllowed); if (chip==Constants.CHIP_TX) serialDevicesButton[chip].setEnabled(spyAllowed);
+            serialInterfacesMenuItem[chip].setEnabled(spyAllowed); serialInterfacesButton[chip].setEnabled(spyAllowed);
+            ioPortsMenuItem[chip].setEnabled(spyAllowed); ioPortsButton[chip].setEnabled(spyAllowed);
+            // Going back is only possible while stopped
+            boolean historyAvailable = !framework.isEmulatorPlaying(chip) && framework.getMasterClock().getExecutionHistory() != null;
+            stepBackMenuItem[chip].setEnabled(historyAvailable);
+            runBackToBreakpointMenuItem[chip].setEnabled(historyAvailable);
+            runBackToLastWriteMenuItem[chip].setEnabled(historyAvailable);
 
             // Editable components
             if (cpuStateEditorFrame[chip] != null) cpuStateEditorFrame[chip].setEditable(!framework.isEmulatorPlaying(chip));
             if (memoryHexEditorFrame[chip] != null) memoryHexEditorFrame[chip].setEditable(!framework.isEmulatorPlaying(chip));
             if (callStackFrame[chip] != null) callStackFrame[chip].setAutoRefresh(framework.isEmulatorPlaying(chip));
+            if (executionProfilerFrame[chip] != null) executionProfilerFrame[chip].setAutoRefresh(framework.isEmulatorPlaying(chip));
             if (ITronObjectFrame[chip] != null) ITronObjectFrame[chip].enableUpdate(!framework.isEmulatorPlaying(chip));
             if (iTronReturnStackFrame[chip] != null) iTronReturnStackFrame[chip].enableUpdate(!framework.isEmulatorPlaying(chip));
             if (breakTriggerListFrame[chip] != null) breakTriggerListFrame[chip].setEditable(!framework.isEmulatorPlaying(chip));
@@ -2862,11 +3162,15 @@ public class EmulatorUI extends JFrame implements ActionListener {
             serialDevicesMenuItem[chip].setEnabled(false); if (chip==Constants.CHIP_TX) serialDevicesButton[chip].setEnabled(false);
             serialInterfacesMenuItem[chip].setEnabled(false); serialInterfacesButton[chip].setEnabled(false);
             ioPortsMenuItem[chip].setEnabled(false); ioPortsButton[chip].setEnabled(false);
+            stepBackMenuItem[chip].setEnabled(false);
+            runBackToBreakpointMenuItem[chip].setEnabled(false);
+            runBackToLastWriteMenuItem[chip].setEnabled(false);
 
             // Editable components  TODO does it make sense ? And why true ?
             if (cpuStateEditorFrame[chip] != null) cpuStateEditorFrame[chip].setEditable(true);
             if (memoryHexEditorFrame[chip] != null) memoryHexEditorFrame[chip].setEditable(true);
             if (callStackFrame[chip] != null) callStackFrame[chip].setAutoRefresh(false);
+            if (executionProfilerFrame[chip] != null) executionProfilerFrame[chip].setAutoRefresh(false);
             if (ITronObjectFrame[chip] != null) ITronObjectFrame[chip].enableUpdate(true);
             if (iTronReturnStackFrame[chip] != null) iTronReturnStackFrame[chip].enableUpdate(true);
             if (breakTriggerListFrame[chip] != null) breakTriggerListFrame[chip].setEditable(true);
@@ -2944,9 +3248,9 @@ public class EmulatorUI extends JFrame implements ActionListener {
         dispose();
     }
 
-    public TrackingMemoryActivityListener getTrackingMemoryActivityListener(int chip) {
+    public MemoryAccessStatistics.Snapshot getMemoryAccessSnapshot(int chip) {
         if (memoryActivityViewerFrame[chip] != null) {
-            return memoryActivityViewerFrame[chip].getTrackingMemoryActivityListener();
+            return memoryActivityViewerFrame[chip].getSnapshot();
         }
         else {
             return null;
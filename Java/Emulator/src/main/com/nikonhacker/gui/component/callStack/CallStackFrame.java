@@ -6,6 +6,7 @@ import com.nikonhacker.disassembly.CPUState;
 import com.nikonhacker.disassembly.CodeStructure;
 import com.nikonhacker.disassembly.Instruction;
 import com.nikonhacker.disassembly.ParsingException;
+import com.nikonhacker.emu.CallStack;
 import com.nikonhacker.emu.CallStackItem;
 import com.nikonhacker.emu.Emulator;
 import com.nikonhacker.gui.EmulatorUI;
@@ -22,7 +23,6 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.Serializable;
-import java.util.LinkedList;
 
 
 public class CallStackFrame extends DocumentFrame {
@@ -32,7 +32,7 @@ public class CallStackFrame extends DocumentFrame {
 
     private Emulator emulator;
     private CPUState cpuState;
-    private final LinkedList<CallStackItem> callStack;
+    private final CallStack callStack;
 
     private static final int UPDATE_INTERVAL_MS = 100; // 10fps
 
@@ -49,7 +49,7 @@ public class CallStackFrame extends DocumentFrame {
 
         setLayout(new BorderLayout());
 
-        callStack = new LinkedList<CallStackItem>();
+        callStack = new CallStack(chip, ui.getPrefs().getOutputOptions(chip));
 
         emulator.setCallStack(callStack);
 
@@ -141,8 +141,8 @@ public class CallStackFrame extends DocumentFrame {
     private void copyToClipboard() {
         String s = "0x" + Format.asHex(cpuState.pc, 8) + System.lineSeparator();
         boolean hideJumps = ui.getPrefs().isCallStackHideJumps(chip);
-        for (CallStackItem callStackItem : callStack) {
-            if (!(callStackItem.getInstruction().getFlowType() == Instruction.FlowType.JMP) || !hideJumps) {
+        for (CallStackItem callStackItem : callStack.snapshot()) {
+            if (isShown(callStackItem, hideJumps)) {
                 s += getFormattedElement(callStackItem) + System.lineSeparator();
             }
         }
@@ -151,21 +151,27 @@ public class CallStackFrame extends DocumentFrame {
         Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, selection);
     }
 
+    private boolean isShown(CallStackItem callStackItem, boolean hideJumps) {
+        return callStackItem.getInstruction() == null || !(callStackItem.getInstruction().getFlowType() == Instruction.FlowType.JMP) || !hideJumps;
+    }
+
     private void updateList() {
-        synchronized (callStack) {
-            DefaultListModel model = new DefaultListModel();
-            // Pseudo stack element
-            CallStackItem currentPositionItem = new CallStackItem(cpuState.pc, cpuState.pc, null, null, null);
-            model.addElement(currentPositionItem);
-            // Real stack
-            boolean hideJumps = ui.getPrefs().isCallStackHideJumps(chip);
-            for (CallStackItem callStackItem : callStack) {
-                if (callStackItem.getInstruction() == null || !(callStackItem.getInstruction().getFlowType() == Instruction.FlowType.JMP) || !hideJumps) {
-                    model.addElement(callStackItem);
-                }
+        DefaultListModel model = new DefaultListModel();
+        // Pseudo stack element
+        CallStackItem currentPositionItem = new CallStackItem(cpuState.pc, cpuState.pc);
+        model.addElement(currentPositionItem);
+        // Real stack. Items are only formatted when rendered
+        boolean hideJumps = ui.getPrefs().isCallStackHideJumps(chip);
+        for (CallStackItem callStackItem : callStack.snapshot()) {
+            if (isShown(callStackItem, hideJumps)) {
+                model.addElement(callStackItem);
             }
-            callStackList.setModel(model);
         }
+        callStackList.setModel(model);
+    }
+
+    private CallStackItem getListItem(int index) {
+        return (CallStackItem) callStackList.getModel().getElementAt(index);
     }
 
     private void showSource(int index) {
@@ -176,7 +182,7 @@ public class CallStackFrame extends DocumentFrame {
             }
             else {
                 // Real stack
-                ui.jumpToSource(chip, callStack.get(index - 1).getAddress());
+                ui.jumpToSource(chip, getListItem(index).getAddress());
             }
         }
     }
@@ -189,7 +195,7 @@ public class CallStackFrame extends DocumentFrame {
             }
             else {
                 // Real stack
-                ui.jumpToMemory(chip, callStack.get(index - 1).getSp());
+                ui.jumpToMemory(chip, getListItem(index).getSp());
             }
         }
     }
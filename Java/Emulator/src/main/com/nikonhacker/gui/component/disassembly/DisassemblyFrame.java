@@ -3,6 +3,9 @@ package com.nikonhacker.gui.component.disassembly;
 import com.nikonhacker.Constants;
 import com.nikonhacker.emu.AddressRange;
 import com.nikonhacker.emu.Emulator;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+import com.nikonhacker.emu.trace.BinaryTraceRecorder;
+import com.nikonhacker.emu.trace.TraceWriteListener;
 import com.nikonhacker.gui.EmulatorUI;
 import com.nikonhacker.gui.swing.DocumentFrame;
 import com.nikonhacker.gui.swing.PrintWriterArea;
@@ -25,6 +28,8 @@ public class DisassemblyFrame extends DocumentFrame implements LoggingStateChang
     private static final int ROWS    = 50;
     private static final int COLUMNS = 100;
 
+    private static final int DESTINATION_BINARY_FILE = 3;
+
     private Emulator emulator;
     private List<AddressRange> addressRanges;
     private       boolean editable;
@@ -32,6 +37,8 @@ public class DisassemblyFrame extends DocumentFrame implements LoggingStateChang
     private final JButton startStopButton;
 
     private DisassemblyLogger logger = new DisassemblyLogger();
+    private BinaryTraceRecorder traceRecorder;
+    private TraceWriteListener  traceWriteListener;
     private final JCheckBox         timestampCheckbox;
     private final JCheckBox         indentCheckbox;
     private final JCheckBox         instructionCheckbox;
@@ -97,6 +104,7 @@ public class DisassemblyFrame extends DocumentFrame implements LoggingStateChang
         destinationComboBox.addItem("to here");
         destinationComboBox.addItem("to file");
         destinationComboBox.addItem("to both");
+        destinationComboBox.addItem("to binary trace file");
         destinationComboBox.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
@@ -118,6 +126,10 @@ public class DisassemblyFrame extends DocumentFrame implements LoggingStateChang
                         // To here
                         logger.getWriters().add(disassemblyLog.getPrintWriter());
                         break;
+                    case DESTINATION_BINARY_FILE:
+                        // Only start/stop messages here. Trace file is created when logging starts
+                        logger.getWriters().add(disassemblyLog.getPrintWriter());
+                        break;
                     case 2:
                         // To here and file
                         logger.getWriters().add(disassemblyLog.getPrintWriter());
@@ -216,12 +228,52 @@ public class DisassemblyFrame extends DocumentFrame implements LoggingStateChang
             logger.clearIndent();
             logger.println("");
             logger.println("---- Starting realtime logging" + (addressRanges.isEmpty() ? "..." : (", limiting PC to " + addressRanges.size() + " range(s)...")));
+            if (destinationComboBox.getSelectedIndex() == DESTINATION_BINARY_FILE) {
+                startTraceRecorder();
+            }
             startStopButton.setText("Stop");
         }
         else {
+            if (traceRecorder != null) {
+                stopTraceRecorder();
+            }
             logger.println("---- Realtime logging stopped.");
             startStopButton.setText("Start");
         }
         updateControls(logging);
     }
+
+    private void startTraceRecorder() {
+        File file = new File(Constants.CHIP_LABEL[chip] + "_" + (new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss")).format(new Date()) + ".trace");
+        try {
+            traceRecorder = new BinaryTraceRecorder(file, chip, true);
+            traceRecorder.setRanges(addressRanges.isEmpty() ? null : addressRanges);
+            logger.println("---- Recording binary trace to " + file.getAbsolutePath() + ". Use BinaryTraceDecoder to read it.");
+            // Instructions go to the binary trace only
+            emulator.setDisassemblyLogger(null);
+            emulator.setTraceRecorder(traceRecorder);
+            traceWriteListener = new TraceWriteListener(traceRecorder, ui.getFramework().getMasterClock());
+            getMemory().addActivityListener(traceWriteListener);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(DisassemblyFrame.this, "Cannot write to " + file.getAbsolutePath(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void stopTraceRecorder() {
+        getMemory().removeActivityListener(traceWriteListener);
+        traceWriteListener = null;
+        emulator.setTraceRecorder(null);
+        emulator.setDisassemblyLogger(logger);
+        try {
+            traceRecorder.close();
+            logger.println("---- Binary trace " + traceRecorder.getFile().getAbsolutePath() + " closed.");
+        } catch (IOException e) {
+            logger.println("---- Error writing binary trace " + traceRecorder.getFile().getAbsolutePath() + ": " + e.getMessage());
+        }
+        traceRecorder = null;
+    }
+
+    private DebuggableMemory getMemory() {
+        return ui.getFramework().getPlatform(chip).getMemory();
+    }
 }
@@ -1,9 +1,11 @@
 package com.nikonhacker.gui.component.frontPanel;
 
+import com.nikonhacker.emu.journal.InputJournal;
 import com.nikonhacker.emu.peripherials.frontPanel.CameraButton;
 import com.nikonhacker.emu.peripherials.frontPanel.CameraLed;
 import com.nikonhacker.emu.peripherials.frontPanel.FrontPanel;
 import com.nikonhacker.emu.peripherials.frontPanel.LedStateChangeListener;
+import com.nikonhacker.emu.peripherials.ioPort.Pin;
 import com.nikonhacker.gui.EmulatorUI;
 import com.nikonhacker.gui.swing.BitmapToggleButton;
 import com.nikonhacker.gui.swing.DocumentFrame;
@@ -61,7 +63,7 @@ public class FrontPanelFrame extends DocumentFrame {
         button.addStateChangeListener(new StateChangeAdapter () {
             @Override
             public void onStateChange(int state) {
-                cameraButton.setState(state);
+                ui.getFramework().submitInput(new InputJournal.Input(InputJournal.InputType.BUTTON, chip, cameraButton.getKey(), state));
             }
         });
         panel.add(button);
@@ -78,8 +80,8 @@ public class FrontPanelFrame extends DocumentFrame {
             public void onValueChange(int newValue) {
                 SwingUtilities.invokeLater(new Runnable() {
                     public void run(){
-                        Integer value = cameraLed.getPin().getInputValue();
-                        if (value==null) {
+                        int value = cameraLed.getPin().getInputValue();
+                        if (value==Pin.HIGH_Z) {
                             value = 0;
                         }
                         if (value==0) {
@@ -12,6 +12,8 @@ import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Timer;
 
 /**
@@ -25,6 +27,7 @@ public abstract class InterruptControllerFrame extends DocumentFrame {
 
     private       javax.swing.Timer refreshTimer;
     private final JList             interruptQueueJList;
+    private List<InterruptRequest>  displayedRequests = new ArrayList<InterruptRequest>();
     private final JLabel            statusText;
 
     Timer interruptTimer = null;
@@ -67,7 +70,7 @@ public abstract class InterruptControllerFrame extends DocumentFrame {
             public void actionPerformed(ActionEvent e) {
                 int selectedIndex = interruptQueueJList.getSelectedIndex();
                 if (selectedIndex != -1) {
-                    interruptController.getInterruptRequestQueue().remove(selectedIndex);
+                    interruptController.removeRequest(displayedRequests.get(selectedIndex));
                     updateList();
                 }
             }
@@ -102,14 +105,13 @@ public abstract class InterruptControllerFrame extends DocumentFrame {
 
     private void updateList() {
         statusText.setText(interruptController.getStatus());
-        synchronized (interruptController.getInterruptRequestQueue()) {
-            DefaultListModel model = new DefaultListModel();
-            // Real stack
-            for (InterruptRequest request : interruptController.getInterruptRequestQueue()) {
-                model.addElement(request.toString());
-            }
-            interruptQueueJList.setModel(model);
+        // Queue returned by the controller is a snapshot, so it can be iterated freely
+        displayedRequests = interruptController.getInterruptRequestQueue();
+        DefaultListModel model = new DefaultListModel();
+        for (InterruptRequest request : displayedRequests) {
+            model.addElement(request.toString());
         }
+        interruptQueueJList.setModel(model);
     }
 
     protected void updateInterruptListRefreshTimer() {
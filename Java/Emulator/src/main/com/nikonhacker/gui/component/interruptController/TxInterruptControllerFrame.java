@@ -2,6 +2,7 @@ package com.nikonhacker.gui.component.interruptController;
 
 import com.nikonhacker.Constants;
 import com.nikonhacker.Format;
+import com.nikonhacker.emu.journal.InputJournal;
 import com.nikonhacker.emu.memory.Memory;
 import com.nikonhacker.emu.peripherials.interruptController.InterruptController;
 import com.nikonhacker.emu.peripherials.interruptController.tx.TxInterruptController;
@@ -44,7 +45,7 @@ public class TxInterruptControllerFrame extends InterruptControllerFrame {
                 int interruptNumber = button.getValue();
 
                 String interruptName = "Interrupt " + button.getText() + " (" + interruptNumber + ")";
-                if (interruptController.request(interruptNumber)) {
+                if (ui.getFramework().submitInput(new InputJournal.Input(InputJournal.InputType.INTERRUPT, Constants.CHIP_TX, null, interruptNumber))) {
                     ui.setStatusText(Constants.CHIP_TX, interruptName + " was requested.");
                 }
                 else {
@@ -147,7 +148,7 @@ public class TxInterruptControllerFrame extends InterruptControllerFrame {
         interruptTimer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
-                interruptController.request(interruptNumber);
+                ui.getFramework().submitInput(new InputJournal.Input(InputJournal.InputType.INTERRUPT, Constants.CHIP_TX, null, interruptNumber));
             }
         }, 0, interval);
         ui.setStatusText(Constants.CHIP_FR, "Interrupt 0x" + Format.asHex(interruptNumber, 2) + " will be requested every " + interval + "ms");
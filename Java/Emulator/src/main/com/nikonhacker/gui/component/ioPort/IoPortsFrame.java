@@ -282,8 +282,8 @@ public class IoPortsFrame extends DocumentFrame implements IoPortConfigListener
                 // input is disabled
                 pinComp = pinDisabledInputs[portNumber][7 - bitNumber];
             }
-            Integer inputValue = pin.getInputValue();
-            if (inputValue == null) {
+            int inputValue = pin.getInputValue();
+            if (inputValue == Pin.HIGH_Z) {
                 if ((ioPorts[portNumber].getPullUp()&(1<<bitNumber))!=0)
                     border = BORDER_PULLUP;
                 else
@@ -299,9 +299,9 @@ public class IoPortsFrame extends DocumentFrame implements IoPortConfigListener
         else {
             // pin is configured as output
             pinComp = pinOutputs[portNumber][7 - bitNumber];
-            Integer outputValue = pin.getOutputValue();
-            if (outputValue == null) {
-                if (ui.getPrefs().isLogPinMessages(chip)) System.err.println("OutputValue is null for pin " + pin.getName());
+            int outputValue = pin.getOutputValue();
+            if (outputValue == Pin.HIGH_Z) {
+                if (ui.getPrefs().isLogPinMessages(chip)) System.err.println("OutputValue is HIGH_Z for pin " + pin.getName());
                 ((JLabel)pinComp).setText(Constants.LABEL_HIZ);
                 color = Constants.COLOR_HIZ;
                 border = BORDER_HIZ;
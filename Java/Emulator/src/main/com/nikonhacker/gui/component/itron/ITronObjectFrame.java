@@ -26,7 +26,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.EnumSet;
+import java.util.List;
 
 public class ITronObjectFrame extends DocumentFrame {
 
@@ -236,86 +236,24 @@ public class ITronObjectFrame extends DocumentFrame {
         pack();
     }
 
-    public void updateTaskList(int chip) {
-        taskInformationList.clear();
-        int taskNumber = 1;
-        TaskInformation taskInformation = sysCallEnvironment.getTaskInformation(chip, taskNumber);
-        while (!EnumSet.of(ErrorCode.E_ID, ErrorCode.E_EMULATOR).contains(taskInformation.getErrorCode()) && taskNumber < 100) {
-            taskInformationList.add(taskInformation);
-            taskNumber++;
-            taskInformation = sysCallEnvironment.getTaskInformation(chip, taskNumber);
+    private <T> void updateList(int chip, EventList<T> list, List<T> objects, boolean emulatorError, JPanel panel, JScrollPane scroller) {
+        list.getReadWriteLock().writeLock().lock();
+        try {
+            list.clear();
+            list.addAll(objects);
         }
-
-        taskPanel.removeAll();
-        if (taskInformation.getErrorCode() == ErrorCode.E_EMULATOR) {
-            taskPanel.add(getSyscallNotFountErrorLabel(chip), BorderLayout.CENTER);
-        }
-        else {
-            taskPanel.add(taskScroller, BorderLayout.CENTER);
-        }
-        taskPanel.revalidate();
-    }
-
-    public void updateSemaphoreList(int chip) {
-        semaphoreInformationList.clear();
-        int semaphoreNumber = 1;
-        SemaphoreInformation semaphoreInformation = sysCallEnvironment.getSemaphoreInformation(chip, semaphoreNumber);
-        while (semaphoreInformation.getErrorCode() == ErrorCode.E_OK) {
-            semaphoreInformationList.add(semaphoreInformation);
-            semaphoreNumber++;
-            semaphoreInformation = sysCallEnvironment.getSemaphoreInformation(chip, semaphoreNumber);
-        }
-
-        semaphorePanel.removeAll();
-        if (semaphoreInformation.getErrorCode() == ErrorCode.E_EMULATOR) {
-            semaphorePanel.add(getSyscallNotFountErrorLabel(chip), BorderLayout.CENTER);
-        }
-        else {
-            semaphorePanel.add(semaphoreScroller, BorderLayout.CENTER);
-        }
-        semaphorePanel.revalidate();
-    }
-
-
-    public void updateEventFlagList(int chip) {
-        eventFlagInformationList.clear();
-        int eventFlagNumber = 1;
-        EventFlagInformation eventFlagInformation = sysCallEnvironment.getEventFlagInformation(chip, eventFlagNumber);
-        while (eventFlagInformation.getErrorCode() == ErrorCode.E_OK) {
-            eventFlagInformationList.add(eventFlagInformation);
-            eventFlagNumber++;
-            eventFlagInformation = sysCallEnvironment.getEventFlagInformation(chip, eventFlagNumber);
-        }
-
-        eventFlagPanel.removeAll();
-        if (eventFlagInformation.getErrorCode() == ErrorCode.E_EMULATOR) {
-            eventFlagPanel.add(getSyscallNotFountErrorLabel(chip), BorderLayout.CENTER);
-        }
-        else {
-            eventFlagPanel.add(eventFlagScroller, BorderLayout.CENTER);
-        }
-        eventFlagPanel.revalidate();
-    }
-
-
-    public void updateMailboxList(int chip) {
-        mailboxInformationList.clear();
-        int mailboxNumber = 1;
-        MailboxInformation mailboxInformation = sysCallEnvironment.getMailboxInformation(chip, mailboxNumber);
-        while (mailboxInformation.getErrorCode() == ErrorCode.E_OK) {
-            mailboxInformationList.add(mailboxInformation);
-            mailboxNumber++;
-            mailboxInformation = sysCallEnvironment.getMailboxInformation(chip, mailboxNumber);
+        finally {
+            list.getReadWriteLock().writeLock().unlock();
         }
 
-        mailboxPanel.removeAll();
-        if (mailboxInformation.getErrorCode() == ErrorCode.E_EMULATOR) {
-            mailboxPanel.add(getSyscallNotFountErrorLabel(chip), BorderLayout.CENTER);
+        panel.removeAll();
+        if (emulatorError) {
+            panel.add(getSyscallNotFountErrorLabel(chip), BorderLayout.CENTER);
         }
         else {
-            mailboxPanel.add(mailboxScroller, BorderLayout.CENTER);
+            panel.add(scroller, BorderLayout.CENTER);
         }
-        mailboxPanel.revalidate();
+        panel.revalidate();
     }
 
     private JLabel getSyscallNotFountErrorLabel(int chip) {
@@ -325,10 +263,11 @@ public class ITronObjectFrame extends DocumentFrame {
     }
 
     public void updateAllLists(int chip) {
-        updateTaskList(chip);
-        updateSemaphoreList(chip);
-        updateEventFlagList(chip);
-        updateMailboxList(chip);
+        ITronObjectSnapshot snapshot = sysCallEnvironment.takeSnapshot(chip);
+        updateList(chip, taskInformationList, snapshot.getTasks(), snapshot.isTaskError(), taskPanel, taskScroller);
+        updateList(chip, semaphoreInformationList, snapshot.getSemaphores(), snapshot.isSemaphoreError(), semaphorePanel, semaphoreScroller);
+        updateList(chip, eventFlagInformationList, snapshot.getEventFlags(), snapshot.isEventFlagError(), eventFlagPanel, eventFlagScroller);
+        updateList(chip, mailboxInformationList, snapshot.getMailboxes(), snapshot.isMailboxError(), mailboxPanel, mailboxScroller);
     }
 
     public void enableUpdate(boolean enable) {
@@ -2,7 +2,7 @@ package com.nikonhacker.gui.component.memoryActivity;
 
 import com.nikonhacker.Format;
 import com.nikonhacker.emu.memory.DebuggableMemory;
-import com.nikonhacker.emu.memory.listener.TrackingMemoryActivityListener;
+import com.nikonhacker.emu.memory.MemoryAccessStatistics;
 import com.nikonhacker.gui.EmulatorUI;
 import com.nikonhacker.gui.swing.DocumentFrame;
 
@@ -19,7 +19,7 @@ import java.util.List;
 
 public class MemoryActivityViewerFrame extends DocumentFrame {
 
-    /* TODO : memory viewer : add checkbox to toggle rotation, button to clear, ... */
+    /* TODO : memory viewer : add button to clear, selection of access sources, ... */
 
     private static final int UPDATE_INTERVAL_MS = 100; // 25fps
     private static final int MAP_WIDTH = 256;
@@ -34,8 +34,13 @@ public class MemoryActivityViewerFrame extends DocumentFrame {
     private double scaleX;
     private double scaleY;
 
-    private TrackingMemoryActivityListener trackingMemoryActivityListener;
+    private MemoryAccessStatistics statistics;
+    /** Counts as of the last refresh. In detail mode, the one of the parent frame is used */
+    private MemoryAccessStatistics.Snapshot snapshot;
     private DebuggableMemory memory;
+
+    /** Colors of the cells, as 0x00RRGGBB with red=writes, green=reads, blue=execs */
+    private int[] activityMap = new int[MAP_WIDTH * MAP_HEIGHT];
     
     /** Indicate if this is a "master" view (1 cell = 1 memory page) or a "detail view" (1 cell = 1 memory byte) */ 
     private boolean isMaster;
@@ -53,52 +58,90 @@ public class MemoryActivityViewerFrame extends DocumentFrame {
         this.isMaster = true;
         this.memory = memory;
 
-        // Attach the listener
-        this.trackingMemoryActivityListener = new TrackingMemoryActivityListener(memory.getNumPages(), memory.getPageSize());
-        memory.addActivityListener(trackingMemoryActivityListener);
+        // Start counting
+        this.statistics = new MemoryAccessStatistics();
+        memory.setAccessStatistics(statistics);
+        snapshot = statistics.takeSnapshot();
 
-        getContentPane().add(new MemoryMapComponent(trackingMemoryActivityListener.getPageActivityMap()));
+        getContentPane().add(new MemoryMapComponent());
 
         startTimer();
     }
 
 
 
-    public TrackingMemoryActivityListener getTrackingMemoryActivityListener() {
-        return trackingMemoryActivityListener;
+    /**
+     * @return the counts as of the last refresh
+     */
+    public MemoryAccessStatistics.Snapshot getSnapshot() {
+        return snapshot;
     }
 
     /**
      * Create a viewer frame in "detail" mode (1 cell = 1 memory byte) 
      */
-    public MemoryActivityViewerFrame(String title, boolean resizable, boolean closable, boolean maximizable, boolean iconifiable, int chip, EmulatorUI ui, int[] activityMap, int baseAddress, MemoryActivityViewerFrame parentFrame) {
+    public MemoryActivityViewerFrame(String title, boolean resizable, boolean closable, boolean maximizable, boolean iconifiable, int chip, EmulatorUI ui, int baseAddress, MemoryActivityViewerFrame parentFrame) {
         super(title, null, resizable, closable, maximizable, iconifiable, chip, ui);
         this.isMaster = false;
         this.parentFrame = parentFrame;
         this.baseAddress = baseAddress;
 
-        getContentPane().add(new MemoryMapComponent(activityMap));
+        getContentPane().add(new MemoryMapComponent());
         
         startTimer();
     }
 
     private void startTimer() {
+        updateActivityMap();
         // Start update timer
         refreshTimer = new Timer(UPDATE_INTERVAL_MS, new ActionListener() {
             public void actionPerformed(ActionEvent e) {
+                updateActivityMap();
                 repaint();
             }
         });
         refreshTimer.start();
     }
 
+    private void updateActivityMap() {
+        if (isMaster) {
+            snapshot = statistics.takeSnapshot();
+        }
+        else {
+            snapshot = parentFrame.snapshot;
+        }
+        for (int i = 0; i < activityMap.length; i++) {
+            long[] counts = getCounts(i);
+            activityMap[i] = (int) (Math.min(counts[MemoryAccessStatistics.WRITE], 0xFF) << 16
+                    | Math.min(counts[MemoryAccessStatistics.READ], 0xFF) << 8
+                    | Math.min(counts[MemoryAccessStatistics.EXEC], 0xFF));
+        }
+    }
+
+    /**
+     * @return the number of accesses of each kind to the page (master) or block (detail) shown in the given cell
+     */
+    private long[] getCounts(int cell) {
+        long[] counts = new long[MemoryAccessStatistics.NUM_KINDS];
+        int address = getAddressFromPosition(cell % MAP_WIDTH, cell / MAP_WIDTH);
+        for (int kind = 0; kind < MemoryAccessStatistics.NUM_KINDS; kind++) {
+            if (isMaster) {
+                counts[kind] = snapshot.getPageCount(address >>> PAGE_SIZE_BITS, kind, DebuggableMemory.AccessSource.selectableAccessSource);
+            }
+            else {
+                counts[kind] = snapshot.getBlockCount(address, kind, DebuggableMemory.AccessSource.selectableAccessSource);
+            }
+        }
+        return counts;
+    }
+
     private void openSubWindow(int screenX, int screenY) {
         int x = (int) (screenX / scaleX);
         int y = (int) (screenY / scaleY);
         int address = getAddressFromPosition(x, y);
         if (isMaster && ui != null) {
-            if (trackingMemoryActivityListener.getCellActivityMap(address >>> PAGE_SIZE_BITS) != null) {
-                MemoryActivityViewerFrame subFrame = new MemoryActivityViewerFrame("Memory activity from 0x" + Format.asHex(address, 8), true, true, true, true, chip, ui, trackingMemoryActivityListener.getCellActivityMap(address >>> PAGE_SIZE_BITS), address, this);
+            if (snapshot.isPageAccessed(address >>> PAGE_SIZE_BITS)) {
+                MemoryActivityViewerFrame subFrame = new MemoryActivityViewerFrame("Memory activity from 0x" + Format.asHex(address, 8), true, true, true, true, chip, ui, address, this);
                 ui.addDocumentFrame(chip, subFrame);
                 children.add(subFrame);
                 subFrame.display(false);
@@ -137,23 +180,20 @@ public class MemoryActivityViewerFrame extends DocumentFrame {
             for (MemoryActivityViewerFrame child : children) {
                 child.dispose();
             }
-            memory.removeActivityListener(trackingMemoryActivityListener);
+            memory.setAccessStatistics(null);
         }
         super.dispose();
     }
 
 
     private class MemoryMapComponent extends JComponent {
-        private int activityMap[];
-
         private int selectedX = NO_SELECTION;
         private int selectedY = NO_SELECTION;
 
         private AffineTransform resizeTransform;
         private int previousW, previousH;
 
-        private MemoryMapComponent(int activityMap[]) {
-            this.activityMap = activityMap;
+        private MemoryMapComponent() {
             if (isMaster) {
                 setPreferredSize(new Dimension(MAP_WIDTH * 2, MAP_HEIGHT * 2));
             }
@@ -218,14 +258,16 @@ public class MemoryActivityViewerFrame extends DocumentFrame {
                 int x = (int) (selectedX / scaleX);
                 int y = (int) (selectedY / scaleY);
                 FontMetrics fm = g.getFontMetrics();
-                int value = activityMap[y * MAP_WIDTH + x];
-                int reads = (value & 0xFF00) >>> 8;
-                int writes = (value & 0xFF0000) >>> 16;
-                int execs = (value & 0xFF);
-                String message = "0x" + (Format.asHex(getAddressFromPosition(x, y), 8) + " : green="
-                        + reads + ((reads == 255) ? "+" : "") + " reads, red="
-                        + writes + ((writes == 255) ? "+" : "") + " writes, blue="
-                        + execs + ((execs == 255) ? "+" : "") + " execs");
+                long[] counts = getCounts(y * MAP_WIDTH + x);
+                int address = getAddressFromPosition(x, y);
+                if (!isMaster) {
+                    // Counts are per block
+                    address &= ~(MemoryAccessStatistics.BLOCK_SIZE - 1);
+                }
+                String message = "0x" + (Format.asHex(address, 8) + " : green="
+                        + counts[MemoryAccessStatistics.READ] + " reads, red="
+                        + counts[MemoryAccessStatistics.WRITE] + " writes, blue="
+                        + counts[MemoryAccessStatistics.EXEC] + " execs");
                 Rectangle2D stringBounds = fm.getStringBounds(message, g);
                 if (y < MAP_HEIGHT / 2) {
                     g2d.fillRect(0, (int) (h - stringBounds.getHeight()), fm.stringWidth(message), (int) (stringBounds.getHeight()));
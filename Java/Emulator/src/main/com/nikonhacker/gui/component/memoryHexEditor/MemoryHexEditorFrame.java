@@ -13,7 +13,7 @@ import com.nikonhacker.disassembly.ParsingException;
 import com.nikonhacker.disassembly.fr.FrCPUState;
 import com.nikonhacker.disassembly.tx.TxCPUState;
 import com.nikonhacker.emu.memory.DebuggableMemory;
-import com.nikonhacker.emu.memory.listener.TrackingMemoryActivityListener;
+import com.nikonhacker.emu.memory.MemoryAccessStatistics;
 import com.nikonhacker.emu.trigger.BreakTrigger;
 import com.nikonhacker.emu.trigger.condition.MemoryValueBreakCondition;
 import com.nikonhacker.gui.EmulatorUI;
@@ -333,23 +333,24 @@ public class MemoryHexEditorFrame extends DocumentFrame implements ActionListene
 
     private Color[] createColorMap() {
         Color[] colorMap = null; // default if memory is not tracked
-        TrackingMemoryActivityListener activityListener = ui.getTrackingMemoryActivityListener(chip);
-        if (activityListener != null) {
-            int[] cellActivityMap = activityListener.getCellActivityMap(baseAddress >>> 16);
+        MemoryAccessStatistics.Snapshot snapshot = ui.getMemoryAccessSnapshot(chip);
+        if (snapshot != null) {
             colorMap = new Color[0x10000];
-            if (cellActivityMap == null) {
+            if (!snapshot.isPageAccessed(baseAddress >>> 16)) {
                 // Memory is tracked, but this is page has never been accessed
                 Arrays.fill(colorMap, Color.LIGHT_GRAY);
             }
             else {
                 // Memory is tracked, set cell color according to access
-                for (int i = 0; i < cellActivityMap.length; i++) {
-                    int activity = cellActivityMap[i];
-                    if (activity == 0 ) {
+                for (int i = 0; i < colorMap.length; i++) {
+                    int reads = snapshot.getBlockCount(baseAddress + i, MemoryAccessStatistics.READ, DebuggableMemory.AccessSource.selectableAccessSource);
+                    int writes = snapshot.getBlockCount(baseAddress + i, MemoryAccessStatistics.WRITE, DebuggableMemory.AccessSource.selectableAccessSource);
+                    int execs = snapshot.getBlockCount(baseAddress + i, MemoryAccessStatistics.EXEC, DebuggableMemory.AccessSource.selectableAccessSource);
+                    if (reads == 0 && writes == 0 && execs == 0) {
                         colorMap[i] = Color.LIGHT_GRAY;
                     }
                     else {
-                        colorMap[i] = new Color((activity & 0xFF0000) == 0?0:0xFF, (activity & 0xFF00) == 0?0:0x7F, (activity & 0xFF) == 0?0:0xFF);
+                        colorMap[i] = new Color(writes == 0?0:0xFF, reads == 0?0:0x7F, execs == 0?0:0xFF);
                     }
                 }
             }
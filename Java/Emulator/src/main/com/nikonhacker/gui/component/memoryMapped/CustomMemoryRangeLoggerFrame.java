@@ -4,7 +4,7 @@ import com.nikonhacker.Constants;
 import com.nikonhacker.Format;
 import com.nikonhacker.disassembly.CPUState;
 import com.nikonhacker.emu.memory.DebuggableMemory;
-import com.nikonhacker.emu.memory.listener.MemoryActivityListener;
+import com.nikonhacker.emu.memory.listener.AbstractAccessLoggerActivityListener;
 import com.nikonhacker.emu.memory.listener.RangeAccessLoggerActivityListener;
 import com.nikonhacker.gui.EmulatorUI;
 import com.nikonhacker.gui.swing.DocumentFrame;
@@ -27,7 +27,7 @@ public class CustomMemoryRangeLoggerFrame extends DocumentFrame {
 
     private DebuggableMemory memory;
     private CPUState         cpuState;
-    private java.util.Map<JTextField, MemoryActivityListener> listeners = new HashMap<>();
+    private java.util.Map<JTextField, AbstractAccessLoggerActivityListener> listeners = new HashMap<>();
     private final PrintWriterArea textArea;
 
     // By default, only log code access
@@ -77,9 +77,10 @@ public class CustomMemoryRangeLoggerFrame extends DocumentFrame {
                 try {
                     int minAddress = Format.parseIntHexField(minAddressField);
                     int maxAddress = Format.parseIntHexField(maxAddressField);
-                    MemoryActivityListener listener = listeners.get(minAddressField);
+                    AbstractAccessLoggerActivityListener listener = listeners.get(minAddressField);
                     if (listener != null) {
                         memory.removeActivityListener(listener);
+                        listener.close();
                         textArea.getPrintWriter().println("Stopping previous listener");
                     }
                     listener = new RangeAccessLoggerActivityListener(textArea.getPrintWriter(), minAddress, maxAddress, cpuState, selectedAccessSources, ui.getFramework().getMasterClock());
@@ -136,9 +137,10 @@ public class CustomMemoryRangeLoggerFrame extends DocumentFrame {
             @Override
             public void actionPerformed(ActionEvent e) {
                 if (listeners.size() > 0) {
-                    MemoryActivityListener listener = listeners.get(minAddressField);
+                    AbstractAccessLoggerActivityListener listener = listeners.get(minAddressField);
                     if (listener != null) {
                         memory.removeActivityListener(listener);
+                        listener.close();
                         textArea.getPrintWriter().println("Stopping previous listener");
                     }
                     listeners.remove(minAddressField);
@@ -157,8 +159,9 @@ public class CustomMemoryRangeLoggerFrame extends DocumentFrame {
     }
 
     public void dispose() {
-        for (MemoryActivityListener listener : listeners.values()) {
+        for (AbstractAccessLoggerActivityListener listener : listeners.values()) {
             memory.removeActivityListener(listener);
+            listener.close();
         }
         super.dispose();
     }
@@ -2,7 +2,7 @@ package com.nikonhacker.gui.component.memoryMapped;
 
 import com.nikonhacker.disassembly.CPUState;
 import com.nikonhacker.emu.memory.DebuggableMemory;
-import com.nikonhacker.emu.memory.listener.MemoryActivityListener;
+import com.nikonhacker.emu.memory.listener.AbstractAccessLoggerActivityListener;
 import com.nikonhacker.emu.memory.listener.PageAccessLoggerActivityListener;
 import com.nikonhacker.gui.EmulatorUI;
 import com.nikonhacker.gui.swing.DocumentFrame;
@@ -18,7 +18,7 @@ public class MemoryPageMappedComponentFrame extends DocumentFrame {
     private static final int COLUMNS = 80;
 
     private DebuggableMemory memory;
-    private final MemoryActivityListener listener;
+    private final AbstractAccessLoggerActivityListener listener;
 
     public MemoryPageMappedComponentFrame(String title, String imageName, boolean resizable, boolean closable, boolean maximizable, boolean iconifiable, int chip, EmulatorUI ui, DebuggableMemory memory, int page, CPUState cpuState) {
         super(title, imageName, resizable, closable, maximizable, iconifiable, chip, ui);
@@ -34,6 +34,7 @@ public class MemoryPageMappedComponentFrame extends DocumentFrame {
     
     public void dispose() {
         memory.removeActivityListener(listener);
+        listener.close();
         super.dispose();
     }
     
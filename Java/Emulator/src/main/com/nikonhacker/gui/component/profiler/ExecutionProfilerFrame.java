@@ -0,0 +1,260 @@
+package com.nikonhacker.gui.component.profiler;
+
+import com.nikonhacker.disassembly.CodeStructure;
+import com.nikonhacker.emu.Emulator;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+import com.nikonhacker.emu.profiler.ExecutionProfiler;
+import com.nikonhacker.gui.EmulatorUI;
+import com.nikonhacker.gui.swing.DocumentFrame;
+import com.nikonhacker.gui.swing.VerticalLayout;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Shows the cycles spent per µITRON task, interrupt and function, as measured by an ExecutionProfiler
+ */
+public class ExecutionProfilerFrame extends DocumentFrame {
+
+    private static final int WINDOW_WIDTH = 500;
+    private static final int WINDOW_HEIGHT = 300;
+
+    private static final int UPDATE_INTERVAL_MS = 1000;
+
+    private static final int SAMPLING_INTERVAL_CYCLES = 1000;
+
+    private static final String COLLAPSED_STACKS_EXTENSION = ".folded";
+    private static final String REPORT_EXTENSION = ".txt";
+
+    private static final int REPORT_MAX_LINES = 50;
+
+    private final Emulator         emulator;
+    private final DebuggableMemory memory;
+    private final CodeStructure    codeStructure;
+    private       ExecutionProfiler profiler;
+
+    private Timer refreshTimer;
+    private final ProfileTableModel tableModel;
+
+    public ExecutionProfilerFrame(String title, String imageName, boolean resizable, boolean closable, boolean maximizable, boolean iconifiable, int chip, EmulatorUI ui, Emulator emulator, DebuggableMemory memory, CodeStructure codeStructure) {
+        super(title, imageName, resizable, closable, maximizable, iconifiable, chip, ui);
+        this.emulator = emulator;
+        this.memory = memory;
+        this.codeStructure = codeStructure;
+
+        setLayout(new BorderLayout());
+
+        startProfiler(0);
+
+        tableModel = new ProfileTableModel();
+        final JTable table = new JTable(tableModel);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(1).setPreferredWidth(200);
+        table.addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    showSource(table.getSelectedRow());
+                }
+            }
+        });
+
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(WINDOW_WIDTH, WINDOW_HEIGHT));
+        add(scrollPane, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new VerticalLayout());
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                startProfiler(profiler.getSamplingIntervalCycles());
+                updateTable();
+            }
+        });
+        buttonPanel.add(resetButton);
+
+        final JCheckBox samplingCheckBox = new JCheckBox("Sampling");
+        samplingCheckBox.setToolTipText("Only look up the current function every " + SAMPLING_INTERVAL_CYCLES + " cycles. Faster but less precise. Restarts profiling.");
+        samplingCheckBox.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                startProfiler(samplingCheckBox.isSelected() ? SAMPLING_INTERVAL_CYCLES : 0);
+                updateTable();
+            }
+        });
+        buttonPanel.add(samplingCheckBox);
+
+        JButton saveButton = new JButton("Save collapsed stacks");
+        saveButton.setToolTipText("Save the profile in a format suitable for flame graph tools");
+        saveButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                save(false);
+            }
+        });
+        buttonPanel.add(saveButton);
+
+        JButton reportButton = new JButton("Save report");
+        reportButton.setToolTipText("Save the most expensive functions and instructions as text");
+        reportButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                save(true);
+            }
+        });
+        buttonPanel.add(reportButton);
+
+        add(buttonPanel, BorderLayout.EAST);
+
+        pack();
+
+        updateTable();
+
+        // Prepare refresh timer
+        refreshTimer = new Timer(UPDATE_INTERVAL_MS, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                updateTable();
+            }
+        });
+    }
+
+    private void startProfiler(int samplingIntervalCycles) {
+        profiler = new ExecutionProfiler(chip, memory, codeStructure, samplingIntervalCycles);
+        emulator.setProfiler(profiler);
+    }
+
+    private void updateTable() {
+        List<ExecutionProfiler.Entry> entries = profiler.getEntries();
+        Collections.sort(entries, new Comparator<ExecutionProfiler.Entry>() {
+            @Override
+            public int compare(ExecutionProfiler.Entry o1, ExecutionProfiler.Entry o2) {
+                return Long.compare(o2.getTotalCycles(), o1.getTotalCycles());
+            }
+        });
+        tableModel.setEntries(entries, profiler.getTotalCycles());
+    }
+
+    private void showSource(int row) {
+        if (row != -1) {
+            ExecutionProfiler.Entry entry = tableModel.getEntry(row);
+            if (entry.getType() == ExecutionProfiler.NodeType.FUNCTION && entry.getKey() != -1) {
+                ui.jumpToSource(chip, entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Saves the report if asked, or the collapsed stacks
+     */
+    private void save(boolean report) {
+        final JFileChooser fc = new JFileChooser();
+
+        fc.setDialogTitle("Select destination file");
+        fc.setCurrentDirectory(new File("."));
+
+        fc.setFileSelectionMode(JFileChooser.FILES_ONLY);
+
+        if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File destinationFile = fc.getSelectedFile();
+            if (!destinationFile.getName().contains(".")) {
+                destinationFile = new File(destinationFile.getAbsolutePath() + (report ? REPORT_EXTENSION : COLLAPSED_STACKS_EXTENSION));
+            }
+            try (Writer writer = new FileWriter(destinationFile)) {
+                if (report) {
+                    profiler.writeReport(writer, REPORT_MAX_LINES);
+                }
+                else {
+                    profiler.writeCollapsedStacks(writer);
+                }
+                JOptionPane.showMessageDialog(this, "Export complete", "Done", JOptionPane.INFORMATION_MESSAGE);
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Could not export to file '" + destinationFile.getAbsolutePath() + "': " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    public void setAutoRefresh(boolean refresh) {
+        updateTable();
+        if (refresh) {
+            if (!refreshTimer.isRunning()) {
+                refreshTimer.start();
+            }
+        }
+        else {
+            if (refreshTimer.isRunning()) {
+                refreshTimer.stop();
+            }
+        }
+    }
+
+    public void dispose() {
+        refreshTimer.stop();
+        refreshTimer = null;
+        emulator.setProfiler(null);
+        super.dispose();
+    }
+
+    private static class ProfileTableModel extends AbstractTableModel {
+        private static final String[] COLUMN_NAMES = {"Type", "Name", "Self cycles", "Total cycles", "Total %"};
+
+        private List<ExecutionProfiler.Entry> entries = new ArrayList<>();
+        private long totalCycles;
+
+        public void setEntries(List<ExecutionProfiler.Entry> entries, long totalCycles) {
+            this.entries = entries;
+            this.totalCycles = totalCycles;
+            fireTableDataChanged();
+        }
+
+        public ExecutionProfiler.Entry getEntry(int row) {
+            return entries.get(row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return entries.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int columnIndex) {
+            return (columnIndex == 2 || columnIndex == 3) ? Long.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            ExecutionProfiler.Entry entry = entries.get(rowIndex);
+            switch (columnIndex) {
+                case 0:
+                    return entry.getType().name().toLowerCase();
+                case 1:
+                    return entry.getName();
+                case 2:
+                    return entry.getSelfCycles();
+                case 3:
+                    return entry.getTotalCycles();
+                default:
+                    return (totalCycles == 0) ? "" : String.format("%.1f", entry.getTotalCycles() * 100.0 / totalCycles);
+            }
+        }
+    }
+}
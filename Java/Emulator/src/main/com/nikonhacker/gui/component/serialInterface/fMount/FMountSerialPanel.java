@@ -1,9 +1,9 @@
 package com.nikonhacker.gui.component.serialInterface.fMount;
 
 import com.nikonhacker.Constants;
+import com.nikonhacker.emu.EmulationFramework;
+import com.nikonhacker.emu.journal.InputJournal;
 import com.nikonhacker.emu.peripherials.serialInterface.fMount.FMountCircuit;
-import com.nikonhacker.emu.peripherials.serialInterface.fMount.LensPrototype;
-import com.nikonhacker.emu.Platform;
 import com.nikonhacker.gui.EmulatorUI;
 
 import com.nikonhacker.gui.component.serialInterface.SerialDevicePanel;
@@ -14,11 +14,11 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 public class FMountSerialPanel extends SerialDevicePanel {
-    final Platform platform;
+    final EmulationFramework framework;
 
     public FMountSerialPanel(final FMountCircuit fMountCircuit, EmulatorUI ui) {
         super();
-        this.platform = ui.getFramework().getPlatform(Constants.CHIP_TX);
+        this.framework = ui.getFramework();
         JTabbedPane tabbedPane = new JTabbedPane();
 
         // Hex editor
@@ -31,11 +31,8 @@ public class FMountSerialPanel extends SerialDevicePanel {
         loadButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (((JToggleButton)e.getSource()).isSelected()) {
-                    fMountCircuit.setLensPlugin(new LensPrototype(fMountCircuit, platform.getMasterClock()));
-                } else {
-                    fMountCircuit.setLensPlugin(null);
-                }
+                int plugged = ((JToggleButton)e.getSource()).isSelected() ? 1 : 0;
+                framework.submitInput(new InputJournal.Input(InputJournal.InputType.LENS, Constants.CHIP_TX, null, plugged));
             }
         });
 
@@ -0,0 +1,115 @@
+package com.nikonhacker.itron;
+
+import com.nikonhacker.disassembly.CodeStructure;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Reads µITRON objects straight from the control blocks in memory, according to the layouts declared for the
+ * firmware (see ITronObjectLayout). This is much faster than running ref_xxx syscalls in a separate emulator,
+ * and does not modify the memory.
+ */
+public class ITronObjectDecoder {
+    private final DebuggableMemory memory;
+    private final Map<ITronObjectLayout.ObjectType, ITronObjectLayout> layouts;
+
+    public ITronObjectDecoder(DebuggableMemory memory, CodeStructure codeStructure) {
+        this.memory = memory;
+        if (codeStructure == null) {
+            layouts = Collections.emptyMap();
+        }
+        else {
+            layouts = codeStructure.itronLayouts;
+        }
+    }
+
+    /**
+     * @return true if objects of this type can be decoded from memory
+     */
+    public boolean canDecode(ITronObjectLayout.ObjectType type) {
+        return layouts.containsKey(type);
+    }
+
+    public boolean exists(ITronObjectLayout.ObjectType type, int objId) {
+        return objId >= 1 && objId <= layouts.get(type).getNumObjects();
+    }
+
+    /**
+     * @return the address of the control block of the given object
+     */
+    public int getControlBlockAddress(ITronObjectLayout.ObjectType type, int objId) {
+        ITronObjectLayout layout = layouts.get(type);
+        int address = layout.getTableAddress() + (objId - 1) * layout.getRecordSize();
+        if (layout.isIndirect()) {
+            address = memory.load32(address, null);
+        }
+        return address;
+    }
+
+    /**
+     * @return the value of a field of the given object, or 0 if the field is not part of the layout
+     */
+    public int read(ITronObjectLayout.ObjectType type, int objId, String fieldName) {
+        ITronObjectLayout.Field field = layouts.get(type).getField(fieldName);
+        if (field == null) {
+            return 0;
+        }
+        int address = getControlBlockAddress(type, objId) + field.getOffset();
+        // No access source, so that memory listeners are not triggered
+        switch (field.getSize()) {
+            case 1:
+                return memory.loadUnsigned8(address, null);
+            case 2:
+                return memory.loadUnsigned16(address, null);
+            default:
+                int value = memory.load32(address, null);
+                return field.isTaskReference() ? getTaskId(value) : value;
+        }
+    }
+
+    /**
+     * @return the id of the task whose TCB is at the given address, 0 if tcb is 0, or tcb itself if not found
+     */
+    private int getTaskId(int tcb) {
+        if (tcb != 0 && canDecode(ITronObjectLayout.ObjectType.TASK)) {
+            for (int taskId = 1; taskId <= layouts.get(ITronObjectLayout.ObjectType.TASK).getNumObjects(); taskId++) {
+                if (getControlBlockAddress(ITronObjectLayout.ObjectType.TASK, taskId) == tcb) {
+                    return taskId;
+                }
+            }
+        }
+        return tcb;
+    }
+
+    public SemaphoreInformation getSemaphoreInformation(int objId) {
+        if (!exists(ITronObjectLayout.ObjectType.SEMAPHORE, objId)) {
+            return new SemaphoreInformation(objId, ErrorCode.E_ID);
+        }
+        return new SemaphoreInformation(objId, ErrorCode.E_OK,
+                read(ITronObjectLayout.ObjectType.SEMAPHORE, objId, "exinf"),
+                read(ITronObjectLayout.ObjectType.SEMAPHORE, objId, "wtsk"),
+                read(ITronObjectLayout.ObjectType.SEMAPHORE, objId, "semcnt"));
+    }
+
+    public EventFlagInformation getEventFlagInformation(int objId) {
+        if (!exists(ITronObjectLayout.ObjectType.EVENT_FLAG, objId)) {
+            return new EventFlagInformation(objId, ErrorCode.E_ID, 0, 0, 0);
+        }
+        return new EventFlagInformation(objId, ErrorCode.E_OK,
+                read(ITronObjectLayout.ObjectType.EVENT_FLAG, objId, "exinf"),
+                read(ITronObjectLayout.ObjectType.EVENT_FLAG, objId, "wtsk"),
+                read(ITronObjectLayout.ObjectType.EVENT_FLAG, objId, "flgptn"));
+    }
+
+    public MailboxInformation getMailboxInformation(int objId) {
+        if (!exists(ITronObjectLayout.ObjectType.MAILBOX, objId)) {
+            return new MailboxInformation(objId, ErrorCode.E_ID, 0, 0, 0);
+        }
+        return new MailboxInformation(objId, ErrorCode.E_OK,
+                read(ITronObjectLayout.ObjectType.MAILBOX, objId, "exinf"),
+                read(ITronObjectLayout.ObjectType.MAILBOX, objId, "wtsk"),
+                read(ITronObjectLayout.ObjectType.MAILBOX, objId, "pk_msg"));
+    }
+}
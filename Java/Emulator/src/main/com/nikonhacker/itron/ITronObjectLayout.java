@@ -0,0 +1,212 @@
+package com.nikonhacker.itron;
+
+import com.nikonhacker.Format;
+import com.nikonhacker.disassembly.ParsingException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * Describes where the kernel of a given firmware keeps the control blocks of one type of µITRON object, and where
+ * their fields are, so that objects can be decoded directly from memory instead of calling ref_xxx syscalls.
+ *
+ * Layouts are declared in the dfr/dtx option files as:
+ * <pre>-k type=@(table+records*recordsize):field@offset[.size],...</pre>
+ * where type is tsk, sem, flg or mbx, table is an address or a symbol name, and size is b (8-bit), h (16-bit),
+ * w (32-bit, default) or t (32-bit pointer to a TCB, shown as a task id).
+ * With @*(...) instead of @(...), the table contains pointers to the control blocks instead of the blocks themselves.
+ * Field names are the ones of the ref_xxx packets (e.g. tskstat, semcnt). Undeclared fields are decoded as 0.
+ */
+public class ITronObjectLayout {
+
+    public static enum ObjectType {
+        TASK("tsk", "tskstat", "tskpri", "exinf", "tskbpri", "tskwait", "wobjid", "lefttmo", "actcnt", "wupcnt", "suscnt"),
+        SEMAPHORE("sem", "semcnt", "wtsk", "exinf"),
+        EVENT_FLAG("flg", "flgptn", "wtsk", "exinf"),
+        MAILBOX("mbx", "pk_msg", "wtsk", "exinf");
+
+        private final String key;
+        private final String[] fieldNames;
+
+        ObjectType(String key, String... fieldNames) {
+            this.key = key;
+            this.fieldNames = fieldNames;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public static ObjectType fromKey(String key) {
+            for (ObjectType type : values()) {
+                if (type.key.equalsIgnoreCase(key)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class Field {
+        private final int     offset;
+        private final int     size;
+        private final boolean taskReference;
+
+        public Field(int offset, int size, boolean taskReference) {
+            this.offset = offset;
+            this.size = size;
+            this.taskReference = taskReference;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the size of the field, in bytes
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return true if the field is a pointer to a TCB, to be converted to a task id
+         */
+        public boolean isTaskReference() {
+            return taskReference;
+        }
+    }
+
+    private final ObjectType type;
+    /** Symbol of the table, or null if given as an address */
+    private final String     tableName;
+    private       Integer    tableAddress;
+    private final boolean    indirect;
+    private final int        numObjects;
+    private final int        recordSize;
+    private final Map<String, Field> fields;
+
+    public ITronObjectLayout(ObjectType type, String tableName, Integer tableAddress, boolean indirect, int numObjects, int recordSize, Map<String, Field> fields) {
+        this.type = type;
+        this.tableName = tableName;
+        this.tableAddress = tableAddress;
+        this.indirect = indirect;
+        this.numObjects = numObjects;
+        this.recordSize = recordSize;
+        this.fields = fields;
+    }
+
+    public static ITronObjectLayout parse(String argument) throws ParsingException {
+        ObjectType type = ObjectType.fromKey(StringUtils.substringBefore(argument, "=").trim());
+        if (type == null) {
+            throw new ParsingException("Unknown µITRON object type in '" + argument + "'. Expected tsk, sem, flg or mbx");
+        }
+        String definition = StringUtils.substringAfter(argument, "=").trim();
+        String table = StringUtils.substringBefore(definition, ":").trim();
+        boolean indirect;
+        if (table.startsWith("@*(") && table.endsWith(")")) {
+            indirect = true;
+        }
+        else if (table.startsWith("@(") && table.endsWith(")")) {
+            indirect = false;
+        }
+        else {
+            throw new ParsingException("Cannot parse µITRON table '" + table + "'. Expected @(table+records*recordsize)");
+        }
+        table = StringUtils.substringBetween(table, "(", ")");
+
+        String tableName = null;
+        Integer tableAddress = null;
+        int numObjects;
+        int recordSize;
+        try {
+            String base = StringUtils.substringBefore(table, "+").trim();
+            numObjects = Format.parseUnsigned(StringUtils.substringBetween(table, "+", "*").trim());
+            recordSize = Format.parseUnsigned(StringUtils.substringAfter(table, "*").trim());
+            try {
+                tableAddress = Format.parseUnsigned(base);
+            } catch (ParsingException e) {
+                // Not a number. Assume a symbol, resolved once all options are read
+                tableName = base;
+            }
+        }
+        catch (Exception e) {
+            throw new ParsingException("Cannot parse µITRON table '" + table + "'");
+        }
+
+        Map<String, Field> fields = new HashMap<String, Field>();
+        StringTokenizer t = new StringTokenizer(StringUtils.substringAfter(definition, ":"), ",");
+        while (t.hasMoreTokens()) {
+            String fieldDefinition = t.nextToken().trim();
+            String name = StringUtils.substringBefore(fieldDefinition, "@").trim().toLowerCase();
+            if (!Arrays.asList(type.fieldNames).contains(name)) {
+                throw new ParsingException("Unknown " + type.key + " field '" + name + "'. Expected one of " + Arrays.toString(type.fieldNames));
+            }
+            String location = StringUtils.substringAfter(fieldDefinition, "@").trim();
+            String sizeString = StringUtils.substringAfter(location, ".");
+            int size = 4;
+            boolean taskReference = false;
+            switch (sizeString.toLowerCase()) {
+                case "":
+                case "w":
+                    break;
+                case "h":
+                    size = 2;
+                    break;
+                case "b":
+                    size = 1;
+                    break;
+                case "t":
+                    taskReference = true;
+                    break;
+                default:
+                    throw new ParsingException("Unknown size '" + sizeString + "' for field '" + name + "'. Expected b, h, w or t");
+            }
+            int offset = Format.parseUnsigned(StringUtils.substringBefore(location, ".").trim());
+            fields.put(name, new Field(offset, size, taskReference));
+        }
+
+        return new ITronObjectLayout(type, tableName, tableAddress, indirect, numObjects, recordSize, fields);
+    }
+
+    public ObjectType getType() {
+        return type;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return the address of the table, or null if its symbol was not resolved
+     */
+    public Integer getTableAddress() {
+        return tableAddress;
+    }
+
+    public void setTableAddress(Integer tableAddress) {
+        this.tableAddress = tableAddress;
+    }
+
+    public boolean isIndirect() {
+        return indirect;
+    }
+
+    public int getNumObjects() {
+        return numObjects;
+    }
+
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * @return the field, or null if not declared
+     */
+    public Field getField(String name) {
+        return fields.get(name);
+    }
+}
@@ -0,0 +1,52 @@
+package com.nikonhacker.itron;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * All µITRON objects of a chip, read at the same time
+ */
+public class ITronObjectSnapshot {
+    final List<TaskInformation>      tasks       = new ArrayList<TaskInformation>();
+    final List<SemaphoreInformation> semaphores  = new ArrayList<SemaphoreInformation>();
+    final List<EventFlagInformation> eventFlags  = new ArrayList<EventFlagInformation>();
+    final List<MailboxInformation>   mailboxes   = new ArrayList<MailboxInformation>();
+
+    // True if the emulator failed to list objects of this type
+    boolean taskError;
+    boolean semaphoreError;
+    boolean eventFlagError;
+    boolean mailboxError;
+
+    public List<TaskInformation> getTasks() {
+        return tasks;
+    }
+
+    public List<SemaphoreInformation> getSemaphores() {
+        return semaphores;
+    }
+
+    public List<EventFlagInformation> getEventFlags() {
+        return eventFlags;
+    }
+
+    public List<MailboxInformation> getMailboxes() {
+        return mailboxes;
+    }
+
+    public boolean isTaskError() {
+        return taskError;
+    }
+
+    public boolean isSemaphoreError() {
+        return semaphoreError;
+    }
+
+    public boolean isEventFlagError() {
+        return eventFlagError;
+    }
+
+    public boolean isMailboxError() {
+        return mailboxError;
+    }
+}
@@ -1,23 +1,74 @@
 package com.nikonhacker.itron;
 
 import com.nikonhacker.disassembly.CPUState;
+import com.nikonhacker.disassembly.CodeStructure;
 import com.nikonhacker.emu.Platform;
 
+import java.util.EnumSet;
+
 /**
  * This class represents and environment suitable for system calls and presents an API for the most useful calls
+ * Objects whose layout is declared in the options are decoded from memory, without performing the call
  */
 public abstract class SysCallEnvironment {
 
     protected final Platform syscallPlatform;
     protected final CPUState originalCPUState;
+    protected final ITronObjectDecoder decoder;
 
-    public SysCallEnvironment(Platform platform) {
+    public SysCallEnvironment(Platform platform, CodeStructure codeStructure) {
         originalCPUState = platform.getCpuState();
         // Using a separate platform, but sharing memory and interruptController
         syscallPlatform = new Platform(null);
         syscallPlatform.setCpuState(platform.getCpuState());
         syscallPlatform.setMemory(platform.getMemory());
         syscallPlatform.setInterruptController(platform.getInterruptController());
+        decoder = new ITronObjectDecoder(platform.getMemory(), codeStructure);
+    }
+
+    /**
+     * Reads all tasks, semaphores, event flags and mailboxes in one pass
+     */
+    public ITronObjectSnapshot takeSnapshot(int chip) {
+        ITronObjectSnapshot snapshot = new ITronObjectSnapshot();
+
+        int taskNumber = 1;
+        TaskInformation taskInformation = getTaskInformation(chip, taskNumber);
+        while (!EnumSet.of(ErrorCode.E_ID, ErrorCode.E_EMULATOR).contains(taskInformation.getErrorCode()) && taskNumber < 100) {
+            snapshot.tasks.add(taskInformation);
+            taskNumber++;
+            taskInformation = getTaskInformation(chip, taskNumber);
+        }
+        snapshot.taskError = (taskInformation.getErrorCode() == ErrorCode.E_EMULATOR);
+
+        int semaphoreNumber = 1;
+        SemaphoreInformation semaphoreInformation = getSemaphoreInformation(chip, semaphoreNumber);
+        while (semaphoreInformation.getErrorCode() == ErrorCode.E_OK) {
+            snapshot.semaphores.add(semaphoreInformation);
+            semaphoreNumber++;
+            semaphoreInformation = getSemaphoreInformation(chip, semaphoreNumber);
+        }
+        snapshot.semaphoreError = (semaphoreInformation.getErrorCode() == ErrorCode.E_EMULATOR);
+
+        int eventFlagNumber = 1;
+        EventFlagInformation eventFlagInformation = getEventFlagInformation(chip, eventFlagNumber);
+        while (eventFlagInformation.getErrorCode() == ErrorCode.E_OK) {
+            snapshot.eventFlags.add(eventFlagInformation);
+            eventFlagNumber++;
+            eventFlagInformation = getEventFlagInformation(chip, eventFlagNumber);
+        }
+        snapshot.eventFlagError = (eventFlagInformation.getErrorCode() == ErrorCode.E_EMULATOR);
+
+        int mailboxNumber = 1;
+        MailboxInformation mailboxInformation = getMailboxInformation(chip, mailboxNumber);
+        while (mailboxInformation.getErrorCode() == ErrorCode.E_OK) {
+            snapshot.mailboxes.add(mailboxInformation);
+            mailboxNumber++;
+            mailboxInformation = getMailboxInformation(chip, mailboxNumber);
+        }
+        snapshot.mailboxError = (mailboxInformation.getErrorCode() == ErrorCode.E_EMULATOR);
+
+        return snapshot;
     }
 
     public abstract TaskInformation getTaskInformation(int chip, int objId);
@@ -25,7 +25,7 @@ public class FrSysCallEnvironment extends SysCallEnvironment {
     private final FrItronTaskTable taskTable;
 
     public FrSysCallEnvironment(Platform platform, CodeStructure codeStructure) {
-        super(platform);
+        super(platform, codeStructure);
 
         // Using a separate emulator, but sharing memory and interrupt controller
         emulator = new FrEmulator(syscallPlatform);
@@ -35,35 +35,52 @@ public class FrSysCallEnvironment extends SysCallEnvironment {
     }
 
     public TaskInformation getTaskInformation(int chip, int objId) {
-        int pk_robj = BASE_ADDRESS_SYSCALL + 0x20; // pointer to result structure
-
-        ErrorCode errorCode = runSysCall(ITron3.SYSCALL_NUMBER_REF_TSK, pk_robj, objId);
-
-        // Interpret result
-        if (errorCode != ErrorCode.E_OK) {
-            return new FrTaskInformation(objId, errorCode);
+        int stateValue, taskPriority, extendedInformation;
+        if (decoder.canDecode(ITronObjectLayout.ObjectType.TASK)) {
+            if (!decoder.exists(ITronObjectLayout.ObjectType.TASK, objId)) {
+                return new FrTaskInformation(objId, ErrorCode.E_ID);
+            }
+            stateValue = decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "tskstat");
+            taskPriority = decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "tskpri");
+            extendedInformation = decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "exinf");
         }
         else {
-            // empty context
-            Integer addrContext = null;
-            Integer nextPC = null;
+            int pk_robj = BASE_ADDRESS_SYSCALL + 0x20; // pointer to result structure
 
-            if (objId==1)
-                taskTable.read(codeStructure);
-            addrContext = taskTable.getContext(objId);
-            nextPC = taskTable.getNextPc(objId);
+            ErrorCode errorCode = runSysCall(ITron3.SYSCALL_NUMBER_REF_TSK, pk_robj, objId);
 
+            // Interpret result
+            if (errorCode != ErrorCode.E_OK) {
+                return new FrTaskInformation(objId, errorCode);
+            }
             Memory memory = syscallPlatform.getMemory();
-            return new FrTaskInformation(objId, errorCode,
-                    memory.load32(pk_robj + 8),
-                    memory.load32(pk_robj + 4),
-                    memory.load32(pk_robj),
-                    nextPC,
-                    addrContext);
+            stateValue = memory.load32(pk_robj + 8);
+            taskPriority = memory.load32(pk_robj + 4);
+            extendedInformation = memory.load32(pk_robj);
         }
+
+        // empty context
+        Integer addrContext = null;
+        Integer nextPC = null;
+
+        if (objId==1)
+            taskTable.read(codeStructure);
+        addrContext = taskTable.getContext(objId);
+        nextPC = taskTable.getNextPc(objId);
+
+        return new FrTaskInformation(objId, ErrorCode.E_OK,
+                stateValue,
+                taskPriority,
+                extendedInformation,
+                nextPC,
+                addrContext);
     }
 
     public SemaphoreInformation getSemaphoreInformation(int chip, int objId) {
+        if (decoder.canDecode(ITronObjectLayout.ObjectType.SEMAPHORE)) {
+            return decoder.getSemaphoreInformation(objId);
+        }
+
         int pk_robj = BASE_ADDRESS_SYSCALL + 0x20; // pointer to result structure
 
         ErrorCode errorCode = runSysCall(ITron3.SYSCALL_NUMBER_REF_SEM, pk_robj, objId);
@@ -79,6 +96,10 @@ public class FrSysCallEnvironment extends SysCallEnvironment {
     }
 
     public EventFlagInformation getEventFlagInformation(int chip, int objId) {
+        if (decoder.canDecode(ITronObjectLayout.ObjectType.EVENT_FLAG)) {
+            return decoder.getEventFlagInformation(objId);
+        }
+
         int pk_robj = BASE_ADDRESS_SYSCALL + 0x20; // pointer to result structure
 
         ErrorCode errorCode = runSysCall(ITron3.SYSCALL_NUMBER_REF_FLG, pk_robj, objId);
@@ -94,6 +115,10 @@ public class FrSysCallEnvironment extends SysCallEnvironment {
     }
 
     public MailboxInformation getMailboxInformation(int chip, int objId) {
+        if (decoder.canDecode(ITronObjectLayout.ObjectType.MAILBOX)) {
+            return decoder.getMailboxInformation(objId);
+        }
+
         int pk_robj = BASE_ADDRESS_SYSCALL + 0x20; // pointer to result structure
 
         ErrorCode errorCode = runSysCall(ITron3.SYSCALL_NUMBER_REF_MBX, pk_robj, objId);
@@ -28,7 +28,7 @@ public class TxSysCallEnvironment extends SysCallEnvironment {
     private final TxItronTaskTable taskTable;
 
     public TxSysCallEnvironment(Platform platform, CodeStructure codeStructure) {
-        super(platform);
+        super(platform, codeStructure);
         // Using a separate emulator, but sharing memory (and interrupt controller, though not used in Tx)
         emulator = new TxEmulator(syscallPlatform);
 
@@ -37,6 +37,10 @@ public class TxSysCallEnvironment extends SysCallEnvironment {
     }
 
     public TaskInformation getTaskInformation(int chip, int objId) {
+        if (decoder.canDecode(ITronObjectLayout.ObjectType.TASK)) {
+            return decodeTaskInformation(objId);
+        }
+
         int pk_robj = BASE_ADDRESS_SYSCALL + 0x20; // pointer to result structure
 
         ErrorCode errorCode = runSysCall("sys_ref_tsk", objId, pk_robj);
@@ -82,7 +86,36 @@ public class TxSysCallEnvironment extends SysCallEnvironment {
         }
     }
 
+    private TaskInformation decodeTaskInformation(int objId) {
+        if (!decoder.exists(ITronObjectLayout.ObjectType.TASK, objId)) {
+            return new TxTaskInformation(objId, ErrorCode.E_ID);
+        }
+        int stateValue = decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "tskstat");
+        // Same convention as the syscall version above
+        if (stateValue == 0) {
+            return new TxTaskInformation(objId, ErrorCode.E_ID);
+        }
+        if (objId==1)
+            taskTable.read(codeStructure);
+        return new TxTaskInformation(objId, ErrorCode.E_OK,
+                stateValue,
+                decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "tskpri"),
+                decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "tskbpri"),
+                decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "tskwait"),
+                decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "wobjid"),
+                decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "lefttmo"),
+                decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "actcnt"),
+                decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "wupcnt"),
+                decoder.read(ITronObjectLayout.ObjectType.TASK, objId, "suscnt"),
+                taskTable.getNextPc(objId),
+                taskTable.getContext(objId));
+    }
+
     public SemaphoreInformation getSemaphoreInformation(int chip, int objId) {
+        if (decoder.canDecode(ITronObjectLayout.ObjectType.SEMAPHORE)) {
+            return decoder.getSemaphoreInformation(objId);
+        }
+
         // In TX implementation, there's no way to determine the range of valid objects by looping until error.
         // So stop at hardcoded limit.
         if (objId > MAX_SEM_ID) {
@@ -105,6 +138,10 @@ public class TxSysCallEnvironment extends SysCallEnvironment {
     }
 
     public EventFlagInformation getEventFlagInformation(int chip, int objId) {
+        if (decoder.canDecode(ITronObjectLayout.ObjectType.EVENT_FLAG)) {
+            return decoder.getEventFlagInformation(objId);
+        }
+
         // In TX implementation, there's no way to determine the range of valid objects by looping until error.
         // So stop at hardcoded limit.
         if (objId > MAX_FLAG_ID) {
@@ -127,6 +164,10 @@ public class TxSysCallEnvironment extends SysCallEnvironment {
     }
 
     public MailboxInformation getMailboxInformation(int chip, int objId) {
+        if (decoder.canDecode(ITronObjectLayout.ObjectType.MAILBOX)) {
+            return decoder.getMailboxInformation(objId);
+        }
+
         // In TX implementation, there's no way to determine the range of valid objects by looping until error.
         // So stop at hardcoded limit.
         if (objId > MAX_MAILBOX_ID) {
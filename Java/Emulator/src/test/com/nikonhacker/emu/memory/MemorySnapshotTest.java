@@ -0,0 +1,181 @@
+package com.nikonhacker.emu.memory;
+
+import com.nikonhacker.disassembly.Range;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class MemorySnapshotTest extends TestCase {
+    /** Test data spans two pages */
+    private static final int BASE = 0x8FFFC;
+    private static final int LENGTH = 8;
+
+    private static final byte[] ORIGINAL = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final byte[] MODIFIED = {(byte) 0xA1, (byte) 0xA2, (byte) 0xA3, (byte) 0xA4, (byte) 0xA5, (byte) 0xA6, (byte) 0xA7, (byte) 0xA8};
+
+    public void testDebuggableMemoryStore8() throws Exception {
+        DebuggableMemory memory = new DebuggableMemory(false);
+        MemorySnapshot snapshot = fillAndSnapshot(memory);
+        for (int i = 0; i < LENGTH; i++) {
+            memory.store8(BASE + i, MODIFIED[i], DebuggableMemory.AccessSource.CODE);
+        }
+        assertWritten(memory, snapshot);
+    }
+
+    public void testDebuggableMemoryStore32() throws Exception {
+        DebuggableMemory memory = new DebuggableMemory(false);
+        MemorySnapshot snapshot = fillAndSnapshot(memory);
+        memory.store32(BASE, 0xA1A2A3A4);
+        memory.store32(BASE + 4, 0xA5A6A7A8);
+        assertWritten(memory, snapshot);
+    }
+
+    public void testDebuggableMemoryStoreBlock() throws Exception {
+        DebuggableMemory memory = new DebuggableMemory(false);
+        MemorySnapshot snapshot = fillAndSnapshot(memory);
+        memory.storeBlock(BASE, MODIFIED, 0, LENGTH, DebuggableMemory.AccessSource.DMA);
+        assertWritten(memory, snapshot);
+    }
+
+    public void testDebuggableMemoryStoreBlockWide() throws Exception {
+        DebuggableMemory memory = new DebuggableMemory(false);
+        MemorySnapshot snapshot = fillAndSnapshot(memory);
+        memory.storeBlock(BASE, MODIFIED, 0, LENGTH, 2, DebuggableMemory.AccessSource.IMGA);
+        assertWritten(memory, snapshot);
+    }
+
+    public void testFastMemory() throws Exception {
+        FastMemory memory = new FastMemory();
+        MemorySnapshot snapshot = fillAndSnapshot(memory);
+        memory.store16(BASE, 0xA1A2);
+        memory.store16(BASE + 2, 0xA3A4);
+        memory.store32(BASE + 4, 0xA5A6A7A8);
+        assertWritten(memory, snapshot);
+    }
+
+    public void testFastMemoryLE() throws Exception {
+        FastMemoryLE memory = new FastMemoryLE();
+        MemorySnapshot snapshot = fillAndSnapshot(memory);
+        memory.store16(BASE, 0xA2A1);
+        memory.store16(BASE + 2, 0xA4A3);
+        memory.store32(BASE + 4, 0xA8A7A6A5);
+        assertWritten(memory, snapshot);
+    }
+
+    public void testAutoAllocatingMemory() throws Exception {
+        AutoAllocatingMemory memory = new AutoAllocatingMemory();
+        memory.setLogMemoryMessages(false);
+        MemorySnapshot snapshot = fillAndSnapshot(memory);
+        memory.store8(BASE, 0xA1);
+        memory.store8(BASE + 1, 0xA2);
+        memory.store16(BASE + 2, 0xA3A4);
+        memory.store32(BASE + 4, 0xA5A6A7A8);
+        assertWritten(memory, snapshot);
+    }
+
+    public void testLoadFile() throws Exception {
+        File file = createFile(MODIFIED);
+        try {
+            DebuggableMemory memory = new DebuggableMemory(false);
+            MemorySnapshot snapshot = fillAndSnapshot(memory);
+            memory.loadFile(file, BASE, false);
+            assertWritten(memory, snapshot);
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    public void testLoadFileRanges() throws Exception {
+        File file = createFile(MODIFIED);
+        try {
+            DebuggableMemory memory = new DebuggableMemory(false);
+            MemorySnapshot snapshot = fillAndSnapshot(memory);
+            memory.loadFile(file, Arrays.asList(new Range(BASE, BASE + LENGTH - 1, 0)), false);
+            assertWritten(memory, snapshot);
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    public void testRestoredMemoriesAreIndependent() throws Exception {
+        DebuggableMemory original = new DebuggableMemory(false);
+        MemorySnapshot snapshot = fillAndSnapshot(original);
+        DebuggableMemory restored1 = restore(snapshot);
+        DebuggableMemory restored2 = restore(snapshot);
+
+        restored1.store8(BASE, 0x11);
+        assertEquals(0x11, restored1.loadUnsigned8(BASE));
+        assertEquals(ORIGINAL[0], original.loadUnsigned8(BASE));
+        assertEquals(ORIGINAL[0], restored2.loadUnsigned8(BASE));
+
+        original.store8(BASE + 4, 0x22);
+        assertEquals(0x22, original.loadUnsigned8(BASE + 4));
+        assertEquals(ORIGINAL[4], restored1.loadUnsigned8(BASE + 4));
+        assertEquals(ORIGINAL[4], restored2.loadUnsigned8(BASE + 4));
+
+        restored2.storeBlock(BASE, MODIFIED, 0, LENGTH, DebuggableMemory.AccessSource.DMA);
+        assertContents(MODIFIED, restored2);
+        assertEquals(0x11, restored1.loadUnsigned8(BASE));
+        assertEquals(0x22, original.loadUnsigned8(BASE + 4));
+        assertContents(ORIGINAL, restore(snapshot));
+    }
+
+    public void testSnapshotOfRestoredMemory() throws Exception {
+        DebuggableMemory original = new DebuggableMemory(false);
+        MemorySnapshot snapshot = fillAndSnapshot(original);
+        DebuggableMemory restored = restore(snapshot);
+        restored.store32(BASE, 0xA1A2A3A4);
+        MemorySnapshot secondSnapshot = restored.takeSnapshot();
+        restored.store32(BASE + 4, 0xA5A6A7A8);
+
+        assertContents(MODIFIED, restored);
+        assertContents(ORIGINAL, original);
+        assertContents(ORIGINAL, restore(snapshot));
+        assertContents(new byte[]{(byte) 0xA1, (byte) 0xA2, (byte) 0xA3, (byte) 0xA4, 5, 6, 7, 8}, restore(secondSnapshot));
+    }
+
+    private static MemorySnapshot fillAndSnapshot(AbstractMemory memory) {
+        memory.map(BASE & ~0xFFFF, 0x20000, true, true, true);
+        for (int i = 0; i < LENGTH; i++) {
+            memory.store8(BASE + i, ORIGINAL[i]);
+        }
+        return memory.takeSnapshot();
+    }
+
+    /**
+     * Checks that the memory sees the modified contents, while the snapshot still holds the original ones
+     */
+    private static void assertWritten(AbstractMemory memory, MemorySnapshot snapshot) {
+        assertContents(MODIFIED, memory);
+        assertContents(ORIGINAL, restore(snapshot));
+    }
+
+    private static void assertContents(byte[] expected, AbstractMemory memory) {
+        for (int i = 0; i < LENGTH; i++) {
+            assertEquals("0x" + Integer.toHexString(BASE + i), expected[i] & 0xFF, memory.loadUnsigned8(BASE + i));
+        }
+    }
+
+    private static DebuggableMemory restore(MemorySnapshot snapshot) {
+        DebuggableMemory memory = new DebuggableMemory(false);
+        memory.restoreSnapshot(snapshot);
+        return memory;
+    }
+
+    private static File createFile(byte[] contents) throws IOException {
+        File file = File.createTempFile("snapshot", ".bin");
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(contents);
+        }
+        finally {
+            fos.close();
+        }
+        return file;
+    }
+}
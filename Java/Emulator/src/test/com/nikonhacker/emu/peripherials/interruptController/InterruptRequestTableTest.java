@@ -0,0 +1,173 @@
+package com.nikonhacker.emu.peripherials.interruptController;
+
+import com.nikonhacker.emu.interrupt.InterruptRequest;
+import junit.framework.TestCase;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class InterruptRequestTableTest extends TestCase {
+    private static final int NUM_SLOTS  = 4;
+    private static final int NUM_LEVELS = 2;
+
+    public void testPriorityOrder() throws Exception {
+        TestTable table = new TestTable();
+        assertTrue(table.isEmpty());
+        assertNull(table.getFirst());
+
+        TestRequest low = new TestRequest(1, 1);
+        TestRequest high = new TestRequest(3, 0);
+        assertTrue(table.add(low));
+        assertTrue(table.add(high));
+        assertSame(high, table.getFirst());
+
+        // Same slot: only a better request replaces the pending one
+        assertFalse(table.add(new TestRequest(3, 1)));
+        TestRequest better = new TestRequest(1, 0);
+        assertTrue(table.add(better));
+        assertSame(better, table.get(1));
+        assertSame(better, table.getFirst());
+
+        List<InterruptRequest> list = table.toList();
+        assertEquals(2, list.size());
+        assertSame(better, list.get(0));
+        assertSame(high, list.get(1));
+
+        assertSame(better, table.remove(1));
+        assertSame(high, table.getFirst());
+        assertFalse(table.remove(low));
+        assertTrue(table.remove(high));
+        assertTrue(table.isEmpty());
+        assertNull(table.getFirst());
+    }
+
+    /**
+     * A remove is interrupted between its CAS and its bitmap update by an add to the same slot and level.
+     * The bit of the added request must survive the end of the remove
+     */
+    public void testAddDuringRemove() throws Exception {
+        final TestTable table = new TestTable();
+        final TestRequest background = new TestRequest(3, 1);
+        table.add(background);
+        TestRequest removed = new TestRequest(0, 0);
+        table.add(removed);
+
+        final TestRequest added = new TestRequest(0, 0);
+        table.runBeforeBitmapUpdate(removed, new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(table.add(added));
+            }
+        });
+        assertTrue(table.remove(removed));
+
+        assertSame(added, table.get(0));
+        assertTrue(table.isBitSet(0, 0));
+        assertSame(added, table.getFirst());
+    }
+
+    /**
+     * An add is interrupted between its CAS and its bitmap update by the removal of the request it added.
+     * No bit must remain set for the empty slot
+     */
+    public void testRemoveDuringAdd() throws Exception {
+        final TestTable table = new TestTable();
+        TestRequest background = new TestRequest(3, 1);
+        table.add(background);
+
+        final TestRequest added = new TestRequest(0, 0);
+        table.runBeforeBitmapUpdate(added, new Runnable() {
+            @Override
+            public void run() {
+                assertSame(added, table.remove(0));
+            }
+        });
+        assertTrue(table.add(added));
+
+        assertNull(table.get(0));
+        assertFalse(table.isBitSet(0, 0));
+        assertSame(background, table.getFirst());
+    }
+
+    /**
+     * A request is replaced by a better one of another level, which is removed before the replacement updates the
+     * bitmaps
+     */
+    public void testRemoveDuringReplace() throws Exception {
+        final TestTable table = new TestTable();
+        TestRequest replaced = new TestRequest(0, 1);
+        table.add(replaced);
+
+        final TestRequest better = new TestRequest(0, 0);
+        table.runBeforeBitmapUpdate(replaced, new Runnable() {
+            @Override
+            public void run() {
+                assertSame(better, table.remove(0));
+            }
+        });
+        assertTrue(table.add(better));
+
+        assertNull(table.get(0));
+        assertFalse(table.isBitSet(0, 0));
+        assertFalse(table.isBitSet(1, 0));
+        assertTrue(table.isEmpty());
+        assertNull(table.getFirst());
+    }
+
+    private static class TestRequest extends InterruptRequest {
+        private final int level;
+
+        private TestRequest(int slot, int level) {
+            this.interruptNumber = slot;
+            this.level = level;
+        }
+
+        @Override
+        public int getPriority() {
+            return level * NUM_SLOTS + interruptNumber;
+        }
+    }
+
+    private static class TestTable extends InterruptRequestTable {
+        private TestTable() {
+            super(NUM_SLOTS, NUM_LEVELS);
+        }
+
+        @Override
+        protected int getSlot(InterruptRequest interruptRequest) {
+            return interruptRequest.getInterruptNumber();
+        }
+
+        private InterruptRequest hookRequest;
+        private Runnable         hook;
+
+        /**
+         * Runs the given action the next time the level of the given request is needed, i.e. after a slot change
+         * involving this request and before the corresponding bitmap update, as if another thread ran it there
+         */
+        private void runBeforeBitmapUpdate(InterruptRequest request, Runnable action) {
+            hookRequest = request;
+            hook = action;
+        }
+
+        @Override
+        protected int getLevel(InterruptRequest interruptRequest) {
+            if (interruptRequest == hookRequest) {
+                Runnable action = hook;
+                hookRequest = null;
+                hook = null;
+                action.run();
+            }
+            return ((TestRequest) interruptRequest).level;
+        }
+
+        private boolean isBitSet(int level, int slot) throws Exception {
+            Field field = InterruptRequestTable.class.getDeclaredField("levelBitmaps");
+            field.setAccessible(true);
+            AtomicLongArray levelBitmaps = (AtomicLongArray) field.get(this);
+            int wordsPerLevel = (NUM_SLOTS + 63) >>> 6;
+            return (levelBitmaps.get(level * wordsPerLevel + (slot >>> 6)) & (1L << slot)) != 0;
+        }
+    }
+}
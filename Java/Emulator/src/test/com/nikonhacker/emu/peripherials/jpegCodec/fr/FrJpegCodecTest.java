@@ -0,0 +1,301 @@
+package com.nikonhacker.emu.peripherials.jpegCodec.fr;
+
+import com.nikonhacker.emu.EmulationFramework;
+import com.nikonhacker.emu.FrEmulator;
+import com.nikonhacker.emu.MasterClock;
+import com.nikonhacker.emu.Platform;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+import com.nikonhacker.emu.peripherials.interruptController.SharedInterruptCircuit;
+import com.nikonhacker.emu.peripherials.jpegCodec.JpegCodec;
+import com.nikonhacker.emu.peripherials.interruptController.fr.FrInterruptController;
+import com.thoughtworks.xstream.XStream;
+import junit.framework.TestCase;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+
+public class FrJpegCodecTest extends TestCase {
+    private static final int ADDR_JPEG = 0x10000;
+    private static final int ADDR_Y    = 0x20000;
+    private static final int ADDR_CB   = 0x30000;
+    private static final int ADDR_CR   = 0x40000;
+
+    private static final int WIDTH  = 32;
+    private static final int HEIGHT = 16;
+
+    private static final int CMD_DECODE   = 0x8000;
+    private static final int CMD_TRANSFER = 0x2000;
+
+    private Platform platform;
+    private DebuggableMemory memory;
+    private RecordingInterruptCircuit interruptCircuit;
+    private FrJpegCodec codec;
+
+    @Override
+    protected void setUp() throws Exception {
+        platform = new Platform(new MasterClock());
+        memory = new DebuggableMemory(false);
+        memory.map(0, 0x50000, true, true, true);
+        platform.setMemory(memory);
+        interruptCircuit = new RecordingInterruptCircuit();
+        platform.setSharedInterruptCircuit(interruptCircuit);
+        codec = new FrJpegCodec(0, platform, new FrEmulator(platform));
+        platform.setJpegCodec(new JpegCodec[]{codec});
+        codec.setSrcAddrJpeg(ADDR_JPEG);
+        codec.setDstAddrY(ADDR_Y);
+        codec.setDstAddrCb(ADDR_CB);
+        codec.setDstAddrCr(ADDR_CR);
+        codec.setYWidth(WIDTH);
+        codec.setCbCrWidth(WIDTH);
+        codec.setOutputWidth(WIDTH);
+        codec.setOutputHeight(HEIGHT);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        codec.dispose();
+    }
+
+    public void testDecodeAndTransfer() throws Exception {
+        loadJpeg(createJpeg(WIDTH, HEIGHT, 0x60));
+        codec.setCommand(CMD_DECODE);
+        // completion is only reported once the emulated decoding time has elapsed
+        assertTrue(codec.onCycleCountChange(0, 1));
+        assertEquals(0, interruptCircuit.requestCount);
+        runUntilDecoded();
+        assertEquals(1, interruptCircuit.requestCount);
+        assertEquals(8, codec.getInterruptStatus());
+        assertEquals(WIDTH, getJpegWidth());
+        assertEquals(HEIGHT, getJpegHeight());
+
+        codec.setCommand(CMD_TRANSFER);
+        assertEquals(2, interruptCircuit.requestCount);
+        assertEquals((byte) 0xC0, codec.getInterruptStatus());
+        assertPlanes(0x60);
+    }
+
+    public void testTransferBeforeDecodeTimeElapsed() throws Exception {
+        loadJpeg(createJpeg(WIDTH, HEIGHT, 0x60));
+        codec.setCommand(CMD_DECODE);
+        // the firmware may not wait for the end of decoding
+        codec.setCommand(CMD_TRANSFER);
+        assertEquals(2, interruptCircuit.requestCount);
+        assertPlanes(0x60);
+    }
+
+    /**
+     * The raster of a transferred image is reused for the next one of the same size
+     */
+    public void testSuccessiveDecodes() throws Exception {
+        int[] levels = {0x20, 0xA0, 0xE0};
+        for (int level : levels) {
+            loadJpeg(createJpeg(WIDTH, HEIGHT, level));
+            codec.setCommand(CMD_DECODE);
+            runUntilDecoded();
+            codec.setCommand(CMD_TRANSFER);
+            assertPlanes(level);
+        }
+    }
+
+    /**
+     * A new decode completes the previous one, that was not waited for
+     */
+    public void testDecodeBeforePreviousCompleted() throws Exception {
+        loadJpeg(createJpeg(WIDTH, HEIGHT, 0x20));
+        codec.setCommand(CMD_DECODE);
+        loadJpeg(createJpeg(WIDTH, HEIGHT, 0xA0));
+        codec.setCommand(CMD_DECODE);
+        assertEquals(1, interruptCircuit.requestCount);
+        runUntilDecoded();
+        assertEquals(2, interruptCircuit.requestCount);
+        codec.setCommand(CMD_TRANSFER);
+        assertPlanes(0xA0);
+    }
+
+    /**
+     * A checkpoint is taken while the worker is decoding. Both the original and the restored codec must complete
+     * the decode at the same time and transfer the same image
+     */
+    public void testCheckpointDuringDecode() throws Exception {
+        loadJpeg(createJpeg(WIDTH, HEIGHT, 0x60));
+        codec.setCommand(CMD_DECODE);
+        assertTrue(codec.onCycleCountChange(0, 1));
+        Platform restored = checkpointAndRestore();
+        FrJpegCodec restoredCodec = (FrJpegCodec) restored.getJpegCodec()[0];
+        RecordingInterruptCircuit restoredInterruptCircuit = (RecordingInterruptCircuit) restored.getSharedInterruptCircuit();
+        try {
+            assertEquals(0, restoredInterruptCircuit.requestCount);
+            int originalCycles = runUntilDecoded(codec);
+            int restoredCycles = runUntilDecoded(restoredCodec);
+            assertEquals(originalCycles, restoredCycles);
+            assertEquals(1, restoredInterruptCircuit.requestCount);
+            assertEquals(8, restoredCodec.getInterruptStatus());
+
+            codec.setCommand(CMD_TRANSFER);
+            restoredCodec.setCommand(CMD_TRANSFER);
+            assertEquals(2, restoredInterruptCircuit.requestCount);
+            assertPlanes(0x60, memory);
+            assertPlanes(0x60, restored.getMemory());
+        }
+        finally {
+            restoredCodec.dispose();
+        }
+    }
+
+    /**
+     * A checkpoint is taken once decoding is complete, before the image is transferred
+     */
+    public void testCheckpointBeforeTransfer() throws Exception {
+        loadJpeg(createJpeg(WIDTH, HEIGHT, 0xA0));
+        codec.setCommand(CMD_DECODE);
+        runUntilDecoded();
+        Platform restored = checkpointAndRestore();
+        FrJpegCodec restoredCodec = (FrJpegCodec) restored.getJpegCodec()[0];
+        try {
+            assertEquals(WIDTH, ((restoredCodec.getJPEGWidthHi() & 0xFF) << 8) | (restoredCodec.getJPEGWidthLo() & 0xFF));
+            assertEquals(HEIGHT, ((restoredCodec.getJPEGHeightHi() & 0xFF) << 8) | (restoredCodec.getJPEGHeightLo() & 0xFF));
+            restoredCodec.setCommand(CMD_TRANSFER);
+            assertPlanes(0xA0, restored.getMemory());
+        }
+        finally {
+            restoredCodec.dispose();
+        }
+    }
+
+    public void testInvalidData() throws Exception {
+        memory.storeBlock(ADDR_JPEG, new byte[512], 0, 512, DebuggableMemory.AccessSource.DMA);
+        codec.setSizeJpeg(1);
+        codec.setCommand(CMD_DECODE);
+        runUntilDecoded();
+        assertEquals(1, interruptCircuit.requestCount);
+        assertEquals(0x20, codec.getInterruptStatus());
+        assertEquals(1, codec.getErrorCode());
+    }
+
+    public void testDisposeStopsDecoderThread() throws Exception {
+        Set<Thread> otherThreads = Thread.getAllStackTraces().keySet();
+        loadJpeg(createJpeg(WIDTH, HEIGHT, 0x60));
+        codec.setCommand(CMD_DECODE);
+        runUntilDecoded();
+        Thread decoderThread = findDecoderThread(otherThreads);
+        assertNotNull(decoderThread);
+
+        codec.dispose();
+        decoderThread.join(5000);
+        assertFalse(decoderThread.isAlive());
+
+        // a disposed codec can still be used
+        codec.setCommand(CMD_DECODE);
+        runUntilDecoded();
+        codec.setCommand(CMD_TRANSFER);
+        assertPlanes(0x60);
+    }
+
+    private void runUntilDecoded() {
+        runUntilDecoded(codec);
+    }
+
+    /**
+     * @return the number of cycles it took
+     */
+    private static int runUntilDecoded(FrJpegCodec codec) {
+        int cycles = 0;
+        while (codec.onCycleCountChange(cycles, 16)) {
+            cycles += 16;
+            assertTrue("decoding never completes", cycles < 1000000);
+        }
+        return cycles;
+    }
+
+    /**
+     * Saves the platform the way a checkpoint does (serialized devices and a copy-on-write snapshot of the memory)
+     * and restores it
+     */
+    private Platform checkpointAndRestore() {
+        XStream xStream = EmulationFramework.getFrameworkXStream();
+        Platform restored = (Platform) xStream.fromXML(xStream.toXML(platform));
+        DebuggableMemory restoredMemory = new DebuggableMemory(false);
+        restoredMemory.restoreSnapshot(memory.takeSnapshot());
+        restored.setMemory(restoredMemory);
+        return restored;
+    }
+
+    private int getJpegWidth() {
+        return ((codec.getJPEGWidthHi() & 0xFF) << 8) | (codec.getJPEGWidthLo() & 0xFF);
+    }
+
+    private int getJpegHeight() {
+        return ((codec.getJPEGHeightHi() & 0xFF) << 8) | (codec.getJPEGHeightLo() & 0xFF);
+    }
+
+    /**
+     * Checks a gray image was transferred: Y close to the gray level, Cb and Cr neutral
+     */
+    private void assertPlanes(int level) {
+        assertPlanes(level, memory);
+    }
+
+    private static void assertPlanes(int level, DebuggableMemory memory) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertLevel("Y(" + x + "," + y + ")", level, memory.loadUnsigned8(ADDR_Y + y * WIDTH + x));
+            }
+            for (int x = 0; x < WIDTH / 2; x++) {
+                assertLevel("Cb(" + x + "," + y + ")", 0x80, memory.loadUnsigned8(ADDR_CB + y * WIDTH + x));
+                assertLevel("Cr(" + x + "," + y + ")", 0x80, memory.loadUnsigned8(ADDR_CR + y * WIDTH + x));
+            }
+        }
+    }
+
+    private static void assertLevel(String message, int expected, int actual) {
+        assertTrue(message + ": expected ~0x" + Integer.toHexString(expected) + " but was 0x" + Integer.toHexString(actual), Math.abs(expected - actual) <= 2);
+    }
+
+    private void loadJpeg(byte[] jpeg) {
+        memory.storeBlock(ADDR_JPEG, jpeg, 0, jpeg.length, DebuggableMemory.AccessSource.DMA);
+        codec.setSizeJpeg((jpeg.length + 511) / 512);
+    }
+
+    private static byte[] createJpeg(int width, int height, int level) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(level, level, level));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, "jpg", bytes));
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the decoder thread started since otherThreads were listed, or null if none
+     */
+    private static Thread findDecoderThread(Set<Thread> otherThreads) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("JpegCodec 0 decoder") && !otherThreads.contains(thread)) {
+                return thread;
+            }
+        }
+        return null;
+    }
+
+    private static class RecordingInterruptCircuit implements SharedInterruptCircuit {
+        private int requestCount;
+
+        @Override
+        public boolean request(int interruptNumber, int sourceNumber) {
+            assertEquals(FrInterruptController.IMAGE_28_SHARED_REQUEST_NR, interruptNumber);
+            assertEquals(29, sourceNumber);
+            requestCount++;
+            return true;
+        }
+
+        @Override
+        public void removeRequest(int interruptNumber, int sourceNumber) {
+        }
+    }
+}
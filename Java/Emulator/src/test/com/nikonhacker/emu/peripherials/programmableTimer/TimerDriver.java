@@ -0,0 +1,227 @@
+package com.nikonhacker.emu.peripherials.programmableTimer;
+
+import com.nikonhacker.emu.MasterClock;
+import com.nikonhacker.emu.Platform;
+import com.nikonhacker.emu.interrupt.InterruptRequest;
+import com.nikonhacker.emu.peripherials.interruptController.InterruptController;
+import com.nikonhacker.emu.peripherials.interruptController.SharedInterruptCircuit;
+import junit.framework.TestCase;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets emulated time elapse for a timer and records what it does (interrupt requests and observed states, with
+ * their time), so that the same scenario can be run one tick at a time (Stepped) and the way emulation does it,
+ * through sync(), skipTicks() and events (Evented), and both runs compared.
+ *
+ * A scenario must call advanceTo() between a write stopping the timer and one restarting it, so that the stepped run
+ * sees the timer stop, and before reading the timer after a frequency change, so that the stepped run performs the
+ * tick ending at the change.
+ */
+public abstract class TimerDriver {
+    protected final Platform platform = new Platform(new MasterClock());
+    protected ProgrammableTimer timer;
+    private final List<String> log = new ArrayList<>();
+
+    public Platform getPlatform() {
+        return platform;
+    }
+
+    public void setTimer(ProgrammableTimer timer) {
+        this.timer = timer;
+    }
+
+    /**
+     * @return the current emulated time, in picoseconds
+     */
+    public abstract long getTimePs();
+
+    /**
+     * Lets emulated time elapse up to the given time, performing all ticks due
+     */
+    public abstract void advanceTo(long timePs);
+
+    public void advanceBy(long durationPs) {
+        advanceTo(getTimePs() + durationPs);
+    }
+
+    public void log(String message) {
+        log.add(getTimePs() + "ps: " + message);
+    }
+
+    public List<String> getLog() {
+        return log;
+    }
+
+    public InterruptController createInterruptController() {
+        return new RecordingInterruptController();
+    }
+
+    public SharedInterruptCircuit createSharedInterruptCircuit() {
+        return new RecordingSharedInterruptCircuit();
+    }
+
+    /**
+     * Checks both runs logged the same entries, at the same times
+     */
+    public static void assertSameLogs(TimerDriver expected, TimerDriver actual) {
+        List<String> expectedLog = expected.getLog();
+        List<String> actualLog = actual.getLog();
+        for (int i = 0; i < Math.min(expectedLog.size(), actualLog.size()); i++) {
+            TestCase.assertEquals("Log entry #" + i, expectedLog.get(i), actualLog.get(i));
+        }
+        TestCase.assertEquals("Log size", expectedLog.size(), actualLog.size());
+    }
+
+    /**
+     * Performs each tick with tick(), at its time. The platform clock stays at 0 so that sync() never has anything
+     * to do
+     */
+    public static class Stepped extends TimerDriver {
+        private long timePs;
+        private long lastTickTimePs;
+        private boolean counting;
+
+        @Override
+        public long getTimePs() {
+            return timePs;
+        }
+
+        @Override
+        public void advanceTo(long endTimePs) {
+            updateCounting();
+            if (counting) {
+                long tickPeriodPs = MasterClock.PS_PER_SEC / timer.getFrequencyHz();
+                if (lastTickTimePs + tickPeriodPs < timePs) {
+                    // After a frequency increase, the current tick ends now
+                    lastTickTimePs = timePs - tickPeriodPs;
+                }
+            }
+            while (counting) {
+                long tickTimePs = lastTickTimePs + MasterClock.PS_PER_SEC / timer.getFrequencyHz();
+                if (tickTimePs > endTimePs) {
+                    break;
+                }
+                lastTickTimePs = tickTimePs;
+                timePs = tickTimePs;
+                timer.tick();
+                updateCounting();
+            }
+            timePs = endTimePs;
+        }
+
+        private void updateCounting() {
+            boolean nowCounting = timer.isCounting() && timer.getFrequencyHz() > 0;
+            if (nowCounting && !counting) {
+                // Starting now
+                lastTickTimePs = timePs;
+            }
+            counting = nowCounting;
+        }
+    }
+
+    /**
+     * Processes the events of the platform clock at their time, as MasterClock does, and lets register accesses
+     * sync() the timer in between
+     */
+    public static class Evented extends TimerDriver {
+        private final Field nextEventTimePsField;
+        private final Method processEventsMethod;
+
+        public Evented() {
+            try {
+                nextEventTimePsField = MasterClock.class.getDeclaredField("nextEventTimePs");
+                nextEventTimePsField.setAccessible(true);
+                processEventsMethod = MasterClock.class.getDeclaredMethod("processEvents");
+                processEventsMethod.setAccessible(true);
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public long getTimePs() {
+            return platform.getMasterClock().getTotalElapsedTimePs();
+        }
+
+        @Override
+        public void advanceTo(long endTimePs) {
+            MasterClock masterClock = platform.getMasterClock();
+            try {
+                long eventTimePs;
+                while ((eventTimePs = nextEventTimePsField.getLong(masterClock)) <= endTimePs) {
+                    masterClock.setTotalElapsedTimePsForDebug(eventTimePs);
+                    processEventsMethod.invoke(masterClock);
+                }
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            masterClock.setTotalElapsedTimePsForDebug(endTimePs);
+        }
+    }
+
+    private class RecordingInterruptController implements InterruptController {
+        @Override
+        public boolean request(int interruptNumber) {
+            log("request interrupt " + interruptNumber);
+            return true;
+        }
+
+        @Override
+        public boolean request(InterruptRequest newInterruptRequest) {
+            return request(newInterruptRequest.getInterruptNumber());
+        }
+
+        @Override
+        public void removeRequest(int interruptNumber) {
+            log("remove interrupt " + interruptNumber);
+        }
+
+        @Override
+        public void removeRequest(InterruptRequest interruptRequest) {
+            removeRequest(interruptRequest.getInterruptNumber());
+        }
+
+        @Override
+        public void removeEdgeTriggeredRequest(InterruptRequest interruptRequest) {
+        }
+
+        @Override
+        public boolean hasPendingRequests() {
+            return false;
+        }
+
+        @Override
+        public InterruptRequest getNextRequest() {
+            return null;
+        }
+
+        @Override
+        public List<InterruptRequest> getInterruptRequestQueue() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public String getStatus() {
+            return "";
+        }
+    }
+
+    private class RecordingSharedInterruptCircuit implements SharedInterruptCircuit {
+        @Override
+        public boolean request(int interruptNumber, int sourceNumber) {
+            log("request interrupt " + interruptNumber + "/" + sourceNumber);
+            return true;
+        }
+
+        @Override
+        public void removeRequest(int interruptNumber, int sourceNumber) {
+            log("remove interrupt " + interruptNumber + "/" + sourceNumber);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.nikonhacker.emu.peripherials.programmableTimer.fr;
+
+import com.nikonhacker.emu.Platform;
+import com.nikonhacker.emu.peripherials.clock.fr.FrClockGenerator;
+import com.nikonhacker.emu.peripherials.interruptController.fr.FrInterruptController;
+import com.nikonhacker.emu.peripherials.programmableTimer.ProgrammableTimer;
+import com.nikonhacker.emu.peripherials.programmableTimer.TimerDriver;
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Each scenario is run on the 16-bit and on the 32-bit reload timer, one tick at a time and through sync() and
+ * events, and both runs must be identical
+ */
+public class FrReloadTimerTest extends TestCase {
+    private static final int CSL_DIV2 = 0b000 << 9;
+    private static final int CSL_DIV8 = 0b010 << 9;
+    private static final int CSL_DIV32 = 0b100 << 9;
+
+    /** Counting, with interrupt and reload. UF is written as 1 so that the underflow flag is kept */
+    private static final int RELOAD = FrReloadTimer.TMCSR_CNTE_MASK | FrReloadTimer.TMCSR_INTE_MASK | FrReloadTimer.TMCSR_RELD_MASK | FrReloadTimer.TMCSR_UF_MASK;
+
+    /** Counting, with interrupt, one shot */
+    private static final int ONE_SHOT = FrReloadTimer.TMCSR_CNTE_MASK | FrReloadTimer.TMCSR_INTE_MASK | FrReloadTimer.TMCSR_UF_MASK;
+
+    /** PCLK is 25MHz after reset, so a tick at PCLK/2 lasts 80ns */
+    private static final long TICK_PS = 80000;
+
+    private static final String INTERRUPT_16 = "request interrupt " + FrInterruptController.RELOAD_TIMER0_INTERRUPT_REQUEST_NR;
+    private static final String INTERRUPT_32 = "request interrupt " + FrInterruptController.RELOAD_TIMER_32_INTERRUPT_REQUEST_NR + "/20";
+
+    public void testReload() throws Exception {
+        Scenario scenario = new Scenario() {
+            @Override
+            void run(TimerDriver driver, FrReloadTimer timer) {
+                timer.setTmrlra(1000);
+                timer.setTmcsr(CSL_DIV2 | RELOAD | FrReloadTimer.TMCSR_TRG_MASK);
+                observe(driver, timer, 2500 * TICK_PS + 999, 13);
+                // clear the underflow flag
+                timer.setTmcsr(CSL_DIV2 | RELOAD & ~FrReloadTimer.TMCSR_UF_MASK);
+                observe(driver, timer, 2500 * TICK_PS, 7);
+                // new reload value, taken into account at the next underflow
+                timer.setTmrlra(300);
+                observe(driver, timer, 2000 * TICK_PS, 11);
+                // long stretch without any access
+                driver.advanceBy(100000 * TICK_PS);
+                observe(driver, timer);
+                // reload now
+                timer.setTmcsr(CSL_DIV2 | RELOAD | FrReloadTimer.TMCSR_TRG_MASK);
+                observe(driver, timer, 1000 * TICK_PS, 3);
+            }
+        };
+        // 16-bit: underflows every 1000 ticks up to 6000, the first one after the new reload value, then every 300
+        // ticks up to 107000, then 3 after the final reload
+        List<String> log = check(scenario, false);
+        assertEquals(6 + (107000 - 6000) / 300 + 3, count(log, INTERRUPT_16));
+        // 32-bit: tmrlra + 1 ticks between underflows
+        log = check(scenario, true);
+        assertEquals(5 + (107000 - 5005) / 301 + 3, count(log, INTERRUPT_32));
+    }
+
+    public void testOneShot() throws Exception {
+        Scenario scenario = new Scenario() {
+            @Override
+            void run(TimerDriver driver, FrReloadTimer timer) {
+                timer.setTmrlra(500);
+                timer.setTmcsr(CSL_DIV8 | ONE_SHOT | FrReloadTimer.TMCSR_TRG_MASK);
+                observe(driver, timer, 8 * 1000 * TICK_PS, 9);
+                // restart with a new value
+                timer.setTmrlra(700);
+                timer.setTmcsr(CSL_DIV8 | ONE_SHOT | FrReloadTimer.TMCSR_TRG_MASK);
+                observe(driver, timer, 8 * 1000 * TICK_PS, 9);
+            }
+        };
+        assertEquals(2, count(check(scenario, false), INTERRUPT_16));
+        assertEquals(2, count(check(scenario, true), INTERRUPT_32));
+    }
+
+    /**
+     * Prescaler and clock source changes while counting
+     */
+    public void testFrequencyChanges() throws Exception {
+        Scenario scenario = new Scenario() {
+            @Override
+            void run(TimerDriver driver, FrReloadTimer timer) {
+                FrClockGenerator clockGenerator = (FrClockGenerator) driver.getPlatform().getClockGenerator();
+                timer.setTmrlra(2000);
+                timer.setTmcsr(CSL_DIV2 | RELOAD | FrReloadTimer.TMCSR_TRG_MASK);
+                observe(driver, timer, 1500 * TICK_PS + 33333, 5);
+                // slower prescaler output, in the middle of a tick
+                timer.setTmcsr(CSL_DIV32 | RELOAD);
+                observe(driver, timer, 16 * 3000 * TICK_PS, 7);
+                // PCLK = BCLK/2 = 50MHz: twice as fast, long after the last tick
+                driver.advanceBy(16 * TICK_PS - 1);
+                clockGenerator.setDivr2(0b0001_0000);
+                observe(driver, timer, 8 * 3000 * TICK_PS, 7);
+                // faster prescaler output right on a tick
+                timer.setTmcsr(CSL_DIV2 | RELOAD);
+                observe(driver, timer, 3000 * TICK_PS, 7);
+                // back to PCLK = 25MHz
+                clockGenerator.setDivr2(0b0011_0000);
+                observe(driver, timer, 5000 * TICK_PS, 7);
+            }
+        };
+        assertTrue(count(check(scenario, false), INTERRUPT_16) > 0);
+        assertTrue(count(check(scenario, true), INTERRUPT_32) > 0);
+    }
+
+    /**
+     * Counter disabled and enabled while counting
+     */
+    public void testStopAndRestart() throws Exception {
+        Scenario scenario = new Scenario() {
+            @Override
+            void run(TimerDriver driver, FrReloadTimer timer) {
+                timer.setTmrlra(1000);
+                timer.setTmcsr(CSL_DIV2 | RELOAD | FrReloadTimer.TMCSR_TRG_MASK);
+                observe(driver, timer, 1500 * TICK_PS + 5, 3);
+                timer.setTmcsr(CSL_DIV2 | RELOAD & ~FrReloadTimer.TMCSR_CNTE_MASK);
+                driver.advanceBy(1000 * TICK_PS / 3);
+                observe(driver, timer);
+                timer.setTmcsr(CSL_DIV2 | RELOAD);
+                observe(driver, timer, 1500 * TICK_PS, 3);
+                timer.setActive(false);
+                driver.advanceBy(1000 * TICK_PS);
+                observe(driver, timer);
+                timer.setActive(true);
+                observe(driver, timer, 1500 * TICK_PS, 3);
+            }
+        };
+        check(scenario, false);
+        check(scenario, true);
+    }
+
+    private abstract static class Scenario {
+        abstract void run(TimerDriver driver, FrReloadTimer timer);
+    }
+
+    /**
+     * Runs the scenario one tick at a time and through events, and checks both runs are identical
+     * @return the log of the run
+     */
+    private static List<String> check(Scenario scenario, boolean is32Bit) {
+        TimerDriver stepped = new TimerDriver.Stepped();
+        scenario.run(stepped, createTimer(stepped, is32Bit));
+        TimerDriver evented = new TimerDriver.Evented();
+        scenario.run(evented, createTimer(evented, is32Bit));
+        TimerDriver.assertSameLogs(stepped, evented);
+        return stepped.getLog();
+    }
+
+    private static FrReloadTimer createTimer(TimerDriver driver, boolean is32Bit) {
+        Platform platform = driver.getPlatform();
+        platform.setInterruptController(driver.createInterruptController());
+        platform.setSharedInterruptCircuit(driver.createSharedInterruptCircuit());
+        FrClockGenerator clockGenerator = new FrClockGenerator();
+        platform.setClockGenerator(clockGenerator);
+        clockGenerator.setPlatform(platform);
+        FrReloadTimer timer = is32Bit ? new FrReloadTimer32(0, platform) : new FrReloadTimer(0, platform);
+        platform.setProgrammableTimers(new ProgrammableTimer[]{timer});
+        driver.setTimer(timer);
+        timer.setActive(true);
+        return timer;
+    }
+
+    /**
+     * Lets the given duration elapse, observing the timer the given number of times
+     */
+    private static void observe(TimerDriver driver, FrReloadTimer timer, long durationPs, int observations) {
+        for (int i = 0; i < observations; i++) {
+            driver.advanceBy(durationPs / observations);
+            observe(driver, timer);
+        }
+    }
+
+    private static void observe(TimerDriver driver, FrReloadTimer timer) {
+        // perform the tick ending at a frequency increase, as sync() does
+        driver.advanceBy(0);
+        driver.log("TMR=" + timer.getTmr() + " TMCSR=0x" + Integer.toHexString(timer.getTmcsr()) + " TMRLRA=" + timer.getTmrlra());
+    }
+
+    private static int count(List<String> log, String message) {
+        int count = 0;
+        for (String entry : log) {
+            if (entry.endsWith(": " + message)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
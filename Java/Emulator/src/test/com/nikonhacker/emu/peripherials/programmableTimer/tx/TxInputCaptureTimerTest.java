@@ -0,0 +1,188 @@
+package com.nikonhacker.emu.peripherials.programmableTimer.tx;
+
+import com.nikonhacker.disassembly.tx.TxCPUState;
+import com.nikonhacker.emu.Platform;
+import com.nikonhacker.emu.peripherials.clock.tx.TxClockGenerator;
+import com.nikonhacker.emu.peripherials.interruptController.tx.TxInterruptController;
+import com.nikonhacker.emu.peripherials.programmableTimer.ProgrammableTimer;
+import com.nikonhacker.emu.peripherials.programmableTimer.TimerDriver;
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Each scenario is run one tick at a time and through sync() and events, and both runs must be identical
+ */
+public class TxInputCaptureTimerTest extends TestCase {
+    private static final int TBTCLK_T2  = 0b0000;
+    private static final int TBTCLK_T16 = 0b0011;
+
+    private static final int RUN = TxInputCaptureTimer.TBTRUN_TBTRUN_MASK | TxInputCaptureTimer.TBTRUN_TBTPRUN_MASK;
+
+    private static final int COMPARE = TxInputCaptureTimer.CMPCTL_CMPEN_MASK | TxInputCaptureTimer.CMPCTL_TCFFEN_MASK | TxInputCaptureTimer.CMPCTL_TCFFC_MASK;
+
+    /** ft0 is 5MHz after reset, so a T2 tick lasts 800ns */
+    private static final long TICK_PS = 800000;
+
+    public void testComparesAndOverflow() throws Exception {
+        List<String> log = check(new Scenario() {
+            @Override
+            void run(TimerDriver driver, TxInputCaptureTimer timer) {
+                timer.setTbtcr(TBTCLK_T2);
+                timer.setCmpctl(0, COMPARE);
+                timer.setTccmp(0, 1000);
+                timer.setCmpctl(1, COMPARE);
+                timer.setTccmp(1, 2500);
+                // a disabled comparator
+                timer.setTccmp(2, 1500);
+                start(timer);
+                observe(driver, timer, 3000 * TICK_PS, 17);
+                // close to the 32-bit overflow
+                timer.setCurrentValue(0xFFFFF000);
+                timer.setTccmp(0, 0xFFFFF800);
+                observe(driver, timer, 0x1000 * TICK_PS, 5);
+                driver.advanceBy(5000 * TICK_PS);
+                observe(driver, timer);
+            }
+        });
+        assertEquals(1, count(log, "request interrupt " + TxInterruptController.INTTBT));
+        // 1000, then 0xFFFFF800 before the overflow
+        assertEquals(2, count(log, "request interrupt " + TxInterruptController.INTCMP0));
+        assertEquals(2, count(log, "request interrupt " + (TxInterruptController.INTCMP0 + 1)));
+    }
+
+    public void testDoubleBuffering() throws Exception {
+        List<String> log = check(new Scenario() {
+            @Override
+            void run(TimerDriver driver, TxInputCaptureTimer timer) {
+                timer.setTbtcr(TBTCLK_T2);
+                timer.setCmpctl(0, COMPARE);
+                timer.setTccmp(0, 100);
+                start(timer);
+                driver.advanceBy(50 * TICK_PS + 777);
+                timer.setCmpctl(0, COMPARE | TxInputCaptureTimer.CMPCTL_CMPRDE_MASK);
+                timer.setTccmp(0, 400);
+                // the new value applies after the match at 100
+                observe(driver, timer);
+                driver.advanceBy(100 * TICK_PS);
+                observe(driver, timer);
+                observe(driver, timer, 1000 * TICK_PS, 7);
+            }
+        });
+        assertEquals(2, count(log, "request interrupt " + TxInterruptController.INTCMP0));
+    }
+
+    public void testCaptures() throws Exception {
+        check(new Scenario() {
+            @Override
+            void run(TimerDriver driver, TxInputCaptureTimer timer) {
+                timer.setTbtcr(TBTCLK_T16);
+                start(timer);
+                for (int i = 0; i < 10; i++) {
+                    driver.advanceBy(3333333 * (i + 1));
+                    timer.performCapture(i % 4);
+                    driver.advanceBy(1111111);
+                    // software capture
+                    timer.setTbtrun(RUN | TxInputCaptureTimer.TBTRUN_TBTCAP_MASK);
+                    observe(driver, timer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Prescaler and clock source changes while counting
+     */
+    public void testFrequencyChanges() throws Exception {
+        check(new Scenario() {
+            @Override
+            void run(TimerDriver driver, TxInputCaptureTimer timer) {
+                TxClockGenerator clockGenerator = (TxClockGenerator) driver.getPlatform().getClockGenerator();
+                timer.setTbtcr(TBTCLK_T2);
+                timer.setCmpctl(0, COMPARE);
+                timer.setTccmp(0, 3000);
+                start(timer);
+                observe(driver, timer, 1000 * TICK_PS + 4321, 3);
+                // prescaler output changed in the middle of a tick, without clearing the counter
+                timer.setTbtcr(TBTCLK_T16);
+                observe(driver, timer, 8 * 1000 * TICK_PS, 3);
+                // ft0 = fperiph/8
+                clockGenerator.setSyscr1((byte) 0b010);
+                observe(driver, timer, 32 * 1000 * TICK_PS, 3);
+                timer.setTbtcr(TBTCLK_T2);
+                clockGenerator.setSyscr1((byte) 0b000);
+                observe(driver, timer, 2000 * TICK_PS, 3);
+            }
+        });
+    }
+
+    private abstract static class Scenario {
+        abstract void run(TimerDriver driver, TxInputCaptureTimer timer);
+    }
+
+    /**
+     * Runs the scenario one tick at a time and through events, and checks both runs are identical
+     * @return the log of the run
+     */
+    private static List<String> check(Scenario scenario) {
+        TimerDriver stepped = new TimerDriver.Stepped();
+        scenario.run(stepped, createTimer(stepped));
+        TimerDriver evented = new TimerDriver.Evented();
+        scenario.run(evented, createTimer(evented));
+        TimerDriver.assertSameLogs(stepped, evented);
+        return stepped.getLog();
+    }
+
+    private static TxInputCaptureTimer createTimer(TimerDriver driver) {
+        Platform platform = driver.getPlatform();
+        platform.setCpuState(new TxCPUState());
+        platform.setInterruptController(driver.createInterruptController());
+        TxClockGenerator clockGenerator = new TxClockGenerator();
+        platform.setClockGenerator(clockGenerator);
+        clockGenerator.setPlatform(platform);
+        TxInputCaptureTimer timer = new TxInputCaptureTimer(platform);
+        platform.setProgrammableTimers(new ProgrammableTimer[]{timer});
+        driver.setTimer(timer);
+        timer.setActive(true);
+        return timer;
+    }
+
+    private static void start(TxInputCaptureTimer timer) {
+        timer.setTcen(TxInputCaptureTimer.TCEN_TCEN_MASK);
+        timer.setTbtrun(RUN);
+    }
+
+    /**
+     * Lets the given duration elapse, observing the timer the given number of times
+     */
+    private static void observe(TimerDriver driver, TxInputCaptureTimer timer, long durationPs, int observations) {
+        for (int i = 0; i < observations; i++) {
+            driver.advanceBy(durationPs / observations);
+            observe(driver, timer);
+        }
+    }
+
+    private static void observe(TimerDriver driver, TxInputCaptureTimer timer) {
+        // perform the tick ending at a frequency increase, as sync() does
+        driver.advanceBy(0);
+        StringBuilder state = new StringBuilder("TC=" + timer.getCurrentValue() + " TBTCAP=" + timer.getTbtcap());
+        for (int channel = 0; channel < 4; channel++) {
+            state.append(" TCCAP").append(channel).append("=").append(timer.getTccap(channel));
+        }
+        for (int channel = 0; channel < 2; channel++) {
+            state.append(" TCCMP").append(channel).append("=").append(timer.getTccmp(channel))
+                    .append(" FF").append(channel).append("=").append(timer.getFf(channel));
+        }
+        driver.log(state.toString());
+    }
+
+    private static int count(List<String> log, String message) {
+        int count = 0;
+        for (String entry : log) {
+            if (entry.endsWith(": " + message)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,271 @@
+package com.nikonhacker.emu.peripherials.programmableTimer.tx;
+
+import com.nikonhacker.disassembly.tx.TxCPUState;
+import com.nikonhacker.emu.Platform;
+import com.nikonhacker.emu.peripherials.clock.tx.TxClockGenerator;
+import com.nikonhacker.emu.peripherials.interruptController.tx.TxInterruptController;
+import com.nikonhacker.emu.peripherials.programmableTimer.ProgrammableTimer;
+import com.nikonhacker.emu.peripherials.programmableTimer.TimerDriver;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Each scenario is run one tick at a time and through sync() and events, and both runs must be identical
+ */
+public class TxTimerTest extends TestCase {
+    private static final int TBCLK_T1  = 0b01;
+    private static final int TBCLK_T4  = 0b10;
+    private static final int TBCLK_T16 = 0b11;
+
+    private static final int RUN = TxTimer.TBRUN_TBRUN_MASK | TxTimer.TBRUN_TBPRUN_MASK;
+
+    /** ft0 is 5MHz after reset, so a T1 tick lasts 400ns */
+    private static final long TICK_PS = 400000;
+
+    private static final String INTERRUPT = "request interrupt " + TxInterruptController.INTTB0;
+
+    public void testCompareAndOverflow() throws Exception {
+        List<String> log = check(new Scenario() {
+            @Override
+            void run(TimerDriver driver, TxTimer timer) {
+                timer.setTbmod(TBCLK_T1);
+                timer.setTbrg0(1000);
+                timer.setTbrg1(3000);
+                timer.setTbffcr(TxTimer.TBFFCR_TBE0T1_MASK | TxTimer.TBFFCR_TBE1T1_MASK | 0b11);
+                start(timer);
+                observe(driver, timer, 70000 * TICK_PS, 71);
+                // long stretch without any access
+                driver.advanceBy(150000 * TICK_PS + 123);
+                observe(driver, timer);
+            }
+        });
+        // 220000 ticks: 3 overflows and 4 matches of each comparator
+        assertEquals(11, count(log, INTERRUPT));
+    }
+
+    public void testClearOnCompare1() throws Exception {
+        List<String> log = check(new Scenario() {
+            @Override
+            void run(TimerDriver driver, TxTimer timer) {
+                timer.setTbmod(TBCLK_T1 | TxTimer.TBMOD_TBCLE_MASK);
+                timer.setTbrg0(200);
+                timer.setTbrg1(500);
+                timer.setTbffcr(TxTimer.TBFFCR_TBE0T1_MASK | TxTimer.TBFFCR_TBE1T1_MASK | 0b11);
+                // overflow interrupt disabled, never happens anyway
+                timer.setTbim(TxTimer.TBIM_TBIM0Fn_MASK);
+                start(timer);
+                observe(driver, timer, 3100 * TICK_PS, 29);
+                driver.advanceBy(70000 * TICK_PS);
+                observe(driver, timer);
+            }
+        });
+        assertEquals(2 * (73100 / 500), count(log, INTERRUPT));
+    }
+
+    public void testDoubleBuffering() throws Exception {
+        List<String> log = check(new Scenario() {
+            @Override
+            void run(TimerDriver driver, TxTimer timer) {
+                timer.setTbmod(TBCLK_T1 | TxTimer.TBMOD_TBCLE_MASK);
+                timer.setTbrg0(100);
+                timer.setTbrg1(400);
+                start(timer);
+                driver.advanceBy(50 * TICK_PS + 1000);
+                timer.setTbcr(TxTimer.TBCR_TBWBF_MASK);
+                timer.setTbrg0(150);
+                timer.setTbrg1(300);
+                // the new values only apply after the next matches
+                observe(driver, timer);
+                driver.advanceBy(75 * TICK_PS);
+                observe(driver, timer);
+                driver.advanceBy(300 * TICK_PS);
+                observe(driver, timer);
+                observe(driver, timer, 2000 * TICK_PS, 13);
+                // new values written while the previous ones are pending
+                timer.setTbrg0(50);
+                timer.setTbrg0(60);
+                timer.setTbrg1(270);
+                driver.advanceBy(5000 * TICK_PS);
+                observe(driver, timer);
+            }
+        });
+        List<String> states = getStates(log);
+        assertTrue(states.get(0), states.get(0).contains("RG0=100 RG1=400"));
+        assertTrue(states.get(1), states.get(1).contains("RG0=150 RG1=400"));
+        assertTrue(states.get(2), states.get(2).contains("RG0=150 RG1=300"));
+        assertTrue(states.get(states.size() - 1), states.get(states.size() - 1).contains("RG0=60 RG1=270"));
+    }
+
+    public void testCaptures() throws Exception {
+        List<String> log = check(new Scenario() {
+            @Override
+            void run(TimerDriver driver, TxTimer timer) {
+                timer.setTbmod(TBCLK_T4);
+                timer.setTbrg1(0x8000);
+                timer.setTbffcr(TxTimer.TBFFCR_TBC0T1_MASK | TxTimer.TBFFCR_TBC1T1_MASK | 0b11);
+                start(timer);
+                for (int i = 0; i < 20; i++) {
+                    driver.advanceBy(1234567 * (i + 1));
+                    timer.performCapture0();
+                    driver.advanceBy(7654321);
+                    timer.performCapture1();
+                    observe(driver, timer);
+                }
+                // software capture through TBMOD, which also clears the counter
+                timer.setTbmod(TBCLK_T4 | TxTimer.TBMOD_TBCP0_MASK);
+                observe(driver, timer, 100 * TICK_PS, 3);
+            }
+        });
+        String state = getStates(log).get(0);
+        assertTrue(state, state.endsWith("CP0=0 CP1=5"));
+    }
+
+    /**
+     * Prescaler and clock source changes while counting
+     */
+    public void testFrequencyChanges() throws Exception {
+        List<String> log = check(new Scenario() {
+            @Override
+            void run(TimerDriver driver, TxTimer timer) {
+                TxClockGenerator clockGenerator = (TxClockGenerator) driver.getPlatform().getClockGenerator();
+                timer.setTbmod(TBCLK_T1 | TxTimer.TBMOD_TBCLE_MASK);
+                timer.setTbrg0(300);
+                timer.setTbrg1(1000);
+                timer.setTbffcr(TxTimer.TBFFCR_TBE0T1_MASK | 0b11);
+                start(timer);
+                observe(driver, timer, 1500 * TICK_PS + 12345, 7);
+                // ft0 = fperiph/4: ticks twice as long, starting from the last tick
+                clockGenerator.setSyscr1((byte) 0b001);
+                observe(driver, timer, 3000 * TICK_PS + 55555, 11);
+                // back to fperiph/2 in the middle of a tick
+                driver.advanceBy(TICK_PS / 2);
+                clockGenerator.setSyscr1((byte) 0b000);
+                observe(driver, timer, 2000 * TICK_PS, 5);
+                // ft0 = fperiph/16 right on a tick, then back to fperiph/2 long after the last tick: the current tick
+                // ends at the change
+                clockGenerator.setSyscr1((byte) 0b011);
+                driver.advanceBy(8 * TICK_PS * 10 + 3 * TICK_PS);
+                clockGenerator.setSyscr1((byte) 0b000);
+                observe(driver, timer);
+                // prescaler output change, which also clears the counter
+                timer.setTbmod(TBCLK_T16 | TxTimer.TBMOD_TBCLE_MASK);
+                observe(driver, timer, 16 * 3000 * TICK_PS, 9);
+                driver.advanceBy(TICK_PS * 7 / 3);
+                timer.setTbmod(TBCLK_T4 | TxTimer.TBMOD_TBCLE_MASK);
+                observe(driver, timer, 4 * 3000 * TICK_PS, 9);
+            }
+        });
+        assertTrue(count(log, INTERRUPT) > 0);
+    }
+
+    /**
+     * Counter writes and stop/restart while counting
+     */
+    public void testStopAndRestart() throws Exception {
+        check(new Scenario() {
+            @Override
+            void run(TimerDriver driver, TxTimer timer) {
+                timer.setTbmod(TBCLK_T1);
+                timer.setTbrg0(0x1000);
+                timer.setTbrg1(0xFFF0);
+                start(timer);
+                driver.advanceBy(1000 * TICK_PS + 17);
+                timer.setTbuc(0xFF00);
+                observe(driver, timer, 1000 * TICK_PS, 10);
+                timer.setTbrun(0);
+                driver.advanceBy(TICK_PS * 100 / 3);
+                observe(driver, timer);
+                timer.setTbrun(RUN);
+                observe(driver, timer, 5000 * TICK_PS, 10);
+                timer.setTben(0);
+                driver.advanceBy(TICK_PS * 200 / 7);
+                observe(driver, timer);
+                timer.setTben(TxTimer.TBEN_TBEN_MASK);
+                observe(driver, timer, 5000 * TICK_PS, 10);
+                timer.setActive(false);
+                driver.advanceBy(1000 * TICK_PS);
+                observe(driver, timer);
+                timer.setActive(true);
+                observe(driver, timer, 0x10000 * TICK_PS, 3);
+            }
+        });
+    }
+
+    private abstract static class Scenario {
+        abstract void run(TimerDriver driver, TxTimer timer);
+    }
+
+    /**
+     * Runs the scenario one tick at a time and through events, and checks both runs are identical
+     * @return the log of the run
+     */
+    private static List<String> check(Scenario scenario) {
+        TimerDriver stepped = new TimerDriver.Stepped();
+        scenario.run(stepped, createTimer(stepped));
+        TimerDriver evented = new TimerDriver.Evented();
+        scenario.run(evented, createTimer(evented));
+        TimerDriver.assertSameLogs(stepped, evented);
+        return stepped.getLog();
+    }
+
+    private static TxTimer createTimer(TimerDriver driver) {
+        Platform platform = driver.getPlatform();
+        platform.setCpuState(new TxCPUState());
+        platform.setInterruptController(driver.createInterruptController());
+        TxClockGenerator clockGenerator = new TxClockGenerator();
+        platform.setClockGenerator(clockGenerator);
+        clockGenerator.setPlatform(platform);
+        TxTimer timer = new TxTimer(0, platform);
+        platform.setProgrammableTimers(new ProgrammableTimer[]{timer});
+        driver.setTimer(timer);
+        timer.setActive(true);
+        return timer;
+    }
+
+    private static void start(TxTimer timer) {
+        timer.setTben(TxTimer.TBEN_TBEN_MASK);
+        timer.setTbrun(RUN);
+    }
+
+    /**
+     * Lets the given duration elapse, observing the timer the given number of times
+     */
+    private static void observe(TimerDriver driver, TxTimer timer, long durationPs, int observations) {
+        for (int i = 0; i < observations; i++) {
+            driver.advanceBy(durationPs / observations);
+            observe(driver, timer);
+        }
+    }
+
+    private static void observe(TimerDriver driver, TxTimer timer) {
+        // perform the tick ending at a frequency increase, as sync() does
+        driver.advanceBy(0);
+        driver.log("UC=" + timer.getTbuc() + " RG0=" + timer.getTbrg0() + " RG1=" + timer.getTbrg1()
+                + " FF0=" + timer.isFf0() + " ST=" + timer.getTbst() + " CP0=" + timer.getTbcp0() + " CP1=" + timer.getTbcp1());
+    }
+
+    /**
+     * @return the observed states in the log, without interrupt requests
+     */
+    private static List<String> getStates(List<String> log) {
+        List<String> states = new ArrayList<>();
+        for (String entry : log) {
+            if (entry.contains("UC=")) {
+                states.add(entry);
+            }
+        }
+        return states;
+    }
+
+    private static int count(List<String> log, String message) {
+        int count = 0;
+        for (String entry : log) {
+            if (entry.endsWith(": " + message)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -15,7 +15,7 @@ public class SampleDevice extends SpiSlaveDevice {
     }
 
     @Override
-    public void write(Integer value) {
+    public void write(int value) {
         if (!selected) {
             throw new RuntimeException("SampleDevice.write(0x" + Format.asHex(value & 0xFF, 2) + ") called while chip is not SELECTed !");
         }
@@ -13,8 +13,8 @@ public class TestDevice extends SerialDevice {
     }
 
     @Override
-    public void write(Integer value) {
-        System.out.println("        " + deviceName + " receives " + ((value == null)?"null":("0x" + Format.asHex(value, 2))));
+    public void write(int value) {
+        System.out.println("        " + deviceName + " receives " + ((value == NO_DATA)?"no data":("0x" + Format.asHex(value, 2))));
     }
 
     @Override
@@ -28,8 +28,8 @@ public class TimerDevice extends SerialDevice {
     }
 
     @Override
-    public void write(Integer value) {
-        System.out.println("        " + deviceName + " receives " + ((value == null)?"null":("0x" + Format.asHex(value, 2))));
+    public void write(int value) {
+        System.out.println("        " + deviceName + " receives " + ((value == NO_DATA)?"no data":("0x" + Format.asHex(value, 2))));
     }
 
     @Override
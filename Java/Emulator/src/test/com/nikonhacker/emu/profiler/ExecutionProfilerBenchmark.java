@@ -0,0 +1,167 @@
+package com.nikonhacker.emu.profiler;
+
+import com.nikonhacker.Constants;
+import com.nikonhacker.Prefs;
+import com.nikonhacker.disassembly.CodeSegment;
+import com.nikonhacker.disassembly.CodeStructure;
+import com.nikonhacker.disassembly.Function;
+import com.nikonhacker.disassembly.tx.TxCodeStructure;
+import com.nikonhacker.emu.EmulationFramework;
+import com.nikonhacker.emu.HeadlessEmulation;
+import com.nikonhacker.emu.MasterClock;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Measures the cost of the execution profiler (call tracking, per-function cycles and PC histogram), by running the
+ * same TX program headless without profiler, with an exact profiler and with a sampling one.
+ *
+ * The program calls a few functions made of straight code, a short loop and a nested call, so that both the
+ * per-instruction accounting and the call tracking are exercised.
+ *
+ * Usage: ExecutionProfilerBenchmark [emulated ms per run (default 2000)] [runs per mode (default 5)]
+ */
+public class ExecutionProfilerBenchmark {
+    private static final int BASE_ADDRESS = 0xBFC00000;
+    private static final int FUNCTION_SIZE = 0x400;
+    private static final int IMAGE_SIZE = 0x100000;
+
+    private static final int SAMPLING_INTERVAL_CYCLES = 1000;
+
+    private static final int NOP = 0x00000000;
+    private static final int JR_RA = 0x03E00008;
+    /** jr s0 */
+    private static final int JR_S0 = 0x02000008;
+    /** addu s0, ra, zero */
+    private static final int SAVE_RA = 0x03E08021;
+    /** addiu t0, t0, 1 */
+    private static final int INCREMENT_T0 = 0x25080001;
+    /** addiu t1, zero, 8 */
+    private static final int LOAD_T1 = 0x24090008;
+    /** addiu t1, t1, -1 */
+    private static final int DECREMENT_T1 = 0x2529FFFF;
+    /** bne t1, zero, -2 */
+    private static final int LOOP_T1 = 0x1520FFFE;
+    /** beq zero, zero, back to the start of main */
+    private static final int BRANCH_TO_MAIN = 0x1000FFFB;
+
+    public static void main(String[] args) throws Exception {
+        long durationMs = (args.length > 0) ? Long.parseLong(args[0]) : 2000;
+        int runs = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+
+        File image = File.createTempFile("profilerBenchmark", ".bin");
+        try {
+            writeImage(image);
+            Prefs prefs = new Prefs();
+            HeadlessEmulation.initSharedTables(prefs);
+
+            // warm up the JIT on all paths
+            for (int mode = 0; mode < 3; mode++) {
+                run(prefs, image, durationMs / 4, mode);
+            }
+
+            long[] bestMs = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+            for (int i = 0; i < runs; i++) {
+                for (int mode = 0; mode < 3; mode++) {
+                    bestMs[mode] = Math.min(bestMs[mode], run(prefs, image, durationMs, mode));
+                }
+            }
+
+            System.out.println("Best of " + runs + " runs of " + durationMs + "ms emulated time:");
+            System.out.println("  no profiler       : " + bestMs[0] + "ms");
+            System.out.println("  exact profiler    : " + bestMs[1] + "ms (" + getOverhead(bestMs[1], bestMs[0]) + ")");
+            System.out.println("  sampling profiler : " + bestMs[2] + "ms (" + getOverhead(bestMs[2], bestMs[0]) + ")");
+        }
+        finally {
+            image.delete();
+        }
+    }
+
+    /**
+     * @param mode 0 without profiler, 1 with an exact profiler, 2 with a sampling profiler
+     * @return the wall time of the run, in ms
+     */
+    private static long run(Prefs prefs, File image, long durationMs, int mode) {
+        HeadlessEmulation emulation = new HeadlessEmulation(prefs);
+        try {
+            emulation.loadImage(Constants.CHIP_TX, image);
+            EmulationFramework framework = emulation.getFramework();
+            if (mode > 0) {
+                int samplingIntervalCycles = (mode == 1) ? 0 : SAMPLING_INTERVAL_CYCLES;
+                framework.getEmulator(Constants.CHIP_TX).setProfiler(new ExecutionProfiler(Constants.CHIP_TX, framework.getPlatform(Constants.CHIP_TX).getMemory(), createCodeStructure(), samplingIntervalCycles));
+            }
+            long start = System.nanoTime();
+            emulation.run(durationMs * MasterClock.PS_PER_MS, null);
+            return (System.nanoTime() - start) / 1000000;
+        }
+        finally {
+            emulation.dispose();
+        }
+    }
+
+    private static String getOverhead(long ms, long referenceMs) {
+        return String.format("%+.1f%%", 100.0 * (ms - referenceMs) / referenceMs);
+    }
+
+    /**
+     * main calls f1 and f2 forever. f1 runs straight code then a short loop, f2 calls f3
+     */
+    private static void writeImage(File file) throws IOException {
+        byte[] image = new byte[IMAGE_SIZE];
+        int main = BASE_ADDRESS;
+        int f1 = BASE_ADDRESS + FUNCTION_SIZE;
+        int f2 = BASE_ADDRESS + 2 * FUNCTION_SIZE;
+        int f3 = BASE_ADDRESS + 3 * FUNCTION_SIZE;
+
+        int address = main;
+        address = write(image, address, jal(f1), NOP, jal(f2), NOP, BRANCH_TO_MAIN, NOP);
+
+        address = f1;
+        for (int i = 0; i < 16; i++) {
+            address = write(image, address, INCREMENT_T0);
+        }
+        address = write(image, address, LOAD_T1, DECREMENT_T1, LOOP_T1, NOP, JR_RA, NOP);
+
+        address = f2;
+        address = write(image, address, SAVE_RA, jal(f3), NOP, JR_S0, NOP);
+
+        address = f3;
+        for (int i = 0; i < 8; i++) {
+            address = write(image, address, INCREMENT_T0);
+        }
+        write(image, address, JR_RA, NOP);
+
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(image);
+        }
+    }
+
+    private static int write(byte[] image, int address, int... instructions) {
+        for (int instruction : instructions) {
+            int offset = address - BASE_ADDRESS;
+            image[offset] = (byte) (instruction >>> 24);
+            image[offset + 1] = (byte) (instruction >>> 16);
+            image[offset + 2] = (byte) (instruction >>> 8);
+            image[offset + 3] = (byte) instruction;
+            address += 4;
+        }
+        return address;
+    }
+
+    private static int jal(int target) {
+        return 0x0C000000 | ((target >>> 2) & 0x3FFFFFF);
+    }
+
+    private static CodeStructure createCodeStructure() {
+        CodeStructure codeStructure = new TxCodeStructure(BASE_ADDRESS);
+        for (int i = 0; i < 4; i++) {
+            int address = BASE_ADDRESS + i * FUNCTION_SIZE;
+            Function function = new Function(address, "f" + i, "", Function.Type.STANDARD);
+            function.getCodeSegments().add(new CodeSegment(address, address + FUNCTION_SIZE - 1));
+            codeStructure.putFunction(address, function);
+        }
+        return codeStructure;
+    }
+}
@@ -0,0 +1,230 @@
+package com.nikonhacker.encoding;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class FirmwarePipelineTest extends TestCase {
+    private static final String[] NAMES = {"a860_010.bin", "b640101b.bin", "empty.bin", "b640102b.bin"};
+    /** Lengths straddling the chunks of the pipeline, including an empty entry */
+    private static final int[] LENGTHS = {0x123, 0x10000 + 7, 0, 0x2FFFF};
+
+    private File tempDir;
+    private List<File> inputFiles;
+    private List<FirmwareFileEntry> entries;
+
+    @Override
+    protected void setUp() throws Exception {
+        tempDir = File.createTempFile("pipeline", "");
+        tempDir.delete();
+        tempDir.mkdirs();
+        Random random = new Random(42);
+        inputFiles = new ArrayList<>();
+        entries = new ArrayList<>();
+        for (int i = 0; i < NAMES.length; i++) {
+            byte[] contents = new byte[LENGTHS[i]];
+            random.nextBytes(contents);
+            File file = new File(tempDir, NAMES[i]);
+            write(file, contents);
+            inputFiles.add(file);
+            entries.add(new FirmwareFileEntry(NAMES[i], contents, 0, contents.length, FirmwareUtils.fileCrc.compute(contents, 0, contents.length)));
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(tempDir);
+    }
+
+    public void testEncodeMatchesPack() throws Exception {
+        File packageFile = new File(tempDir, "package.bin");
+        new FirmwarePipeline().encode(inputFiles, packageFile);
+
+        byte[] expected = FirmwareUtils.xor(FirmwareUtils.pack(entries), FirmwareUtils.STANDARD);
+        assertTrue(Arrays.equals(expected, FirmwareUtils.load(packageFile)));
+    }
+
+    public void testDecodeMatchesUnpack() throws Exception {
+        File packageFile = createPackage(FirmwareUtils.pack(entries));
+        File unpackDir = new File(tempDir, "unpacked");
+        List<FirmwareFileEntry> decodedEntries = new FirmwarePipeline().decode(packageFile, unpackDir, false);
+
+        byte[] decoded = FirmwareUtils.load(packageFile);
+        int type = FirmwareUtils.tryXor(decoded);
+        assertEquals(FirmwareUtils.STANDARD, type);
+        List<FirmwareFileEntry> unpackedEntries = FirmwareUtils.unpack(decoded, type);
+
+        assertEquals(unpackedEntries.size(), decodedEntries.size());
+        for (int i = 0; i < unpackedEntries.size(); i++) {
+            FirmwareFileEntry unpacked = unpackedEntries.get(i);
+            FirmwareFileEntry entry = decodedEntries.get(i);
+            assertEquals(unpacked.getFileName(), entry.getFileName());
+            assertEquals(unpacked.getOffset(), entry.getOffset());
+            assertEquals(unpacked.getLength(), entry.getLength());
+            assertEquals(unpacked.getCheckSum(), entry.getCheckSum());
+            byte[] expected = Arrays.copyOfRange(decoded, unpacked.getOffset(), unpacked.getOffset() + unpacked.getLength());
+            assertTrue(entry.getFileName(), Arrays.equals(expected, FirmwareUtils.load(new File(unpackDir, entry.getFileName()))));
+        }
+    }
+
+    public void testRoundTrip() throws Exception {
+        File packageFile = new File(tempDir, "package.bin");
+        FirmwarePipeline pipeline = new FirmwarePipeline();
+        pipeline.encode(inputFiles, packageFile);
+        File unpackDir = new File(tempDir, "unpacked");
+        pipeline.decode(packageFile, unpackDir, false);
+        for (File inputFile : inputFiles) {
+            assertTrue(inputFile.getName(), Arrays.equals(FirmwareUtils.load(inputFile), FirmwareUtils.load(new File(unpackDir, inputFile.getName()))));
+        }
+    }
+
+    public void testCrcError() throws Exception {
+        entries.get(1).setCheckSum(entries.get(1).getCheckSum() ^ 1);
+        File packageFile = createPackage(FirmwareUtils.pack(entries));
+        RecordingEntryHandler handler = new RecordingEntryHandler(new File(tempDir, "unpacked"), false);
+        try {
+            new FirmwarePipeline().decode(packageFile, handler);
+            fail("CRC error not detected");
+        }
+        catch (FirmwareFormatException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList("start a860_010.bin", "end a860_010.bin", "start b640101b.bin", "end b640101b.bin"), handler.calls);
+        assertFalse(handler.isOpen());
+
+        // Ignoring CRC errors
+        handler = new RecordingEntryHandler(new File(tempDir, "unpacked"), true);
+        new FirmwarePipeline().decode(packageFile, handler);
+        assertEquals(2 * NAMES.length, handler.calls.size());
+    }
+
+    public void testHandlerError() throws Exception {
+        File packageFile = createPackage(FirmwareUtils.pack(entries));
+        RecordingEntryHandler handler = new RecordingEntryHandler(new File(tempDir, "unpacked"), false) {
+            @Override
+            public void entryData(FirmwareFileEntry entry, byte[] buffer, int offset, int length) throws IOException {
+                super.entryData(entry, buffer, offset, length);
+                if (entry.getFileName().equals("b640102b.bin")) {
+                    throw new IOException("Disk full");
+                }
+            }
+        };
+        try {
+            new FirmwarePipeline().decode(packageFile, handler);
+            fail("Handler error not reported");
+        }
+        catch (IOException e) {
+            assertEquals("Disk full", e.getMessage());
+        }
+        assertEquals("b640102b.bin", handler.abortedEntry);
+        assertFalse(handler.isOpen());
+    }
+
+    public void testOverlappingEntries() throws Exception {
+        byte[] buffer = FirmwareUtils.pack(entries);
+        // second entry starts in the CRC of the first one
+        FirmwareUtils.setUInt32(buffer, 0x40 + 0x20, (int) FirmwareUtils.getUInt32(buffer, 0x40 + 0x20) - 1);
+        assertDecodeFails(buffer);
+    }
+
+    public void testUnsortedEntries() throws Exception {
+        byte[] buffer = FirmwareUtils.pack(entries);
+        // swap the first two entries of the table, leaving the contents in place
+        byte[] firstEntry = Arrays.copyOfRange(buffer, 0x30, 0x50);
+        System.arraycopy(buffer, 0x50, buffer, 0x30, 0x20);
+        System.arraycopy(firstEntry, 0, buffer, 0x50, 0x20);
+        assertDecodeFails(buffer);
+    }
+
+    public void testEntryInHeader() throws Exception {
+        byte[] buffer = FirmwareUtils.pack(entries);
+        FirmwareUtils.setUInt32(buffer, 0x40, 0x20);
+        assertDecodeFails(buffer);
+    }
+
+    private void assertDecodeFails(byte[] buffer) throws IOException {
+        File packageFile = createPackage(buffer);
+        RecordingEntryHandler handler = new RecordingEntryHandler(new File(tempDir, "unpacked"), true);
+        try {
+            new FirmwarePipeline().decode(packageFile, handler);
+            fail("Invalid entry table not detected");
+        }
+        catch (FirmwareFormatException e) {
+            // expected
+        }
+        assertTrue(handler.calls.isEmpty());
+    }
+
+    /**
+     * @param buffer decoded package
+     */
+    private File createPackage(byte[] buffer) throws IOException {
+        File packageFile = new File(tempDir, "package.bin");
+        write(packageFile, FirmwareUtils.xor(buffer, FirmwareUtils.STANDARD));
+        return packageFile;
+    }
+
+    private static void write(File file, byte[] contents) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(contents);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static class RecordingEntryHandler extends FirmwarePipeline.DirectoryEntryHandler {
+        private final List<String> calls = new ArrayList<>();
+        private String abortedEntry;
+        private boolean open;
+
+        private RecordingEntryHandler(File unpackDir, boolean ignoreCrcErrors) {
+            super(unpackDir, ignoreCrcErrors);
+        }
+
+        @Override
+        public void startEntry(FirmwareFileEntry entry) throws IOException {
+            assertFalse("entries must not overlap", open);
+            super.startEntry(entry);
+            calls.add("start " + entry.getFileName());
+            open = true;
+        }
+
+        @Override
+        public void endEntry(FirmwareFileEntry entry, int computedChecksum) throws IOException, FirmwareFormatException {
+            calls.add("end " + entry.getFileName());
+            open = false;
+            super.endEntry(entry, computedChecksum);
+        }
+
+        @Override
+        public void abortEntry(FirmwareFileEntry entry) {
+            abortedEntry = entry.getFileName();
+            open = false;
+            super.abortEntry(entry);
+        }
+
+        /**
+         * @return true if the handler still has an open file
+         */
+        private boolean isOpen() throws Exception {
+            Field field = FirmwarePipeline.DirectoryEntryHandler.class.getDeclaredField("channel");
+            field.setAccessible(true);
+            return field.get(this) != null;
+        }
+    }
+}
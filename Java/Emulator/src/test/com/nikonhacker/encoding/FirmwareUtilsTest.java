@@ -0,0 +1,92 @@
+package com.nikonhacker.encoding;
+
+import jonelo.jacksum.JacksumAPI;
+import jonelo.jacksum.algorithm.AbstractChecksum;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class FirmwareUtilsTest extends TestCase {
+    private static final int[] MASKS = {0x1021, 0x8005};
+    private static final int[] INIT_VALUES = {0x0000, 0xcd18, 0xFFFF};
+    private static final int[] OFFSETS = {0, 1, 3, 7, 8, 13};
+    private static final int[] LENGTHS = {0, 1, 2, 7, 8, 9, 15, 16, 17, 63, 255, 256, 257, 1000, 4099};
+
+    private byte[] data;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = new byte[0x3000];
+        new Random(42).nextBytes(data);
+    }
+
+    public void testCrc16MatchesJacksum() throws Exception {
+        for (int mask : MASKS) {
+            for (int initValue : INIT_VALUES) {
+                Crc16 crc16 = new Crc16(initValue, mask);
+                AbstractChecksum checksum = JacksumAPI.getChecksumInstance("crc:16," + Integer.toHexString(mask) + "," + Integer.toHexString(initValue) + ",false,false,0");
+                for (int offset : OFFSETS) {
+                    for (int length : LENGTHS) {
+                        checksum.reset();
+                        checksum.update(data, offset, length);
+                        String message = "mask=0x" + Integer.toHexString(mask) + " init=0x" + Integer.toHexString(initValue) + " offset=" + offset + " length=" + length;
+                        assertEquals(message, (int) checksum.getValue(), crc16.compute(data, offset, length));
+                        assertEquals(message, FirmwareUtils.referenceComputeChecksum(data, offset, length, initValue, mask), crc16.compute(data, offset, length));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testCrc16Update() throws Exception {
+        Crc16 crc16 = new Crc16(0xcd18, 0x1021);
+        for (int offset : OFFSETS) {
+            for (int length : LENGTHS) {
+                for (int split = 0; split <= length; split += 1 + length / 5) {
+                    int crc = crc16.update(crc16.getInitValue(), data, offset, split);
+                    crc = crc16.update(crc, data, offset + split, length - split);
+                    assertEquals("offset=" + offset + " length=" + length + " split=" + split, crc16.compute(data, offset, length), crc);
+                }
+            }
+        }
+    }
+
+    public void testComputeChecksum() throws Exception {
+        AbstractChecksum checksum = JacksumAPI.getChecksumInstance("crc:16,1021,0,false,false,0");
+        checksum.update(data, 5, 0x2000);
+        assertEquals((int) checksum.getValue(), FirmwareUtils.computeChecksum(data, 5, 0x2000));
+    }
+
+    public void testXorMatchesBytewiseXor() throws Exception {
+        int[] positions = {0, 1, 0xF8, 0xFF, 0x100, 0x1FF5, 0x12345};
+        for (int index = FirmwareUtils.STANDARD; index <= FirmwareUtils.MODEL1; index++) {
+            for (int position : positions) {
+                for (int offset : OFFSETS) {
+                    for (int length : LENGTHS) {
+                        byte[] expected = Arrays.copyOf(data, data.length);
+                        for (int i = 0; i < length; i++) {
+                            FirmwareUtils.xor(expected, offset + i, 1, position + i, index);
+                        }
+                        byte[] actual = Arrays.copyOf(data, data.length);
+                        FirmwareUtils.xor(actual, offset, length, position, index);
+                        assertTrue("index=" + index + " position=0x" + Integer.toHexString(position) + " offset=" + offset + " length=" + length, Arrays.equals(expected, actual));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testXorIsInvolution() throws Exception {
+        byte[] buffer = Arrays.copyOf(data, data.length);
+        FirmwareUtils.xor(buffer, FirmwareUtils.STANDARD);
+        assertFalse(Arrays.equals(data, buffer));
+        FirmwareUtils.xor(buffer, FirmwareUtils.STANDARD);
+        assertTrue(Arrays.equals(data, buffer));
+    }
+
+    public void testXorInvalidIndex() throws Exception {
+        assertNull(FirmwareUtils.xor(data, 0, data.length, 0, 0));
+        assertNull(FirmwareUtils.xor(data, 0, data.length, 0, FirmwareUtils.MODEL1 + 1));
+    }
+}
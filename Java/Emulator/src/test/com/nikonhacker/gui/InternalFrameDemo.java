@@ -32,7 +32,7 @@
 package com.nikonhacker.gui;
 
 import com.nikonhacker.emu.memory.DebuggableMemory;
-import com.nikonhacker.emu.memory.listener.TrackingMemoryActivityListener;
+import com.nikonhacker.emu.memory.MemoryAccessStatistics;
 
 import javax.swing.*;
 import java.awt.*;
@@ -48,7 +48,7 @@ public class InternalFrameDemo extends JFrame implements ActionListener {
     private JDesktopPane mdiPane;
 
     private static DebuggableMemory memory = new DebuggableMemory(false);
-    private static TrackingMemoryActivityListener activityListener = new TrackingMemoryActivityListener(memory.getNumPages(), memory.getPageSize());
+    private static MemoryAccessStatistics statistics = new MemoryAccessStatistics();
 
 
     public static void main(String[] args) {
@@ -61,8 +61,8 @@ public class InternalFrameDemo extends JFrame implements ActionListener {
         });
 
         for(;;) {
-            for(int i = 0; i < activityListener.getPageActivityMap().length; i++) {
-                activityListener.getPageActivityMap()[i] = (int) (Math.random() * Integer.MAX_VALUE);
+            for(int i = 0; i < memory.getNumPages(); i++) {
+                statistics.count(i * memory.getPageSize(), (int) (Math.random() * MemoryAccessStatistics.NUM_KINDS), DebuggableMemory.AccessSource.CODE);
             }
             try {
                 Thread.sleep(100);
@@ -152,7 +152,7 @@ public class InternalFrameDemo extends JFrame implements ActionListener {
     //Create a new internal frame.
     protected void createFrame() {
         // Create a frame
-        DocumentFrame frame = new DocumentFrame(new MemoryMapComponent(activityListener, MemoryMapComponent.PAGE_MODE, null));
+        DocumentFrame frame = new DocumentFrame(new MemoryMapComponent(statistics, MemoryMapComponent.PAGE_MODE, null));
 
         frame.setTitle("Emulator memory activity viewer");
 
@@ -1,7 +1,8 @@
 package com.nikonhacker.gui;
 
 import com.nikonhacker.Format;
-import com.nikonhacker.emu.memory.listener.TrackingMemoryActivityListener;
+import com.nikonhacker.emu.memory.DebuggableMemory;
+import com.nikonhacker.emu.memory.MemoryAccessStatistics;
 
 import javax.swing.*;
 import java.awt.*;
@@ -35,33 +36,33 @@ public class MemoryMapComponent extends JComponent {
     private double scaleX;
     private double scaleY;
 
-    private TrackingMemoryActivityListener activityListener;
+    private MemoryAccessStatistics statistics;
     private int baseAddress = PAGE_MODE;
     private EmulatorUI emulatorUI;
 
     /**
      *
-     * @param activityListener
+     * @param statistics
      * @param baseAddress the base address this component displays. If displaying the page level, use PAGE_MODE
      * @param emulatorUI
      */
-    public MemoryMapComponent(TrackingMemoryActivityListener activityListener, int baseAddress, EmulatorUI emulatorUI) {
-        this.activityListener = activityListener;
+    public MemoryMapComponent(MemoryAccessStatistics statistics, int baseAddress, EmulatorUI emulatorUI) {
+        this.statistics = statistics;
         this.baseAddress = baseAddress;
         this.emulatorUI = emulatorUI;
 
+        activityMap = new int[MAP_WIDTH * MAP_HEIGHT];
         if (baseAddress == PAGE_MODE) {
-            activityMap = activityListener.getPageActivityMap();
             setPreferredSize(new Dimension(MAP_WIDTH*2, MAP_HEIGHT*2));
         }
         else {
-            activityMap = activityListener.getCellActivityMap(baseAddress >>> PAGE_SIZE_BITS);
             setPreferredSize(new Dimension(MAP_WIDTH, MAP_HEIGHT));
         }
         
 
         refreshTimer = new javax.swing.Timer(UPDATE_INTERVAL_MS, new ActionListener() {
             public void actionPerformed(ActionEvent e) {
+                updateActivityMap();
                 repaint();
             }
         });
@@ -79,7 +80,7 @@ public class MemoryMapComponent extends JComponent {
         addMouseListener(new MouseListener() {
 
             public void mouseClicked(MouseEvent e) {
-                // Clear
+                // Clear until next refresh
                 for(int i = 0; i < MAP_HEIGHT * MAP_WIDTH; i++) activityMap[i] = 0;
             }
 
@@ -97,6 +98,25 @@ public class MemoryMapComponent extends JComponent {
     }
 
 
+    private void updateActivityMap() {
+        MemoryAccessStatistics.Snapshot snapshot = statistics.takeSnapshot();
+        for (int i = 0; i < activityMap.length; i++) {
+            int address = getAddressFromPosition(i % MAP_WIDTH, i / MAP_WIDTH);
+            long[] counts = new long[MemoryAccessStatistics.NUM_KINDS];
+            for (int kind = 0; kind < MemoryAccessStatistics.NUM_KINDS; kind++) {
+                if (baseAddress == PAGE_MODE) {
+                    counts[kind] = snapshot.getPageCount(address >>> PAGE_SIZE_BITS, kind, DebuggableMemory.AccessSource.selectableAccessSource);
+                }
+                else {
+                    counts[kind] = snapshot.getBlockCount(address, kind, DebuggableMemory.AccessSource.selectableAccessSource);
+                }
+            }
+            activityMap[i] = (int) (Math.min(counts[MemoryAccessStatistics.WRITE], 0xFF) << 16
+                    | Math.min(counts[MemoryAccessStatistics.READ], 0xFF) << 8
+                    | Math.min(counts[MemoryAccessStatistics.EXEC], 0xFF));
+        }
+    }
+
     // This method is called whenever the contents needs to be painted
     public void paintComponent(Graphics g) {
         Graphics2D g2d = (Graphics2D) g;
@@ -2,7 +2,7 @@ package com.nikonhacker.gui;
 
 import com.nikonhacker.emu.EmulationException;
 import com.nikonhacker.emu.memory.DebuggableMemory;
-import com.nikonhacker.emu.memory.listener.TrackingMemoryActivityListener;
+import com.nikonhacker.emu.memory.MemoryAccessStatistics;
 
 import javax.swing.*;
 import java.io.IOException;
@@ -14,7 +14,7 @@ public class MemoryMapComponentTest {
 
     private MemoryMapComponentTest() throws IOException, EmulationException {
         DebuggableMemory memory = new DebuggableMemory(false);
-        TrackingMemoryActivityListener activityListener = new TrackingMemoryActivityListener(memory.getNumPages(), memory.getPageSize());
+        MemoryAccessStatistics statistics = new MemoryAccessStatistics();
 
         // Create a frame
         JFrame frame = new JFrame();
@@ -22,7 +22,7 @@ public class MemoryMapComponentTest {
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setTitle("Emulator memory viewer");
 
-        MemoryMapComponent memoryMapComponent = new MemoryMapComponent(activityListener, MemoryMapComponent.PAGE_MODE, null);
+        MemoryMapComponent memoryMapComponent = new MemoryMapComponent(statistics, MemoryMapComponent.PAGE_MODE, null);
         frame.getContentPane().add(memoryMapComponent);
         frame.pack();                          // Layout components
         frame.setLocationRelativeTo(null);     // Center window.
@@ -30,8 +30,8 @@ public class MemoryMapComponentTest {
         frame.setVisible(true);
         
         for(;;) {
-            for(int i = 0; i < activityListener.getPageActivityMap().length; i++) {
-                activityListener.getPageActivityMap()[i] = (int) (Math.random() * Integer.MAX_VALUE);
+            for(int i = 0; i < memory.getNumPages(); i++) {
+                statistics.count(i * memory.getPageSize(), (int) (Math.random() * MemoryAccessStatistics.NUM_KINDS), DebuggableMemory.AccessSource.CODE);
             }
             try {
                 Thread.sleep(100);